@@ -1,7 +1,14 @@
 package it.hl.neo4j.cli;
 
+import it.hl.neo4j.importer.AdminImportExport;
+import it.hl.neo4j.importer.DeliveryReport;
+import it.hl.neo4j.importer.ImportFailedException;
+import it.hl.neo4j.importer.ImportMode;
+import it.hl.neo4j.importer.ImportOptions;
+import it.hl.neo4j.importer.ImportReport;
 import it.hl.neo4j.service.CatastoImportService;
 import it.hl.neo4j.service.CatastoQueryService;
+import it.hl.neo4j.service.SchemaManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.ApplicationArguments;
@@ -15,6 +22,7 @@ public class CatastoCliRunner implements ApplicationRunner {
 
     private final CatastoImportService importService;
     private final CatastoQueryService queryService;
+    private final SchemaManager schemaManager;
 
     @Override
     public void run(ApplicationArguments args) throws Exception {
@@ -29,6 +37,7 @@ public class CatastoCliRunner implements ApplicationRunner {
             case "help", "-h", "--help" -> printHelp();
             case "import" -> handleImport(args);
             case "titolari" -> handleTitolari(args);
+            case "schema" -> handleSchema();
             default -> {
                 System.out.println("Comando sconosciuto: " + command);
                 printHelp();
@@ -38,22 +47,52 @@ public class CatastoCliRunner implements ApplicationRunner {
 
     private void handleImport(ApplicationArguments args) {
         if (args.getNonOptionArgs().size() < 2) {
-            System.out.println("Uso: import <directory>");
+            System.out.println("Uso: import <directory> [--mode=bulk|repository] [--resume] [--delta] [--tree] [--dry-run] [--export=<dir>]");
             return;
         }
 
         String directory = args.getNonOptionArgs().get(1);
 
         try {
+            ImportOptions options = ImportOptions.builder()
+                    .mode(ImportMode.fromString(getOption(args, "mode")))
+                    .resume(args.containsOption("resume"))
+                    .delta(args.containsOption("delta"))
+                    .dryRun(args.containsOption("dry-run"))
+                    .exportDirectory(getOption(args, "export"))
+                    .build();
             System.out.println("Importando dati da: " + directory);
-            importService.importCatastoData(directory);
+            if (args.containsOption("tree")) {
+                DeliveryReport delivery = importService.importDeliveryTree(directory, options);
+                System.out.println(delivery.summary());
+                if (!delivery.isSuccessful()) {
+                    System.err.println("Import di alcuni comuni fallito, gli altri sono stati importati");
+                }
+                return;
+            }
+            ImportReport report = importService.importCatastoData(directory, options);
+            System.out.println(report.summary());
 
+        } catch (ImportFailedException e) {
+            System.err.println("Errore durante l'import, i batch seguenti sono già stati salvati:");
+            System.err.println(e.getReport().summary());
+            log.error("Import error", e);
         } catch (Exception e) {
             System.err.println("Errore durante l'import: " + e.getMessage());
             log.error("Import error", e);
         }
     }
 
+    private void handleSchema() {
+        try {
+            int version = schemaManager.migrate();
+            System.out.println("Schema del grafo alla versione " + version);
+        } catch (Exception e) {
+            System.err.println("Errore durante l'aggiornamento dello schema: " + e.getMessage());
+            log.error("Schema migration error", e);
+        }
+    }
+
     private void handleTitolari(ApplicationArguments args) {
         if (args.getNonOptionArgs().size() < 2) {
             System.out.println("Uso: titolari <codice_fiscale>");
@@ -63,16 +102,32 @@ public class CatastoCliRunner implements ApplicationRunner {
         String codiceFiscale = args.getNonOptionArgs().get(1);
     }
 
+    private String getOption(ApplicationArguments args, String name) {
+        if (!args.containsOption(name) || args.getOptionValues(name).isEmpty()) {
+            return null;
+        }
+        return args.getOptionValues(name).get(0);
+    }
+
     private void printHelp() {
         System.out.println("=== HL Neo4j ===");
         System.out.println("Comandi disponibili:");
-        System.out.println("  import <directory>     - Importa i dati catastali da directory");
+        System.out.println("  import <directory>     - Importa i dati catastali da directory (anche da archivi .zip/.gz)");
+        System.out.println("      --mode=bulk|repository  - Modalità di scrittura (default: catasto.import.mode)");
+        System.out.println("      --resume                - Riprende dall'ultimo checkpoint degli stessi file");
+        System.out.println("      --delta                 - Scrive solo i record nuovi o modificati e rimuove quelli spariti");
+        System.out.println("      --tree                  - Importa in parallelo tutti i comuni sotto la directory");
+        System.out.println("      --dry-run               - Valida la fornitura senza scrivere su Neo4j");
+        System.out.println("      --export=<dir>          - Scrive i CSV per neo4j-admin database import invece di Neo4j");
         System.out.println("  titolari <cf>         - Cerca proprietà per codice fiscale");
+        System.out.println("  schema                - Crea vincoli e indici del grafo (migrazioni mancanti)");
         System.out.println("  stats                 - Mostra statistiche database");
         System.out.println("  help                  - Mostra questo messaggio");
         System.out.println();
         System.out.println("Esempi:");
         System.out.println("  java -jar app.jar import /path/to/data");
+        System.out.println("  java -jar app.jar import /path/to/regione --tree --export=/path/to/csv");
+        System.out.println("    poi: neo4j-admin database import full @/path/to/csv/" + AdminImportExport.ARGUMENTS_FILE + " neo4j");
         System.out.println("  java -jar app.jar titolari RSSMRA80A01H501Z");
         System.out.println();
         System.out.println("API REST disponibile su: http://localhost:8080/api/catasto");
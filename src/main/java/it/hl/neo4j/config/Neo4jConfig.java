@@ -7,9 +7,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.neo4j.core.DatabaseSelectionProvider;
 import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.data.neo4j.core.ReactiveDatabaseSelectionProvider;
+import org.springframework.data.neo4j.core.ReactiveNeo4jClient;
 import org.springframework.data.neo4j.core.transaction.Neo4jTransactionManager;
 import org.springframework.data.neo4j.repository.config.EnableNeo4jRepositories;
+import org.springframework.data.neo4j.repository.config.EnableReactiveNeo4jRepositories;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
@@ -18,6 +22,7 @@ import org.springframework.data.neo4j.config.AbstractNeo4jConfig;
 
 @Configuration
 @EnableNeo4jRepositories
+@EnableReactiveNeo4jRepositories("it.hl.neo4j.repository")
 @EnableTransactionManagement
 public class Neo4jConfig extends AbstractNeo4jConfig {
 
@@ -30,10 +35,23 @@ public class Neo4jConfig extends AbstractNeo4jConfig {
     @Value("${spring.neo4j.authentication.password:password}")
     private String password;
 
+    /** Database of every session, blank for the server's default one. */
+    @Value("${spring.data.neo4j.database:}")
+    private String database;
+
     @Bean
     @Primary
     public PlatformTransactionManager transactionManager(Driver driver) {
-        return new Neo4jTransactionManager(driver);
+        return Neo4jTransactionManager.with(driver)
+                .withDatabaseSelectionProvider(databaseSelectionProvider())
+                .build();
+    }
+
+    @Bean
+    @Override
+    protected DatabaseSelectionProvider databaseSelectionProvider() {
+        return database.isBlank() ? DatabaseSelectionProvider.getDefaultSelectionProvider()
+                : DatabaseSelectionProvider.createStaticDatabaseSelectionProvider(database);
     }
 
     @Bean
@@ -50,6 +68,18 @@ public class Neo4jConfig extends AbstractNeo4jConfig {
     // Neo4jClient is usually auto-configured, but if you need custom config:
     @Bean
     public Neo4jClient neo4jClient(Driver driver) {
-        return Neo4jClient.create(driver);
+        return Neo4jClient.with(driver)
+                .withDatabaseSelectionProvider(databaseSelectionProvider())
+                .build();
+    }
+
+    // Backs the /api/reactive endpoints and the Reactive*Repository interfaces
+    @Bean
+    public ReactiveNeo4jClient reactiveNeo4jClient(Driver driver) {
+        return ReactiveNeo4jClient.with(driver)
+                .withDatabaseSelectionProvider(database.isBlank()
+                        ? ReactiveDatabaseSelectionProvider.getDefaultSelectionProvider()
+                        : ReactiveDatabaseSelectionProvider.createStaticDatabaseSelectionProvider(database))
+                .build();
     }
-}
\ No newline at end of file
+}
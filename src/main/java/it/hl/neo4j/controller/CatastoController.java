@@ -1,14 +1,26 @@
 package it.hl.neo4j.controller;
 
+import it.hl.neo4j.dto.CursorPage;
+import it.hl.neo4j.dto.ImportJobStatus;
+import it.hl.neo4j.importer.ImportMode;
+import it.hl.neo4j.importer.ImportOptions;
+import it.hl.neo4j.importer.ImportPipelineRegistry;
+import it.hl.neo4j.importer.PipelineSnapshot;
+import it.hl.neo4j.model.Fab;
+import it.hl.neo4j.model.Particella;
 import it.hl.neo4j.model.Sog;
 import it.hl.neo4j.model.Ter;
-import it.hl.neo4j.service.CatastoImportService;
 import it.hl.neo4j.service.CatastoQueryService;
+import it.hl.neo4j.service.ImportJobConflictException;
+import it.hl.neo4j.service.ImportJobService;
+import it.hl.neo4j.service.InvalidCursorException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,28 +31,120 @@ import java.util.Optional;
 public class CatastoController {
 
     private static final String DATA_PREFIX = "data";
+    /** Page size of the list endpoints; at most 500, whatever is asked. */
+    private static final String DEFAULT_PAGE_SIZE = "50";
 
-    private final CatastoImportService importService;
+    private final ImportJobService jobService;
     private final CatastoQueryService queryService;
+    private final ImportPipelineRegistry pipelineRegistry;
 
+    /**
+     * Starts an import job and answers straight away with its id; follow it with {@code GET /import/{id}}.
+     * With {@code tree=true} every comune found under {@code dataDirectory} is imported. Answers 409
+     * while another job imports the same directory, or too many jobs are running.
+     */
     @PostMapping("/import")
-    public ResponseEntity<String> importData(@RequestParam String dataDirectory) {
+    public ResponseEntity<?> importData(@RequestParam String dataDirectory,
+                                        @RequestParam(required = false) String mode,
+                                        @RequestParam(defaultValue = "false") boolean resume,
+                                        @RequestParam(defaultValue = "false") boolean delta,
+                                        @RequestParam(defaultValue = "false") boolean tree,
+                                        @RequestParam(defaultValue = "false") boolean dryRun) {
         try {
-            importService.importCatastoData(DATA_PREFIX + "/" + dataDirectory);
-            return ResponseEntity.ok("Import completed successfully");
+            ImportOptions options = ImportOptions.builder()
+                    .mode(ImportMode.fromString(mode))
+                    .resume(resume)
+                    .delta(delta)
+                    .dryRun(dryRun)
+                    .build();
+            ImportJobStatus job = jobService.submit(DATA_PREFIX + "/" + dataDirectory, tree, options);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/catasto/import/" + job.getId()))
+                    .body(job);
+        } catch (ImportJobConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Import refused: " + e.getMessage());
         } catch (Exception e) {
-            log.error("Import failed", e);
+            log.error("Import submission failed", e);
             return ResponseEntity.badRequest()
                     .body("Import failed: " + e.getMessage());
         }
     }
 
+    @GetMapping("/import")
+    public ResponseEntity<List<ImportJobStatus>> importJobs() {
+        return ResponseEntity.ok(jobService.list());
+    }
+
+    @GetMapping("/import/{id}")
+    public ResponseEntity<ImportJobStatus> importJob(@PathVariable String id) {
+        return jobService.status(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Cancels an import job; what it committed so far stays, and it can be resumed later.
+     */
+    @DeleteMapping("/import/{id}")
+    public ResponseEntity<ImportJobStatus> cancelImportJob(@PathVariable String id) {
+        return jobService.cancel(id)
+                .map(status -> ResponseEntity.accepted().body(status))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/import/pipelines")
+    public ResponseEntity<List<PipelineSnapshot>> importPipelines() {
+        return ResponseEntity.ok(pipelineRegistry.snapshots());
+    }
+
+    /**
+     * Soggetti by nome, cognome or denominazione, best match first; ignores case and accents and
+     * tolerates typos.
+     */
     @GetMapping("/soggetti/search")
-    public ResponseEntity<List<Sog>> searchSoggetti(@RequestParam String nome) {
-        List<Sog> soggetti = queryService.findSoggettiByNome(nome);
+    public ResponseEntity<CursorPage<Sog>> searchSoggetti(@RequestParam String nome,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        CursorPage<Sog> soggetti = queryService.findSoggettiByNome(nome, cursor, size);
         return ResponseEntity.ok(soggetti);
     }
 
+    @GetMapping("/soggetti/tipo/{tipoSoggetto}")
+    public ResponseEntity<CursorPage<Sog>> findSoggettiByTipo(@PathVariable String tipoSoggetto,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return ResponseEntity.ok(queryService.findSoggettiByTipo(tipoSoggetto, cursor, size));
+    }
+
+    /**
+     * Fabbricati by indirizzo (e.g. {@code via roma 12}), best match first.
+     */
+    @GetMapping("/fabbricati/search")
+    public ResponseEntity<CursorPage<Fab>> searchFabbricati(@RequestParam String indirizzo,
+                                                            @RequestParam(required = false) String cursor,
+                                                            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return ResponseEntity.ok(queryService.findFabbricatiByIndirizzo(indirizzo, cursor, size));
+    }
+
+    @GetMapping("/fabbricati/categoria/{categoria}")
+    public ResponseEntity<CursorPage<Fab>> findFabbricatiByCategoria(@PathVariable String categoria,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return ResponseEntity.ok(queryService.findFabbricatiByCategoria(categoria, cursor, size));
+    }
+
+    /**
+     * Fabbricati with a rendita in euro between {@code min} and {@code max}, both included.
+     */
+    @GetMapping("/fabbricati/rendita")
+    public ResponseEntity<CursorPage<Fab>> findFabbricatiByRendita(@RequestParam double min,
+                                                                   @RequestParam double max,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return ResponseEntity.ok(queryService.findFabbricatiByRendita(min, max, cursor, size));
+    }
+
     @GetMapping("/soggetti/cf/{codiceFiscale}")
     public ResponseEntity<Sog> findSoggettoByCodiceFiscale(@PathVariable String codiceFiscale) {
         Optional<Sog> soggetto = queryService.findSoggettoByCodiceFiscale(codiceFiscale);
@@ -49,14 +153,36 @@ public class CatastoController {
     }
 
     @GetMapping("/terreni/foglio/{foglio}")
-    public ResponseEntity<List<Ter>> findTerreniByFoglio(@PathVariable String foglio) {
-        List<Ter> terreni = queryService.findTerreniByFoglio(foglio);
+    public ResponseEntity<CursorPage<Ter>> findTerreniByFoglio(@PathVariable String foglio,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        CursorPage<Ter> terreni = queryService.findTerreniByFoglio(foglio, cursor, size);
         return ResponseEntity.ok(terreni);
     }
 
+    /**
+     * Everything on a foglio and particella of a comune: terreni and fabbricati together.
+     */
+    @GetMapping("/particelle")
+    public ResponseEntity<List<Particella>> findParticelle(@RequestParam String codiceAmministrativo,
+                                                           @RequestParam String foglio,
+                                                           @RequestParam String numero) {
+        return ResponseEntity.ok(queryService.findParticelle(codiceAmministrativo, foglio, numero));
+    }
+
     @GetMapping("/terreni/qualita/{qualita}")
-    public ResponseEntity<List<Ter>> findTerreniByQualita(@PathVariable String qualita) {
-        List<Ter> terreni = queryService.findTerreniByQualita(qualita);
+    public ResponseEntity<CursorPage<Ter>> findTerreniByQualita(@PathVariable String qualita,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        CursorPage<Ter> terreni = queryService.findTerreniByQualita(qualita, cursor, size);
         return ResponseEntity.ok(terreni);
     }
+
+    /**
+     * A cursor that was not returned by a previous page.
+     */
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> badRequest(InvalidCursorException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
 }
\ No newline at end of file
@@ -1,29 +1,47 @@
 package it.hl.neo4j.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import it.hl.neo4j.dto.ChatRequest;
 import it.hl.neo4j.dto.GraphQueryResponse;
 import it.hl.neo4j.dto.RawQueryRequest;
 import it.hl.neo4j.service.GraphQueryService;
 import it.hl.neo4j.service.LLMService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/graph")
 @Slf4j
 public class GraphChatController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    /** Lines written between two flushes of a streamed response, after the first one. */
+    private static final int FLUSH_EVERY = 256;
+
     private final GraphQueryService queryService;
     private final LLMService llmService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter lineWriter;
 
-    public GraphChatController(GraphQueryService queryService, LLMService llmService) {
+    public GraphChatController(GraphQueryService queryService, LLMService llmService, ObjectMapper objectMapper) {
         this.queryService = queryService;
         this.llmService = llmService;
+        this.objectMapper = objectMapper;
+        this.lineWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     @PostMapping("/chat")
@@ -34,6 +52,16 @@ public class GraphChatController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Like {@code /chat}, one JSON object per line: a header with the generated Cypher, each result
+     * as it is read from the database, then a trailer with the count (or an error line).
+     */
+    @PostMapping(value = "/chat/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> chatStream(@RequestBody ChatRequest request) {
+        String message = request.getMessage().trim();
+        return ndjson(sink -> queryService.streamNaturalLanguageQuery(message, sink));
+    }
+
     @PostMapping("/create-query")
     public ResponseEntity<String> createQuery(@RequestBody ChatRequest request) {
         return ResponseEntity.ok(queryService.translateToCypherQuery(
@@ -55,4 +83,44 @@ public class GraphChatController {
     public ResponseEntity<List<Map<String, Object>>> query(@RequestBody RawQueryRequest request) {
         return ResponseEntity.ok(queryService.rawQuery(request));
     }
-}
\ No newline at end of file
+
+    /**
+     * Like {@code /query}, one record per line, written as it is read from the database.
+     */
+    @PostMapping(value = "/query/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> queryStream(@RequestBody RawQueryRequest request) {
+        return ndjson(sink -> queryService.streamRawQuery(request, sink));
+    }
+
+    /**
+     * Streams what {@code producer} hands its sink as newline-delimited JSON, flushing the first
+     * line right away and then every {@link #FLUSH_EVERY} lines.
+     */
+    private ResponseEntity<StreamingResponseBody> ndjson(Consumer<Consumer<Map<String, Object>>> producer) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(null)) {
+                long[] lines = {0};
+                producer.accept(row -> writeLine(generator, out, row, ++lines[0]));
+                generator.flush();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private void writeLine(JsonGenerator generator, OutputStream out, Map<String, Object> row, long line) {
+        try {
+            lineWriter.writeValue(generator, row);
+            generator.writeRaw('\n');
+            if (line == 1 || line % FLUSH_EVERY == 0) {
+                generator.flush();
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
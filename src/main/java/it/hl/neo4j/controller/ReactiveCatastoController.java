@@ -0,0 +1,99 @@
+package it.hl.neo4j.controller;
+
+import it.hl.neo4j.dto.CursorPage;
+import it.hl.neo4j.model.Fab;
+import it.hl.neo4j.model.Particella;
+import it.hl.neo4j.model.Sog;
+import it.hl.neo4j.model.Ter;
+import it.hl.neo4j.service.InvalidCursorException;
+import it.hl.neo4j.service.ReactiveCatastoQueryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking read endpoints of {@link CatastoController}, same parameters and cursors.
+ */
+@RestController
+@RequestMapping("/api/reactive/catasto")
+@RequiredArgsConstructor
+public class ReactiveCatastoController {
+
+    private static final String DEFAULT_PAGE_SIZE = "50";
+
+    private final ReactiveCatastoQueryService queryService;
+
+    @GetMapping("/soggetti/search")
+    public Mono<CursorPage<Sog>> searchSoggetti(@RequestParam String nome,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return queryService.findSoggettiByNome(nome, cursor, size);
+    }
+
+    @GetMapping("/soggetti/tipo/{tipoSoggetto}")
+    public Mono<CursorPage<Sog>> findSoggettiByTipo(@PathVariable String tipoSoggetto,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return queryService.findSoggettiByTipo(tipoSoggetto, cursor, size);
+    }
+
+    @GetMapping("/fabbricati/search")
+    public Mono<CursorPage<Fab>> searchFabbricati(@RequestParam String indirizzo,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return queryService.findFabbricatiByIndirizzo(indirizzo, cursor, size);
+    }
+
+    @GetMapping("/fabbricati/categoria/{categoria}")
+    public Mono<CursorPage<Fab>> findFabbricatiByCategoria(@PathVariable String categoria,
+                                                           @RequestParam(required = false) String cursor,
+                                                           @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return queryService.findFabbricatiByCategoria(categoria, cursor, size);
+    }
+
+    @GetMapping("/fabbricati/rendita")
+    public Mono<CursorPage<Fab>> findFabbricatiByRendita(@RequestParam double min,
+                                                         @RequestParam double max,
+                                                         @RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return queryService.findFabbricatiByRendita(min, max, cursor, size);
+    }
+
+    @GetMapping("/soggetti/cf/{codiceFiscale}")
+    public Mono<ResponseEntity<Sog>> findSoggettoByCodiceFiscale(@PathVariable String codiceFiscale) {
+        return queryService.findSoggettoByCodiceFiscale(codiceFiscale)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/terreni/foglio/{foglio}")
+    public Mono<CursorPage<Ter>> findTerreniByFoglio(@PathVariable String foglio,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return queryService.findTerreniByFoglio(foglio, cursor, size);
+    }
+
+    @GetMapping("/terreni/qualita/{qualita}")
+    public Mono<CursorPage<Ter>> findTerreniByQualita(@PathVariable String qualita,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        return queryService.findTerreniByQualita(qualita, cursor, size);
+    }
+
+    @GetMapping("/particelle")
+    public Flux<Particella> findParticelle(@RequestParam String codiceAmministrativo,
+                                           @RequestParam String foglio,
+                                           @RequestParam String numero) {
+        return queryService.findParticelle(codiceAmministrativo, foglio, numero);
+    }
+
+    /**
+     * A cursor that was not returned by a previous page.
+     */
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> badRequest(InvalidCursorException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
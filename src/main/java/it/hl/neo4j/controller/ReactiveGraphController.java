@@ -0,0 +1,65 @@
+package it.hl.neo4j.controller;
+
+import it.hl.neo4j.dto.ChatRequest;
+import it.hl.neo4j.dto.GraphQueryResponse;
+import it.hl.neo4j.dto.RawQueryRequest;
+import it.hl.neo4j.service.GraphQueryService;
+import it.hl.neo4j.service.LLMService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Non-blocking {@link GraphChatController}. The request thread is released as soon as the handler
+ * returns: waiting on the LLM and the database holds no thread, and streamed results are pulled
+ * from the server only as fast as the client reads them.
+ */
+@RestController
+@RequestMapping("/api/reactive/graph")
+@RequiredArgsConstructor
+public class ReactiveGraphController {
+
+    private final GraphQueryService queryService;
+    private final LLMService llmService;
+
+    @PostMapping("/chat")
+    public Mono<GraphQueryResponse> chat(@RequestBody ChatRequest request) {
+        return queryService.processNaturalLanguageQueryReactive(request.getMessage().trim());
+    }
+
+    /**
+     * Like {@code /api/graph/chat/stream}: a header line, one line per result, a trailer line.
+     */
+    @PostMapping(value = "/chat/stream", produces = "application/x-ndjson")
+    public Flux<Map<String, Object>> chatStream(@RequestBody ChatRequest request) {
+        return queryService.streamNaturalLanguageQueryReactive(request.getMessage().trim());
+    }
+
+    @PostMapping("/create-query")
+    public Mono<String> createQuery(@RequestBody ChatRequest request) {
+        return llmService.translateToCypherReactive(request.getMessage().trim());
+    }
+
+    @GetMapping("/health")
+    public Mono<Map<String, Object>> health() {
+        return llmService.isAvailableReactive()
+                .map(available -> Map.of(
+                        "status", "UP",
+                        "llm_provider", llmService.getClass().getSimpleName(),
+                        "llm_available", available,
+                        "timestamp", Instant.now()
+                ));
+    }
+
+    /**
+     * Like {@code /api/graph/query/stream}, one record per line.
+     */
+    @PostMapping(value = "/query", produces = "application/x-ndjson")
+    public Flux<Map<String, Object>> query(@RequestBody RawQueryRequest request) {
+        return queryService.rawQueryReactive(request);
+    }
+}
@@ -0,0 +1,22 @@
+package it.hl.neo4j.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of a catasto list endpoint. Pass {@code nextCursor} back as {@code cursor} for the next
+ * page; it is null on the last one.
+ */
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private int size;
+    private String nextCursor;
+
+    public static <T> CursorPage<T> of(List<T> items, String nextCursor) {
+        return new CursorPage<>(items, items.size(), nextCursor);
+    }
+}
@@ -0,0 +1,44 @@
+package it.hl.neo4j.dto;
+
+import it.hl.neo4j.importer.DeliveryReport;
+import it.hl.neo4j.importer.ImportReport;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Progress of an asynchronous import job, as returned by {@code GET /api/catasto/import/{id}}.
+ */
+@Data
+@Builder
+public class ImportJobStatus {
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this != QUEUED && this != RUNNING;
+        }
+    }
+
+    private String id;
+    private String dataDirectory;
+    private State state;
+    /** Stages whose pipeline is running right now. */
+    private List<String> runningStages;
+    /** Rows committed so far, over all stages. */
+    private long rowsProcessed;
+    private double rowsPerSecond;
+    /** Estimated from the input bytes read so far; null until there is something to go by. */
+    private Long etaSeconds;
+    private Instant submittedAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private List<String> errors;
+    /** Final report, once the job is over. */
+    private ImportReport report;
+    /** Final report of a delivery tree job, comune by comune. */
+    private DeliveryReport delivery;
+}
@@ -0,0 +1,353 @@
+package it.hl.neo4j.importer;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Writes parsed catasto rows as CSV files for the offline importer
+ * ({@code neo4j-admin database import full}), which loads an empty database far faster than any
+ * transactional write.
+ * <p>
+ * Every node label and relationship type gets a header file ({@code Terreno-header.csv}) and one
+ * data file per part, e.g. per comune ({@code Terreno-A123.csv}). Parts of different types are
+ * written concurrently; writer workers of the same part encode their batches in parallel and only
+ * append under the lock. Column types are taken from the values seen, so the headers and the
+ * argument file ({@value #ARGUMENTS_FILE}) are written on {@link #close()}.
+ * <p>
+ * Lists are written as arrays delimited by {@value #ARRAY_DELIMITER}, which a catasto field never
+ * contains. A soggetto appears in the delivery of every comune where it owns something, hence the
+ * importer is told to skip duplicate nodes.
+ */
+@Slf4j
+public final class AdminImportExport implements Closeable {
+
+    public static final String ARGUMENTS_FILE = "neo4j-admin-import.args";
+
+    private static final char ARRAY_DELIMITER = '|';
+
+    @Getter
+    private final Path directory;
+    private final Map<String, CsvType> types = new LinkedHashMap<>();
+    private final List<Part> parts = new ArrayList<>();
+
+    public AdminImportExport(Path directory) throws IOException {
+        this.directory = directory.toAbsolutePath();
+        Files.createDirectories(this.directory);
+    }
+
+    /**
+     * Data file {@code part} of the nodes labelled {@code label}, identified by {@code idProperty}.
+     */
+    public synchronized Part nodes(String label, String idProperty, String part) {
+        CsvType type = types.computeIfAbsent(label, l -> new CsvType(label, label, false,
+                List.of(idProperty + ":ID(" + label + ")")));
+        return part(type, part, List.of(idProperty));
+    }
+
+    /**
+     * Data file {@code part} of the {@code type} relationships, whose rows hold the endpoint ids
+     * under {@code startKey} and {@code endKey} and the properties under {@code "properties"}, like
+     * the link rows of {@link CatastoRows}. Files are named after both, e.g.
+     * {@code Soggetto-POSSIEDE_TERRENO-A123.csv}, since a type may start from several labels.
+     */
+    public synchronized Part relationships(String type, String startLabel, String startKey, String endLabel,
+                                           String endKey, String part) {
+        String name = startLabel + "-" + type;
+        CsvType csvType = types.computeIfAbsent(name, t -> new CsvType(name, type, true,
+                List.of(":START_ID(" + startLabel + ")", ":END_ID(" + endLabel + ")")));
+        return part(csvType, part, List.of(startKey, endKey));
+    }
+
+    /**
+     * The data file {@code name} of {@code type}, shared by the stages asking for it (e.g. the
+     * particelle of terreni and fabbricati).
+     */
+    private Part part(CsvType type, String name, List<String> keyColumns) {
+        for (Part part : parts) {
+            if (part.type == type && part.name.equals(name)) {
+                return part;
+            }
+        }
+        Part part = new Part(type, name, directory.resolve(type.name + "-" + name + ".csv"), keyColumns);
+        parts.add(part);
+        return part;
+    }
+
+    /**
+     * Closes the data files of {@code part}, e.g. once its comune is exported.
+     */
+    public void closePart(String part) throws IOException {
+        List<Part> closing;
+        synchronized (this) {
+            closing = parts.stream().filter(p -> p.name.equals(part)).toList();
+        }
+        for (Part p : closing) {
+            p.close();
+        }
+    }
+
+    /**
+     * Closes all data files and writes the header files and the argument file for
+     * {@code neo4j-admin database import full @<directory>/neo4j-admin-import.args <database>}.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (Part part : parts) {
+            part.close();
+        }
+        List<String> arguments = new ArrayList<>();
+        arguments.add("--array-delimiter=" + ARRAY_DELIMITER);
+        arguments.add("--skip-duplicate-nodes=true");
+        for (CsvType type : types.values()) {
+            List<Path> files = parts.stream()
+                    .filter(part -> part.type == type && part.rows > 0)
+                    .map(part -> part.file)
+                    .toList();
+            if (files.isEmpty()) {
+                continue;
+            }
+            Path header = directory.resolve(type.name + "-header.csv");
+            Files.writeString(header, type.header() + "\n", StandardCharsets.UTF_8);
+            arguments.add((type.relationship ? "--relationships=" : "--nodes=") + type.type + "="
+                    + header + "," + files.stream().map(Path::toString).collect(Collectors.joining(",")));
+        }
+        Path argumentsFile = directory.resolve(ARGUMENTS_FILE);
+        Files.write(argumentsFile, arguments, StandardCharsets.UTF_8);
+        log.info("Exported to {}: neo4j-admin database import full @{} <database>", directory, argumentsFile);
+    }
+
+    /**
+     * One data file. {@link #write} is safe to call from several writer workers.
+     */
+    public static final class Part {
+
+        private final CsvType type;
+        private final String name;
+        private final Path file;
+        private final List<String> keyColumns;
+        private FileChannel channel;
+        private long rows;
+        private boolean closed;
+
+        private Part(CsvType type, String name, Path file, List<String> keyColumns) {
+            this.type = type;
+            this.name = name;
+            this.file = file;
+            this.keyColumns = keyColumns;
+        }
+
+        /**
+         * Appends {@code rows}, creating the file on the first call.
+         *
+         * @return the number of rows written
+         */
+        public long write(List<Map<String, Object>> rows) {
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            StringBuilder csv = new StringBuilder(rows.size() * 256);
+            for (Map<String, Object> row : rows) {
+                appendRow(csv, row);
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(csv.toString().getBytes(StandardCharsets.UTF_8));
+            synchronized (this) {
+                try {
+                    if (closed) {
+                        throw new IOException("Export file already closed");
+                    }
+                    if (channel == null) {
+                        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                StandardOpenOption.TRUNCATE_EXISTING);
+                    }
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot write " + file, e);
+                }
+                this.rows += rows.size();
+            }
+            return rows.size();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void appendRow(StringBuilder csv, Map<String, Object> row) {
+            for (int i = 0; i < keyColumns.size(); i++) {
+                if (i > 0) {
+                    csv.append(',');
+                }
+                appendValue(csv, row.get(keyColumns.get(i)));
+            }
+            Map<String, Object> properties = type.relationship ? (Map<String, Object>) row.get("properties") : row;
+            for (String column : type.columns(properties, keyColumns)) {
+                csv.append(',');
+                appendValue(csv, properties.get(column));
+            }
+            csv.append('\n');
+        }
+
+        private static void appendValue(StringBuilder csv, Object value) {
+            if (value == null) {
+                // An empty unquoted field is a missing property
+                return;
+            }
+            if (value instanceof List<?> list) {
+                if (list.isEmpty()) {
+                    return;
+                }
+                csv.append('"');
+                for (int i = 0; i < list.size(); i++) {
+                    if (i > 0) {
+                        csv.append(ARRAY_DELIMITER);
+                    }
+                    appendEscaped(csv, String.valueOf(list.get(i)));
+                }
+                csv.append('"');
+            } else if (value instanceof Number || value instanceof Boolean) {
+                csv.append(value);
+            } else {
+                csv.append('"');
+                appendEscaped(csv, value.toString());
+                csv.append('"');
+            }
+        }
+
+        private static void appendEscaped(StringBuilder csv, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    csv.append('"');
+                }
+                csv.append(c);
+            }
+        }
+
+        private synchronized void close() throws IOException {
+            closed = true;
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Columns of a node label or relationship type: fixed by its first row, typed by the first
+     * non-null value of each.
+     */
+    private static final class CsvType {
+
+        /** Type of a column that so far only held empty lists. */
+        private static final String EMPTY_LIST = "string[]?";
+
+        private final String name;
+        /** Label or relationship type. */
+        private final String type;
+        private final boolean relationship;
+        private final List<String> keyHeaders;
+        private volatile List<String> columns;
+        private final Map<String, String> columnTypes = new ConcurrentHashMap<>();
+
+        private CsvType(String name, String type, boolean relationship, List<String> keyHeaders) {
+            this.name = name;
+            this.type = type;
+            this.relationship = relationship;
+            this.keyHeaders = keyHeaders;
+        }
+
+        /**
+         * The property columns after the key columns, noting the types of the values in {@code properties}.
+         */
+        private List<String> columns(Map<String, Object> properties, List<String> keyColumns) {
+            List<String> current = columns;
+            if (current == null) {
+                synchronized (this) {
+                    if (columns == null) {
+                        columns = properties.keySet().stream()
+                                .filter(column -> relationship || !keyColumns.contains(column))
+                                .toList();
+                    }
+                    current = columns;
+                }
+            }
+            for (String column : current) {
+                String known = columnTypes.get(column);
+                if (known == null || known.equals(EMPTY_LIST)) {
+                    String type = typeOf(properties.get(column));
+                    if (type != null) {
+                        columnTypes.merge(column, type, (old, seen) -> old.equals(EMPTY_LIST) ? seen : old);
+                    }
+                }
+            }
+            return current;
+        }
+
+        private String header() {
+            List<String> header = new ArrayList<>(keyHeaders);
+            if (columns != null) {
+                for (String column : columns) {
+                    String type = columnTypes.getOrDefault(column, "string");
+                    if (type.equals(EMPTY_LIST)) {
+                        type = "string[]";
+                    }
+                    header.add(type.equals("string") ? column : column + ":" + type);
+                }
+            }
+            return String.join(",", header);
+        }
+
+        /**
+         * Header type of {@code value}, {@value #EMPTY_LIST} for an empty list; null for null.
+         */
+        private static String typeOf(Object value) {
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof List<?> list) {
+                String element = list.isEmpty() ? null : typeOf(list.get(0));
+                return element == null ? EMPTY_LIST : element + "[]";
+            }
+            if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return "int";
+            }
+            if (value instanceof Long) {
+                return "long";
+            }
+            if (value instanceof Number) {
+                return "double";
+            }
+            if (value instanceof Boolean) {
+                return "boolean";
+            }
+            if (value instanceof LocalDate) {
+                return "date";
+            }
+            if (value instanceof LocalDateTime) {
+                return "localdatetime";
+            }
+            if (value instanceof TemporalAccessor) {
+                return "datetime";
+            }
+            return "string";
+        }
+    }
+}
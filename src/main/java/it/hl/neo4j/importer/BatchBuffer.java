@@ -0,0 +1,55 @@
+package it.hl.neo4j.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Accumulates items and hands them to a sink every {@code batchSize} items, so a stage never holds
+ * more than one batch in memory. The list passed to the sink is reused after it returns.
+ */
+public final class BatchBuffer<T> {
+
+    private final int batchSize;
+    private final Consumer<List<T>> sink;
+    private final List<T> items;
+    private long flushed;
+    private int batches;
+
+    public BatchBuffer(int batchSize, Consumer<List<T>> sink) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        this.sink = sink;
+        this.items = new ArrayList<>(batchSize);
+    }
+
+    public void add(T item) {
+        items.add(item);
+        if (items.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        if (items.isEmpty()) {
+            return;
+        }
+        sink.accept(items);
+        flushed += items.size();
+        batches++;
+        items.clear();
+    }
+
+    /**
+     * Items handed to the sink so far.
+     */
+    public long getFlushed() {
+        return flushed;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+}
@@ -0,0 +1,16 @@
+package it.hl.neo4j.importer;
+
+import java.util.List;
+
+/**
+ * Writer stage of an {@link ImportPipeline}. Called concurrently from several workers; each call
+ * is expected to commit its batch on its own.
+ */
+@FunctionalInterface
+public interface BatchWriter<T> {
+
+    /**
+     * @return the number of items actually written
+     */
+    long write(List<T> batch);
+}
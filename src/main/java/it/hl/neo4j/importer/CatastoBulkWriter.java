@@ -0,0 +1,281 @@
+package it.hl.neo4j.importer;
+
+import it.hl.neo4j.model.Fab;
+import it.hl.neo4j.model.Sog;
+import it.hl.neo4j.model.Ter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Writes catasto nodes with one {@code UNWIND $rows AS row MERGE ... SET ...} statement per batch,
+ * bypassing the per-entity mapping of the Spring Data Neo4j repositories.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatastoBulkWriter {
+
+    private static final String MERGE_TERRENI = """
+            UNWIND $rows AS row
+            MERGE (t:Terreno {identificativoImmobile: row.identificativoImmobile})
+            SET t += row
+            """;
+
+    private static final String MERGE_SOGGETTI = """
+            UNWIND $rows AS row
+            MERGE (s:Soggetto {identificativoSoggetto: row.identificativoSoggetto})
+            SET s += row
+            """;
+
+    private static final String MERGE_FABBRICATI = """
+            UNWIND $rows AS row
+            MERGE (f:Fabbricato {identificativoImmobile: row.identificativoImmobile})
+            SET f += row
+            """;
+
+    private static final String LINK_PARTICELLE_TERRENI = linkParticelle("Terreno");
+
+    private static final String LINK_PARTICELLE_FABBRICATI = linkParticelle("Fabbricato");
+
+    private static final String LINK_TERRENI = """
+            UNWIND $rows AS row
+            CALL {
+                WITH row
+                MATCH (owner:Soggetto)-[old:POSSIEDE_TERRENO {identificativoTitolarita: row.properties.identificativoTitolarita}]->(immobile:Terreno)
+                WHERE old.codiceAmministrativo = row.properties.codiceAmministrativo
+                  AND (owner.identificativoSoggetto <> row.identificativoSoggetto
+                    OR immobile.identificativoImmobile <> row.identificativoImmobile)
+                DELETE old
+            }
+            MATCH (s:Soggetto {identificativoSoggetto: row.identificativoSoggetto})
+            MATCH (t:Terreno {identificativoImmobile: row.identificativoImmobile})
+            MERGE (s)-[r:POSSIEDE_TERRENO {identificativoTitolarita: row.properties.identificativoTitolarita}]->(t)
+            SET r += row.properties
+            RETURN count(r) AS linked
+            """;
+
+    private static final String LINK_FABBRICATI = """
+            UNWIND $rows AS row
+            CALL {
+                WITH row
+                MATCH (owner:Soggetto)-[old:POSSIEDE_FABBRICATO {identificativoTitolarita: row.properties.identificativoTitolarita}]->(immobile:Fabbricato)
+                WHERE old.codiceAmministrativo = row.properties.codiceAmministrativo
+                  AND (owner.identificativoSoggetto <> row.identificativoSoggetto
+                    OR immobile.identificativoImmobile <> row.identificativoImmobile)
+                DELETE old
+            }
+            MATCH (s:Soggetto {identificativoSoggetto: row.identificativoSoggetto})
+            MATCH (f:Fabbricato {identificativoImmobile: row.identificativoImmobile})
+            MERGE (s)-[r:POSSIEDE_FABBRICATO {identificativoTitolarita: row.properties.identificativoTitolarita}]->(f)
+            SET r += row.properties
+            RETURN count(r) AS linked
+            """;
+
+    private static final String DELETE_TERRENI = """
+            UNWIND $ids AS id
+            MATCH (t:Terreno {identificativoImmobile: id})
+            WHERE t.codiceAmministrativo IN $comuni
+            DETACH DELETE t
+            RETURN count(*) AS deleted
+            """;
+
+    private static final String DELETE_SOGGETTI = """
+            UNWIND $ids AS id
+            MATCH (s:Soggetto {identificativoSoggetto: id})
+            WHERE s.codiceAmministrativo IN $comuni
+              AND NOT (s)-[:POSSIEDE_TERRENO|POSSIEDE_FABBRICATO]->()
+            DELETE s
+            RETURN count(*) AS deleted
+            """;
+
+    private static final String DELETE_FABBRICATI = """
+            UNWIND $ids AS id
+            MATCH (f:Fabbricato {identificativoImmobile: id})
+            WHERE f.codiceAmministrativo IN $comuni
+            DETACH DELETE f
+            RETURN count(*) AS deleted
+            """;
+
+    private static final String UNLINK_TERRENI = """
+            UNWIND $ids AS id
+            MATCH (:Soggetto)-[r:POSSIEDE_TERRENO {identificativoTitolarita: id}]->(:Terreno)
+            WHERE r.codiceAmministrativo IN $comuni
+            DELETE r
+            RETURN count(*) AS deleted
+            """;
+
+    private static final String UNLINK_FABBRICATI = """
+            UNWIND $ids AS id
+            MATCH (:Soggetto)-[r:POSSIEDE_FABBRICATO {identificativoTitolarita: id}]->(:Fabbricato)
+            WHERE r.codiceAmministrativo IN $comuni
+            DELETE r
+            RETURN count(*) AS deleted
+            """;
+
+    private final Neo4jClient neo4jClient;
+
+    /**
+     * Merges the terreni and links them to their particelle.
+     */
+    public int writeTerreni(List<Ter> terreni) {
+        int written = write(MERGE_TERRENI, terreni, CatastoRows::terreno);
+        linkParticelleTerreni(terreni);
+        return written;
+    }
+
+    public int writeSoggetti(List<Sog> soggetti) {
+        return write(MERGE_SOGGETTI, soggetti, CatastoRows::soggetto);
+    }
+
+    /**
+     * Merges the fabbricati and links them to the particelle of their identificativi and utilità comuni.
+     */
+    public int writeFabbricati(List<Fab> fabbricati) {
+        int written = write(MERGE_FABBRICATI, fabbricati, CatastoRows::fabbricato);
+        linkParticelleFabbricati(fabbricati);
+        return written;
+    }
+
+    /**
+     * Replaces the IDENTIFICATO_DA relationships of terreni already written, merging their particelle.
+     */
+    public void linkParticelleTerreni(List<Ter> terreni) {
+        write(LINK_PARTICELLE_TERRENI, terreni, CatastoRows::particelle);
+    }
+
+    /**
+     * Replaces the IDENTIFICATO_DA and UTILITA_COMUNE relationships of fabbricati already written,
+     * merging their particelle.
+     */
+    public void linkParticelleFabbricati(List<Fab> fabbricati) {
+        write(LINK_PARTICELLE_FABBRICATI, fabbricati, CatastoRows::particelle);
+    }
+
+    /**
+     * Creates POSSIEDE_TERRENO relationships from rows built by {@link CatastoRows#titolaritaTerreno}.
+     * A titolarità that moved to another soggetto or terreno loses its old relationship.
+     *
+     * @return the number of relationships whose soggetto and terreno were both found
+     */
+    public long linkTerreni(List<Map<String, Object>> rows) {
+        return link(LINK_TERRENI, rows);
+    }
+
+    /**
+     * Creates POSSIEDE_FABBRICATO relationships from rows built by {@link CatastoRows#titolaritaFabbricato}.
+     *
+     * @return the number of relationships whose soggetto and fabbricato were both found
+     */
+    public long linkFabbricati(List<Map<String, Object>> rows) {
+        return link(LINK_FABBRICATI, rows);
+    }
+
+    /**
+     * Removes terreni of {@code comuni}, with their relationships, that a delta import found missing
+     * from the delivery.
+     */
+    public long deleteTerreni(List<String> ids, Collection<String> comuni) {
+        return delete(DELETE_TERRENI, ids, comuni);
+    }
+
+    /**
+     * Removes soggetti of {@code comuni} that a delta import found missing from the delivery, unless
+     * they still own an immobile: soggetti repeat across comuni, so one may be gone from this
+     * delivery and still be an owner in another comune.
+     */
+    public long deleteSoggetti(List<String> ids, Collection<String> comuni) {
+        return delete(DELETE_SOGGETTI, ids, comuni);
+    }
+
+    public long deleteFabbricati(List<String> ids, Collection<String> comuni) {
+        return delete(DELETE_FABBRICATI, ids, comuni);
+    }
+
+    /**
+     * Removes POSSIEDE_TERRENO relationships of {@code comuni} by identificativoTitolarita.
+     */
+    public long unlinkTerreni(List<String> ids, Collection<String> comuni) {
+        return delete(UNLINK_TERRENI, ids, comuni);
+    }
+
+    public long unlinkFabbricati(List<String> ids, Collection<String> comuni) {
+        return delete(UNLINK_FABBRICATI, ids, comuni);
+    }
+
+    /**
+     * Links each {@code label} node to the particelle of a {@link CatastoRows#particelle} row,
+     * dropping the links of a previous import first so a delta import leaves no stale ones.
+     */
+    private static String linkParticelle(String label) {
+        return """
+                UNWIND $rows AS row
+                MATCH (n:%s {identificativoImmobile: row.identificativoImmobile})
+                OPTIONAL MATCH (n)-[old:IDENTIFICATO_DA|UTILITA_COMUNE]->(:Particella)
+                DELETE old
+                WITH DISTINCT n, row
+                CALL {
+                    WITH n, row
+                    UNWIND row.identificativi AS particella
+                    MERGE (p:Particella {identificativoParticella: particella.identificativoParticella})
+                    ON CREATE SET p += particella
+                    MERGE (n)-[:IDENTIFICATO_DA]->(p)
+                }
+                CALL {
+                    WITH n, row
+                    UNWIND row.utilitaComuni AS particella
+                    MERGE (p:Particella {identificativoParticella: particella.identificativoParticella})
+                    ON CREATE SET p += particella
+                    MERGE (n)-[:UTILITA_COMUNE]->(p)
+                }
+                """.formatted(label);
+    }
+
+    private long delete(String cypher, List<String> ids, Collection<String> comuni) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return neo4jClient.query(cypher)
+                .bind(ids).to("ids")
+                .bind(List.copyOf(comuni)).to("comuni")
+                .fetchAs(Long.class)
+                .one()
+                .orElse(0L);
+    }
+
+    private long link(String cypher, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        return neo4jClient.query(cypher)
+                .bind(rows).to("rows")
+                .fetchAs(Long.class)
+                .one()
+                .orElse(0L);
+    }
+
+    /**
+     * Writes {@code entities} with a single statement: the pipeline sizes the batches per stage.
+     */
+    private <T> int write(String cypher, List<T> entities, Function<T, Map<String, Object>> toRow) {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            rows.add(toRow.apply(entity));
+        }
+        neo4jClient.query(cypher)
+                .bind(rows).to("rows")
+                .run();
+        log.debug("Written batch of {} rows", rows.size());
+        return rows.size();
+    }
+}
@@ -0,0 +1,176 @@
+package it.hl.neo4j.importer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The .ter, .fab, .sog and .tit inputs of one comune; any of them may be missing. Inputs may be
+ * plain files, gzip-compressed files or entries of zip archives, see {@link CatastoSource}.
+ */
+public record CatastoFileset(String name, CatastoSource ter, CatastoSource fab, CatastoSource sog,
+                             CatastoSource tit) {
+
+    private static final List<String> EXTENSIONS = List.of("ter", "fab", "sog", "tit");
+
+    /**
+     * The first input of each kind found directly in {@code directory} (plain files before
+     * archives), named after the directory.
+     */
+    public static CatastoFileset inDirectory(String directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> entries = Files.list(Path.of(directory))) {
+            files = entries.filter(Files::isRegularFile).toList();
+        }
+        Map<String, CatastoSource> inputs = new HashMap<>();
+        for (Path file : files) {
+            if (!CatastoSource.isGzip(file) && !CatastoSource.isZip(file)) {
+                addInput(inputs, CatastoSource.plain(file));
+            }
+        }
+        for (Path file : files) {
+            if (CatastoSource.isGzip(file) || CatastoSource.isZip(file)) {
+                inputs(file).forEach(input -> addInput(inputs, input.source()));
+            }
+        }
+        return of(directory, inputs);
+    }
+
+    /**
+     * Every comune fileset under {@code root}, largest first.
+     * <p>
+     * A directory (or a directory inside a zip archive) holding at most one input of each kind is
+     * one comune; a directory holding several (e.g. a whole province side by side) is split by file
+     * name without extension.
+     */
+    public static List<CatastoFileset> discover(String root) throws IOException {
+        Map<String, List<Input>> byDirectory = new TreeMap<>();
+        List<Path> files;
+        try (Stream<Path> entries = Files.walk(Path.of(root))) {
+            files = entries.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            for (Input input : inputs(file)) {
+                byDirectory.computeIfAbsent(input.directory(), dir -> new ArrayList<>()).add(input);
+            }
+        }
+
+        Map<CatastoFileset, Long> sizes = new HashMap<>();
+        byDirectory.forEach((directory, inputs) -> {
+            boolean oneOfEach = inputs.stream().map(Input::extension).distinct().count() == inputs.size();
+            if (oneOfEach) {
+                CatastoFileset fileset = of(directory, byExtension(inputs));
+                sizes.put(fileset, fileset.totalBytes());
+                return;
+            }
+            Map<String, List<Input>> byStem = new TreeMap<>();
+            inputs.forEach(input -> byStem.computeIfAbsent(input.stem(), stem -> new ArrayList<>()).add(input));
+            byStem.forEach((stem, stemInputs) -> {
+                CatastoFileset fileset = of(directory + "/" + stem, byExtension(stemInputs));
+                sizes.put(fileset, fileset.totalBytes());
+            });
+        });
+        List<CatastoFileset> filesets = new ArrayList<>(sizes.keySet());
+        filesets.sort(Comparator.comparing((CatastoFileset fileset) -> sizes.get(fileset)).reversed()
+                .thenComparing(CatastoFileset::name));
+        return filesets;
+    }
+
+    private static CatastoFileset of(String name, Map<String, CatastoSource> inputs) {
+        return new CatastoFileset(name, inputs.get("ter"), inputs.get("fab"), inputs.get("sog"), inputs.get("tit"));
+    }
+
+    private static Map<String, CatastoSource> byExtension(List<Input> inputs) {
+        Map<String, CatastoSource> map = new HashMap<>();
+        inputs.stream()
+                .sorted(Comparator.comparing(input -> input.source().toString()))
+                .forEach(input -> map.putIfAbsent(input.extension(), input.source()));
+        return map;
+    }
+
+    private static void addInput(Map<String, CatastoSource> inputs, CatastoSource source) {
+        String extension = extension(source.fileName());
+        if (extension != null) {
+            inputs.putIfAbsent(extension, source);
+        }
+    }
+
+    /**
+     * The catasto inputs in {@code file}: the file itself, or the matching entries of a zip archive.
+     */
+    private static List<Input> inputs(Path file) {
+        if (CatastoSource.isZip(file)) {
+            try (ZipFile zip = new ZipFile(file.toFile())) {
+                return zip.stream()
+                        .filter(entry -> !entry.isDirectory())
+                        .map(entry -> input(file.toString(), new CatastoSource(file, entry.getName()), entry))
+                        .filter(Objects::nonNull)
+                        .toList();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read archive " + file, e);
+            }
+        }
+        Input input = input(String.valueOf(file.getParent()), CatastoSource.plain(file), null);
+        return input != null ? List.of(input) : List.of();
+    }
+
+    private static Input input(String container, CatastoSource source, ZipEntry entry) {
+        String fileName = source.fileName();
+        String extension = extension(fileName);
+        if (extension == null) {
+            return null;
+        }
+        String directory = container;
+        if (entry != null) {
+            int slash = entry.getName().lastIndexOf('/');
+            directory = slash < 0 ? container : container + "!/" + entry.getName().substring(0, slash);
+        }
+        return new Input(directory, fileName.substring(0, fileName.lastIndexOf('.')), extension, source);
+    }
+
+    /**
+     * The inputs present, in stage order.
+     */
+    public List<CatastoSource> files() {
+        return Stream.of(ter, fab, sog, tit).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Uncompressed size of all inputs, see {@link CatastoSource#size()}.
+     */
+    public long totalBytes() {
+        long total = 0;
+        for (CatastoSource source : files()) {
+            try {
+                total += source.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return total;
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        String extension = fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return EXTENSIONS.contains(extension) ? extension : null;
+    }
+
+    private record Input(String directory, String stem, String extension, CatastoSource source) {
+    }
+}
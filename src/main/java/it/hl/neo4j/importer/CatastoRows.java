@@ -0,0 +1,331 @@
+package it.hl.neo4j.importer;
+
+import it.hl.neo4j.model.Fab;
+import it.hl.neo4j.model.Particella;
+import it.hl.neo4j.model.Sog;
+import it.hl.neo4j.model.Ter;
+import it.hl.neo4j.model.TitFab;
+import it.hl.neo4j.model.TitTer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts parsed catasto entities into flat property maps, keyed by the same property
+ * names Spring Data Neo4j uses for the mapped fields.
+ */
+public final class CatastoRows {
+
+    public static final String CONTENT_HASH = "contentHash";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private CatastoRows() {
+    }
+
+    public static Map<String, Object> terreno(Ter ter) {
+        Map<String, Object> row = new LinkedHashMap<>(32);
+        row.put("identificativoImmobile", ter.getIdentificativoImmobile());
+        row.put("codiceAmministrativo", ter.getCodiceAmministrativo());
+        row.put("sezione", ter.getSezione());
+        row.put("tipoImmobile", ter.getTipoImmobile());
+        row.put("progressivo", ter.getProgressivo());
+        row.put("tipoRecord", ter.getTipoRecord());
+        row.put("foglio", ter.getFoglio());
+        row.put("numero", ter.getNumero());
+        row.put("denominatore", ter.getDenominatore());
+        row.put("subalterno", ter.getSubalterno());
+        row.put("edificabilita", ter.getEdificabilita());
+        row.put("qualita", ter.getQualita());
+        row.put("classe", ter.getClasse());
+        row.put("ettari", ter.getEttari());
+        row.put("are", ter.getAre());
+        row.put("centiare", ter.getCentiare());
+        row.put("flagReddito", ter.getFlagReddito());
+        row.put("flagPorzione", ter.getFlagPorzione());
+        row.put("flagDeduzioni", ter.getFlagDeduzioni());
+        row.put("redditoDominicaleLire", ter.getRedditoDominicaleLire());
+        row.put("redditoAgrarioLire", ter.getRedditoAgrarioLire());
+        row.put("redditoDominicaleEuro", ter.getRedditoDominicaleEuro());
+        row.put("redditoAgrarioEuro", ter.getRedditoAgrarioEuro());
+        row.put("displayName", ter.getDisplayName());
+        return withContentHash(row);
+    }
+
+    public static Map<String, Object> soggetto(Sog sog) {
+        Map<String, Object> row = new LinkedHashMap<>(24);
+        row.put("identificativoSoggetto", sog.getIdentificativoSoggetto());
+        row.put("codiceAmministrativo", sog.getCodiceAmministrativo());
+        row.put("sezione", sog.getSezione());
+        row.put("tipoSoggetto", sog.getTipoSoggetto());
+        row.put("nome", sog.getNome());
+        row.put("identificativoFiscale", sog.getIdentificativoFiscale());
+        row.put("displayName", sog.getDisplayName());
+        row.put("cognome", sog.getCognome());
+        row.put("nomePersonaFisica", sog.getNomePersonaFisica());
+        row.put("sesso", sog.getSesso());
+        row.put("dataNascita", sog.getDataNascita());
+        row.put("luogoNascita", sog.getLuogoNascita());
+        row.put("codiceFiscale", sog.getCodiceFiscale());
+        row.put("indicazioniSupplementari", sog.getIndicazioniSupplementari());
+        row.put("denominazione", sog.getDenominazione());
+        row.put("sede", sog.getSede());
+        row.put("partitaIva", sog.getPartitaIva());
+        return withContentHash(row);
+    }
+
+    public static Map<String, Object> fabbricato(Fab fab) {
+        Map<String, Object> row = new LinkedHashMap<>(96);
+        row.put("identificativoImmobile", fab.getIdentificativoImmobile());
+        row.put("codiceAmministrativo", fab.getCodiceAmministrativo());
+        row.put("sezione", fab.getSezione());
+        row.put("tipoImmobile", fab.getTipoImmobile());
+        row.put("progressivo", fab.getProgressivo());
+
+        row.put("zona", fab.getZona());
+        row.put("categoria", fab.getCategoria());
+        row.put("classe", fab.getClasse());
+        row.put("consistenza", fab.getConsistenza());
+        row.put("superficie", fab.getSuperficie());
+        row.put("renditaLire", fab.getRenditaLire());
+        row.put("renditaEuro", fab.getRenditaEuro());
+
+        row.put("lotto", fab.getLotto());
+        row.put("edificio", fab.getEdificio());
+        row.put("scala", fab.getScala());
+        row.put("interno1", fab.getInterno1());
+        row.put("interno2", fab.getInterno2());
+        row.put("piano1", fab.getPiano1());
+        row.put("piano2", fab.getPiano2());
+        row.put("piano3", fab.getPiano3());
+        row.put("piano4", fab.getPiano4());
+
+        row.put("dataEfficaciaGenerante", fab.getDataEfficaciaGenerante());
+        row.put("dataRegistrazioneGenerante", fab.getDataRegistrazioneGenerante());
+        row.put("tipoNotaGenerante", fab.getTipoNotaGenerante());
+        row.put("numeroNotaGenerante", fab.getNumeroNotaGenerante());
+        row.put("progressivoNotaGenerante", fab.getProgressivoNotaGenerante());
+        row.put("annoNotaGenerante", fab.getAnnoNotaGenerante());
+
+        row.put("dataEfficaciaConclusiva", fab.getDataEfficaciaConclusiva());
+        row.put("dataRegistrazioneConclusiva", fab.getDataRegistrazioneConclusiva());
+        row.put("tipoNotaConclusiva", fab.getTipoNotaConclusiva());
+        row.put("numeroNotaConclusiva", fab.getNumeroNotaConclusiva());
+        row.put("progressivoNotaConclusiva", fab.getProgressivoNotaConclusiva());
+        row.put("annoNotaConclusiva", fab.getAnnoNotaConclusiva());
+
+        row.put("partita", fab.getPartita());
+        row.put("annotazione", fab.getAnnotazione());
+        row.put("identificativoMutazioneIniziale", fab.getIdentificativoMutazioneIniziale());
+        row.put("identificativoMutazioneFinale", fab.getIdentificativoMutazioneFinale());
+        row.put("protocolloNotifica", fab.getProtocolloNotifica());
+        row.put("dataNotifica", fab.getDataNotifica());
+        row.put("codiceCausaleAttoGenerante", fab.getCodiceCausaleAttoGenerante());
+        row.put("descrizioneAttoGenerante", fab.getDescrizioneAttoGenerante());
+        row.put("codiceCausaleAttoConclusivo", fab.getCodiceCausaleAttoConclusivo());
+        row.put("descrizioneAttoConclusivo", fab.getDescrizioneAttoConclusivo());
+        row.put("flagClassamento", fab.getFlagClassamento());
+
+        row.put("sezioniUrbane", fab.getSezioniUrbane());
+        row.put("fogli", fab.getFogli());
+        row.put("numeri", fab.getNumeri());
+        row.put("denominatori", fab.getDenominatori());
+        row.put("subalerni", fab.getSubalerni());
+        row.put("edificialita", fab.getEdificialita());
+
+        row.put("toponimi", fab.getToponimi());
+        row.put("indirizzi", fab.getIndirizzi());
+        row.put("civici1", fab.getCivici1());
+        row.put("civici2", fab.getCivici2());
+        row.put("civici3", fab.getCivici3());
+        row.put("codiciStrada", fab.getCodiciStrada());
+        row.put("indirizziTesto", fab.getIndirizziTesto());
+
+        row.put("utilitaSezioniUrbane", fab.getUtilitaSezioniUrbane());
+        row.put("utilitaFogli", fab.getUtilitaFogli());
+        row.put("utilitaNumeri", fab.getUtilitaNumeri());
+        row.put("utilitaDenominatori", fab.getUtilitaDenominatori());
+        row.put("utilitaSubalerni", fab.getUtilitaSubalerni());
+
+        row.put("codiciRiserva", fab.getCodiciRiserva());
+        row.put("partiteIscrizioneRiserva", fab.getPartiteIscrizioneRiserva());
+
+        row.put("displayName", fab.getDisplayName());
+        return withContentHash(row);
+    }
+
+    /**
+     * Row for a POSSIEDE_TERRENO relationship: the two endpoint ids plus the relationship properties.
+     */
+    public static Map<String, Object> titolaritaTerreno(TitTer tit, String identificativoSoggetto,
+                                                        String identificativoImmobile) {
+        Map<String, Object> properties = new LinkedHashMap<>(48);
+        properties.put("codiceAmministrativo", tit.getCodiceAmministrativo());
+        properties.put("sezione", tit.getSezione());
+        properties.put("tipoSoggetto", tit.getTipoSoggetto());
+        properties.put("tipoImmobile", tit.getTipoImmobile());
+        properties.put("codiceDiritto", tit.getCodiceDiritto());
+        properties.put("titoloNonCodificato", tit.getTitoloNonCodificato());
+        properties.put("quotaNumeratore", tit.getQuotaNumeratore());
+        properties.put("quotaDenominatore", tit.getQuotaDenominatore());
+        properties.put("regime", tit.getRegime());
+        properties.put("soggettoDiRiferimento", tit.getSoggettoDiRiferimento());
+        properties.put("dataValidita", tit.getDataValidita());
+        properties.put("tipoNota", tit.getTipoNota());
+        properties.put("numeroNota", tit.getNumeroNota());
+        properties.put("progressivoNota", tit.getProgressivoNota());
+        properties.put("annoNota", tit.getAnnoNota());
+        properties.put("dataRegistrazioneAtti", tit.getDataRegistrazioneAtti());
+        properties.put("partita", tit.getPartita());
+        properties.put("dataValidita2", tit.getDataValidita2());
+        properties.put("tipoNota2", tit.getTipoNota2());
+        properties.put("numeroNota2", tit.getNumeroNota2());
+        properties.put("progressivoNota2", tit.getProgressivoNota2());
+        properties.put("annoNota2", tit.getAnnoNota2());
+        properties.put("dataRegistrazioneAtti2", tit.getDataRegistrazioneAtti2());
+        properties.put("identificativoMutazioneIniziale", tit.getIdentificativoMutazioneIniziale());
+        properties.put("identificativoMutazioneFinale", tit.getIdentificativoMutazioneFinale());
+        properties.put("identificativoTitolarita", tit.getIdentificativoTitolarita());
+        properties.put("codiceCausaleAttoGenerante", tit.getCodiceCausaleAttoGenerante());
+        properties.put("descrizioneAttoGenerante", tit.getDescrizioneAttoGenerante());
+        properties.put("codiceCausaleAttoConclusivo", tit.getCodiceCausaleAttoConclusivo());
+        properties.put("descrizioneAttoConclusivo", tit.getDescrizioneAttoConclusivo());
+        properties.put("displayName", tit.getDisplayName());
+        return link(identificativoSoggetto, identificativoImmobile, properties);
+    }
+
+    /**
+     * Row for a POSSIEDE_FABBRICATO relationship: the two endpoint ids plus the relationship properties.
+     */
+    public static Map<String, Object> titolaritaFabbricato(TitFab tit, String identificativoSoggetto,
+                                                           String identificativoImmobile) {
+        Map<String, Object> properties = new LinkedHashMap<>(48);
+        properties.put("codiceAmministrativo", tit.getCodiceAmministrativo());
+        properties.put("sezione", tit.getSezione());
+        properties.put("tipoSoggetto", tit.getTipoSoggetto());
+        properties.put("tipoImmobile", tit.getTipoImmobile());
+        properties.put("codiceDiritto", tit.getCodiceDiritto());
+        properties.put("titoloNonCodificato", tit.getTitoloNonCodificato());
+        properties.put("quotaNumeratore", tit.getQuotaNumeratore());
+        properties.put("quotaDenominatore", tit.getQuotaDenominatore());
+        properties.put("regime", tit.getRegime());
+        properties.put("soggettoDiRiferimento", tit.getSoggettoDiRiferimento());
+        properties.put("dataValidita", tit.getDataValidita());
+        properties.put("tipoNota", tit.getTipoNota());
+        properties.put("numeroNota", tit.getNumeroNota());
+        properties.put("progressivoNota", tit.getProgressivoNota());
+        properties.put("annoNota", tit.getAnnoNota());
+        properties.put("dataRegistrazioneAtti", tit.getDataRegistrazioneAtti());
+        properties.put("partita", tit.getPartita());
+        properties.put("dataValidita2", tit.getDataValidita2());
+        properties.put("tipoNota2", tit.getTipoNota2());
+        properties.put("numeroNota2", tit.getNumeroNota2());
+        properties.put("progressivoNota2", tit.getProgressivoNota2());
+        properties.put("annoNota2", tit.getAnnoNota2());
+        properties.put("dataRegistrazioneAtti2", tit.getDataRegistrazioneAtti2());
+        properties.put("identificativoMutazioneIniziale", tit.getIdentificativoMutazioneIniziale());
+        properties.put("identificativoMutazioneFinale", tit.getIdentificativoMutazioneFinale());
+        properties.put("identificativoTitolarita", tit.getIdentificativoTitolarita());
+        properties.put("codiceCausaleAttoGenerante", tit.getCodiceCausaleAttoGenerante());
+        properties.put("descrizioneAttoGenerante", tit.getDescrizioneAttoGenerante());
+        properties.put("codiceCausaleAttoConclusivo", tit.getCodiceCausaleAttoConclusivo());
+        properties.put("descrizioneAttoConclusivo", tit.getDescrizioneAttoConclusivo());
+        properties.put("displayName", tit.getDisplayName());
+        return link(identificativoSoggetto, identificativoImmobile, properties);
+    }
+
+    public static Map<String, Object> particella(Particella particella) {
+        Map<String, Object> row = new LinkedHashMap<>(8);
+        row.put("identificativoParticella", particella.getIdentificativoParticella());
+        row.put("codiceAmministrativo", particella.getCodiceAmministrativo());
+        row.put("sezione", particella.getSezione());
+        row.put("foglio", particella.getFoglio());
+        row.put("numero", particella.getNumero());
+        row.put("subalterno", particella.getSubalterno());
+        return row;
+    }
+
+    public static Map<String, Object> particelle(Ter ter) {
+        Particella particella = ter.particella();
+        return particelle(ter.getIdentificativoImmobile(),
+                particella != null ? List.of(particella) : List.of(), List.of());
+    }
+
+    public static Map<String, Object> particelle(Fab fab) {
+        return particelle(fab.getIdentificativoImmobile(), fab.particelle(), fab.particelleUtilitaComuni());
+    }
+
+    /**
+     * Row for the IDENTIFICATO_DA and UTILITA_COMUNE relationships of one terreno or fabbricato: its
+     * id plus the distinct {@link #particella} rows under {@code identificativi} and {@code utilitaComuni}.
+     */
+    private static Map<String, Object> particelle(String identificativoImmobile, List<Particella> identificativi,
+                                                  List<Particella> utilitaComuni) {
+        Map<String, Object> row = new LinkedHashMap<>(4);
+        row.put("identificativoImmobile", identificativoImmobile);
+        row.put("identificativi", particellaRows(identificativi));
+        row.put("utilitaComuni", particellaRows(utilitaComuni));
+        return row;
+    }
+
+    private static List<Map<String, Object>> particellaRows(List<Particella> particelle) {
+        Map<String, Map<String, Object>> rows = new LinkedHashMap<>();
+        for (Particella particella : particelle) {
+            rows.putIfAbsent(particella.getIdentificativoParticella(), particella(particella));
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the property names and values of a row, {@value #CONTENT_HASH} excluded.
+     * Stored with every node and relationship so a delta import can tell which records changed.
+     */
+    public static long contentHash(Map<String, Object> row) {
+        return hash(FNV_OFFSET_BASIS, row);
+    }
+
+    private static Map<String, Object> withContentHash(Map<String, Object> row) {
+        row.put(CONTENT_HASH, contentHash(row));
+        return row;
+    }
+
+    private static long hash(long h, Map<String, Object> row) {
+        for (Map.Entry<String, Object> property : row.entrySet()) {
+            if (!CONTENT_HASH.equals(property.getKey())) {
+                h = hash(h, property.getKey());
+                h = hash(h, property.getValue() == null ? null : property.getValue().toString());
+            }
+        }
+        return h;
+    }
+
+    private static long hash(long h, String value) {
+        if (value == null) {
+            // Distinct from the empty string
+            return (h ^ 0xff) * FNV_PRIME;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            h = (h ^ (c & 0xff)) * FNV_PRIME;
+            h = (h ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return (h ^ 0xfe) * FNV_PRIME;
+    }
+
+    private static Map<String, Object> link(String identificativoSoggetto, String identificativoImmobile,
+                                            Map<String, Object> properties) {
+        // The endpoints are part of the relationship's content: a titolarità moved to another
+        // soggetto or immobile has changed too
+        long h = hash(hash(FNV_OFFSET_BASIS, identificativoSoggetto), identificativoImmobile);
+        properties.put(CONTENT_HASH, hash(h, properties));
+
+        Map<String, Object> row = new LinkedHashMap<>(4);
+        row.put("identificativoSoggetto", identificativoSoggetto);
+        row.put("identificativoImmobile", identificativoImmobile);
+        row.put("properties", properties);
+        return row;
+    }
+}
@@ -0,0 +1,130 @@
+package it.hl.neo4j.importer;
+
+import it.hl.neo4j.parser.GroupedRecordReader;
+import it.hl.neo4j.parser.MappedRecordReader;
+import it.hl.neo4j.parser.PipeRecord;
+import it.hl.neo4j.parser.StreamRecordReader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * One catasto input file: a plain file, a gzip-compressed file (e.g. {@code A123.ter.gz}) or an
+ * entry of a zip archive. Compressed inputs are decompressed as a stream, never to disk.
+ *
+ * @param file  the file on disk
+ * @param entry the zip entry, null unless {@code file} is a zip archive
+ */
+public record CatastoSource(Path file, String entry) implements GroupedRecordReader.Input {
+
+    /** Inflater input buffer: large reads keep the disk streaming while the reader inflates. */
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    public static CatastoSource plain(Path file) {
+        return new CatastoSource(file, null);
+    }
+
+    public boolean isCompressed() {
+        return entry != null || isGzip(file);
+    }
+
+    /**
+     * Name of the input without compression suffix, e.g. {@code A123.ter} for {@code A123.ter.gz}.
+     */
+    public String fileName() {
+        if (entry != null) {
+            return entry.substring(entry.lastIndexOf('/') + 1);
+        }
+        String name = file.getFileName().toString();
+        return isGzip(file) ? name.substring(0, name.length() - 3) : name;
+    }
+
+    /**
+     * The uncompressed content. Closing the stream also closes the archive.
+     */
+    public InputStream open() throws IOException {
+        if (entry != null) {
+            ZipFile zip = new ZipFile(file.toFile());
+            ZipEntry zipEntry = zip.getEntry(entry);
+            if (zipEntry == null) {
+                zip.close();
+                throw new IOException("No entry " + entry + " in " + file);
+            }
+            return new FilterInputStream(zip.getInputStream(zipEntry)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        zip.close();
+                    }
+                }
+            };
+        }
+        InputStream in = Files.newInputStream(file);
+        return isGzip(file) ? new GZIPInputStream(in, READ_BUFFER_SIZE) : in;
+    }
+
+    /**
+     * Uncompressed size: exact for plain files and zip entries, estimated for gzip files, whose
+     * trailer only stores it modulo 4 GB.
+     */
+    public long size() throws IOException {
+        if (entry != null) {
+            try (ZipFile zip = new ZipFile(file.toFile())) {
+                ZipEntry zipEntry = zip.getEntry(entry);
+                return zipEntry != null && zipEntry.getSize() >= 0 ? zipEntry.getSize() : Files.size(file);
+            }
+        }
+        long size = Files.size(file);
+        if (!isGzip(file) || size < 4) {
+            return size;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.read(trailer, size - 4);
+        }
+        long uncompressed = Integer.toUnsignedLong(trailer.getInt(0));
+        // Text compresses well; assume the smallest size consistent with the trailer that is no
+        // smaller than the compressed file
+        while (uncompressed < size) {
+            uncompressed += 1L << 32;
+        }
+        return uncompressed;
+    }
+
+    @Override
+    public long forEachWhile(Predicate<PipeRecord> visitor) throws IOException {
+        if (!isCompressed()) {
+            return MappedRecordReader.forEachWhile(file, visitor);
+        }
+        try (InputStream in = open()) {
+            return StreamRecordReader.forEachWhile(in, visitor);
+        }
+    }
+
+    static boolean isGzip(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    static boolean isZip(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip");
+    }
+
+    @Override
+    public String toString() {
+        return entry != null ? file + "!/" + entry : file.toString();
+    }
+}
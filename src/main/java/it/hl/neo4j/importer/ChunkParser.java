@@ -0,0 +1,13 @@
+package it.hl.neo4j.importer;
+
+import java.util.function.Consumer;
+
+/**
+ * Parser stage of an {@link ImportPipeline}. Called concurrently from several workers, one chunk
+ * at a time per worker, so implementations must not share mutable state between calls.
+ */
+@FunctionalInterface
+public interface ChunkParser<T> {
+
+    void parse(RawChunk chunk, Consumer<T> sink);
+}
@@ -0,0 +1,21 @@
+package it.hl.neo4j.importer;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Reader stage of an {@link ImportPipeline}: cuts its input into {@link RawChunk}s.
+ */
+public interface ChunkSource {
+
+    /**
+     * Passes every chunk of the input to {@code sink}, in input order. The sink may block.
+     */
+    void read(Consumer<RawChunk> sink) throws IOException;
+
+    /**
+     * A source that skips everything before {@code offset}, which must be the end offset of a
+     * chunk previously read from the same input.
+     */
+    ChunkSource resumeFrom(long offset);
+}
@@ -0,0 +1,80 @@
+package it.hl.neo4j.importer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Works out how far into the source an {@link ImportPipeline} has committed everything.
+ * <p>
+ * Writers commit batches out of order and a batch can hold items of several chunks, so a chunk only
+ * counts as committed once all of its items are, and the committed offset only moves past a chunk
+ * once every chunk before it is committed too.
+ */
+final class CommitTracker {
+
+    private final LongConsumer listener;
+    private final Map<Long, ChunkState> chunks = new HashMap<>();
+    private long nextSequence;
+    private long committedOffset;
+
+    CommitTracker(LongConsumer listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Registers a parsed chunk. Must be called before any of its items can reach a writer.
+     */
+    synchronized void parsed(RawChunk chunk, int items) {
+        ChunkState state = new ChunkState(chunk.getEndOffset());
+        state.outstanding = items;
+        chunks.put(chunk.getSequence(), state);
+        advance();
+    }
+
+    synchronized void committed(List<ChunkSpan> spans) {
+        for (ChunkSpan span : spans) {
+            chunks.get(span.sequence).outstanding -= span.items;
+        }
+        advance();
+    }
+
+    synchronized long getCommittedOffset() {
+        return committedOffset;
+    }
+
+    private void advance() {
+        boolean advanced = false;
+        ChunkState state;
+        while ((state = chunks.get(nextSequence)) != null && state.outstanding == 0) {
+            chunks.remove(nextSequence++);
+            committedOffset = state.endOffset;
+            advanced = true;
+        }
+        if (advanced) {
+            listener.accept(committedOffset);
+        }
+    }
+
+    /**
+     * Items of one chunk that ended up in a batch.
+     */
+    static final class ChunkSpan {
+        final long sequence;
+        int items;
+
+        ChunkSpan(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class ChunkState {
+        final long endOffset;
+        int outstanding;
+
+        ChunkState(long endOffset) {
+            this.endOffset = endOffset;
+        }
+    }
+}
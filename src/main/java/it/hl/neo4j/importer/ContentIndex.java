@@ -0,0 +1,213 @@
+package it.hl.neo4j.importer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Content hashes of the records already in the graph, by identifier, for a delta import.
+ * <p>
+ * Identifiers are packed like in {@link IdIndex} and kept sorted, with the hashes in a parallel
+ * array; a bitset remembers which records the new delivery mentioned, so the ones it no longer
+ * contains can be removed afterwards. {@link #visit} is safe to call from several parser workers.
+ */
+public final class ContentIndex {
+
+    /** 0 is as good as any value for "unknown": a real hash of 0 is astronomically unlikely. */
+    private static final long UNKNOWN_HASH = 0L;
+
+    private final long[] keys;
+    private final long[] hashes;
+    private final String[] overflowKeys;
+    private final long[] overflowHashes;
+    private final AtomicLongArray seen;
+    private final LongAdder unchanged = new LongAdder();
+
+    private ContentIndex(long[] keys, long[] hashes, String[] overflowKeys, long[] overflowHashes) {
+        this.keys = keys;
+        this.hashes = hashes;
+        this.overflowKeys = overflowKeys;
+        this.overflowHashes = overflowHashes;
+        this.seen = new AtomicLongArray((keys.length + overflowKeys.length + 63) / 64);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Marks {@code id} as still present in the delivery.
+     *
+     * @return true if the graph already holds the record with the same content, so it needs no write
+     */
+    public boolean visit(String id, long contentHash) {
+        if (id == null) {
+            return false;
+        }
+        int slot;
+        long stored;
+        long key = IdIndex.pack(id);
+        if (key != IdIndex.NOT_PACKABLE) {
+            int position = Arrays.binarySearch(keys, key);
+            if (position < 0) {
+                return false;
+            }
+            slot = position;
+            stored = hashes[position];
+        } else {
+            int position = Arrays.binarySearch(overflowKeys, id);
+            if (position < 0) {
+                return false;
+            }
+            slot = keys.length + position;
+            stored = overflowHashes[position];
+        }
+        seen.getAndAccumulate(slot >>> 6, 1L << slot, (bits, bit) -> bits | bit);
+        if (stored == contentHash) {
+            unchanged.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Calls {@code consumer} with the identifier of every record never passed to {@link #visit}.
+     */
+    public void forEachUnseen(Consumer<String> consumer) {
+        for (int slot = 0; slot < size(); slot++) {
+            if ((seen.get(slot >>> 6) & (1L << slot)) == 0) {
+                consumer.accept(slot < keys.length ? IdIndex.unpack(keys[slot]) : overflowKeys[slot - keys.length]);
+            }
+        }
+    }
+
+    /**
+     * Records visited with an unchanged content hash so far.
+     */
+    public long getUnchanged() {
+        return unchanged.sum();
+    }
+
+    public int size() {
+        return keys.length + overflowKeys.length;
+    }
+
+    public static final class Builder {
+
+        private long[] keys = new long[1024];
+        private long[] hashes = new long[1024];
+        private int size;
+        private final List<String> overflowKeys = new ArrayList<>();
+        private final List<Long> overflowHashes = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a record; a null hash (a node written before hashes were stored) never matches.
+         */
+        public Builder add(String id, Long contentHash) {
+            if (id == null) {
+                return this;
+            }
+            long hash = contentHash != null ? contentHash : UNKNOWN_HASH;
+            long key = IdIndex.pack(id);
+            if (key == IdIndex.NOT_PACKABLE) {
+                overflowKeys.add(id);
+                overflowHashes.add(hash);
+                return this;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, keys.length + (keys.length >> 1));
+                hashes = Arrays.copyOf(hashes, keys.length);
+            }
+            keys[size] = key;
+            hashes[size++] = hash;
+            return this;
+        }
+
+        /**
+         * Merges the records added more than once under one identifier, so visiting it marks them
+         * all as seen; if their hashes differ, the merged record never matches and gets rewritten.
+         */
+        public ContentIndex build() {
+            long[] sortedKeys = Arrays.copyOf(keys, size);
+            long[] sortedHashes = Arrays.copyOf(hashes, size);
+            sort(sortedKeys, sortedHashes, 0, size - 1);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique > 0 && sortedKeys[unique - 1] == sortedKeys[i]) {
+                    sortedHashes[unique - 1] = merge(sortedHashes[unique - 1], sortedHashes[i]);
+                } else {
+                    sortedKeys[unique] = sortedKeys[i];
+                    sortedHashes[unique++] = sortedHashes[i];
+                }
+            }
+
+            Integer[] order = new Integer[overflowKeys.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> overflowKeys.get(a).compareTo(overflowKeys.get(b)));
+            String[] strings = new String[order.length];
+            long[] stringHashes = new long[order.length];
+            int uniqueStrings = 0;
+            for (Integer i : order) {
+                if (uniqueStrings > 0 && strings[uniqueStrings - 1].equals(overflowKeys.get(i))) {
+                    stringHashes[uniqueStrings - 1] = merge(stringHashes[uniqueStrings - 1], overflowHashes.get(i));
+                } else {
+                    strings[uniqueStrings] = overflowKeys.get(i);
+                    stringHashes[uniqueStrings++] = overflowHashes.get(i);
+                }
+            }
+            return new ContentIndex(Arrays.copyOf(sortedKeys, unique), Arrays.copyOf(sortedHashes, unique),
+                    Arrays.copyOf(strings, uniqueStrings), Arrays.copyOf(stringHashes, uniqueStrings));
+        }
+
+        private static long merge(long hash, long other) {
+            return hash == other ? hash : UNKNOWN_HASH;
+        }
+
+        /**
+         * Quicksort of {@code keys[from..to]}, moving {@code values} along.
+         */
+        private static void sort(long[] keys, long[] values, int from, int to) {
+            while (from < to) {
+                long pivot = keys[(from + to) >>> 1];
+                int i = from;
+                int j = to;
+                while (i <= j) {
+                    while (keys[i] < pivot) {
+                        i++;
+                    }
+                    while (keys[j] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(keys, i, j);
+                        swap(values, i, j);
+                        i++;
+                        j--;
+                    }
+                }
+                // Recurse into the smaller half, loop on the larger one
+                if (j - from < to - i) {
+                    sort(keys, values, from, j);
+                    from = i;
+                } else {
+                    sort(keys, values, i, to);
+                    to = j;
+                }
+            }
+        }
+
+        private static void swap(long[] array, int i, int j) {
+            long tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package it.hl.neo4j.importer;
+
+import lombok.Data;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What an import of a whole delivery tree committed, comune by comune. Comuni report concurrently,
+ * so the list is synchronized.
+ */
+@Data
+public class DeliveryReport {
+
+    private final String root;
+    private final ImportMode mode;
+    private final int workers;
+    private final Instant startedAt = Instant.now();
+    private Instant finishedAt;
+    private final List<ImportReport> comuni = Collections.synchronizedList(new ArrayList<>());
+
+    public void add(ImportReport comune) {
+        comuni.add(comune);
+    }
+
+    public void finish() {
+        finishedAt = Instant.now();
+    }
+
+    public boolean isSuccessful() {
+        synchronized (comuni) {
+            return comuni.stream().allMatch(ImportReport::isSuccessful);
+        }
+    }
+
+    public long getCommittedRows() {
+        synchronized (comuni) {
+            return comuni.stream().mapToLong(ImportReport::getCommittedRows).sum();
+        }
+    }
+
+    /**
+     * Multi-line summary for the logs and the CLI, one line per comune in the order they finished.
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        Duration elapsed = Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now());
+        synchronized (comuni) {
+            long failed = comuni.stream().filter(comune -> !comune.isSuccessful()).count();
+            sb.append(String.format("Delivery %s (%s, %d workers): %d comuni, %d failed, in %d s, %d rows committed",
+                    root, mode, workers, comuni.size(), failed, elapsed.toSeconds(), getCommittedRows()));
+            for (ImportReport comune : comuni) {
+                Instant end = comune.getFinishedAt() != null ? comune.getFinishedAt() : Instant.now();
+                sb.append(String.format("%n  %-40s %-9s %6d s %10d rows",
+                        comune.getDataDirectory(), comune.isSuccessful() ? "COMPLETED" : "FAILED",
+                        Duration.between(comune.getStartedAt(), end).toSeconds(), comune.getCommittedRows()));
+                synchronized (comune.getStages()) {
+                    for (StageReport stage : comune.getStages()) {
+                        sb.append(String.format(" | %s %d", stage.getStage(), stage.getCommittedRows()));
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package it.hl.neo4j.importer;
+
+import it.hl.neo4j.model.Fab;
+import it.hl.neo4j.parser.PipeRecord;
+
+import java.util.function.Consumer;
+
+/**
+ * Builds {@link Fab} entities from .fab records delivered grouped by composite key (the first five
+ * fields), emitting each fabbricato as soon as the key changes. Records it cannot use go to the
+ * {@link Quarantine}.
+ */
+public final class FabAssembler {
+
+    public static final int KEY_FIELDS = 5;
+    private static final String STAGE = "fabbricati";
+
+    private final Consumer<Fab> sink;
+    private final Quarantine quarantine;
+    private byte[] currentKey;
+    private Fab current;
+    private long groups;
+    private long assembled;
+
+    public FabAssembler(Consumer<Fab> sink, Quarantine quarantine) {
+        this.sink = sink;
+        this.quarantine = quarantine;
+    }
+
+    public void accept(PipeRecord record) {
+        if (record.fieldCount() < 6) {
+            quarantine.reject(STAGE, RejectReason.MALFORMED_RECORD, record.line(), null, null);
+            return;
+        }
+        if (!record.keyEquals(KEY_FIELDS, currentKey)) {
+            finish();
+            currentKey = record.keyBytes(KEY_FIELDS);
+            groups++;
+        }
+
+        String tipoRecord = record.field(5); // Position 5 is TIPO RECORD
+        try {
+            switch (tipoRecord) {
+                case "1" -> {
+                    // Main characteristics - this creates the base object
+                    current = Fab.parseType1(record);
+                }
+                case "2" -> {
+                    // Identificativi
+                    if (current != null) {
+                        current.addIdentificativi(record);
+                    }
+                }
+                case "3" -> {
+                    // Indirizzi
+                    if (current != null) {
+                        current.addIndirizzi(record);
+                    }
+                }
+                case "4" -> {
+                    // Utilità comuni
+                    if (current != null) {
+                        current.addUtilitaComuni(record);
+                    }
+                }
+                case "5" -> {
+                    // Riserve
+                    if (current != null) {
+                        current.addRiserve(record);
+                    }
+                }
+                default -> quarantine.reject(STAGE, RejectReason.UNKNOWN_RECORD_TYPE, record.line(),
+                        "tipo record " + tipoRecord, null);
+            }
+        } catch (Exception e) {
+            quarantine.reject(STAGE, RejectReason.PARSE_ERROR, record.line(), "tipo record " + tipoRecord, e);
+        }
+    }
+
+    /**
+     * Emits the fabbricato being assembled, if any. Call once more after the last record.
+     */
+    public void finish() {
+        if (current != null) {
+            current.updateDisplayName();
+            sink.accept(current);
+            assembled++;
+            current = null;
+        }
+    }
+
+    /**
+     * Distinct composite keys seen so far.
+     */
+    public long getGroups() {
+        return groups;
+    }
+
+    public long getAssembled() {
+        return assembled;
+    }
+}
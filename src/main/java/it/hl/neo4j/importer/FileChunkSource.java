@@ -0,0 +1,81 @@
+package it.hl.neo4j.importer;
+
+import it.hl.neo4j.parser.GroupedRecordReader;
+import it.hl.neo4j.parser.RecordRangeSplitter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Cuts a catasto file into chunks of roughly {@code chunkBytes}.
+ * <p>
+ * Chunks are memory-mapped byte ranges cut on line boundaries by a {@link RecordRangeSplitter}, so
+ * the reader only looks at the bytes around each cut and the parser workers scan the ranges
+ * concurrently, straight from the page cache. When a grouping reader is given, ranges are only cut
+ * where the key changes; if the file turns out not to be grouped by key, its records go through
+ * the reader's external sort and are copied into chunks instead. Offsets are then positions in the
+ * sorted stream, which is the same on every run since the sort is stable.
+ */
+public final class FileChunkSource implements ChunkSource {
+
+    private final Path file;
+    private final int chunkBytes;
+    private final GroupedRecordReader groupedReader;
+    private final int keyFields;
+    private final long startOffset;
+
+    private FileChunkSource(Path file, int chunkBytes, GroupedRecordReader groupedReader, int keyFields,
+                            long startOffset) {
+        this.file = file;
+        this.chunkBytes = chunkBytes;
+        this.groupedReader = groupedReader;
+        this.keyFields = keyFields;
+        this.startOffset = startOffset;
+    }
+
+    public static FileChunkSource of(Path file, int chunkBytes) {
+        return new FileChunkSource(file, chunkBytes, null, 0, 0);
+    }
+
+    public static FileChunkSource grouped(Path file, int chunkBytes, GroupedRecordReader groupedReader, int keyFields) {
+        return new FileChunkSource(file, chunkBytes, groupedReader, keyFields, 0);
+    }
+
+    @Override
+    public FileChunkSource resumeFrom(long offset) {
+        return new FileChunkSource(file, chunkBytes, groupedReader, keyFields, offset);
+    }
+
+    @Override
+    public void read(Consumer<RawChunk> sink) throws IOException {
+        if (groupedReader != null && !groupedReader.isGrouped(file)) {
+            RecordChunkBuilder builder = new RecordChunkBuilder(sink, chunkBytes, keyFields, startOffset);
+            groupedReader.forEach(file, builder::add);
+            builder.emit();
+            return;
+        }
+        readRanges(sink);
+    }
+
+    private void readRanges(Consumer<RawChunk> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            RecordRangeSplitter splitter = new RecordRangeSplitter(channel, keyFields);
+            long sequence = 0;
+            long start = startOffset;
+            while (start < splitter.size()) {
+                long end = splitter.next(start, chunkBytes);
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new IOException("Record group larger than 2 GB at offset " + start + " in " + file);
+                }
+                // The mapping stays valid after the channel is closed
+                ByteBuffer range = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                sink.accept(new RawChunk(sequence++, start, range, (int) (end - start)));
+                start = end;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package it.hl.neo4j.importer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only existence index for catasto identifiers.
+ * <p>
+ * Identifiers are numeric strings in practice, so each one is packed into a single {@code long}
+ * (digit count in the top bits, value in the rest, which keeps leading zeros significant) and kept
+ * in a sorted primitive array searched with binary search: 8 bytes per entity instead of a fully
+ * hydrated entity in a {@code HashMap}. Anything that does not fit (non-digits, more than 17 digits)
+ * goes to a small sorted overflow array of Strings.
+ */
+public final class IdIndex {
+
+    private static final int MAX_PACKED_DIGITS = 17;
+    private static final int LENGTH_SHIFT = 58;
+    static final long NOT_PACKABLE = -1L;
+
+    private final long[] packed;
+    private final String[] overflow;
+
+    private IdIndex(long[] packed, String[] overflow) {
+        this.packed = packed;
+        this.overflow = overflow;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean contains(String id) {
+        if (id == null) {
+            return false;
+        }
+        long key = pack(id);
+        if (key != NOT_PACKABLE) {
+            return Arrays.binarySearch(packed, key) >= 0;
+        }
+        return Arrays.binarySearch(overflow, id) >= 0;
+    }
+
+    public int size() {
+        return packed.length + overflow.length;
+    }
+
+    /**
+     * Approximate heap footprint of the index data, for logging.
+     */
+    public long estimatedBytes() {
+        long bytes = (long) packed.length * Long.BYTES;
+        for (String id : overflow) {
+            bytes += 40 + id.length();
+        }
+        return bytes;
+    }
+
+    static long pack(String id) {
+        int length = id.length();
+        if (length == 0 || length > MAX_PACKED_DIGITS) {
+            return NOT_PACKABLE;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_PACKABLE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return ((long) length << LENGTH_SHIFT) | value;
+    }
+
+    /**
+     * Inverse of {@link #pack}.
+     */
+    static String unpack(long key) {
+        int length = (int) (key >>> LENGTH_SHIFT);
+        String digits = Long.toString(key & ((1L << LENGTH_SHIFT) - 1));
+        return "0".repeat(length - digits.length()) + digits;
+    }
+
+    public static final class Builder {
+
+        private long[] packed = new long[1024];
+        private int size;
+        private final List<String> overflow = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder add(String id) {
+            if (id == null) {
+                return this;
+            }
+            long key = pack(id);
+            if (key == NOT_PACKABLE) {
+                overflow.add(id);
+                return this;
+            }
+            if (size == packed.length) {
+                packed = Arrays.copyOf(packed, packed.length + (packed.length >> 1));
+            }
+            packed[size++] = key;
+            return this;
+        }
+
+        public IdIndex build() {
+            long[] keys = Arrays.copyOf(packed, size);
+            Arrays.sort(keys);
+            int distinct = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (i == 0 || keys[i] != keys[distinct - 1]) {
+                    keys[distinct++] = keys[i];
+                }
+            }
+            String[] strings = overflow.stream().distinct().sorted().toArray(String[]::new);
+            return new IdIndex(distinct == keys.length ? keys : Arrays.copyOf(keys, distinct), strings);
+        }
+    }
+}
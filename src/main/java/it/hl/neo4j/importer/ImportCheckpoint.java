@@ -0,0 +1,46 @@
+package it.hl.neo4j.importer;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How far an import of a given set of input files got, stage by stage. Persisted by
+ * {@link ImportCheckpointStore} after every committed batch.
+ */
+@Data
+@NoArgsConstructor
+public class ImportCheckpoint {
+
+    private String dataDirectory;
+    /** Identifies the input files, see {@link ImportCheckpointStore#fingerprint}. */
+    private String fingerprint;
+    private Instant updatedAt;
+    private Map<String, StageCheckpoint> stages = new ConcurrentHashMap<>();
+
+    public ImportCheckpoint(String dataDirectory, String fingerprint) {
+        this.dataDirectory = dataDirectory;
+        this.fingerprint = fingerprint;
+    }
+
+    public StageCheckpoint stage(String stage) {
+        return stages.computeIfAbsent(stage, name -> new StageCheckpoint());
+    }
+
+    public boolean isCompleted(String stage) {
+        StageCheckpoint checkpoint = stages.get(stage);
+        return checkpoint != null && checkpoint.isCompleted();
+    }
+
+    @Data
+    public static class StageCheckpoint {
+        private String file;
+        /** Everything before this offset of {@code file} is committed. */
+        private long offset;
+        private long committedRows;
+        private boolean completed;
+    }
+}
@@ -0,0 +1,126 @@
+package it.hl.neo4j.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Keeps import checkpoints as small JSON files, one per set of input files, so an interrupted
+ * import can pick up after its last committed batch.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ImportCheckpointStore {
+
+    /** Bytes hashed at each end of every input file. */
+    private static final int SAMPLE_SIZE = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${catasto.import.checkpoint-directory:checkpoints}")
+    private String checkpointDirectory;
+
+    public Optional<ImportCheckpoint> load(String fingerprint) {
+        Path file = checkpointFile(fingerprint);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(file.toFile(), ImportCheckpoint.class));
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable checkpoint {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Applies {@code change} to a stage of the checkpoint and persists it. Stages running
+     * concurrently share the checkpoint, so changes and writes are serialized here.
+     */
+    public synchronized void update(ImportCheckpoint checkpoint, String stage,
+                                    Consumer<ImportCheckpoint.StageCheckpoint> change) {
+        change.accept(checkpoint.stage(stage));
+        checkpoint.setUpdatedAt(Instant.now());
+        save(checkpoint);
+    }
+
+    public synchronized void save(ImportCheckpoint checkpoint) {
+        Path file = checkpointFile(checkpoint.getFingerprint());
+        try {
+            Files.createDirectories(file.getParent());
+            // Write then rename, so a crash never leaves a truncated checkpoint behind
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            objectMapper.writeValue(temp.toFile(), checkpoint);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * SHA-256 of the name, size, modification time and first and last {@value #SAMPLE_SIZE} bytes
+     * of every input file, plus the entry names of inputs read from a zip archive. Hashing whole
+     * multi-GB deliveries would take longer than some stages; a replaced or re-exported file changes
+     * at least one of these.
+     */
+    public String fingerprint(Collection<CatastoSource> sources) throws IOException {
+        MessageDigest digest = sha256();
+        for (CatastoSource source : sources.stream().sorted(Comparator.comparing(CatastoSource::fileName)).toList()) {
+            Path file = source.file();
+            if (source.entry() != null) {
+                digest.update(source.entry().getBytes(StandardCharsets.UTF_8));
+            }
+            long size = Files.size(file);
+            digest.update(file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(ByteBuffer.allocate(16).putLong(size).putLong(Files.getLastModifiedTime(file).toMillis()).flip());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                sample(channel, 0, digest);
+                sample(channel, Math.max(0, size - SAMPLE_SIZE), digest);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void sample(FileChannel channel, long position, MessageDigest digest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SIZE);
+        int read;
+        do {
+            read = channel.read(buffer, position + buffer.position());
+        } while (read > 0 && buffer.hasRemaining());
+        digest.update(buffer.flip());
+    }
+
+    private Path checkpointFile(String fingerprint) {
+        return Paths.get(checkpointDirectory, "import-" + fingerprint.substring(0, 16) + ".json");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package it.hl.neo4j.importer;
+
+import lombok.Getter;
+
+/**
+ * Thrown when an import stage fails. The report tells exactly which batches were committed before
+ * the failure, since they are not rolled back.
+ */
+@Getter
+public class ImportFailedException extends RuntimeException {
+
+    private final transient ImportReport report;
+
+    public ImportFailedException(ImportReport report, Throwable cause) {
+        super("Import of " + report.getDataDirectory() + " failed after committing "
+                + report.getCommittedRows() + " rows: " + cause.getMessage(), cause);
+        this.report = report;
+    }
+}
@@ -0,0 +1,132 @@
+package it.hl.neo4j.importer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the throughput of the import stages (terreni, fabbricati, soggetti, titolarita) to
+ * Micrometer, for {@code /actuator/metrics} and {@code /actuator/prometheus}:
+ * <ul>
+ *     <li>{@code catasto.import.read.bytes}, {@code catasto.import.lines.read},
+ *     {@code catasto.import.records.parsed}, {@code catasto.import.records.written}: counters</li>
+ *     <li>{@code catasto.import.records.rejected}: counter, also tagged with the {@link RejectReason}</li>
+ *     <li>{@code catasto.import.batch.commit}: timer with histogram of the batch commit latency</li>
+ *     <li>{@code catasto.import.queue.depth}: gauge of the items waiting in front of the parser,
+ *     batcher and writer workers, summed over the pipelines of the stage that are running</li>
+ * </ul>
+ * All are tagged with {@code stage}; comuni importing at the same time add up.
+ */
+@Component
+@RequiredArgsConstructor
+public class ImportMetrics {
+
+    private static final List<String> QUEUES = List.of("parser", "batcher", "writer");
+
+    private final MeterRegistry registry;
+    private final Map<String, StageMeters> stages = new ConcurrentHashMap<>();
+    private final Map<String, Set<ImportPipeline<?>>> running = new ConcurrentHashMap<>();
+
+    /**
+     * Reports {@code pipeline} under {@code stage} until {@link #unbind}.
+     */
+    public <T> ImportPipeline<T> bind(String stage, ImportPipeline<T> pipeline) {
+        StageMeters meters = meters(stage);
+        running.computeIfAbsent(stage, s -> ConcurrentHashMap.newKeySet()).add(pipeline);
+        return pipeline.listener(meters);
+    }
+
+    public void unbind(String stage, ImportPipeline<?> pipeline) {
+        running.getOrDefault(stage, Set.of()).remove(pipeline);
+    }
+
+    public void rejected(String stage, RejectReason reason) {
+        Counter.builder("catasto.import.records.rejected")
+                .description("Input lines rejected to the quarantine file")
+                .tag("stage", stage)
+                .tag("reason", reason.name())
+                .register(registry)
+                .increment();
+    }
+
+    private StageMeters meters(String stage) {
+        return stages.computeIfAbsent(stage, s -> {
+            for (String queue : QUEUES) {
+                Gauge.builder("catasto.import.queue.depth", () -> queueDepth(stage, queue))
+                        .description("Items waiting in front of the workers of a pipeline stage")
+                        .tag("stage", stage)
+                        .tag("queue", queue)
+                        .register(registry);
+            }
+            return new StageMeters(stage);
+        });
+    }
+
+    private double queueDepth(String stage, String queue) {
+        return running.getOrDefault(stage, Set.of()).stream()
+                .flatMap(pipeline -> pipeline.snapshot().getStages().stream())
+                .filter(snapshot -> snapshot.getStage().equals(queue))
+                .mapToInt(StageSnapshot::getQueueDepth)
+                .sum();
+    }
+
+    private final class StageMeters implements PipelineListener {
+
+        private final Counter bytesRead;
+        private final Counter linesRead;
+        private final Counter parsed;
+        private final Counter written;
+        private final Timer commits;
+
+        private StageMeters(String stage) {
+            bytesRead = Counter.builder("catasto.import.read.bytes")
+                    .description("Input bytes read, uncompressed")
+                    .baseUnit("bytes")
+                    .tag("stage", stage)
+                    .register(registry);
+            linesRead = Counter.builder("catasto.import.lines.read")
+                    .description("Input lines read by the parsers")
+                    .tag("stage", stage)
+                    .register(registry);
+            parsed = Counter.builder("catasto.import.records.parsed")
+                    .description("Records parsed and handed to the writers")
+                    .tag("stage", stage)
+                    .register(registry);
+            written = Counter.builder("catasto.import.records.written")
+                    .description("Records committed (or exported, or counted by a dry run)")
+                    .tag("stage", stage)
+                    .register(registry);
+            commits = Timer.builder("catasto.import.batch.commit")
+                    .description("Time to write and commit one batch, retries included")
+                    .tag("stage", stage)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        @Override
+        public void read(long bytes) {
+            bytesRead.increment(bytes);
+        }
+
+        @Override
+        public void parsed(long lines, long items) {
+            linesRead.increment(lines);
+            parsed.increment(items);
+        }
+
+        @Override
+        public void committed(long items, long nanos) {
+            written.increment(items);
+            commits.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
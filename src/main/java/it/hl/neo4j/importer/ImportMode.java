@@ -0,0 +1,28 @@
+package it.hl.neo4j.importer;
+
+import java.util.Locale;
+
+/**
+ * How parsed catasto entities are written to Neo4j.
+ */
+public enum ImportMode {
+    /**
+     * Spring Data Neo4j repositories ({@code saveAll}), one mapped statement per entity.
+     */
+    REPOSITORY,
+    /**
+     * Flat parameter maps shipped in batches through a single {@code UNWIND ... MERGE} per batch.
+     */
+    BULK;
+
+    public static ImportMode fromString(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return ImportMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Modalità di import non valida: " + value);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package it.hl.neo4j.importer;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Options of a single import run.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class ImportOptions {
+
+    /** Write mode; null for the configured default. */
+    private final ImportMode mode;
+
+    /** Continue from the last checkpoint of the same input files instead of starting over. */
+    private final boolean resume;
+
+    /**
+     * Only write records whose content hash differs from the graph, and remove the ones of the
+     * delivered comuni that the delivery no longer contains.
+     */
+    private final boolean delta;
+
+    /**
+     * Read, parse and resolve the delivery at full speed without writing to (or reading from) the
+     * graph; titolarità is resolved against the delivery itself.
+     */
+    private final boolean dryRun;
+
+    /**
+     * Instead of writing to the graph, write CSV files for {@code neo4j-admin database import} to
+     * this directory; like a dry run, the graph is never read. Null for a normal import.
+     */
+    private final String exportDirectory;
+
+    /** Where the import registers its pipelines, e.g. to follow or cancel a job; the shared registry if null. */
+    private final ImportPipelineRegistry pipelines;
+}
@@ -0,0 +1,372 @@
+package it.hl.neo4j.importer;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.exceptions.TransientException;
+import org.springframework.dao.TransientDataAccessException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Staged, multi-threaded import of one catasto file:
+ * <pre>
+ * reader --chunks--> parser workers --entities--> batcher --batches--> writer workers
+ * </pre>
+ * Stages are connected by bounded queues, so a slow database blocks the writers, then the batcher,
+ * the parsers and finally the reader, instead of letting parsed data pile up in the heap.
+ * The first failing stage stops the whole pipeline. Writers of pipelines sharing
+ * {@link PipelineSettings#getWritePermits() write permits} take turns at the database.
+ */
+@Slf4j
+public final class ImportPipeline<T> {
+
+    private static final RawChunk END_OF_INPUT = new RawChunk(-1, 0, ByteBuffer.allocate(0), 0);
+
+    @Getter
+    private final String name;
+    private final ChunkSource source;
+    private final ChunkParser<T> parser;
+    private final BatchWriter<T> writer;
+    private final PipelineSettings settings;
+
+    private final BlockingQueue<RawChunk> rawChunks;
+    private final BlockingQueue<ParsedChunk<T>> parsedChunks;
+    private final BlockingQueue<Batch<T>> batches;
+    private final ParsedChunk<T> endOfParsed = new ParsedChunk<>(-1, List.of());
+    private final Batch<T> endOfBatches = new Batch<>(List.of(), List.of());
+
+    private final StageStats readerStats;
+    private final StageStats parserStats;
+    private final StageStats batcherStats;
+    private final StageStats writerStats;
+
+    private final LongAdder committedBatches = new LongAdder();
+    private volatile LongConsumer commitListener = offset -> {
+    };
+    private final CommitTracker commitTracker = new CommitTracker(offset -> commitListener.accept(offset));
+    private volatile PipelineListener listener = PipelineListener.NONE;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final AtomicInteger runningParsers;
+    private volatile ExecutorService workers;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    public ImportPipeline(String name, ChunkSource source, ChunkParser<T> parser,
+                          BatchWriter<T> writer, PipelineSettings settings) {
+        this.name = name;
+        this.source = source;
+        this.parser = parser;
+        this.writer = writer;
+        this.settings = settings;
+
+        int capacity = settings.getQueueCapacity();
+        this.rawChunks = new ArrayBlockingQueue<>(capacity);
+        this.parsedChunks = new ArrayBlockingQueue<>(capacity);
+        this.batches = new ArrayBlockingQueue<>(capacity);
+
+        this.readerStats = new StageStats("reader", 1, null, 0);
+        this.parserStats = new StageStats("parser", settings.getParserThreads(), rawChunks, capacity);
+        this.batcherStats = new StageStats("batcher", 1, parsedChunks, capacity);
+        this.writerStats = new StageStats("writer", settings.getWriterThreads(), batches, capacity);
+        this.runningParsers = new AtomicInteger(settings.getParserThreads());
+    }
+
+    /**
+     * Calls {@code listener} with the source offset up to which every item has been committed,
+     * each time it advances. A pipeline restarted from that offset loses nothing.
+     */
+    public ImportPipeline<T> onCommitted(LongConsumer listener) {
+        this.commitListener = listener;
+        return this;
+    }
+
+    /**
+     * Reports the throughput of every stage to {@code listener} as the pipeline runs.
+     */
+    public ImportPipeline<T> listener(PipelineListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Runs the pipeline to completion on its own threads.
+     *
+     * @return the final state of every stage
+     * @throws ImportPipelineException if any stage failed
+     */
+    public PipelineSnapshot run() {
+        int threads = 2 + settings.getParserThreads() + settings.getWriterThreads();
+        workers = Executors.newFixedThreadPool(threads, threadFactory());
+        startNanos = System.nanoTime();
+
+        try {
+            if (failure.get() == null) {
+                workers.execute(() -> runStage(this::read));
+                for (int i = 0; i < settings.getParserThreads(); i++) {
+                    workers.execute(() -> runStage(this::parse));
+                }
+                workers.execute(() -> runStage(this::batch));
+                for (int i = 0; i < settings.getWriterThreads(); i++) {
+                    workers.execute(() -> runStage(this::write));
+                }
+            }
+        } catch (RejectedExecutionException e) {
+            // Cancelled while starting up; the failure is already recorded
+        }
+        workers.shutdown();
+
+        try {
+            long intervalMillis = settings.getProgressInterval().toMillis();
+            while (!workers.awaitTermination(intervalMillis, TimeUnit.MILLISECONDS)) {
+                log.info(snapshot().summary());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+            workers.shutdownNow();
+        }
+        endNanos = System.nanoTime();
+
+        PipelineSnapshot snapshot = snapshot();
+        Throwable error = failure.get();
+        if (error != null) {
+            log.error("{} failed: {}", snapshot.summary(), error.getMessage());
+            throw new ImportPipelineException(snapshot, error);
+        }
+        log.info(snapshot.summary());
+        return snapshot;
+    }
+
+    /**
+     * Stops the pipeline as soon as possible; {@link #run} then fails with a {@link CancellationException}.
+     * Batches already committed stay committed.
+     */
+    public void cancel() {
+        fail(new CancellationException("Import pipeline " + name + " cancelled"));
+    }
+
+    public PipelineSnapshot snapshot() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        long elapsed = end - startNanos;
+        return PipelineSnapshot.builder()
+                .name(name)
+                .finished(endNanos != 0)
+                .elapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsed))
+                .stages(List.of(
+                        readerStats.snapshot(elapsed),
+                        parserStats.snapshot(elapsed),
+                        batcherStats.snapshot(elapsed),
+                        writerStats.snapshot(elapsed)))
+                .build();
+    }
+
+    /**
+     * Items committed by the writer stage so far.
+     */
+    public long getWritten() {
+        return writerStats.getItemsOut();
+    }
+
+    /**
+     * Batches the writer stage has committed so far.
+     */
+    public long getCommittedBatches() {
+        return committedBatches.sum();
+    }
+
+    private void read() throws Exception {
+        // The reader is busy whenever it is not blocked handing a chunk to the parsers
+        long[] resumed = {System.nanoTime()};
+        try {
+            source.read(chunk -> {
+                readerStats.produced(chunk.getLength());
+                listener.read(chunk.getLength());
+                readerStats.busySince(resumed[0]);
+                put(rawChunks, chunk);
+                resumed[0] = System.nanoTime();
+            });
+            readerStats.busySince(resumed[0]);
+        } finally {
+            if (failure.get() == null) {
+                for (int i = 0; i < settings.getParserThreads(); i++) {
+                    rawChunks.put(END_OF_INPUT);
+                }
+            }
+        }
+    }
+
+    private void parse() throws InterruptedException {
+        while (true) {
+            RawChunk chunk = rawChunks.take();
+            if (chunk == END_OF_INPUT) {
+                if (runningParsers.decrementAndGet() == 0) {
+                    parsedChunks.put(endOfParsed);
+                }
+                return;
+            }
+            long start = System.nanoTime();
+            List<T> parsed = new ArrayList<>();
+            parser.parse(chunk, parsed::add);
+            parserStats.received(chunk.getLength());
+            parserStats.produced(parsed.size());
+            parserStats.busySince(start);
+            listener.parsed(chunk.getRecords(), parsed.size());
+            commitTracker.parsed(chunk, parsed.size());
+            parsedChunks.put(new ParsedChunk<>(chunk.getSequence(), parsed));
+        }
+    }
+
+    private void batch() throws InterruptedException {
+        // Which chunks the items of the pending batch come from, in order
+        List<CommitTracker.ChunkSpan> spans = new ArrayList<>();
+        BatchBuffer<T> buffer = new BatchBuffer<>(settings.getBatchSize(), items -> {
+            batcherStats.produced(items.size());
+            put(batches, new Batch<>(new ArrayList<>(items), List.copyOf(spans)));
+            spans.clear();
+        });
+        while (true) {
+            ParsedChunk<T> parsed = parsedChunks.take();
+            if (parsed == endOfParsed) {
+                buffer.flush();
+                for (int i = 0; i < settings.getWriterThreads(); i++) {
+                    batches.put(endOfBatches);
+                }
+                return;
+            }
+            long start = System.nanoTime();
+            batcherStats.received(parsed.items().size());
+            for (T item : parsed.items()) {
+                if (spans.isEmpty() || spans.get(spans.size() - 1).sequence != parsed.sequence()) {
+                    spans.add(new CommitTracker.ChunkSpan(parsed.sequence()));
+                }
+                spans.get(spans.size() - 1).items++;
+                buffer.add(item);
+            }
+            batcherStats.busySince(start);
+        }
+    }
+
+    private void write() throws InterruptedException {
+        while (true) {
+            Batch<T> batch = batches.take();
+            if (batch == endOfBatches) {
+                return;
+            }
+            Semaphore permits = settings.getWritePermits();
+            if (permits != null) {
+                permits.acquire();
+            }
+            // Waiting for a permit is idle time, like waiting for a batch
+            long start = System.nanoTime();
+            long written;
+            try {
+                writerStats.received(batch.items().size());
+                written = writeWithRetry(batch.items());
+            } finally {
+                if (permits != null) {
+                    permits.release();
+                }
+            }
+            writerStats.produced(written);
+            listener.committed(written, System.nanoTime() - start);
+            committedBatches.increment();
+            commitTracker.committed(batch.spans());
+            writerStats.busySince(start);
+        }
+    }
+
+    private long writeWithRetry(List<T> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return writer.write(batch);
+            } catch (RuntimeException e) {
+                if (attempt >= settings.getWriteAttempts() || !isTransient(e)) {
+                    throw e;
+                }
+                log.warn("Transient error writing a batch of {} in {} (attempt {}/{}): {}",
+                        batch.size(), name, attempt, settings.getWriteAttempts(), e.getMessage());
+                Thread.sleep(100L * attempt);
+            }
+        }
+    }
+
+    private static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TransientDataAccessException || t instanceof TransientException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void runStage(Stage stage) {
+        try {
+            stage.run();
+        } catch (InterruptedException | StageInterruptedException e) {
+            if (failure.get() == null) {
+                fail(e);
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    private void fail(Throwable e) {
+        if (failure.compareAndSet(null, e)) {
+            ExecutorService executor = workers;
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private <E> void put(BlockingQueue<E> queue, E item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StageInterruptedException();
+        }
+    }
+
+    private ThreadFactory threadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "import-" + name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record ParsedChunk<T>(long sequence, List<T> items) {
+    }
+
+    private record Batch<T>(List<T> items, List<CommitTracker.ChunkSpan> spans) {
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    private static final class StageInterruptedException extends RuntimeException {
+        StageInterruptedException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package it.hl.neo4j.importer;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a stage of an {@link ImportPipeline} fails. Carries the state of the pipeline at the
+ * time it stopped; the writer stage's output counts what was committed.
+ */
+@Getter
+public class ImportPipelineException extends RuntimeException {
+
+    private final transient PipelineSnapshot snapshot;
+
+    public ImportPipelineException(PipelineSnapshot snapshot, Throwable cause) {
+        super("Import pipeline " + snapshot.getName() + " failed: " + cause.getMessage(), cause);
+        this.snapshot = snapshot;
+    }
+}
@@ -0,0 +1,52 @@
+package it.hl.neo4j.importer;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the pipelines of an import so their stages can be inspected while it runs. The shared bean
+ * holds the most recent import that was not started as a job; every job has its own registry.
+ */
+@Component
+public class ImportPipelineRegistry {
+
+    private final Map<String, ImportPipeline<?>> pipelines = new ConcurrentHashMap<>();
+
+    private volatile boolean cancelled;
+
+    public <T> ImportPipeline<T> register(ImportPipeline<T> pipeline) {
+        pipelines.put(pipeline.getName(), pipeline);
+        if (cancelled) {
+            pipeline.cancel();
+        }
+        return pipeline;
+    }
+
+    /**
+     * Cancels the running pipelines and any registered later, so the import stops at its next batch.
+     */
+    public void cancel() {
+        cancelled = true;
+        pipelines.values().forEach(ImportPipeline::cancel);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Forgets the pipelines of a previous import.
+     */
+    public void clear() {
+        pipelines.clear();
+    }
+
+    public List<PipelineSnapshot> snapshots() {
+        return pipelines.values().stream()
+                .map(ImportPipeline::snapshot)
+                .toList();
+    }
+}
@@ -0,0 +1,112 @@
+package it.hl.neo4j.importer;
+
+import lombok.Data;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What an import committed, stage by stage. Stages report concurrently, so the list is synchronized.
+ */
+@Data
+public class ImportReport {
+
+    private final String dataDirectory;
+    private final ImportMode mode;
+    private final Instant startedAt = Instant.now();
+    private Instant finishedAt;
+    /** Nothing was written: row counts are what the import would have written. */
+    private boolean dryRun;
+    /** Where the rows were exported as CSV instead of written to the graph, null for a normal import. */
+    private String exportDirectory;
+    /** Where the rejected lines went, null if there were none. */
+    private String quarantineFile;
+    private final List<StageReport> stages = Collections.synchronizedList(new ArrayList<>());
+
+    public void add(StageReport stage) {
+        stages.add(stage);
+    }
+
+    public void finish() {
+        finishedAt = Instant.now();
+    }
+
+    public boolean isSuccessful() {
+        synchronized (stages) {
+            return stages.stream().noneMatch(stage -> stage.getStatus() == StageReport.Status.FAILED);
+        }
+    }
+
+    public long getCommittedRows() {
+        synchronized (stages) {
+            return stages.stream().mapToLong(StageReport::getCommittedRows).sum();
+        }
+    }
+
+    /**
+     * Titolarità lines whose soggetto or immobile was not found; offline, not in the delivery.
+     */
+    public long getDanglingReferences() {
+        synchronized (stages) {
+            return stages.stream()
+                    .filter(stage -> stage.getRejected() != null)
+                    .flatMap(stage -> stage.getRejected().entrySet().stream())
+                    .filter(rejected -> rejected.getKey().endsWith("_NOT_FOUND"))
+                    .mapToLong(Map.Entry::getValue)
+                    .sum();
+        }
+    }
+
+    /**
+     * True if the import never touched the graph: a dry run or a CSV export.
+     */
+    public boolean isOffline() {
+        return dryRun || exportDirectory != null;
+    }
+
+    /**
+     * Multi-line summary for the logs and the CLI.
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        Duration elapsed = Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now());
+        sb.append(String.format("Import %s (%s%s) %s in %d s, %d rows %s",
+                dataDirectory, mode, dryRun ? ", dry run" : exportDirectory != null ? ", CSV export" : "",
+                isSuccessful() ? "completed" : "FAILED", elapsed.toSeconds(), getCommittedRows(),
+                dryRun ? "parsed" : exportDirectory != null ? "exported" : "committed"));
+        synchronized (stages) {
+            for (StageReport stage : stages) {
+                sb.append(String.format("%n  %-11s %-9s %10d rows in %6d batches",
+                        stage.getStage(), stage.getStatus(), stage.getCommittedRows(), stage.getCommittedBatches()));
+                if (isOffline()) {
+                    double seconds = Math.max(stage.getElapsedMillis(), 1) / 1000.0;
+                    sb.append(String.format(", %.0f rows/s, %.1f MB/s",
+                            stage.getCommittedRows() / seconds, stage.getReadBytes() / seconds / (1024 * 1024)));
+                }
+                if (stage.getUnchangedRows() > 0 || stage.getDeletedRows() > 0) {
+                    sb.append(String.format(", %d unchanged, %d removed", stage.getUnchangedRows(), stage.getDeletedRows()));
+                }
+                if (stage.getRejected() != null && !stage.getRejected().isEmpty()) {
+                    sb.append(", rejected ").append(stage.getRejected());
+                }
+                if (stage.getError() != null) {
+                    sb.append("  ").append(stage.getError());
+                }
+            }
+        }
+        if (isOffline()) {
+            sb.append(String.format("%n  Dangling references: %d", getDanglingReferences()));
+        }
+        if (exportDirectory != null) {
+            sb.append(String.format("%n  Exported to: %s", exportDirectory));
+        }
+        if (quarantineFile != null) {
+            sb.append(String.format("%n  Rejected lines: %s", quarantineFile));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package it.hl.neo4j.importer;
+
+/**
+ * Hears the throughput of an {@link ImportPipeline} as it runs, e.g. to publish it as metrics.
+ * Called concurrently from the pipeline's workers.
+ */
+public interface PipelineListener {
+
+    PipelineListener NONE = new PipelineListener() {
+    };
+
+    /** The reader handed {@code bytes} of input to the parsers. */
+    default void read(long bytes) {
+    }
+
+    /** A parser worker turned {@code lines} input lines into {@code items}. */
+    default void parsed(long lines, long items) {
+    }
+
+    /** A writer worker committed a batch of {@code items} in {@code nanos}, retries included. */
+    default void committed(long items, long nanos) {
+    }
+}
@@ -0,0 +1,38 @@
+package it.hl.neo4j.importer;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Sizing of an {@link ImportPipeline}.
+ */
+@Getter
+@Builder
+public class PipelineSettings {
+
+    @Builder.Default
+    private final int batchSize = 5000;
+    @Builder.Default
+    private final int parserThreads = Runtime.getRuntime().availableProcessors();
+    @Builder.Default
+    private final int writerThreads = 4;
+    /** Capacity of each queue between stages, in chunks or batches. */
+    @Builder.Default
+    private final int queueCapacity = 16;
+    @Builder.Default
+    private final int chunkBytes = 1024 * 1024;
+    /** Attempts per batch when the database reports a transient error (e.g. a deadlock). */
+    @Builder.Default
+    private final int writeAttempts = 3;
+    @Builder.Default
+    private final Duration progressInterval = Duration.ofSeconds(10);
+    /**
+     * Shared by the pipelines writing to the same database: a writer holds a permit while it writes
+     * a batch, so however many pipelines run, at most that many transactions are open. Null for no
+     * limit beyond {@code writerThreads}.
+     */
+    private final Semaphore writePermits;
+}
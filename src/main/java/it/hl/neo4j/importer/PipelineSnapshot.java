@@ -0,0 +1,36 @@
+package it.hl.neo4j.importer;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Point-in-time view of an {@link ImportPipeline}, stage by stage.
+ */
+@Data
+@Builder
+public class PipelineSnapshot {
+    private String name;
+    private boolean finished;
+    private long elapsedMillis;
+    private List<StageSnapshot> stages;
+
+    /**
+     * One-line summary for the logs, e.g. {@code parser 1200/s 97% q=16/16}.
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder(name).append(':');
+        for (StageSnapshot stage : stages) {
+            sb.append(" | ").append(stage.getStage())
+                    .append(' ').append(stage.getItemsOut())
+                    .append(" (").append(Math.round(stage.getItemsPerSecond())).append("/s, ")
+                    .append(Math.round(stage.getOccupancy() * 100)).append("% busy");
+            if (stage.getQueueCapacity() > 0) {
+                sb.append(", q=").append(stage.getQueueDepth()).append('/').append(stage.getQueueCapacity());
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+}
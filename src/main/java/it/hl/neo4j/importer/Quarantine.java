@@ -0,0 +1,116 @@
+package it.hl.neo4j.importer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects the lines an import rejects, so a dirty delivery costs a buffered write per bad line
+ * instead of a log entry with a stack trace.
+ * <p>
+ * Lines go to a tab separated file ({@code stage, reason, detail, line}) created on the first
+ * rejection, and are counted per stage and {@link RejectReason}. Only the first rejection of each
+ * kind and then one every {@code logEvery} is logged, with its stack trace if it has one. Safe to
+ * use from several parser workers.
+ */
+@Slf4j
+public final class Quarantine implements Closeable {
+
+    private final Path file;
+    private final int logEvery;
+    private final Map<String, Map<RejectReason, AtomicLong>> counts = new ConcurrentHashMap<>();
+    private volatile BiConsumer<String, RejectReason> rejectListener = (stage, reason) -> {
+    };
+    private BufferedWriter writer;
+    private boolean closed;
+
+    public Quarantine(Path file, int logEvery) {
+        this.file = file;
+        this.logEvery = Math.max(1, logEvery);
+    }
+
+    /**
+     * Calls {@code listener} with the stage and reason of every rejection, e.g. to count it as a metric.
+     */
+    public Quarantine onReject(BiConsumer<String, RejectReason> listener) {
+        this.rejectListener = listener;
+        return this;
+    }
+
+    /**
+     * Records {@code line} of {@code stage} as rejected.
+     *
+     * @param detail what was wrong (e.g. the missing id), may be null
+     * @param cause  the exception that rejected the line, may be null
+     */
+    public void reject(String stage, RejectReason reason, String line, String detail, Throwable cause) {
+        long count = counts.computeIfAbsent(stage, s -> new ConcurrentHashMap<>())
+                .computeIfAbsent(reason, r -> new AtomicLong())
+                .incrementAndGet();
+        rejectListener.accept(stage, reason);
+        if (count == 1 || count % logEvery == 0) {
+            log.warn("{} {} #{} (all in {}): {} {}", stage, reason, count, file, detail != null ? detail : "", line, cause);
+        }
+        write(stage, reason, line, detail, cause);
+    }
+
+    private synchronized void write(String stage, RejectReason reason, String line, String detail, Throwable cause) {
+        if (closed) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                Files.createDirectories(file.getParent());
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            }
+            if (detail == null && cause != null) {
+                detail = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+            }
+            writer.write(stage);
+            writer.write('\t');
+            writer.write(reason.name());
+            writer.write('\t');
+            writer.write(detail != null ? detail.replace('\t', ' ').replace('\n', ' ') : "");
+            writer.write('\t');
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write quarantine file " + file, e);
+        }
+    }
+
+    /**
+     * Rejections of {@code stage} so far, by reason.
+     */
+    public Map<String, Long> counts(String stage) {
+        Map<String, Long> result = new TreeMap<>();
+        counts.getOrDefault(stage, Map.of()).forEach((reason, count) -> result.put(reason.name(), count.get()));
+        return result;
+    }
+
+    /**
+     * The quarantine file, or null if nothing was rejected.
+     */
+    public synchronized Path getFile() {
+        return writer != null ? file : null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
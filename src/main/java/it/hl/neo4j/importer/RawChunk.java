@@ -0,0 +1,40 @@
+package it.hl.neo4j.importer;
+
+import it.hl.neo4j.parser.MappedRecordReader;
+import it.hl.neo4j.parser.PipeRecord;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * A run of complete, newline-terminated records handed from the reader stage to a parser worker,
+ * usually a memory-mapped byte range of the input file. Records sharing a grouping key never span
+ * two chunks.
+ */
+@Getter
+@RequiredArgsConstructor
+public final class RawChunk {
+
+    private final long sequence;
+    /** Position of the first byte in the source, as understood by {@link ChunkSource#resumeFrom}. */
+    private final long offset;
+    private final ByteBuffer data;
+    private final int length;
+    /** Records handed out by {@link #forEach}, i.e. input lines the parser read. */
+    private long records;
+
+    public long getEndOffset() {
+        return offset + length;
+    }
+
+    /**
+     * @return the number of records read
+     */
+    public long forEach(Consumer<PipeRecord> consumer) {
+        long read = MappedRecordReader.forEach(data, 0, length, new PipeRecord(), consumer);
+        records += read;
+        return read;
+    }
+}
@@ -0,0 +1,78 @@
+package it.hl.neo4j.importer;
+
+import it.hl.neo4j.parser.PipeRecord;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Copies records delivered one by one (e.g. out of a merge sort) into heap chunks, never splitting
+ * a group of records sharing the first {@code keyFields} fields.
+ * <p>
+ * Offsets are positions in the stream of records as delivered, each counted with a single
+ * {@code \n} terminator; records before {@code startOffset} are skipped.
+ */
+final class RecordChunkBuilder {
+
+    private final Consumer<RawChunk> sink;
+    private final int chunkBytes;
+    private final int keyFields;
+    private final long startOffset;
+    private byte[] data;
+    private int length;
+    private int records;
+    private long sequence;
+    private byte[] lastKey;
+    /** Position in the stream of the end of the last record seen. */
+    private long position;
+    private long chunkOffset;
+
+    RecordChunkBuilder(Consumer<RawChunk> sink, int chunkBytes, int keyFields, long startOffset) {
+        this.sink = sink;
+        this.chunkBytes = chunkBytes;
+        this.keyFields = keyFields;
+        this.startOffset = startOffset;
+        this.data = new byte[chunkBytes + 1024];
+    }
+
+    void add(PipeRecord record) {
+        long recordOffset = position;
+        position += record.length() + 1;
+        if (position <= startOffset) {
+            return;
+        }
+        boolean newGroup = keyFields == 0 || !record.keyEquals(keyFields, lastKey);
+        if (length >= chunkBytes && newGroup) {
+            emit();
+        }
+        if (newGroup && keyFields > 0) {
+            lastKey = record.keyBytes(keyFields);
+        }
+        if (records == 0) {
+            chunkOffset = recordOffset;
+        }
+
+        int needed = length + record.length() + 1;
+        if (needed > data.length) {
+            data = Arrays.copyOf(data, Math.max(needed, data.length * 2));
+        }
+        record.copyTo(data, length);
+        length += record.length();
+        data[length++] = '\n';
+        records++;
+    }
+
+    /**
+     * Hands over the records added since the last chunk; call once more after the last record.
+     */
+    void emit() {
+        if (records == 0) {
+            return;
+        }
+        sink.accept(new RawChunk(sequence++, chunkOffset, ByteBuffer.wrap(data), length));
+        data = new byte[chunkBytes + 1024];
+        length = 0;
+        records = 0;
+    }
+}
@@ -0,0 +1,18 @@
+package it.hl.neo4j.importer;
+
+/**
+ * Why an input line was left out of the graph, as written to the {@link Quarantine} file.
+ */
+public enum RejectReason {
+    /** Too few fields for its record type, or a blank identifier. */
+    MALFORMED_RECORD,
+    /** The parser threw on the line. */
+    PARSE_ERROR,
+    /** A .fab record type other than 1-5. */
+    UNKNOWN_RECORD_TYPE,
+    /** A titolarità line that is neither for a terreno (T) nor a fabbricato (F). */
+    UNKNOWN_TIPO_IMMOBILE,
+    SOGGETTO_NOT_FOUND,
+    TERRENO_NOT_FOUND,
+    FABBRICATO_NOT_FOUND
+}
@@ -0,0 +1,37 @@
+package it.hl.neo4j.importer;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Outcome of one import stage. Batches are committed one by one, so {@code committedRows} is
+ * exactly what the stage left in the graph, even when it failed.
+ */
+@Data
+@Builder
+public class StageReport {
+
+    public enum Status {
+        COMPLETED, FAILED, SKIPPED
+    }
+
+    private String stage;
+    private String file;
+    /** Byte offset of {@code file} the stage resumed from, 0 if it started from the beginning. */
+    private long resumedFromOffset;
+    private Status status;
+    private long committedRows;
+    private long committedBatches;
+    /** Delta imports only: records skipped because the graph already had them as delivered. */
+    private long unchangedRows;
+    /** Delta imports only: records removed because the delivery no longer contains them. */
+    private long deletedRows;
+    /** Lines left out of the graph, by {@link RejectReason}; the lines are in the quarantine file. */
+    private Map<String, Long> rejected;
+    /** Input bytes read by this run of the stage. */
+    private long readBytes;
+    private long elapsedMillis;
+    private String error;
+}
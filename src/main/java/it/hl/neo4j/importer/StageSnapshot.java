@@ -0,0 +1,22 @@
+package it.hl.neo4j.importer;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Point-in-time view of one pipeline stage. Items are input bytes up to the parsers' input and
+ * entities (or relationship rows) from the parsers' output on.
+ */
+@Data
+@Builder
+public class StageSnapshot {
+    private String stage;
+    private int workers;
+    private long itemsIn;
+    private long itemsOut;
+    private double itemsPerSecond;
+    /** Fraction of the stage's worker time spent working rather than waiting on its queues. */
+    private double occupancy;
+    private int queueDepth;
+    private int queueCapacity;
+}
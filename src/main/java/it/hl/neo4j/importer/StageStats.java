@@ -0,0 +1,56 @@
+package it.hl.neo4j.importer;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one pipeline stage, updated concurrently by its workers.
+ */
+final class StageStats {
+
+    private final String stage;
+    private final int workers;
+    private final BlockingQueue<?> input;
+    private final int inputCapacity;
+    private final LongAdder itemsIn = new LongAdder();
+    private final LongAdder itemsOut = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+
+    StageStats(String stage, int workers, BlockingQueue<?> input, int inputCapacity) {
+        this.stage = stage;
+        this.workers = workers;
+        this.input = input;
+        this.inputCapacity = inputCapacity;
+    }
+
+    void received(long items) {
+        itemsIn.add(items);
+    }
+
+    void produced(long items) {
+        itemsOut.add(items);
+    }
+
+    void busySince(long startNanos) {
+        busyNanos.add(System.nanoTime() - startNanos);
+    }
+
+    long getItemsOut() {
+        return itemsOut.sum();
+    }
+
+    StageSnapshot snapshot(long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos / 1_000_000_000.0, 0.001);
+        long out = itemsOut.sum();
+        return StageSnapshot.builder()
+                .stage(stage)
+                .workers(workers)
+                .itemsIn(itemsIn.sum())
+                .itemsOut(out)
+                .itemsPerSecond(out / seconds)
+                .occupancy(Math.min(1.0, busyNanos.sum() / (double) Math.max(elapsedNanos * workers, 1)))
+                .queueDepth(input != null ? input.size() : 0)
+                .queueCapacity(input != null ? inputCapacity : 0)
+                .build();
+    }
+}
@@ -0,0 +1,101 @@
+package it.hl.neo4j.importer;
+
+import it.hl.neo4j.parser.GroupedRecordReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Cuts a compressed catasto input into chunks of roughly {@code chunkBytes}, decompressing it as a
+ * stream. Decompression happens on the pipeline's reader thread, so it overlaps with parsing.
+ * <p>
+ * Without a grouping reader the stream is read in chunk-sized blocks cut after the last complete
+ * line, and offsets are positions in the uncompressed stream. With one, records go through the
+ * grouping reader, which checks (and if needed sorts) the input by key before it is chunked; the
+ * input is then decompressed once more than a plain one.
+ */
+public final class StreamChunkSource implements ChunkSource {
+
+    private final CatastoSource source;
+    private final int chunkBytes;
+    private final GroupedRecordReader groupedReader;
+    private final int keyFields;
+    private final long startOffset;
+
+    private StreamChunkSource(CatastoSource source, int chunkBytes, GroupedRecordReader groupedReader, int keyFields,
+                              long startOffset) {
+        this.source = source;
+        this.chunkBytes = chunkBytes;
+        this.groupedReader = groupedReader;
+        this.keyFields = keyFields;
+        this.startOffset = startOffset;
+    }
+
+    public static StreamChunkSource of(CatastoSource source, int chunkBytes) {
+        return new StreamChunkSource(source, chunkBytes, null, 0, 0);
+    }
+
+    public static StreamChunkSource grouped(CatastoSource source, int chunkBytes, GroupedRecordReader groupedReader,
+                                            int keyFields) {
+        return new StreamChunkSource(source, chunkBytes, groupedReader, keyFields, 0);
+    }
+
+    @Override
+    public StreamChunkSource resumeFrom(long offset) {
+        return new StreamChunkSource(source, chunkBytes, groupedReader, keyFields, offset);
+    }
+
+    @Override
+    public void read(Consumer<RawChunk> sink) throws IOException {
+        if (groupedReader != null) {
+            RecordChunkBuilder builder = new RecordChunkBuilder(sink, chunkBytes, keyFields, startOffset);
+            groupedReader.forEach(source, source.toString(), builder::add);
+            builder.emit();
+            return;
+        }
+        readBlocks(sink);
+    }
+
+    private void readBlocks(Consumer<RawChunk> sink) throws IOException {
+        try (InputStream in = source.open()) {
+            in.skipNBytes(startOffset);
+            long sequence = 0;
+            long offset = startOffset;
+            byte[] data = new byte[chunkBytes];
+            int length = 0;
+            while (true) {
+                length += in.readNBytes(data, length, data.length - length);
+                if (length < data.length) {
+                    if (length > 0) {
+                        sink.accept(new RawChunk(sequence, offset, ByteBuffer.wrap(data), length));
+                    }
+                    return;
+                }
+                int cut = lastLineEnd(data, length);
+                if (cut == 0) {
+                    // No line ends in this block yet
+                    data = Arrays.copyOf(data, data.length * 2);
+                    continue;
+                }
+                byte[] next = new byte[Math.max(chunkBytes, length - cut + 1024)];
+                System.arraycopy(data, cut, next, 0, length - cut);
+                sink.accept(new RawChunk(sequence++, offset, ByteBuffer.wrap(data), cut));
+                offset += cut;
+                length -= cut;
+                data = next;
+            }
+        }
+    }
+
+    private static int lastLineEnd(byte[] data, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (data[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
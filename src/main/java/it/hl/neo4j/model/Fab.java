@@ -1,5 +1,6 @@
 package it.hl.neo4j.model;
 
+import it.hl.neo4j.parser.PipeRecord;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.neo4j.core.schema.Id;
@@ -7,6 +8,7 @@ import org.springframework.data.neo4j.core.schema.Node;
 import org.springframework.data.neo4j.core.schema.Property;
 import org.apache.logging.log4j.util.Strings;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -39,9 +41,9 @@ public class Fab {
     @Property
     private String superficie;
     @Property
-    private String renditaLire;
+    private Double renditaLire;
     @Property
-    private String renditaEuro;
+    private Double renditaEuro;
 
     // Ubicazione nel fabbricato
     @Property
@@ -65,9 +67,9 @@ public class Fab {
 
     // Atto generante
     @Property
-    private String dataEfficaciaGenerante;
+    private LocalDate dataEfficaciaGenerante;
     @Property
-    private String dataRegistrazioneGenerante;
+    private LocalDate dataRegistrazioneGenerante;
     @Property
     private String tipoNotaGenerante;
     @Property
@@ -79,9 +81,9 @@ public class Fab {
 
     // Atto conclusivo
     @Property
-    private String dataEfficaciaConclusiva;
+    private LocalDate dataEfficaciaConclusiva;
     @Property
-    private String dataRegistrazioneConclusiva;
+    private LocalDate dataRegistrazioneConclusiva;
     @Property
     private String tipoNotaConclusiva;
     @Property
@@ -103,7 +105,7 @@ public class Fab {
     @Property
     private String protocolloNotifica;
     @Property
-    private String dataNotifica;
+    private LocalDate dataNotifica;
     @Property
     private String codiceCausaleAttoGenerante;
     @Property
@@ -161,6 +163,10 @@ public class Fab {
     @Property
     private List<String> partiteIscrizioneRiserva = new ArrayList<>();
 
+    // All indirizzi as one string ("VIA ROMA 12; PIAZZA GARIBALDI 3"), for the full-text index
+    @Property
+    private String indirizziTesto;
+
     // Display property for Neo4j Browser
     @Property
     private String displayName;
@@ -169,67 +175,73 @@ public class Fab {
      * Parses a Type 1 record (main characteristics)
      */
     public static Fab parseType1(String input) {
-        String[] campi = input.split("\\|", -1);
-        if (campi.length < 20) return null;
+        return parseType1(PipeRecord.of(input));
+    }
+
+    /**
+     * Parses a Type 1 record (main characteristics)
+     */
+    public static Fab parseType1(PipeRecord campi) {
+        if (campi.fieldCount() < 20) return null;
 
         Fab fab = new Fab();
 
         // Common fields
-        fab.setCodiceAmministrativo(getField(campi, 0));
-        fab.setSezione(getField(campi, 1));
-        fab.setIdentificativoImmobile(getField(campi, 2));
-        fab.setTipoImmobile(getField(campi, 3));
-        fab.setProgressivo(getField(campi, 4));
+        fab.setCodiceAmministrativo(campi.trimmedField(0));
+        fab.setSezione(campi.trimmedField(1));
+        fab.setIdentificativoImmobile(campi.trimmedField(2));
+        fab.setTipoImmobile(campi.trimmedField(3));
+        fab.setProgressivo(campi.trimmedField(4));
         // Skip tipo record (position 5)
 
         // Classamento
-        fab.setZona(getField(campi, 6));
-        fab.setCategoria(getField(campi, 7));
-        fab.setClasse(getField(campi, 8));
-        fab.setConsistenza(getField(campi, 9));
-        fab.setSuperficie(getField(campi, 10));
-        fab.setRenditaLire(getField(campi, 11));
-        fab.setRenditaEuro(getField(campi, 12));
+        fab.setZona(campi.trimmedField(6));
+        fab.setCategoria(campi.trimmedField(7));
+        fab.setClasse(campi.trimmedField(8));
+        fab.setConsistenza(campi.trimmedField(9));
+        fab.setSuperficie(campi.trimmedField(10));
+        fab.setRenditaLire(campi.decimalField(11));
+        fab.setRenditaEuro(campi.decimalField(12));
 
         // Ubicazione
-        fab.setLotto(getField(campi, 13));
-        fab.setEdificio(getField(campi, 14));
-        fab.setScala(getField(campi, 15));
-        fab.setInterno1(getField(campi, 16));
-        fab.setInterno2(getField(campi, 17));
-        fab.setPiano1(getField(campi, 18));
-        fab.setPiano2(getField(campi, 19));
-        fab.setPiano3(getField(campi, 20));
-        fab.setPiano4(getField(campi, 21));
+        fab.setLotto(campi.trimmedField(13));
+        fab.setEdificio(campi.trimmedField(14));
+        fab.setScala(campi.trimmedField(15));
+        fab.setInterno1(campi.trimmedField(16));
+        fab.setInterno2(campi.trimmedField(17));
+        fab.setPiano1(campi.trimmedField(18));
+        fab.setPiano2(campi.trimmedField(19));
+        fab.setPiano3(campi.trimmedField(20));
+        fab.setPiano4(campi.trimmedField(21));
 
         // Atto generante
-        fab.setDataEfficaciaGenerante(getField(campi, 22));
-        fab.setDataRegistrazioneGenerante(getField(campi, 23));
-        fab.setTipoNotaGenerante(getField(campi, 24));
-        fab.setNumeroNotaGenerante(getField(campi, 25));
-        fab.setProgressivoNotaGenerante(getField(campi, 26));
-        fab.setAnnoNotaGenerante(getField(campi, 27));
+        fab.setDataEfficaciaGenerante(campi.dateField(22));
+        fab.setDataRegistrazioneGenerante(campi.dateField(23));
+        fab.setTipoNotaGenerante(campi.trimmedField(24));
+        fab.setNumeroNotaGenerante(campi.trimmedField(25));
+        fab.setProgressivoNotaGenerante(campi.trimmedField(26));
+        fab.setAnnoNotaGenerante(campi.trimmedField(27));
 
         // Atto conclusivo
-        fab.setDataEfficaciaConclusiva(getField(campi, 28));
-        fab.setDataRegistrazioneConclusiva(getField(campi, 29));
-        fab.setTipoNotaConclusiva(getField(campi, 30));
-        fab.setNumeroNotaConclusiva(getField(campi, 31));
-        fab.setProgressivoNotaConclusiva(getField(campi, 32));
-        fab.setAnnoNotaConclusiva(getField(campi, 33));
+        fab.setDataEfficaciaConclusiva(campi.dateField(28));
+        fab.setDataRegistrazioneConclusiva(campi.dateField(29));
+        fab.setTipoNotaConclusiva(campi.trimmedField(30));
+        fab.setNumeroNotaConclusiva(campi.trimmedField(31));
+        fab.setProgressivoNotaConclusiva(campi.trimmedField(32));
+        fab.setAnnoNotaConclusiva(campi.trimmedField(33));
 
         // Additional fields
-        fab.setPartita(getField(campi, 34));
-        fab.setAnnotazione(getField(campi, 35));
-        fab.setIdentificativoMutazioneIniziale(getField(campi, 36));
-        fab.setIdentificativoMutazioneFinale(getField(campi, 37));
-        fab.setProtocolloNotifica(getField(campi, 38));
-        fab.setDataNotifica(getField(campi, 39));
-        fab.setCodiceCausaleAttoGenerante(getField(campi, 40));
-        fab.setDescrizioneAttoGenerante(getField(campi, 41));
-        fab.setCodiceCausaleAttoConclusivo(getField(campi, 42));
-        fab.setDescrizioneAttoConclusivo(getField(campi, 43));
-        fab.setFlagClassamento(getField(campi, 44));
+        fab.setPartita(campi.trimmedField(34));
+        fab.setAnnotazione(campi.trimmedField(35));
+        fab.setIdentificativoMutazioneIniziale(campi.trimmedField(36));
+        fab.setIdentificativoMutazioneFinale(campi.trimmedField(37));
+        fab.setProtocolloNotifica(campi.trimmedField(38));
+        fab.setDataNotifica(campi.dateField(39));
+        fab.setCodiceCausaleAttoGenerante(campi.trimmedField(40));
+        fab.setDescrizioneAttoGenerante(campi.trimmedField(41));
+        fab.setCodiceCausaleAttoConclusivo(campi.trimmedField(42));
+        fab.setDescrizioneAttoConclusivo(campi.trimmedField(43));
+        fab.setFlagClassamento(campi.trimmedField(44));
 
         // Set display name
         fab.updateDisplayName();
@@ -241,18 +253,24 @@ public class Fab {
      * Adds identificativi from Type 2 record
      */
     public void addIdentificativi(String input) {
-        String[] campi = input.split("\\|", -1);
-        if (campi.length < 6) return;
+        addIdentificativi(PipeRecord.of(input));
+    }
+
+    /**
+     * Adds identificativi from Type 2 record
+     */
+    public void addIdentificativi(PipeRecord campi) {
+        if (campi.fieldCount() < 6) return;
 
         // Skip first 6 fields (common key), parse table of identificativi
         int pos = 6;
-        while (pos + 5 < campi.length) {
-            String sezioneUrbana = getField(campi, pos);
-            String foglio = getField(campi, pos + 1);
-            String numero = getField(campi, pos + 2);
-            String denominatore = getField(campi, pos + 3);
-            String subalterno = getField(campi, pos + 4);
-            String edif = getField(campi, pos + 5);
+        while (pos + 5 < campi.fieldCount()) {
+            String sezioneUrbana = campi.trimmedField(pos);
+            String foglio = campi.trimmedField(pos + 1);
+            String numero = campi.trimmedField(pos + 2);
+            String denominatore = campi.trimmedField(pos + 3);
+            String subalterno = campi.trimmedField(pos + 4);
+            String edif = campi.trimmedField(pos + 5);
 
             if (!Strings.isBlank(sezioneUrbana) || !Strings.isBlank(foglio) || !Strings.isBlank(numero)) {
                 this.sezioniUrbane.add(sezioneUrbana);
@@ -270,18 +288,24 @@ public class Fab {
      * Adds indirizzi from Type 3 record
      */
     public void addIndirizzi(String input) {
-        String[] campi = input.split("\\|", -1);
-        if (campi.length < 6) return;
+        addIndirizzi(PipeRecord.of(input));
+    }
+
+    /**
+     * Adds indirizzi from Type 3 record
+     */
+    public void addIndirizzi(PipeRecord campi) {
+        if (campi.fieldCount() < 6) return;
 
         // Skip first 6 fields (common key), parse table of indirizzi
         int pos = 6;
-        while (pos + 5 < campi.length) {
-            String toponimo = getField(campi, pos);
-            String indirizzo = getField(campi, pos + 1);
-            String civico1 = getField(campi, pos + 2);
-            String civico2 = getField(campi, pos + 3);
-            String civico3 = getField(campi, pos + 4);
-            String codiceStrada = getField(campi, pos + 5);
+        while (pos + 5 < campi.fieldCount()) {
+            String toponimo = campi.trimmedField(pos);
+            String indirizzo = campi.trimmedField(pos + 1);
+            String civico1 = campi.trimmedField(pos + 2);
+            String civico2 = campi.trimmedField(pos + 3);
+            String civico3 = campi.trimmedField(pos + 4);
+            String codiceStrada = campi.trimmedField(pos + 5);
 
             if (!Strings.isBlank(indirizzo)) {
                 this.toponimi.add(toponimo);
@@ -290,26 +314,45 @@ public class Fab {
                 this.civici2.add(civico2);
                 this.civici3.add(civico3);
                 this.codiciStrada.add(codiceStrada);
+                addIndirizzoTesto(toponimo, indirizzo, civico1);
             }
             pos += 6;
         }
     }
 
+    private void addIndirizzoTesto(String toponimo, String indirizzo, String civico) {
+        StringBuilder sb = new StringBuilder(indirizziTesto != null ? indirizziTesto + "; " : "");
+        if (!Strings.isBlank(toponimo)) {
+            sb.append(toponimo).append(' ');
+        }
+        sb.append(indirizzo);
+        if (!Strings.isBlank(civico)) {
+            sb.append(' ').append(civico);
+        }
+        this.indirizziTesto = sb.toString();
+    }
+
     /**
      * Adds utilità comuni from Type 4 record
      */
     public void addUtilitaComuni(String input) {
-        String[] campi = input.split("\\|", -1);
-        if (campi.length < 6) return;
+        addUtilitaComuni(PipeRecord.of(input));
+    }
+
+    /**
+     * Adds utilità comuni from Type 4 record
+     */
+    public void addUtilitaComuni(PipeRecord campi) {
+        if (campi.fieldCount() < 6) return;
 
         // Skip first 6 fields (common key), parse table of utilità comuni
         int pos = 6;
-        while (pos + 4 < campi.length) {
-            String sezioneUrbana = getField(campi, pos);
-            String foglio = getField(campi, pos + 1);
-            String numero = getField(campi, pos + 2);
-            String denominatore = getField(campi, pos + 3);
-            String subalterno = getField(campi, pos + 4);
+        while (pos + 4 < campi.fieldCount()) {
+            String sezioneUrbana = campi.trimmedField(pos);
+            String foglio = campi.trimmedField(pos + 1);
+            String numero = campi.trimmedField(pos + 2);
+            String denominatore = campi.trimmedField(pos + 3);
+            String subalterno = campi.trimmedField(pos + 4);
 
             if (!Strings.isBlank(foglio) || !Strings.isBlank(numero)) {
                 this.utilitaSezioniUrbane.add(sezioneUrbana);
@@ -326,14 +369,20 @@ public class Fab {
      * Adds riserve from Type 5 record
      */
     public void addRiserve(String input) {
-        String[] campi = input.split("\\|", -1);
-        if (campi.length < 6) return;
+        addRiserve(PipeRecord.of(input));
+    }
+
+    /**
+     * Adds riserve from Type 5 record
+     */
+    public void addRiserve(PipeRecord campi) {
+        if (campi.fieldCount() < 6) return;
 
         // Skip first 6 fields (common key), parse table of riserve
         int pos = 6;
-        while (pos + 1 < campi.length) {
-            String codiceRiserva = getField(campi, pos);
-            String partitaIscrizione = getField(campi, pos + 1);
+        while (pos + 1 < campi.fieldCount()) {
+            String codiceRiserva = campi.trimmedField(pos);
+            String partitaIscrizione = campi.trimmedField(pos + 1);
 
             if (!Strings.isBlank(codiceRiserva)) {
                 this.codiciRiserva.add(codiceRiserva);
@@ -343,6 +392,33 @@ public class Fab {
         }
     }
 
+    /**
+     * The particelle of the type 2 identificativi, one per position of the parallel lists.
+     */
+    public List<Particella> particelle() {
+        return particelle(sezioniUrbane, fogli, numeri, subalerni);
+    }
+
+    /**
+     * The particelle of the type 4 utilità comuni.
+     */
+    public List<Particella> particelleUtilitaComuni() {
+        return particelle(utilitaSezioniUrbane, utilitaFogli, utilitaNumeri, utilitaSubalerni);
+    }
+
+    private List<Particella> particelle(List<String> sezioni, List<String> fogli, List<String> numeri,
+                                        List<String> subalterni) {
+        List<Particella> particelle = new ArrayList<>(fogli.size());
+        for (int i = 0; i < fogli.size(); i++) {
+            Particella particella = Particella.of(codiceAmministrativo, sezioni.get(i), fogli.get(i),
+                    numeri.get(i), subalterni.get(i));
+            if (particella != null) {
+                particelle.add(particella);
+            }
+        }
+        return particelle;
+    }
+
     /**
      * Updates display name based on current data
      */
@@ -378,11 +454,4 @@ public class Fab {
     public String getCompositeKey() {
         return codiceAmministrativo + "|" + sezione + "|" + identificativoImmobile + "|" + tipoImmobile + "|" + progressivo;
     }
-
-    /**
-     * Safely gets field from array
-     */
-    private static String getField(String[] campi, int index) {
-        return index < campi.length ? campi[index].trim() : "";
-    }
 }
@@ -0,0 +1,67 @@
+package it.hl.neo4j.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.neo4j.core.schema.*;
+
+import java.util.Set;
+
+/**
+ * A particella of the catasto map, shared by the terreni and fabbricati that stand on it: the
+ * identificativo of a terreno, the type 2 identificativi and type 4 utilità comuni of a fabbricato.
+ */
+@Data
+@NoArgsConstructor
+@Node("Particella")
+public class Particella {
+
+    @Id
+    private String identificativoParticella;
+
+    @Property
+    private String codiceAmministrativo;
+    @Property
+    private String sezione;
+    @Property
+    private String foglio;
+    @Property
+    private String numero;
+    @Property
+    private String subalterno;
+
+    @Relationship(type = "IDENTIFICATO_DA", direction = Relationship.Direction.INCOMING)
+    private Set<Ter> terreni;
+
+    @Relationship(type = "IDENTIFICATO_DA", direction = Relationship.Direction.INCOMING)
+    private Set<Fab> fabbricati;
+
+    @Relationship(type = "UTILITA_COMUNE", direction = Relationship.Direction.INCOMING)
+    private Set<Fab> fabbricatiUtilitaComuni;
+
+    /**
+     * The particella with the given identificativo, values trimmed; null without foglio or numero.
+     */
+    public static Particella of(String codiceAmministrativo, String sezione, String foglio, String numero,
+                                String subalterno) {
+        if (isBlank(foglio) || isBlank(numero)) {
+            return null;
+        }
+        Particella particella = new Particella();
+        particella.setCodiceAmministrativo(trim(codiceAmministrativo));
+        particella.setSezione(trim(sezione));
+        particella.setFoglio(trim(foglio));
+        particella.setNumero(trim(numero));
+        particella.setSubalterno(trim(subalterno));
+        particella.setIdentificativoParticella(String.join("|", particella.codiceAmministrativo,
+                particella.sezione, particella.foglio, particella.numero, particella.subalterno));
+        return particella;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static String trim(String value) {
+        return value == null ? "" : value.trim();
+    }
+}
@@ -1,8 +1,10 @@
 package it.hl.neo4j.model;
 
+import it.hl.neo4j.parser.PipeRecord;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.neo4j.core.schema.*;
+import java.time.LocalDate;
 import java.util.Set;
 
 @Data
@@ -35,7 +37,7 @@ public class Sog {
     @Property
     private String sesso;
     @Property
-    private String dataNascita;
+    private LocalDate dataNascita;
     @Property
     private String luogoNascita;
     @Property
@@ -58,33 +60,36 @@ public class Sog {
     private Set<TitFab> titFabs;
 
     public static Sog parse(String input) {
-        String[] campi = input.split("\\|", -1);
-        if (campi.length < 5)
+        return parse(PipeRecord.of(input));
+    }
+
+    public static Sog parse(PipeRecord campi) {
+        if (campi.fieldCount() < 5)
             throw new IllegalArgumentException("Stringa input non valida.");
 
         Sog sog = new Sog();
-        sog.setCodiceAmministrativo(campi[0]);
-        sog.setSezione(campi[1]);
-        sog.setIdentificativoSoggetto(campi[2]);
-        sog.setTipoSoggetto(campi[3]);
+        sog.setCodiceAmministrativo(campi.field(0));
+        sog.setSezione(campi.field(1));
+        sog.setIdentificativoSoggetto(campi.field(2));
+        sog.setTipoSoggetto(campi.field(3));
 
         if ("P".equals(sog.getTipoSoggetto())) {
             // Persona fisica
-            sog.setCognome(campi.length > 4 ? campi[4] : null);
-            sog.setNomePersonaFisica(campi.length > 5 ? campi[5] : null);
-            sog.setSesso(campi.length > 6 ? campi[6] : null);
-            sog.setDataNascita(campi.length > 7 ? campi[7] : null);
-            sog.setLuogoNascita(campi.length > 8 ? campi[8] : null);
-            sog.setCodiceFiscale(campi.length > 9 ? campi[9] : null);
-            sog.setIndicazioniSupplementari(campi.length > 10 ? campi[10] : null);
+            sog.setCognome(campi.fieldCount() > 4 ? campi.field(4) : null);
+            sog.setNomePersonaFisica(campi.fieldCount() > 5 ? campi.field(5) : null);
+            sog.setSesso(campi.fieldCount() > 6 ? campi.field(6) : null);
+            sog.setDataNascita(campi.dateField(7));
+            sog.setLuogoNascita(campi.fieldCount() > 8 ? campi.field(8) : null);
+            sog.setCodiceFiscale(campi.fieldCount() > 9 ? campi.field(9) : null);
+            sog.setIndicazioniSupplementari(campi.fieldCount() > 10 ? campi.field(10) : null);
 
             sog.setNome((sog.getNomePersonaFisica() + " " + sog.getCognome()).trim());
             sog.setIdentificativoFiscale(sog.getCodiceFiscale() != null ? sog.getCodiceFiscale() : "");
         } else if ("G".equals(sog.getTipoSoggetto())) {
             // Persona giuridica
-            sog.setDenominazione(campi.length > 4 ? campi[4] : null);
-            sog.setSede(campi.length > 5 ? campi[5] : null);
-            sog.setPartitaIva(campi.length > 6 ? campi[6] : null);
+            sog.setDenominazione(campi.fieldCount() > 4 ? campi.field(4) : null);
+            sog.setSede(campi.fieldCount() > 5 ? campi.field(5) : null);
+            sog.setPartitaIva(campi.fieldCount() > 6 ? campi.field(6) : null);
 
             sog.setNome(sog.getDenominazione() != null ? sog.getDenominazione() : "");
             sog.setIdentificativoFiscale(sog.getPartitaIva() != null ? sog.getPartitaIva() : "");
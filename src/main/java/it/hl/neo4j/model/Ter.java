@@ -1,8 +1,8 @@
 package it.hl.neo4j.model;
 
+import it.hl.neo4j.parser.PipeRecord;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.apache.logging.log4j.util.Strings;
 import org.springframework.data.neo4j.core.schema.Id;
 import org.springframework.data.neo4j.core.schema.Node;
 import org.springframework.data.neo4j.core.schema.Property;
@@ -51,46 +51,49 @@ public class Ter {
     @Property
     private String flagDeduzioni;
     @Property
-    private String redditoDominicaleLire;
+    private Double redditoDominicaleLire;
     @Property
-    private String redditoAgrarioLire;
+    private Double redditoAgrarioLire;
     @Property
-    private String redditoDominicaleEuro;
+    private Double redditoDominicaleEuro;
     @Property
-    private String redditoAgrarioEuro;
+    private Double redditoAgrarioEuro;
 
     // Display property for Neo4j Browser
     @Property
     private String displayName;
 
     public static Ter parse(String input) {
-        String[] campi = input.split("\\|", -1);
-        if (campi.length < 23) return null;
+        return parse(PipeRecord.of(input));
+    }
+
+    public static Ter parse(PipeRecord campi) {
+        if (campi.fieldCount() < 23) return null;
 
         Ter ter = new Ter();
-        ter.setCodiceAmministrativo(campi[0]);
-        ter.setSezione(campi[1]);
-        ter.setIdentificativoImmobile(campi[2]);
-        ter.setTipoImmobile(campi[3]);
-        ter.setProgressivo(campi[4]);
-        ter.setTipoRecord(campi[5]);
-        ter.setFoglio(campi[6]);
-        ter.setNumero(campi[7]);
-        ter.setDenominatore(campi[8]);
-        ter.setSubalterno(campi[9]);
-        ter.setEdificabilita(campi[10]);
-        ter.setQualita(campi[11]);
-        ter.setClasse(campi[12]);
-        ter.setEttari(Integer.parseInt(Strings.isBlank(campi[13]) ? "0" : campi[13]));
-        ter.setAre(Integer.parseInt(Strings.isBlank(campi[13]) ? "0" : campi[14]));
-        ter.setCentiare(Integer.parseInt(Strings.isBlank(campi[13]) ? "0" : campi[15]));
-        ter.setFlagReddito(campi[16]);
-        ter.setFlagPorzione(campi[17]);
-        ter.setFlagDeduzioni(campi[18]);
-        ter.setRedditoDominicaleLire(campi[19]);
-        ter.setRedditoAgrarioLire(campi[20]);
-        ter.setRedditoDominicaleEuro(campi[21]);
-        ter.setRedditoAgrarioEuro(campi[22]);
+        ter.setCodiceAmministrativo(campi.field(0));
+        ter.setSezione(campi.field(1));
+        ter.setIdentificativoImmobile(campi.field(2));
+        ter.setTipoImmobile(campi.field(3));
+        ter.setProgressivo(campi.field(4));
+        ter.setTipoRecord(campi.field(5));
+        ter.setFoglio(campi.field(6));
+        ter.setNumero(campi.field(7));
+        ter.setDenominatore(campi.field(8));
+        ter.setSubalterno(campi.field(9));
+        ter.setEdificabilita(campi.field(10));
+        ter.setQualita(campi.field(11));
+        ter.setClasse(campi.field(12));
+        ter.setEttari(campi.intField(13));
+        ter.setAre(campi.intField(14));
+        ter.setCentiare(campi.intField(15));
+        ter.setFlagReddito(campi.field(16));
+        ter.setFlagPorzione(campi.field(17));
+        ter.setFlagDeduzioni(campi.field(18));
+        ter.setRedditoDominicaleLire(campi.decimalField(19));
+        ter.setRedditoAgrarioLire(campi.decimalField(20));
+        ter.setRedditoDominicaleEuro(campi.decimalField(21));
+        ter.setRedditoAgrarioEuro(campi.decimalField(22));
 
         // Set display name for better visualization
         String foglio = ter.getFoglio() != null ? ter.getFoglio() : "";
@@ -100,4 +103,11 @@ public class Ter {
 
         return ter;
     }
+
+    /**
+     * The particella this terreno is identified by, null without foglio or numero.
+     */
+    public Particella particella() {
+        return Particella.of(codiceAmministrativo, sezione, foglio, numero, subalterno);
+    }
 }
\ No newline at end of file
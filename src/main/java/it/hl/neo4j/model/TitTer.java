@@ -1,9 +1,11 @@
 package it.hl.neo4j.model;
 
+import it.hl.neo4j.parser.PipeRecord;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.neo4j.core.schema.*;
 
+import java.time.LocalDate;
 import java.util.Objects;
 
 @Data
@@ -28,15 +30,15 @@ public class TitTer {
     @Property
     private String titoloNonCodificato;
     @Property
-    private String quotaNumeratore;
+    private Long quotaNumeratore;
     @Property
-    private String quotaDenominatore;
+    private Long quotaDenominatore;
     @Property
     private String regime;
     @Property
     private String soggettoDiRiferimento;
     @Property
-    private String dataValidita;
+    private LocalDate dataValidita;
     @Property
     private String tipoNota;
     @Property
@@ -46,11 +48,11 @@ public class TitTer {
     @Property
     private String annoNota;
     @Property
-    private String dataRegistrazioneAtti;
+    private LocalDate dataRegistrazioneAtti;
     @Property
     private String partita;
     @Property
-    private String dataValidita2;
+    private LocalDate dataValidita2;
     @Property
     private String tipoNota2;
     @Property
@@ -60,7 +62,7 @@ public class TitTer {
     @Property
     private String annoNota2;
     @Property
-    private String dataRegistrazioneAtti2;
+    private LocalDate dataRegistrazioneAtti2;
     @Property
     private String identificativoMutazioneIniziale;
     @Property
@@ -79,47 +81,50 @@ public class TitTer {
     private String displayName;
 
     public static TitTer parse(String input) {
-        String[] fields = input.split("\\|", -1);
-        if (fields.length < 32)
-            throw new IllegalArgumentException("La stringa di input non contiene tutti i campi richiesti: " + fields.length);
+        return parse(PipeRecord.of(input));
+    }
+
+    public static TitTer parse(PipeRecord fields) {
+        if (fields.fieldCount() < 32)
+            throw new IllegalArgumentException("La stringa di input non contiene tutti i campi richiesti: " + fields.fieldCount());
 
         TitTer tit = new TitTer();
-        tit.setCodiceAmministrativo(fields[0]);
-        tit.setSezione(fields[1]);
-        // Skip identificativoSoggetto (fields[2]) - handled by relationship
-        tit.setTipoSoggetto(fields[3]);
-        // Skip identificativoImmobile (fields[4]) - handled by relationship
-        tit.setTipoImmobile(fields[5]);
-        tit.setCodiceDiritto(fields[6]);
-        tit.setTitoloNonCodificato(fields[7]);
-        tit.setQuotaNumeratore(fields[8]);
-        tit.setQuotaDenominatore(fields[9]);
-        tit.setRegime(fields[10]);
-        tit.setSoggettoDiRiferimento(fields[11]);
-        tit.setDataValidita(fields[12]);
-        tit.setTipoNota(fields[13]);
-        tit.setNumeroNota(fields[14]);
-        tit.setProgressivoNota(fields[15]);
-        tit.setAnnoNota(fields[16]);
-        tit.setDataRegistrazioneAtti(fields[17]);
-        tit.setPartita(fields[18]);
-        tit.setDataValidita2(fields[19]);
-        tit.setTipoNota2(fields[20]);
-        tit.setNumeroNota2(fields[21]);
-        tit.setProgressivoNota2(fields[22]);
-        tit.setAnnoNota2(fields[23]);
-        tit.setDataRegistrazioneAtti2(fields[24]);
-        tit.setIdentificativoMutazioneIniziale(fields[25]);
-        tit.setIdentificativoMutazioneFinale(fields[26]);
-        tit.setIdentificativoTitolarita(fields[27]);
-        tit.setCodiceCausaleAttoGenerante(fields[28]);
-        tit.setDescrizioneAttoGenerante(fields[29]);
-        tit.setCodiceCausaleAttoConclusivo(fields[30]);
-        tit.setDescrizioneAttoConclusivo(fields[31]);
+        tit.setCodiceAmministrativo(fields.field(0));
+        tit.setSezione(fields.field(1));
+        // Skip identificativoSoggetto (fields.field(2)) - handled by relationship
+        tit.setTipoSoggetto(fields.field(3));
+        // Skip identificativoImmobile (fields.field(4)) - handled by relationship
+        tit.setTipoImmobile(fields.field(5));
+        tit.setCodiceDiritto(fields.field(6));
+        tit.setTitoloNonCodificato(fields.field(7));
+        tit.setQuotaNumeratore(fields.longField(8));
+        tit.setQuotaDenominatore(fields.longField(9));
+        tit.setRegime(fields.field(10));
+        tit.setSoggettoDiRiferimento(fields.field(11));
+        tit.setDataValidita(fields.dateField(12));
+        tit.setTipoNota(fields.field(13));
+        tit.setNumeroNota(fields.field(14));
+        tit.setProgressivoNota(fields.field(15));
+        tit.setAnnoNota(fields.field(16));
+        tit.setDataRegistrazioneAtti(fields.dateField(17));
+        tit.setPartita(fields.field(18));
+        tit.setDataValidita2(fields.dateField(19));
+        tit.setTipoNota2(fields.field(20));
+        tit.setNumeroNota2(fields.field(21));
+        tit.setProgressivoNota2(fields.field(22));
+        tit.setAnnoNota2(fields.field(23));
+        tit.setDataRegistrazioneAtti2(fields.dateField(24));
+        tit.setIdentificativoMutazioneIniziale(fields.field(25));
+        tit.setIdentificativoMutazioneFinale(fields.field(26));
+        tit.setIdentificativoTitolarita(fields.field(27));
+        tit.setCodiceCausaleAttoGenerante(fields.field(28));
+        tit.setDescrizioneAttoGenerante(fields.field(29));
+        tit.setCodiceCausaleAttoConclusivo(fields.field(30));
+        tit.setDescrizioneAttoConclusivo(fields.field(31));
 
         // Set display name for better visualization
         if (tit.codiceDiritto != null) {
-            if (tit.quotaDenominatore.compareTo("0") != 0 && tit.quotaNumeratore.compareTo("0") != 0) {
+            if (isQuota(tit.quotaNumeratore) && isQuota(tit.quotaDenominatore)) {
                 tit.setDisplayName(Objects.requireNonNull(CodiciDiritto.fromCodice(tit.codiceDiritto)).getDescrizione() + " (" + tit.quotaNumeratore + "/" + tit.quotaDenominatore + ")");
             } else {
                 tit.setDisplayName(Objects.requireNonNull(CodiciDiritto.fromCodice(tit.codiceDiritto)).getDescrizione());
@@ -128,16 +133,26 @@ public class TitTer {
         return tit;
     }
 
+    private static boolean isQuota(Long quota) {
+        return quota != null && quota != 0;
+    }
+
     // Helper method to extract identificativoSoggetto from raw input
     public static String extractIdentificativoSoggetto(String input) {
-        String[] fields = input.split("\\|", -1);
-        return fields.length > 2 ? fields[2] : null;
+        return extractIdentificativoSoggetto(PipeRecord.of(input));
+    }
+
+    public static String extractIdentificativoSoggetto(PipeRecord fields) {
+        return fields.fieldCount() > 2 ? fields.field(2) : null;
     }
 
     // Helper method to extract identificativoImmobile from raw input
     public static String extractIdentificativoImmobile(String input) {
-        String[] fields = input.split("\\|", -1);
-        return fields.length > 4 ? fields[4] : null;
+        return extractIdentificativoImmobile(PipeRecord.of(input));
+    }
+
+    public static String extractIdentificativoImmobile(PipeRecord fields) {
+        return fields.fieldCount() > 4 ? fields.field(4) : null;
     }
 
     @TargetNode
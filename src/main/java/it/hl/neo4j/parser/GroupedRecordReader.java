@@ -0,0 +1,267 @@
+package it.hl.neo4j.parser;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Reads a file so that all records sharing the same key (the first {@code keyFields} fields) are
+ * delivered contiguously, preserving the original order of records within a key.
+ * <p>
+ * Deliveries are normally already grouped, which is checked with a quick pass over the mapped file
+ * that remembers only a 64-bit hash per key; the file is then streamed as is. Otherwise the records
+ * are sorted by key with an external merge sort: runs of at most {@code sortBufferBytes} are sorted
+ * in memory, spilled to temporary files and merged back.
+ */
+@Slf4j
+public final class GroupedRecordReader {
+
+    private static final int ENTRY_OVERHEAD = 48;
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+
+    private final int keyFields;
+    private final Path tempDirectory;
+    private final long sortBufferBytes;
+
+    public GroupedRecordReader(int keyFields, Path tempDirectory, long sortBufferBytes) {
+        this.keyFields = keyFields;
+        this.tempDirectory = tempDirectory;
+        this.sortBufferBytes = sortBufferBytes;
+    }
+
+    /**
+     * Calls {@code consumer} for every record of {@code file}, grouped by key.
+     *
+     * @return the number of records read
+     */
+    public long forEach(Path file, Consumer<PipeRecord> consumer) throws IOException {
+        return forEach(mapped(file), file.toString(), consumer);
+    }
+
+    /**
+     * Like {@link #forEach(Path, Consumer)} for records that are not in a plain file. The input is
+     * read twice (or three times when it has to be sorted).
+     */
+    public long forEach(Input input, String name, Consumer<PipeRecord> consumer) throws IOException {
+        if (isGrouped(input)) {
+            return input.forEachWhile(record -> {
+                consumer.accept(record);
+                return true;
+            });
+        }
+        log.info("Records in {} are not grouped by key, falling back to external sort", name);
+        return sortedForEach(input, name, consumer);
+    }
+
+    /**
+     * True if no key appears again after a record with a different key.
+     */
+    public boolean isGrouped(Path file) throws IOException {
+        return isGrouped(mapped(file));
+    }
+
+    public boolean isGrouped(Input input) throws IOException {
+        LongHashSet seenKeys = new LongHashSet();
+        byte[][] currentKey = new byte[1][];
+        boolean[] grouped = {true};
+
+        input.forEachWhile(record -> {
+            if (record.keyEquals(keyFields, currentKey[0])) {
+                return true;
+            }
+            currentKey[0] = record.keyBytes(keyFields);
+            if (!seenKeys.add(hash(currentKey[0]))) {
+                grouped[0] = false;
+            }
+            return grouped[0];
+        });
+        return grouped[0];
+    }
+
+    private static Input mapped(Path file) {
+        return visitor -> MappedRecordReader.forEachWhile(file, visitor);
+    }
+
+    private long sortedForEach(Input input, String name, Consumer<PipeRecord> consumer) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        List<SortEntry> buffer = new ArrayList<>();
+        long[] bufferedBytes = {0};
+
+        try {
+            long records = input.forEachWhile(record -> {
+                byte[] line = record.lineBytes();
+                buffer.add(new SortEntry(line, record.keyLength(keyFields)));
+                bufferedBytes[0] += line.length + ENTRY_OVERHEAD;
+                if (bufferedBytes[0] >= sortBufferBytes) {
+                    runs.add(writeRun(buffer));
+                    buffer.clear();
+                    bufferedBytes[0] = 0;
+                }
+                return true;
+            });
+
+            if (runs.isEmpty()) {
+                // Everything fit in the sort buffer, no need to touch the disk
+                buffer.sort(SortEntry.BY_KEY);
+                emit(buffer, consumer);
+                return records;
+            }
+            if (!buffer.isEmpty()) {
+                runs.add(writeRun(buffer));
+                buffer.clear();
+            }
+            log.info("Merging {} sorted runs of {}", runs.size(), name);
+            merge(runs, consumer);
+            return records;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    private Path writeRun(List<SortEntry> entries) {
+        // List.sort is stable, so records with the same key keep their file order
+        entries.sort(SortEntry.BY_KEY);
+        try {
+            Path run = Files.createTempFile(tempDirectory, "catasto-sort-", ".run");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(run), IO_BUFFER_SIZE))) {
+                for (SortEntry entry : entries) {
+                    out.writeInt(entry.keyLength());
+                    out.writeInt(entry.line().length);
+                    out.write(entry.line());
+                }
+            }
+            return run;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void merge(List<Path> runs, Consumer<PipeRecord> consumer) throws IOException {
+        // Ties are broken by run index: earlier runs hold earlier records of the file
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                Comparator.comparing(RunReader::current, SortEntry.BY_KEY)
+                        .thenComparingInt(RunReader::index));
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        PipeRecord record = new PipeRecord();
+
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), i);
+                readers.add(reader);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                byte[] line = reader.current().line();
+                consumer.accept(record.reset(ByteBuffer.wrap(line), 0, line.length));
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void emit(List<SortEntry> entries, Consumer<PipeRecord> consumer) {
+        PipeRecord record = new PipeRecord();
+        for (SortEntry entry : entries) {
+            consumer.accept(record.reset(ByteBuffer.wrap(entry.line()), 0, entry.line().length));
+        }
+    }
+
+    /**
+     * Records to group, e.g. {@link MappedRecordReader#forEachWhile(Path, Predicate)} bound to a file.
+     */
+    @FunctionalInterface
+    public interface Input {
+
+        /**
+         * Visits the records in order until {@code visitor} returns false; may be called more than once.
+         *
+         * @return the number of records visited
+         */
+        long forEachWhile(Predicate<PipeRecord> visitor) throws IOException;
+    }
+
+    private static long hash(byte[] key) {
+        // FNV-1a, 64 bit
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private record SortEntry(byte[] line, int keyLength) {
+
+        static final Comparator<SortEntry> BY_KEY = (a, b) ->
+                Arrays.compareUnsigned(a.line, 0, a.keyLength, b.line, 0, b.keyLength);
+    }
+
+    private static final class RunReader implements Closeable {
+
+        private final DataInputStream in;
+        private final int index;
+        private SortEntry current;
+
+        RunReader(Path run, int index) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), IO_BUFFER_SIZE));
+            this.index = index;
+        }
+
+        boolean advance() throws IOException {
+            int keyLength;
+            try {
+                keyLength = in.readInt();
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+            byte[] line = new byte[in.readInt()];
+            in.readFully(line);
+            current = new SortEntry(line, keyLength);
+            return true;
+        }
+
+        SortEntry current() {
+            return current;
+        }
+
+        int index() {
+            return index;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package it.hl.neo4j.parser;
+
+/**
+ * Minimal open-addressing set of {@code long} values (linear probing, no boxing).
+ */
+final class LongHashSet {
+
+    private static final long EMPTY = 0L;
+
+    private long[] slots = new long[1 << 12];
+    private int size;
+    private boolean containsEmpty;
+
+    /**
+     * @return true if the value was not already present
+     */
+    boolean add(long value) {
+        if (value == EMPTY) {
+            boolean added = !containsEmpty;
+            containsEmpty = true;
+            return added;
+        }
+        if ((size + 1) * 2 > slots.length) {
+            rehash();
+        }
+        if (insert(slots, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean insert(long[] table, long value) {
+        int mask = table.length - 1;
+        int slot = mix(value) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        return true;
+    }
+
+    private void rehash() {
+        long[] larger = new long[slots.length * 2];
+        for (long value : slots) {
+            if (value != EMPTY) {
+                insert(larger, value);
+            }
+        }
+        slots = larger;
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
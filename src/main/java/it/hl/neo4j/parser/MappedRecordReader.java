@@ -0,0 +1,122 @@
+package it.hl.neo4j.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Reads catasto files through {@link FileChannel#map} and hands each line to a callback as a
+ * {@link PipeRecord}, without decoding the line into a String first.
+ * <p>
+ * Files are mapped in segments (a single mapping is limited to 2 GB); every segment ends on a line
+ * boundary. Both {@code \n} and {@code \r\n} terminators are accepted and blank lines are skipped.
+ */
+public final class MappedRecordReader {
+
+    static final int SEGMENT_SIZE = 256 * 1024 * 1024;
+
+    private MappedRecordReader() {
+    }
+
+    /**
+     * Calls {@code consumer} for every record of {@code file}.
+     *
+     * @return the number of records read
+     */
+    public static long forEach(Path file, Consumer<PipeRecord> consumer) throws IOException {
+        return forEachWhile(file, record -> {
+            consumer.accept(record);
+            return true;
+        });
+    }
+
+    /**
+     * Calls {@code visitor} for every record of {@code file} until it returns false.
+     *
+     * @return the number of records visited
+     */
+    public static long forEachWhile(Path file, Predicate<PipeRecord> visitor) throws IOException {
+        PipeRecord record = new PipeRecord();
+        long records = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(SEGMENT_SIZE, size - position);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                int limit = length;
+                if (position + length < size) {
+                    limit = lastLineEnd(segment, length);
+                    if (limit == 0) {
+                        throw new IOException("Line longer than " + SEGMENT_SIZE + " bytes at offset " + position + " in " + file);
+                    }
+                }
+
+                long visited = forEachWhile(segment, 0, limit, record, visitor);
+                records += Math.abs(visited);
+                if (visited < 0) {
+                    break;
+                }
+                position += limit;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Calls {@code consumer} for every record in {@code [from, to)} of {@code buffer}.
+     *
+     * @return the number of records read
+     */
+    public static long forEach(ByteBuffer buffer, int from, int to, PipeRecord record, Consumer<PipeRecord> consumer) {
+        return forEachWhile(buffer, from, to, record, r -> {
+            consumer.accept(r);
+            return true;
+        });
+    }
+
+    /**
+     * Visits the records in {@code [from, to)} of {@code buffer} until {@code visitor} returns false.
+     *
+     * @return the number of records visited, negated if the visitor stopped early
+     */
+    static long forEachWhile(ByteBuffer buffer, int from, int to, PipeRecord record, Predicate<PipeRecord> visitor) {
+        long records = 0;
+        int lineStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || buffer.get(i) == '\n') {
+                int lineEnd = i;
+                if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd > lineStart) {
+                    records++;
+                    if (!visitor.test(record.reset(buffer, lineStart, lineEnd))) {
+                        return -records;
+                    }
+                }
+                lineStart = i + 1;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Offset just past the last {@code \n} in {@code [0, length)}, or 0 if there is none.
+     */
+    static int lastLineEnd(ByteBuffer buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
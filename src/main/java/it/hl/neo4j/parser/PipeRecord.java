@@ -0,0 +1,299 @@
+package it.hl.neo4j.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Field cursor over one pipe-delimited catasto record.
+ * <p>
+ * The record is a view on a region of a byte buffer (usually a memory-mapped file): field boundaries
+ * are found in a single pass when the cursor is positioned, and Strings are only materialized for
+ * the fields a parser actually asks for. Instances are reused from line to line by
+ * {@link MappedRecordReader}, so callers must not keep a reference after their callback returns.
+ */
+public final class PipeRecord {
+
+    private static final byte SEPARATOR = '|';
+
+    private ByteBuffer buffer;
+    private int end;
+    /** Start offset of each field; {@code starts[count]} is {@code end + 1}. */
+    private int[] starts = new int[64];
+    private int count;
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Wraps a single line, for callers that still hold records as Strings.
+     */
+    public static PipeRecord of(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return new PipeRecord().reset(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Positions the cursor on {@code [start, end)} of {@code buffer}, excluding the line terminator.
+     */
+    public PipeRecord reset(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.end = end;
+        int n = 0;
+        starts[n++] = start;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == SEPARATOR) {
+                if (n + 1 >= starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[n++] = i + 1;
+            }
+        }
+        starts[n] = end + 1;
+        this.count = n;
+        return this;
+    }
+
+    /**
+     * Number of fields, trailing empty fields included (same as {@code split("\\|", -1).length}).
+     */
+    public int fieldCount() {
+        return count;
+    }
+
+    /**
+     * Raw value of a field, or an empty String if the record has fewer fields.
+     */
+    public String field(int index) {
+        if (index >= count) {
+            return "";
+        }
+        return decode(starts[index], starts[index + 1] - 1);
+    }
+
+    /**
+     * Value of a field with leading and trailing whitespace removed, or an empty String if absent.
+     */
+    public String trimmedField(int index) {
+        if (index >= count) {
+            return "";
+        }
+        int from = starts[index];
+        int to = starts[index + 1] - 1;
+        while (from < to && isWhitespace(buffer.get(from))) {
+            from++;
+        }
+        while (to > from && isWhitespace(buffer.get(to - 1))) {
+            to--;
+        }
+        return decode(from, to);
+    }
+
+    public boolean isBlank(int index) {
+        if (index >= count) {
+            return true;
+        }
+        for (int i = starts[index], to = starts[index + 1] - 1; i < to; i++) {
+            if (!isWhitespace(buffer.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares a field with an ASCII value without materializing it.
+     */
+    public boolean fieldEquals(int index, String value) {
+        if (index >= count) {
+            return value.isEmpty();
+        }
+        int from = starts[index];
+        int length = starts[index + 1] - 1 - from;
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(from + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Integer value of a field, 0 when blank or absent.
+     */
+    public int intField(int index) {
+        return isBlank(index) ? 0 : Integer.parseInt(trimmedField(index));
+    }
+
+    /**
+     * Integer value of a field, null when blank, absent or not a number (e.g. a quota).
+     */
+    public Long longField(int index) {
+        if (isBlank(index)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(trimmedField(index));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decimal value of a field written with either a comma or a dot as decimal separator (e.g. a
+     * rendita), null when blank, absent or not a number.
+     */
+    public Double decimalField(int index) {
+        if (isBlank(index)) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(trimmedField(index).replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Date value of a field in the catasto format {@code ddMMyyyy}, null when blank, absent or not a
+     * valid date. Parsed from the bytes, without materializing the field.
+     */
+    public LocalDate dateField(int index) {
+        if (index >= count) {
+            return null;
+        }
+        int from = starts[index];
+        int to = starts[index + 1] - 1;
+        while (from < to && isWhitespace(buffer.get(from))) {
+            from++;
+        }
+        while (to > from && isWhitespace(buffer.get(to - 1))) {
+            to--;
+        }
+        if (to - from != 8) {
+            return null;
+        }
+        int day = digits(from, 2);
+        int month = digits(from + 2, 2);
+        int year = digits(from + 4, 4);
+        if (day < 0 || month < 0 || year < 0) {
+            return null;
+        }
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private int digits(int from, int length) {
+        int value = 0;
+        for (int i = from; i < from + length; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Fields {@code [from, to)} joined by their original separators, e.g. a composite key.
+     */
+    public String fields(int from, int to) {
+        int last = Math.min(to, count);
+        if (from >= last) {
+            return "";
+        }
+        return decode(starts[from], starts[last] - 1);
+    }
+
+    /**
+     * Length in bytes of the key made of the first {@code keyFields} fields and their separators.
+     */
+    public int keyLength(int keyFields) {
+        return starts[Math.min(keyFields, count)] - 1 - starts[0];
+    }
+
+    /**
+     * Copy of the key made of the first {@code keyFields} fields, as raw bytes.
+     */
+    public byte[] keyBytes(int keyFields) {
+        byte[] key = new byte[keyLength(keyFields)];
+        buffer.get(starts[0], key);
+        return key;
+    }
+
+    /**
+     * Compares the key made of the first {@code keyFields} fields with {@code key} without copying it.
+     */
+    public boolean keyEquals(int keyFields, byte[] key) {
+        if (key == null || keyLength(keyFields) != key.length) {
+            return false;
+        }
+        int from = starts[0];
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(from + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy of the whole record as raw bytes.
+     */
+    public byte[] lineBytes() {
+        byte[] line = new byte[end - starts[0]];
+        buffer.get(starts[0], line);
+        return line;
+    }
+
+    /**
+     * Length in bytes of the whole record, line terminator excluded.
+     */
+    public int length() {
+        return end - starts[0];
+    }
+
+    /**
+     * Copies the whole record into {@code target} at {@code offset}.
+     */
+    public void copyTo(byte[] target, int offset) {
+        buffer.get(starts[0], target, offset, end - starts[0]);
+    }
+
+    /**
+     * The whole record, for logging and error reporting.
+     */
+    public String line() {
+        return decode(starts[0], end);
+    }
+
+    /**
+     * ASCII control characters and space, like {@link String#trim()}; bytes of multi-byte
+     * UTF-8 sequences are negative and never count as whitespace.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    private String decode(int from, int to) {
+        int length = to - from;
+        if (length <= 0) {
+            return "";
+        }
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + from, length, StandardCharsets.UTF_8);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(from, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
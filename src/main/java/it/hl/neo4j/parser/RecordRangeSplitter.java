@@ -0,0 +1,122 @@
+package it.hl.neo4j.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Finds cut points that divide a catasto file into byte ranges of roughly a target size, so the
+ * ranges can be parsed independently and concurrently.
+ * <p>
+ * Every cut falls on a line boundary. With {@code keyFields > 0} a cut also falls between two
+ * records with different keys, so the records of a group (e.g. the lines of one fabbricato) never
+ * straddle two ranges. Only the few lines around each cut are read; the ranges themselves are left
+ * to the caller to map.
+ */
+public final class RecordRangeSplitter {
+
+    private static final int WINDOW_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int keyFields;
+    private final ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+    private long windowStart = -1;
+    private int windowLength;
+    private byte[] line = new byte[1024];
+    private final PipeRecord record = new PipeRecord();
+
+    public RecordRangeSplitter(FileChannel channel, int keyFields) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.keyFields = keyFields;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * End (exclusive) of the range starting at {@code start}: the first suitable cut at or after
+     * {@code start + targetBytes}, or the end of the file.
+     */
+    public long next(long start, long targetBytes) throws IOException {
+        long candidate = start + targetBytes;
+        if (candidate >= size) {
+            return size;
+        }
+        // The line containing the candidate offset ends the range...
+        long cut = lineEnd(candidate);
+        if (keyFields == 0 || cut >= size) {
+            return cut;
+        }
+        // ...unless the next lines continue its group: then the range ends with the group
+        byte[] key = keyAt(cut - 1);
+        while (cut < size) {
+            long end = lineEnd(cut);
+            if (!readLine(cut, end).keyEquals(keyFields, key)) {
+                break;
+            }
+            cut = end;
+        }
+        return cut;
+    }
+
+    /**
+     * Offset just past the {@code \n} ending the line that contains {@code position}.
+     */
+    private long lineEnd(long position) throws IOException {
+        for (long i = position; i < size; i++) {
+            if (byteAt(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Key of the line ending at {@code newline}, found by walking back to the previous terminator.
+     */
+    private byte[] keyAt(long newline) throws IOException {
+        long start = newline;
+        while (start > 0 && byteAt(start - 1) != '\n') {
+            start--;
+        }
+        return readLine(start, newline + 1).keyBytes(keyFields);
+    }
+
+    /**
+     * Positions the record cursor on {@code [start, end)}, without the line terminator.
+     */
+    private PipeRecord readLine(long start, long end) throws IOException {
+        int length = (int) (end - start);
+        if (length > line.length) {
+            line = Arrays.copyOf(line, Math.max(length, line.length * 2));
+        }
+        for (int i = 0; i < length; i++) {
+            line[i] = byteAt(start + i);
+        }
+        while (length > 0 && (line[length - 1] == '\n' || line[length - 1] == '\r')) {
+            length--;
+        }
+        return record.reset(ByteBuffer.wrap(line), 0, length);
+    }
+
+    private byte byteAt(long position) throws IOException {
+        if (position < windowStart || position >= windowStart + windowLength) {
+            // Keep some bytes before the position too, since the key lookup walks backwards
+            window.clear();
+            windowStart = Math.max(0, position - WINDOW_SIZE / 4);
+            windowLength = 0;
+            while (window.hasRemaining()) {
+                int read = channel.read(window, windowStart + windowLength);
+                if (read < 0) {
+                    break;
+                }
+                windowLength += read;
+            }
+        }
+        return window.get((int) (position - windowStart));
+    }
+}
@@ -0,0 +1,55 @@
+package it.hl.neo4j.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Reads catasto records from a stream that cannot be mapped, e.g. an entry of a compressed
+ * delivery, handing each line to a callback as a {@link PipeRecord} like {@link MappedRecordReader}.
+ * <p>
+ * The stream is read in large blocks; a line cut by the end of a block is moved to the front of
+ * the buffer and completed by the next read.
+ */
+public final class StreamRecordReader {
+
+    static final int BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private StreamRecordReader() {
+    }
+
+    /**
+     * Calls {@code visitor} for every record of {@code in} until it returns false. The stream is
+     * not closed.
+     *
+     * @return the number of records visited
+     */
+    public static long forEachWhile(InputStream in, Predicate<PipeRecord> visitor) throws IOException {
+        PipeRecord record = new PipeRecord();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length = 0;
+        long records = 0;
+
+        while (true) {
+            int read = in.readNBytes(buffer, length, buffer.length - length);
+            length += read;
+            boolean end = length < buffer.length;
+            int limit = end ? length : MappedRecordReader.lastLineEnd(ByteBuffer.wrap(buffer), length);
+            if (limit == 0 && !end) {
+                // A single line fills the buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                continue;
+            }
+
+            long visited = MappedRecordReader.forEachWhile(ByteBuffer.wrap(buffer), 0, limit, record, visitor);
+            records += Math.abs(visited);
+            if (visited < 0 || end) {
+                return records;
+            }
+            System.arraycopy(buffer, limit, buffer, 0, length - limit);
+            length -= limit;
+        }
+    }
+}
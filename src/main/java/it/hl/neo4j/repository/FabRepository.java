@@ -12,38 +12,60 @@ import java.util.Optional;
 @Repository
 public interface FabRepository extends Neo4jRepository<Fab, String> {
 
+    // Finders return one page: up to $limit fabbricati with an id after $after ("" for the first), by id
+
+    // Queries shared with ReactiveFabRepository
+
+    String FIND_BY_CATEGORIA = "MATCH (f:Fabbricato) WHERE f.categoria = $categoria "
+            + "AND f.identificativoImmobile > $after RETURN f ORDER BY f.identificativoImmobile LIMIT $limit";
+    String SEARCH_BY_INDIRIZZO = "CALL db.index.fulltext.queryNodes('fabbricato_indirizzi_fulltext', $query, "
+            + "{skip: $skip, limit: $limit}) YIELD node RETURN node";
+    String FIND_BY_RENDITA_EURO_RANGE = "MATCH (f:Fabbricato) WHERE f.renditaEuro >= $minRendita "
+            + "AND f.renditaEuro <= $maxRendita AND f.identificativoImmobile > $after "
+            + "RETURN f ORDER BY f.identificativoImmobile LIMIT $limit";
+
     /**
      * Find by categoria
      */
-    List<Fab> findByCategoria(String categoria);
+    @Query(FIND_BY_CATEGORIA)
+    List<Fab> findByCategoria(@Param("categoria") String categoria, @Param("after") String after,
+                              @Param("limit") int limit);
 
     /**
      * Find by zona
      */
-    List<Fab> findByZona(String zona);
+    @Query("MATCH (f:Fabbricato) WHERE f.zona = $zona AND f.identificativoImmobile > $after "
+            + "RETURN f ORDER BY f.identificativoImmobile LIMIT $limit")
+    List<Fab> findByZona(@Param("zona") String zona, @Param("after") String after, @Param("limit") int limit);
 
     /**
      * Find by codice amministrativo
      */
-    List<Fab> findByCodiceAmministrativo(String codiceAmministrativo);
+    @Query("MATCH (f:Fabbricato) WHERE f.codiceAmministrativo = $codice AND f.identificativoImmobile > $after "
+            + "RETURN f ORDER BY f.identificativoImmobile LIMIT $limit")
+    List<Fab> findByCodiceAmministrativo(@Param("codice") String codiceAmministrativo, @Param("after") String after,
+                                         @Param("limit") int limit);
 
     /**
-     * Find by foglio and numero (using the first entry in the lists)
+     * Find by the foglio and numero of one of the identificativi, through the particella index
      */
-    @Query("MATCH (f:Fabbricato) WHERE $foglio IN f.fogli AND $numero IN f.numeri RETURN f")
-    List<Fab> findByFoglioAndNumero(@Param("foglio") String foglio, @Param("numero") String numero);
+    @Query("MATCH (:Particella {codiceAmministrativo: $codiceAmministrativo, foglio: $foglio, numero: $numero})"
+            + "<-[:IDENTIFICATO_DA]-(f:Fabbricato) RETURN DISTINCT f")
+    List<Fab> findByFoglioAndNumero(@Param("codiceAmministrativo") String codiceAmministrativo,
+                                    @Param("foglio") String foglio, @Param("numero") String numero);
 
     /**
-     * Find by indirizzo (partial match)
+     * Full-text search on the indirizzi, best match first; {@code query} is Lucene syntax
      */
-    @Query("MATCH (f:Fabbricato) WHERE ANY(ind IN f.indirizzi WHERE ind CONTAINS $indirizzo) RETURN f")
-    List<Fab> findByIndirizzoContaining(@Param("indirizzo") String indirizzo);
+    @Query(SEARCH_BY_INDIRIZZO)
+    List<Fab> searchByIndirizzo(@Param("query") String query, @Param("skip") int skip, @Param("limit") int limit);
 
     /**
      * Find by rendita range (in Euro)
      */
-    @Query("MATCH (f:Fabbricato) WHERE toFloat(f.renditaEuro) >= $minRendita AND toFloat(f.renditaEuro) <= $maxRendita RETURN f")
-    List<Fab> findByRenditaEuroRange(@Param("minRendita") Double minRendita, @Param("maxRendita") Double maxRendita);
+    @Query(FIND_BY_RENDITA_EURO_RANGE)
+    List<Fab> findByRenditaEuroRange(@Param("minRendita") Double minRendita, @Param("maxRendita") Double maxRendita,
+                                     @Param("after") String after, @Param("limit") int limit);
 
     /**
      * Count by categoria
@@ -56,15 +78,17 @@ public interface FabRepository extends Neo4jRepository<Fab, String> {
      */
     @Query("MATCH (f:Fabbricato) WHERE f.categoria IS NOT NULL " +
             "RETURN f.categoria as categoria, count(f) as count, " +
-            "avg(toFloat(f.renditaEuro)) as avgRendita " +
+            "avg(f.renditaEuro) as avgRendita " +
             "ORDER BY count DESC")
     List<CategoriaStats> getStatisticsByCategoria();
 
     /**
-     * Find fabbricati with specific utilità comuni
+     * Find fabbricati with utilità comuni on a particella
      */
-    @Query("MATCH (f:Fabbricato) WHERE $foglio IN f.utilitaFogli AND $numero IN f.utilitaNumeri RETURN f")
-    List<Fab> findByUtilitaComuni(@Param("foglio") String foglio, @Param("numero") String numero);
+    @Query("MATCH (:Particella {codiceAmministrativo: $codiceAmministrativo, foglio: $foglio, numero: $numero})"
+            + "<-[:UTILITA_COMUNE]-(f:Fabbricato) RETURN DISTINCT f")
+    List<Fab> findByUtilitaComuni(@Param("codiceAmministrativo") String codiceAmministrativo,
+                                  @Param("foglio") String foglio, @Param("numero") String numero);
 
     /**
      * Interface for categoria statistics projection
@@ -0,0 +1,28 @@
+package it.hl.neo4j.repository;
+
+import it.hl.neo4j.model.Particella;
+import org.springframework.data.neo4j.repository.Neo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ParticellaRepository extends Neo4jRepository<Particella, String> {
+
+    // Query shared with ReactiveParticellaRepository
+
+    String FIND_BY_FOGLIO_AND_NUMERO = "MATCH (p:Particella {codiceAmministrativo: $codiceAmministrativo, "
+            + "foglio: $foglio, numero: $numero}) "
+            + "OPTIONAL MATCH (p)<-[r:IDENTIFICATO_DA|UTILITA_COMUNE]-(immobile) "
+            + "RETURN p, collect(r), collect(immobile)";
+
+    /**
+     * The particelle (every subalterno) on a foglio and numero with the terreni and fabbricati
+     * identified by them or sharing them as utilità comuni, from one seek of the composite index
+     */
+    @Query(FIND_BY_FOGLIO_AND_NUMERO)
+    List<Particella> findByFoglioAndNumero(@Param("codiceAmministrativo") String codiceAmministrativo,
+                                           @Param("foglio") String foglio, @Param("numero") String numero);
+}
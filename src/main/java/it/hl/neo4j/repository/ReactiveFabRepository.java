@@ -0,0 +1,26 @@
+package it.hl.neo4j.repository;
+
+import it.hl.neo4j.model.Fab;
+import org.springframework.data.neo4j.repository.ReactiveNeo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Non-blocking {@link FabRepository}, same queries.
+ */
+@Repository
+public interface ReactiveFabRepository extends ReactiveNeo4jRepository<Fab, String> {
+
+    @Query(FabRepository.FIND_BY_CATEGORIA)
+    Flux<Fab> findByCategoria(@Param("categoria") String categoria, @Param("after") String after,
+                              @Param("limit") int limit);
+
+    @Query(FabRepository.SEARCH_BY_INDIRIZZO)
+    Flux<Fab> searchByIndirizzo(@Param("query") String query, @Param("skip") int skip, @Param("limit") int limit);
+
+    @Query(FabRepository.FIND_BY_RENDITA_EURO_RANGE)
+    Flux<Fab> findByRenditaEuroRange(@Param("minRendita") Double minRendita, @Param("maxRendita") Double maxRendita,
+                                     @Param("after") String after, @Param("limit") int limit);
+}
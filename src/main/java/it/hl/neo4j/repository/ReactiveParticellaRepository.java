@@ -0,0 +1,19 @@
+package it.hl.neo4j.repository;
+
+import it.hl.neo4j.model.Particella;
+import org.springframework.data.neo4j.repository.ReactiveNeo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Non-blocking {@link ParticellaRepository}, same query.
+ */
+@Repository
+public interface ReactiveParticellaRepository extends ReactiveNeo4jRepository<Particella, String> {
+
+    @Query(ParticellaRepository.FIND_BY_FOGLIO_AND_NUMERO)
+    Flux<Particella> findByFoglioAndNumero(@Param("codiceAmministrativo") String codiceAmministrativo,
+                                           @Param("foglio") String foglio, @Param("numero") String numero);
+}
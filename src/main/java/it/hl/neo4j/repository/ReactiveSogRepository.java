@@ -0,0 +1,27 @@
+package it.hl.neo4j.repository;
+
+import it.hl.neo4j.model.Sog;
+import org.springframework.data.neo4j.repository.ReactiveNeo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking {@link SogRepository}, same queries; results are pulled from the server as the
+ * subscriber asks for them.
+ */
+@Repository
+public interface ReactiveSogRepository extends ReactiveNeo4jRepository<Sog, String> {
+
+    @Query(SogRepository.FIND_BY_CODICE_FISCALE)
+    Mono<Sog> findByCodiceFiscale(@Param("cf") String codiceFiscale);
+
+    @Query(SogRepository.FIND_BY_TIPO_SOGGETTO)
+    Flux<Sog> findByTipoSoggetto(@Param("tipo") String tipoSoggetto, @Param("after") String after,
+                                 @Param("limit") int limit);
+
+    @Query(SogRepository.SEARCH_BY_NOME)
+    Flux<Sog> searchByNome(@Param("query") String query, @Param("skip") int skip, @Param("limit") int limit);
+}
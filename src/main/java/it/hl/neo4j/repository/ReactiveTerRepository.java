@@ -0,0 +1,21 @@
+package it.hl.neo4j.repository;
+
+import it.hl.neo4j.model.Ter;
+import org.springframework.data.neo4j.repository.ReactiveNeo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Non-blocking {@link TerRepository}, same queries.
+ */
+@Repository
+public interface ReactiveTerRepository extends ReactiveNeo4jRepository<Ter, String> {
+
+    @Query(TerRepository.FIND_BY_FOGLIO)
+    Flux<Ter> findByFoglio(@Param("foglio") String foglio, @Param("after") String after, @Param("limit") int limit);
+
+    @Query(TerRepository.FIND_BY_QUALITA)
+    Flux<Ter> findByQualita(@Param("qualita") String qualita, @Param("after") String after, @Param("limit") int limit);
+}
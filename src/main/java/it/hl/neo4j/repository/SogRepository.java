@@ -11,7 +11,15 @@ import java.util.Optional;
 @Repository
 public interface SogRepository extends Neo4jRepository<Sog, String> {
 
-    @Query("MATCH (s:Soggetto) WHERE s.codiceFiscale = $cf RETURN s")
+    // Queries shared with ReactiveSogRepository
+
+    String FIND_BY_CODICE_FISCALE = "MATCH (s:Soggetto) WHERE s.codiceFiscale = $cf RETURN s";
+    String FIND_BY_TIPO_SOGGETTO = "MATCH (s:Soggetto) WHERE s.tipoSoggetto = $tipo "
+            + "AND s.identificativoSoggetto > $after RETURN s ORDER BY s.identificativoSoggetto LIMIT $limit";
+    String SEARCH_BY_NOME = "CALL db.index.fulltext.queryNodes('soggetto_nome_fulltext', $query, "
+            + "{skip: $skip, limit: $limit}) YIELD node RETURN node";
+
+    @Query(FIND_BY_CODICE_FISCALE)
     Optional<Sog> findByCodiceFiscale(@Param("cf") String codiceFiscale);
 
     @Query("MATCH (s:Soggetto) WHERE s.partitaIva = $piva RETURN s")
@@ -20,11 +28,20 @@ public interface SogRepository extends Neo4jRepository<Sog, String> {
     @Query("MATCH (s:Soggetto) WHERE s.identificativoFiscale = $id RETURN s")
     Optional<Sog> findByIdentificativoFiscale(@Param("id") String identificativoFiscale);
 
-    @Query("MATCH (s:Soggetto) WHERE s.tipoSoggetto = $tipo RETURN s")
-    List<Sog> findByTipoSoggetto(@Param("tipo") String tipoSoggetto);
-
-    @Query("MATCH (s:Soggetto) WHERE s.nome CONTAINS $nome RETURN s")
-    List<Sog> findByNomeContaining(@Param("nome") String nome);
+    /**
+     * Up to {@code limit} soggetti with an id after {@code after} ("" for the first page), by id
+     */
+    @Query(FIND_BY_TIPO_SOGGETTO)
+    List<Sog> findByTipoSoggetto(@Param("tipo") String tipoSoggetto, @Param("after") String after,
+                                 @Param("limit") int limit);
+
+    /**
+     * Full-text search on nome, cognome and denominazione, best match first; {@code query} is Lucene
+     * syntax, see {@code CatastoQueryService#fulltextQuery}. Relevance has no stable key, so pages
+     * are skipped by the index itself.
+     */
+    @Query(SEARCH_BY_NOME)
+    List<Sog> searchByNome(@Param("query") String query, @Param("skip") int skip, @Param("limit") int limit);
 
     @Query("MATCH (s:Soggetto)-[r:OWNS]->(t:Terreno) WHERE s.codiceFiscale = $cf RETURN s, collect(r), collect(t)")
     Optional<Sog> findByCodiceFiscaleWithOwnerships(@Param("cf") String codiceFiscale);
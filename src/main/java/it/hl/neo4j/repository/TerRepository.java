@@ -10,12 +10,23 @@ import java.util.List;
 @Repository
 public interface TerRepository extends Neo4jRepository<Ter, String> {
 
-    @Query("MATCH (t:Terreno) WHERE t.foglio = $foglio RETURN t")
-    List<Ter> findByFoglio(@Param("foglio") String foglio);
+    // Finders return one page: up to $limit terreni with an id after $after ("" for the first), by id
 
-    @Query("MATCH (t:Terreno) WHERE t.qualita = $qualita RETURN t")
-    List<Ter> findByQualita(@Param("qualita") String qualita);
+    // Queries shared with ReactiveTerRepository
 
-    @Query("MATCH (t:Terreno) WHERE t.codiceAmministrativo = $codice RETURN t")
-    List<Ter> findByCodiceAmministrativo(@Param("codice") String codice);
+    String FIND_BY_FOGLIO = "MATCH (t:Terreno) WHERE t.foglio = $foglio AND t.identificativoImmobile > $after "
+            + "RETURN t ORDER BY t.identificativoImmobile LIMIT $limit";
+    String FIND_BY_QUALITA = "MATCH (t:Terreno) WHERE t.qualita = $qualita AND t.identificativoImmobile > $after "
+            + "RETURN t ORDER BY t.identificativoImmobile LIMIT $limit";
+
+    @Query(FIND_BY_FOGLIO)
+    List<Ter> findByFoglio(@Param("foglio") String foglio, @Param("after") String after, @Param("limit") int limit);
+
+    @Query(FIND_BY_QUALITA)
+    List<Ter> findByQualita(@Param("qualita") String qualita, @Param("after") String after, @Param("limit") int limit);
+
+    @Query("MATCH (t:Terreno) WHERE t.codiceAmministrativo = $codice AND t.identificativoImmobile > $after "
+            + "RETURN t ORDER BY t.identificativoImmobile LIMIT $limit")
+    List<Ter> findByCodiceAmministrativo(@Param("codice") String codice, @Param("after") String after,
+                                         @Param("limit") int limit);
 }
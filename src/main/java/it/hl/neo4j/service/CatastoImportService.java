@@ -1,20 +1,71 @@
 package it.hl.neo4j.service;
 
+import it.hl.neo4j.importer.AdminImportExport;
+import it.hl.neo4j.importer.BatchBuffer;
+import it.hl.neo4j.importer.BatchWriter;
+import it.hl.neo4j.importer.CatastoBulkWriter;
+import it.hl.neo4j.importer.CatastoFileset;
+import it.hl.neo4j.importer.CatastoSource;
+import it.hl.neo4j.importer.CatastoRows;
+import it.hl.neo4j.importer.ChunkParser;
+import it.hl.neo4j.importer.ChunkSource;
+import it.hl.neo4j.importer.ContentIndex;
+import it.hl.neo4j.importer.DeliveryReport;
+import it.hl.neo4j.importer.FabAssembler;
+import it.hl.neo4j.importer.FileChunkSource;
+import it.hl.neo4j.importer.ImportCheckpoint;
+import it.hl.neo4j.importer.ImportCheckpointStore;
+import it.hl.neo4j.importer.IdIndex;
+import it.hl.neo4j.importer.ImportMetrics;
+import it.hl.neo4j.importer.ImportMode;
+import it.hl.neo4j.importer.ImportOptions;
+import it.hl.neo4j.importer.ImportPipeline;
+import it.hl.neo4j.importer.ImportFailedException;
+import it.hl.neo4j.importer.ImportPipelineException;
+import it.hl.neo4j.importer.ImportPipelineRegistry;
+import it.hl.neo4j.importer.ImportReport;
+import it.hl.neo4j.importer.PipelineSettings;
+import it.hl.neo4j.importer.Quarantine;
+import it.hl.neo4j.importer.RejectReason;
+import it.hl.neo4j.importer.StageReport;
+import it.hl.neo4j.importer.StageSnapshot;
+import it.hl.neo4j.importer.StreamChunkSource;
 import it.hl.neo4j.model.*;
+import it.hl.neo4j.parser.GroupedRecordReader;
+import it.hl.neo4j.parser.PipeRecord;
 import it.hl.neo4j.repository.FabRepository;
 import it.hl.neo4j.repository.SogRepository;
 import it.hl.neo4j.repository.TerRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.neo4j.core.Neo4jClient;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -24,300 +75,983 @@ public class CatastoImportService {
     private final TerRepository terRepository;
     private final SogRepository sogRepository;
     private final FabRepository fabRepository;
+    private final CatastoBulkWriter bulkWriter;
+    private final Neo4jClient neo4jClient;
+    private final PlatformTransactionManager transactionManager;
+    private final ImportPipelineRegistry pipelineRegistry;
+    private final ImportCheckpointStore checkpointStore;
+    private final ImportMetrics importMetrics;
+    private final SchemaManager schemaManager;
 
-    @Transactional
-    public void importCatastoData(String dataDirectory) {
-        log.info("Starting import from directory: {}", dataDirectory);
+    @Value("${catasto.import.mode:bulk}")
+    private ImportMode defaultMode;
 
+    @Value("${catasto.import.terreni.batch-size:${catasto.import.batch-size:5000}}")
+    private int terreniBatchSize;
+
+    @Value("${catasto.import.fabbricati.batch-size:${catasto.import.batch-size:5000}}")
+    private int fabbricatiBatchSize;
+
+    @Value("${catasto.import.soggetti.batch-size:${catasto.import.batch-size:5000}}")
+    private int soggettiBatchSize;
+
+    @Value("${catasto.import.titolarita.batch-size:${catasto.import.batch-size:5000}}")
+    private int titolaritaBatchSize;
+
+    @Value("${catasto.import.sort-directory:${java.io.tmpdir}}")
+    private String sortDirectory;
+
+    @Value("${catasto.import.sort-buffer-mb:256}")
+    private int sortBufferMb;
+
+    @Value("${catasto.import.parser-threads:0}")
+    private int parserThreads;
+
+    @Value("${catasto.import.writer-threads:4}")
+    private int writerThreads;
+
+    @Value("${catasto.import.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${catasto.import.chunk-size-kb:1024}")
+    private int chunkSizeKb;
+
+    @Value("${catasto.import.comune-workers:2}")
+    private int comuneWorkers;
+
+    @Value("${catasto.import.quarantine-directory:quarantine}")
+    private String quarantineDirectory;
+
+    @Value("${catasto.import.quarantine-log-every:10000}")
+    private int quarantineLogEvery;
+
+    /**
+     * {@code writer-threads} write transactions for all the pipelines of all imports together:
+     * comuni, stages and jobs running side by side share them instead of multiplying them.
+     */
+    private Semaphore writePermits;
+
+    @PostConstruct
+    void createWritePermits() {
+        writePermits = new Semaphore(writerThreads, true);
+    }
+
+    public ImportReport importCatastoData(String dataDirectory) {
+        return importCatastoData(dataDirectory, ImportOptions.builder().build());
+    }
+
+    /**
+     * Imports a delivery without an enclosing transaction: every stage commits its batches as it
+     * goes, so a failure leaves the batches committed so far in place and the report says which.
+     * Progress is checkpointed after every batch; with {@link ImportOptions#isResume()} an import of
+     * the same input files continues from there. With {@link ImportOptions#getExportDirectory()} the
+     * rows go to CSV files for {@code neo4j-admin database import} instead.
+     *
+     * @throws ImportFailedException if any stage failed, carrying the report
+     */
+    public ImportReport importCatastoData(String dataDirectory, ImportOptions options) {
+        ImportMode importMode = importMode(options);
+        migrateSchema(options);
+        log.info("Starting {} import from directory: {}", importMode, dataDirectory);
+        ImportPipelineRegistry pipelines = pipelines(options);
+        pipelines.clear();
+        CatastoFileset fileset;
         try {
-            // Import terreni first
-            importTerreni(dataDirectory);
+            fileset = CatastoFileset.inDirectory(dataDirectory);
+        } catch (IOException e) {
+            throw failed(new ImportReport(dataDirectory, importMode), e);
+        }
+        try (AdminImportExport export = export(options)) {
+            return importFileset(fileset, importMode, options, pipelines, "", export);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot export to " + options.getExportDirectory(), e);
+        }
+    }
 
-            // Import fabbricati
-            importFabbricati(dataDirectory);
+    /**
+     * Imports every comune fileset found under {@code root} (see {@link CatastoFileset#discover}),
+     * {@code catasto.import.comune-workers} at a time. The largest comuni start first, so the small
+     * ones fill the gaps at the end instead of one big comune running alone. A failed comune does not
+     * stop the others; the report says which failed.
+     */
+    public DeliveryReport importDeliveryTree(String root, ImportOptions options) throws IOException {
+        ImportMode importMode = importMode(options);
+        migrateSchema(options);
+        ImportPipelineRegistry pipelines = pipelines(options);
+        pipelines.clear();
+        List<CatastoFileset> filesets = CatastoFileset.discover(root);
+        int workers = Math.max(1, Math.min(comuneWorkers, filesets.size()));
+        log.info("Starting {} import of {} comuni under {} with {} workers", importMode, filesets.size(), root, workers);
+        DeliveryReport delivery = new DeliveryReport(root, importMode, workers);
 
-            // Import soggetti
-            importSoggetti(dataDirectory);
+        // The pool queue is FIFO, so comuni start in the order of the (largest first) list
+        ExecutorService comuni = Executors.newFixedThreadPool(workers);
+        try (AdminImportExport export = export(options)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (CatastoFileset fileset : filesets) {
+                futures.add(comuni.submit(() -> delivery.add(importComune(fileset, importMode, options, pipelines, export))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pipelines.cancel();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Import of a comune failed unexpectedly", e.getCause());
+        } finally {
+            comuni.shutdownNow();
+        }
+        delivery.finish();
+        log.info(delivery.summary());
+        return delivery;
+    }
 
-            // Import relationships (titolarità)
-            importTitolarita(dataDirectory);
+    private ImportReport importComune(CatastoFileset fileset, ImportMode importMode, ImportOptions options,
+                                      ImportPipelineRegistry pipelines, AdminImportExport export) {
+        if (pipelines.isCancelled()) {
+            // Not even started: leave its checkpoint alone so a later run can still resume it
+            ImportReport report = new ImportReport(fileset.name(), importMode);
+            report.add(skipped("comune", "Not run: import cancelled"));
+            report.finish();
+            return report;
+        }
+        try {
+            return importFileset(fileset, importMode, options, pipelines, fileset.name() + "/", export);
+        } catch (ImportFailedException e) {
+            return e.getReport();
+        }
+    }
 
-            log.info("Import completed successfully");
+    private ImportMode importMode(ImportOptions options) {
+        ImportMode importMode = options.getMode() != null ? options.getMode() : defaultMode;
+        if (options.isDelta() && importMode != ImportMode.BULK) {
+            throw new IllegalArgumentException("Delta import requires bulk mode: content hashes are only written by the bulk writer");
+        }
+        if (options.isDryRun() && (options.isDelta() || options.isResume())) {
+            throw new IllegalArgumentException("A dry run reads the whole delivery and never reads the graph: it cannot resume or be a delta");
+        }
+        if (options.getExportDirectory() != null && (options.isDryRun() || options.isDelta() || options.isResume())) {
+            throw new IllegalArgumentException("An export writes whole CSV files for an empty database: it cannot resume, be a delta or a dry run");
+        }
+        return importMode;
+    }
 
-        } catch (Exception e) {
-            log.error("Error during import", e);
-            throw new RuntimeException("Import failed", e);
+    /**
+     * Makes sure the constraints the MERGEs rely on exist before writing; offline runs never touch the graph.
+     */
+    private void migrateSchema(ImportOptions options) {
+        if (!options.isDryRun() && options.getExportDirectory() == null) {
+            schemaManager.migrate();
         }
     }
 
-    private void importTerreni(String dataDirectory) throws IOException {
-        Path terFile = findFileWithExtension(dataDirectory, ".ter");
-        if (terFile == null) {
-            log.warn("No .ter file found in directory: {}", dataDirectory);
+    private static AdminImportExport export(ImportOptions options) throws IOException {
+        return options.getExportDirectory() != null ? new AdminImportExport(Path.of(options.getExportDirectory())) : null;
+    }
+
+    private ImportPipelineRegistry pipelines(ImportOptions options) {
+        return options.getPipelines() != null ? options.getPipelines() : pipelineRegistry;
+    }
+
+    /**
+     * Imports the files of one comune. {@code pipelinePrefix} tells its pipelines apart from those of
+     * other comuni importing at the same time.
+     */
+    private ImportReport importFileset(CatastoFileset fileset, ImportMode importMode, ImportOptions options,
+                                       ImportPipelineRegistry pipelines, String pipelinePrefix, AdminImportExport export) {
+        ImportReport report = new ImportReport(fileset.name(), importMode);
+        report.setDryRun(options.isDryRun());
+        if (export != null) {
+            report.setExportDirectory(export.getDirectory().toString());
+        }
+        boolean offline = options.isDryRun() || export != null;
+        Quarantine quarantine = new Quarantine(quarantineFile(fileset), quarantineLogEvery)
+                .onReject(importMetrics::rejected);
+        try {
+            ImportRun run;
+            try {
+                // Offline runs leave the checkpoints of real imports alone
+                ImportCheckpoint checkpoint = offline
+                        ? new ImportCheckpoint(fileset.name(), null)
+                        : checkpoint(fileset, options.isResume());
+                run = new ImportRun(fileset, importMode, report, checkpoint,
+                        options.isDelta(), offline ? Set.of() : deliveredComuni(fileset), pipelines,
+                        pipelinePrefix, quarantine, offline ? new OfflineIds() : null, export, new ArrayList<>());
+            } catch (IOException e) {
+                throw failed(report, e);
+            }
+            return importStages(run);
+        } finally {
+            closeQuarantine(quarantine, report);
+            closeExportPart(export, fileset, report);
+        }
+    }
+
+    private ImportReport importStages(ImportRun run) {
+        ImportReport report = run.report();
+
+        // Terreni, fabbricati and soggetti are independent of each other and load concurrently
+        ExecutorService stages = Executors.newFixedThreadPool(3);
+        try {
+            CompletableFuture.allOf(
+                    CompletableFuture.runAsync(() -> runStage("terreni", run, () -> importTerreni(run)), stages),
+                    CompletableFuture.runAsync(() -> runStage("fabbricati", run, () -> importFabbricati(run)), stages),
+                    CompletableFuture.runAsync(() -> runStage("soggetti", run, () -> importSoggetti(run)), stages)
+            ).join();
+        } catch (CompletionException e) {
+            report.add(skipped("titolarita", "Not run: an earlier stage failed"));
+            throw failed(report, unwrap(e.getCause()));
+        } finally {
+            stages.shutdownNow();
+        }
+
+        try {
+            // Import relationships (titolarità) once both ends are in the graph
+            runStage("titolarita", run, () -> importTitolarita(run));
+            removeUnseenSoggetti(run);
+
+            report.finish();
+            log.info(report.summary());
+            return report;
+
+        } catch (RuntimeException e) {
+            throw failed(report, unwrap(e));
+        }
+    }
+
+    private Path quarantineFile(CatastoFileset fileset) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        return Paths.get(quarantineDirectory, timestamp + "-" + fileName(fileset) + ".tsv");
+    }
+
+    /**
+     * The fileset name as a file name, e.g. {@code data_A123} for {@code /data/A123}.
+     */
+    private static String fileName(CatastoFileset fileset) {
+        return fileset.name().replaceAll("[^A-Za-z0-9._-]+", "_").replaceAll("^_+", "");
+    }
+
+    private static void closeExportPart(AdminImportExport export, CatastoFileset fileset, ImportReport report) {
+        if (export == null) {
             return;
         }
+        try {
+            export.closePart(fileName(fileset));
+        } catch (IOException e) {
+            log.error("Cannot close the export files of {}", report.getDataDirectory(), e);
+        }
+    }
 
-        log.info("Importing terreni from: {}", terFile);
+    private void closeQuarantine(Quarantine quarantine, ImportReport report) {
+        try {
+            quarantine.close();
+        } catch (IOException e) {
+            log.error("Cannot close quarantine file", e);
+        }
+        if (quarantine.getFile() != null) {
+            report.setQuarantineFile(quarantine.getFile().toString());
+            log.info("Rejected lines of {} written to {}", report.getDataDirectory(), quarantine.getFile());
+        }
+    }
 
-        try (Stream<String> lines = Files.lines(terFile)) {
-            List<Ter> terreni = lines
-                    .map(Ter::parse)
-                    .filter(Objects::nonNull)
-                    .filter(ter -> "1".equals(ter.getTipoRecord())) // Only type 1 records
-                    .toList();
+    /**
+     * Comuni (codice amministrativo, first field of every record) of the delivery. A delivery
+     * covers whole comuni, so the first record of each file is enough.
+     */
+    private Set<String> deliveredComuni(CatastoFileset fileset) throws IOException {
+        Set<String> comuni = new TreeSet<>();
+        for (CatastoSource source : fileset.files()) {
+            source.forEachWhile(record -> {
+                comuni.add(record.field(0));
+                return false;
+            });
+        }
+        log.info("Comuni of {}: {}", fileset.name(), comuni);
+        return comuni;
+    }
 
-            terRepository.saveAll(terreni);
-            log.info("Imported {} terreni", terreni.size());
+    /**
+     * The checkpoint to continue from when resuming, or a fresh one replacing any previous
+     * checkpoint of the same input files.
+     */
+    private ImportCheckpoint checkpoint(CatastoFileset fileset, boolean resume) throws IOException {
+        String dataDirectory = fileset.name();
+        String fingerprint = checkpointStore.fingerprint(fileset.files());
+        if (resume) {
+            Optional<ImportCheckpoint> previous = checkpointStore.load(fingerprint);
+            if (previous.isPresent()) {
+                log.info("Resuming import of {} from checkpoint of {}", dataDirectory, previous.get().getUpdatedAt());
+                return previous.get();
+            }
+            log.warn("No checkpoint for the current files in {}, importing from the start", dataDirectory);
         }
+        ImportCheckpoint checkpoint = new ImportCheckpoint(dataDirectory, fingerprint);
+        checkpointStore.save(checkpoint);
+        return checkpoint;
     }
 
-    private void importSoggetti(String dataDirectory) throws IOException {
-        Path sogFile = findFileWithExtension(dataDirectory, ".sog");
-        if (sogFile == null) {
-            log.warn("No .sog file found in directory: {}", dataDirectory);
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof UncheckedIOException unchecked ? unchecked.getCause() : e;
+    }
+
+    private ImportFailedException failed(ImportReport report, Throwable cause) {
+        report.finish();
+        log.error(report.summary(), cause);
+        return new ImportFailedException(report, cause);
+    }
+
+    /**
+     * Runs a stage, making sure the report hears about it even if it fails before its pipeline starts.
+     */
+    private void runStage(String stage, ImportRun run, ImportStage body) {
+        if (run.checkpoint().isCompleted(stage)) {
+            log.info("Skipping {}: already imported according to the checkpoint", stage);
+            run.report().add(skipped(stage, "Already imported (checkpoint)"));
             return;
         }
+        if (run.pipelines().isCancelled()) {
+            run.report().add(skipped(stage, "Not run: import cancelled"));
+            throw new CancellationException("Import cancelled before " + stage);
+        }
+        try {
+            body.run();
+        } catch (ImportPipelineException e) {
+            // Already reported by runPipeline, with what was committed
+            throw e;
+        } catch (Exception e) {
+            run.report().add(StageReport.builder()
+                    .stage(stage)
+                    .status(StageReport.Status.FAILED)
+                    .error(e.getMessage())
+                    .build());
+            throw e instanceof RuntimeException runtime ? runtime : new UncheckedIOException((IOException) e);
+        }
+    }
 
-        log.info("Importing soggetti from: {}", sogFile);
+    private void importTerreni(ImportRun run) throws IOException {
+        CatastoSource terFile = run.fileset().ter();
+        if (terFile == null) {
+            log.warn("No .ter file found for: {}", run.fileset().name());
+            run.report().add(skipped("terreni", "No .ter file"));
+            return;
+        }
 
-        try (Stream<String> lines = Files.lines(sogFile)) {
-            List<Sog> soggetti = lines
-                    .map(line -> {
+        log.info("Importing terreni from: {}", terFile);
+        TransactionTemplate batchTransaction = newBatchTransaction();
+        ContentIndex existing = run.delta() ? loadContentIndex("Terreno",
+                "MATCH (n:Terreno) WHERE n.codiceAmministrativo IN $comuni RETURN n.identificativoImmobile, n.contentHash",
+                run.comuni()) : null;
+
+        this.<Ter>runPipeline(run, "terreni", terFile, terreniBatchSize,
+                chunkSource(terFile),
+                (chunk, sink) -> chunk.forEach(record -> {
+                    // Only type 1 records
+                    if (record.fieldEquals(5, "1")) {
+                        Ter ter;
                         try {
-                            return Sog.parse(line);
+                            ter = Ter.parse(record);
                         } catch (Exception e) {
-                            log.warn("Failed to parse sog line: {}", line, e);
-                            return null;
+                            run.quarantine().reject("terreni", RejectReason.PARSE_ERROR, record.line(), null, e);
+                            return;
+                        }
+                        if (ter == null) {
+                            run.quarantine().reject("terreni", RejectReason.MALFORMED_RECORD, record.line(), null, null);
+                        } else if (!unchanged(existing, ter.getIdentificativoImmobile(), () -> CatastoRows.terreno(ter))) {
+                            sink.accept(ter);
                         }
-                    })
-                    .filter(Objects::nonNull)
-                    .toList();
+                    }
+                }),
+                writer(run, run.offline() ? run.offlineIds().terreni() : null, Ter::getIdentificativoImmobile,
+                        exportImmobili(run, "Terreno", CatastoRows::terreno, CatastoRows::particelle),
+                        batch -> batchTransaction.execute(status -> {
+                            if (run.mode() == ImportMode.BULK) {
+                                return bulkWriter.writeTerreni(batch);
+                            }
+                            int saved = terRepository.saveAll(batch).size();
+                            bulkWriter.linkParticelleTerreni(batch);
+                            return saved;
+                        })),
+                deltaCleanup(existing, ids -> bulkWriter.deleteTerreni(ids, run.comuni())));
+    }
 
-            sogRepository.saveAll(soggetti);
-            log.info("Imported {} soggetti", soggetti.size());
+    private void importSoggetti(ImportRun run) throws IOException {
+        CatastoSource sogFile = run.fileset().sog();
+        if (sogFile == null) {
+            log.warn("No .sog file found for: {}", run.fileset().name());
+            run.report().add(skipped("soggetti", "No .sog file"));
+            return;
         }
+
+        log.info("Importing soggetti from: {}", sogFile);
+        TransactionTemplate batchTransaction = newBatchTransaction();
+        ContentIndex existing = run.delta() ? loadContentIndex("Soggetto",
+                "MATCH (n:Soggetto) WHERE n.codiceAmministrativo IN $comuni RETURN n.identificativoSoggetto, n.contentHash",
+                run.comuni()) : null;
+
+        this.<Sog>runPipeline(run, "soggetti", sogFile, soggettiBatchSize,
+                chunkSource(sogFile),
+                (chunk, sink) -> chunk.forEach(record -> {
+                    Sog sog;
+                    try {
+                        sog = Sog.parse(record);
+                    } catch (Exception e) {
+                        run.quarantine().reject("soggetti", RejectReason.PARSE_ERROR, record.line(), null, e);
+                        return;
+                    }
+                    if (!unchanged(existing, sog.getIdentificativoSoggetto(), () -> CatastoRows.soggetto(sog))) {
+                        sink.accept(sog);
+                    }
+                }),
+                writer(run, run.offline() ? run.offlineIds().soggetti() : null, Sog::getIdentificativoSoggetto,
+                        exportNodes(run, "Soggetto", "identificativoSoggetto", CatastoRows::soggetto),
+                        batch -> batchTransaction.execute(status -> run.mode() == ImportMode.BULK
+                                ? bulkWriter.writeSoggetti(batch)
+                                : sogRepository.saveAll(batch).size())),
+                // Soggetti repeat across comuni: the unseen ones are removed after titolarità, see removeUnseenSoggetti
+                deltaCleanup(existing, ids -> {
+                    run.unseenSoggetti().addAll(ids);
+                    return 0L;
+                }));
     }
 
-    private void importTitolarita(String dataDirectory) throws IOException {
-        Path titFile = findFileWithExtension(dataDirectory, ".tit");
-        Path fabFile = findFileWithExtension(dataDirectory, ".fab");
-        Path terFile = findFileWithExtension(dataDirectory, ".ter");
+    private void importTitolarita(ImportRun run) throws IOException {
+        CatastoSource titFile = run.fileset().tit();
 
         if (titFile == null) {
-            log.warn("No .tit file found in directory: {}", dataDirectory);
+            log.warn("No .tit file found for: {}", run.fileset().name());
+            run.report().add(skipped("titolarita", "No .tit file"));
             return;
         }
 
         log.info("Importing titolarità from: {}", titFile);
 
-        // First, load all existing entities
-        Map<String, Ter> terreniMap = new HashMap<>();
-        terRepository.findAll().forEach(ter -> terreniMap.put(ter.getIdentificativoImmobile(), ter));
-
-        Map<String, Fab> fabbricatiMap = new HashMap<>();
-        fabRepository.findAll().forEach(fab -> fabbricatiMap.put(fab.getIdentificativoImmobile(), fab));
+        // First, index the ids of the existing entities; offline, only those of the delivery are known.
+        // Titolarità only point at immobili of their own comune, while soggetti are shared by all comuni.
+        IdIndex terreniIds = run.offline() ? run.offlineIds().terreni().build()
+                : loadIdIndex("Terreno", "MATCH (t:Terreno) WHERE t.codiceAmministrativo IN $comuni "
+                        + "RETURN t.identificativoImmobile", run.comuni());
+        IdIndex fabbricatiIds = run.offline() ? run.offlineIds().fabbricati().build()
+                : loadIdIndex("Fabbricato", "MATCH (f:Fabbricato) WHERE f.codiceAmministrativo IN $comuni "
+                        + "RETURN f.identificativoImmobile", run.comuni());
+        IdIndex soggettiIds = run.offline() ? run.offlineIds().soggetti().build()
+                : loadIdIndex("Soggetto", "MATCH (s:Soggetto) RETURN s.identificativoSoggetto", Set.of());
 
-        Map<String, Sog> soggettiMap = new HashMap<>();
-        sogRepository.findAll().forEach(sog -> soggettiMap.put(sog.getIdentificativoSoggetto(), sog));
+        TransactionTemplate batchTransaction = newBatchTransaction();
+        ContentIndex existingTerreni = run.delta() ? loadContentIndex("POSSIEDE_TERRENO",
+                "MATCH (:Soggetto)-[r:POSSIEDE_TERRENO]->(:Terreno) WHERE r.codiceAmministrativo IN $comuni "
+                        + "RETURN r.identificativoTitolarita, r.contentHash",
+                run.comuni()) : null;
+        ContentIndex existingFabbricati = run.delta() ? loadContentIndex("POSSIEDE_FABBRICATO",
+                "MATCH (:Soggetto)-[r:POSSIEDE_FABBRICATO]->(:Fabbricato) WHERE r.codiceAmministrativo IN $comuni "
+                        + "RETURN r.identificativoTitolarita, r.contentHash",
+                run.comuni()) : null;
 
-        try (Stream<String> lines = Files.lines(titFile)) {
-            lines.forEach(line -> {
-                try {
-                    if (fabFile != null) {
-                        processTitolaritaFabLine(line, fabbricatiMap, soggettiMap);
-                    }
-                    if (terFile != null) {
-                        processTitolaritaTerLine(line, terreniMap, soggettiMap);
+        this.<TitolaritaRow>runPipeline(run, "titolarita", titFile, titolaritaBatchSize,
+                chunkSource(titFile),
+                (chunk, sink) -> chunk.forEach(record -> {
+                    try {
+                        if (record.fieldEquals(5, "F")) {
+                            Map<String, Object> row = resolveTitolaritaFab(record, fabbricatiIds, soggettiIds, run.quarantine());
+                            if (row != null && !unchangedLink(existingFabbricati, row)) {
+                                sink.accept(new TitolaritaRow(true, row));
+                            }
+                        } else if (record.fieldEquals(5, "T")) {
+                            Map<String, Object> row = resolveTitolaritaTer(record, terreniIds, soggettiIds, run.quarantine());
+                            if (row != null && !unchangedLink(existingTerreni, row)) {
+                                sink.accept(new TitolaritaRow(false, row));
+                            }
+                        } else {
+                            run.quarantine().reject("titolarita", RejectReason.UNKNOWN_TIPO_IMMOBILE, record.line(),
+                                    "tipo immobile " + record.field(5), null);
+                        }
+                    } catch (Exception e) {
+                        run.quarantine().reject("titolarita", RejectReason.PARSE_ERROR, record.line(), null, e);
                     }
-                } catch (Exception e) {
-                    log.warn("Failed to process titolarità line: {}", line, e);
-                }
-            });
-        }
+                }),
+                writer(run, null, null, exportTitolarita(run),
+                        batch -> batchTransaction.execute(status -> linkTitolarita(batch))),
+                deltaCleanup(existingTerreni, ids -> bulkWriter.unlinkTerreni(ids, run.comuni())),
+                deltaCleanup(existingFabbricati, ids -> bulkWriter.unlinkFabbricati(ids, run.comuni())));
+    }
 
-        log.info("Titolarità import completed");
+    /**
+     * Removes the soggetti a delta import found missing from the delivery, now that titolarità has
+     * dropped the relationships the delivery no longer contains. Those still owning an immobile,
+     * e.g. in another comune, stay.
+     */
+    private void removeUnseenSoggetti(ImportRun run) {
+        List<String> unseen = run.unseenSoggetti();
+        if (unseen.isEmpty()) {
+            return;
+        }
+        TransactionTemplate batchTransaction = newBatchTransaction();
+        long[] removed = {0};
+        BatchBuffer<String> batches = new BatchBuffer<>(soggettiBatchSize, batch ->
+                removed[0] += batchTransaction.execute(status -> bulkWriter.deleteSoggetti(batch, run.comuni())));
+        unseen.forEach(batches::add);
+        batches.flush();
+        log.info("Delta soggetti: {} removed, {} no longer delivered but still owners", removed[0], unseen.size() - removed[0]);
+        synchronized (run.report().getStages()) {
+            run.report().getStages().stream()
+                    .filter(stage -> stage.getStage().equals("soggetti"))
+                    .forEach(stage -> stage.setDeletedRows(removed[0]));
+        }
     }
 
-    private void processTitolaritaTerLine(String line, Map<String, Ter> terreniMap, Map<String, Sog> soggettiMap) {
-        TitTer tit = TitTer.parse(line);
-        String identificativoSoggetto = TitTer.extractIdentificativoSoggetto(line);
-        String identificativoImmobile = TitTer.extractIdentificativoImmobile(line);
+    private long linkTitolarita(List<TitolaritaRow> batch) {
+        List<Map<String, Object>> terreniRows = new ArrayList<>();
+        List<Map<String, Object>> fabbricatiRows = new ArrayList<>();
+        for (TitolaritaRow row : batch) {
+            (row.fabbricato() ? fabbricatiRows : terreniRows).add(row.row());
+        }
+        return bulkWriter.linkTerreni(terreniRows) + bulkWriter.linkFabbricati(fabbricatiRows);
+    }
 
-        Sog soggetto = soggettiMap.get(identificativoSoggetto);
-        Ter terreno = terreniMap.get(identificativoImmobile);
+    /**
+     * Runs one stage as an {@link ImportPipeline} and reports what it committed, whether it
+     * completed or not.
+     */
+    private <T> void runPipeline(ImportRun run, String stage, CatastoSource file, int stageBatchSize,
+                                 ChunkSource source, ChunkParser<T> parser, BatchWriter<T> writer,
+                                 DeltaCleanup... cleanups) throws IOException {
+        long start = System.nanoTime();
+        ImportCheckpoint checkpoint = run.checkpoint();
+        ImportCheckpoint.StageCheckpoint previous = checkpoint.stage(stage);
+        long resumeOffset = file.toString().equals(previous.getFile()) ? previous.getOffset() : 0;
+        long previousRows = resumeOffset > 0 ? previous.getCommittedRows() : 0;
+        if (resumeOffset > 0) {
+            log.info("Resuming {} at byte {} of {}", stage, resumeOffset, file);
+            source = source.resumeFrom(resumeOffset);
+        }
 
-        if (soggetto == null) {
-            log.warn("Soggetto not found: {}", identificativoSoggetto);
-            return;
+        ImportPipeline<T> pipeline = importMetrics.bind(stage, run.pipelines().register(
+                new ImportPipeline<>(run.pipelinePrefix() + stage, source, parser, writer, pipelineSettings(stageBatchSize))));
+        if (!run.offline()) {
+            pipeline.onCommitted(offset -> checkpointStore.update(checkpoint, stage, state -> {
+                state.setFile(file.toString());
+                state.setOffset(offset);
+                state.setCommittedRows(previousRows + pipeline.getWritten());
+            }));
+        }
+        StageReport.StageReportBuilder stageReport = StageReport.builder()
+                .stage(stage)
+                .file(file.toString())
+                .resumedFromOffset(resumeOffset);
+        try {
+            pipeline.run();
+            List<DeltaCleanup> deltaCleanups = Arrays.stream(cleanups).filter(Objects::nonNull).toList();
+            if (!deltaCleanups.isEmpty()) {
+                applyDeltaCleanups(stage, resumeOffset, stageBatchSize, deltaCleanups, stageReport);
+            }
+            if (!run.offline()) {
+                checkpointStore.update(checkpoint, stage, state -> {
+                    state.setFile(file.toString());
+                    state.setCompleted(true);
+                });
+            }
+            stageReport.status(StageReport.Status.COMPLETED);
+        } catch (ImportPipelineException e) {
+            stageReport.status(StageReport.Status.FAILED).error(e.getCause().getMessage());
+            throw e;
+        } finally {
+            importMetrics.unbind(stage, pipeline);
+            long readBytes = pipeline.snapshot().getStages().stream()
+                    .filter(stageSnapshot -> stageSnapshot.getStage().equals("reader"))
+                    .mapToLong(StageSnapshot::getItemsOut)
+                    .sum();
+            run.report().add(stageReport
+                    .readBytes(readBytes)
+                    .rejected(run.quarantine().counts(stage))
+                    .committedRows(pipeline.getWritten())
+                    .committedBatches(pipeline.getCommittedBatches())
+                    .elapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                    .build());
+            logThroughput(stage, pipeline.getWritten(), start);
         }
+    }
 
-        if (terreno == null) {
-            log.warn("Terreno not found: {}", identificativoImmobile);
-            return;
+    /**
+     * Removes what the previous import wrote for the delivered comuni and this delivery no longer
+     * contains. Only possible when the stage read its whole file in this run.
+     */
+    private void applyDeltaCleanups(String stage, long resumeOffset, int stageBatchSize, List<DeltaCleanup> cleanups,
+                                    StageReport.StageReportBuilder stageReport) {
+        long unchanged = 0;
+        long deleted = 0;
+        for (DeltaCleanup cleanup : cleanups) {
+            unchanged += cleanup.existing().getUnchanged();
         }
+        if (resumeOffset > 0) {
+            log.warn("{} was resumed, records removed from the delivery are not detected: run a full delta import", stage);
+        } else {
+            TransactionTemplate batchTransaction = newBatchTransaction();
+            for (DeltaCleanup cleanup : cleanups) {
+                long[] removed = {0};
+                BatchBuffer<String> unseen = new BatchBuffer<>(stageBatchSize, batch ->
+                        removed[0] += batchTransaction.execute(status -> cleanup.delete().apply(batch)));
+                cleanup.existing().forEachUnseen(unseen::add);
+                unseen.flush();
+                deleted += removed[0];
+            }
+        }
+        log.info("Delta {}: {} unchanged, {} removed", stage, unchanged, deleted);
+        stageReport.unchangedRows(unchanged).deletedRows(deleted);
+    }
 
-        // Create relationship
-        Sog sogWithRel = sogRepository.findById(soggetto.getIdentificativoSoggetto())
-                .orElse(soggetto);
-        tit.setTerreno(terreno);
+    private static DeltaCleanup deltaCleanup(ContentIndex existing, Function<List<String>, Long> delete) {
+        return existing != null ? new DeltaCleanup(existing, delete) : null;
+    }
 
-        if (sogWithRel.getTitTers() == null) {
-            sogWithRel.setTitTers(new HashSet<>());
+    /**
+     * True if a delta import found the record in the graph with the same content hash.
+     */
+    private static boolean unchanged(ContentIndex existing, String id, Supplier<Map<String, Object>> row) {
+        return existing != null && existing.visit(id, (Long) row.get().get(CatastoRows.CONTENT_HASH));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean unchangedLink(ContentIndex existing, Map<String, Object> row) {
+        if (existing == null) {
+            return false;
         }
-        sogWithRel.getTitTers().add(tit);
+        Map<String, Object> properties = (Map<String, Object>) row.get("properties");
+        return existing.visit((String) properties.get("identificativoTitolarita"),
+                (Long) properties.get(CatastoRows.CONTENT_HASH));
+    }
 
-        sogRepository.save(sogWithRel);
+    private static StageReport skipped(String stage, String reason) {
+        return StageReport.builder()
+                .stage(stage)
+                .status(StageReport.Status.SKIPPED)
+                .error(reason)
+                .build();
     }
 
-    private void processTitolaritaFabLine(String line, Map<String, Fab> fabbricatiMap, Map<String, Sog> soggettiMap) {
-        TitFab tit = TitFab.parse(line);
-        String identificativoSoggetto = TitFab.extractIdentificativoSoggetto(line);
-        String identificativoImmobile = TitFab.extractIdentificativoImmobile(line);
+    private PipelineSettings pipelineSettings(int stageBatchSize) {
+        return PipelineSettings.builder()
+                .batchSize(stageBatchSize)
+                .parserThreads(parserThreads > 0 ? parserThreads : Runtime.getRuntime().availableProcessors())
+                .writerThreads(writerThreads)
+                .queueCapacity(queueCapacity)
+                .chunkBytes(chunkBytes())
+                .writePermits(writePermits)
+                .build();
+    }
 
-        Sog soggetto = soggettiMap.get(identificativoSoggetto);
-        Fab fabbricato = fabbricatiMap.get(identificativoImmobile);
+    /**
+     * {@code writer}, or offline a writer that only counts or {@code export}s, and remembers the ids
+     * of what it wrote in {@code ids} so titolarità can be resolved against the delivery.
+     */
+    private <T> BatchWriter<T> writer(ImportRun run, IdIndex.Builder ids, Function<T, String> id,
+                                      BatchWriter<T> export, BatchWriter<T> writer) {
+        if (!run.offline()) {
+            return writer;
+        }
+        return batch -> {
+            if (ids != null) {
+                synchronized (ids) {
+                    batch.forEach(entity -> ids.add(id.apply(entity)));
+                }
+            }
+            return export != null ? export.write(batch) : batch.size();
+        };
+    }
 
-        if (soggetto == null) {
-            log.warn("Soggetto not found: {}", identificativoSoggetto);
-            return;
+    /**
+     * Writes the rows of a node stage to its CSV file, null unless exporting.
+     */
+    private static <T> BatchWriter<T> exportNodes(ImportRun run, String label, String idProperty,
+                                                  Function<T, Map<String, Object>> row) {
+        if (run.export() == null) {
+            return null;
         }
+        AdminImportExport.Part part = run.export().nodes(label, idProperty, fileName(run.fileset()));
+        return batch -> part.write(batch.stream().map(row).toList());
+    }
 
-        if (fabbricato == null) {
-            log.warn("Fabbricato not found: {}", identificativoImmobile);
-            return;
+    /**
+     * Writes terreni or fabbricati like {@link #exportNodes}, plus their particelle and the
+     * IDENTIFICATO_DA and UTILITA_COMUNE relationships from the rows of {@code particelle}.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> BatchWriter<T> exportImmobili(ImportRun run, String label,
+                                                     Function<T, Map<String, Object>> row,
+                                                     Function<T, Map<String, Object>> particelle) {
+        BatchWriter<T> nodes = exportNodes(run, label, "identificativoImmobile", row);
+        if (nodes == null) {
+            return null;
         }
+        String name = fileName(run.fileset());
+        AdminImportExport.Part particelleNodes = run.export().nodes("Particella", "identificativoParticella", name);
+        AdminImportExport.Part identificativi = run.export().relationships("IDENTIFICATO_DA",
+                label, "identificativoImmobile", "Particella", "identificativoParticella", name);
+        AdminImportExport.Part utilitaComuni = run.export().relationships("UTILITA_COMUNE",
+                label, "identificativoImmobile", "Particella", "identificativoParticella", name);
+        return batch -> {
+            List<Map<String, Object>> particelleRows = new ArrayList<>();
+            List<Map<String, Object>> identificativiRows = new ArrayList<>();
+            List<Map<String, Object>> utilitaComuniRows = new ArrayList<>();
+            for (T entity : batch) {
+                Map<String, Object> links = particelle.apply(entity);
+                Object id = links.get("identificativoImmobile");
+                for (Map<String, Object> particella : (List<Map<String, Object>>) links.get("identificativi")) {
+                    particelleRows.add(particella);
+                    identificativiRows.add(particellaLink(id, particella));
+                }
+                for (Map<String, Object> particella : (List<Map<String, Object>>) links.get("utilitaComuni")) {
+                    particelleRows.add(particella);
+                    utilitaComuniRows.add(particellaLink(id, particella));
+                }
+            }
+            particelleNodes.write(particelleRows);
+            identificativi.write(identificativiRows);
+            utilitaComuni.write(utilitaComuniRows);
+            return nodes.write(batch);
+        };
+    }
 
-        // Create relationship
-        Sog sogWithRel = sogRepository.findById(soggetto.getIdentificativoSoggetto())
-                .orElse(soggetto);
-        tit.setFabbricato(fabbricato);
+    private static Map<String, Object> particellaLink(Object identificativoImmobile, Map<String, Object> particella) {
+        return Map.of("identificativoImmobile", identificativoImmobile,
+                "identificativoParticella", particella.get("identificativoParticella"),
+                "properties", Map.of());
+    }
 
-        if (sogWithRel.getTitFabs() == null) {
-            sogWithRel.setTitFabs(new HashSet<>());
+    private static BatchWriter<TitolaritaRow> exportTitolarita(ImportRun run) {
+        if (run.export() == null) {
+            return null;
         }
-        sogWithRel.getTitFabs().add(tit);
+        String name = fileName(run.fileset());
+        AdminImportExport.Part terreni = run.export().relationships("POSSIEDE_TERRENO",
+                "Soggetto", "identificativoSoggetto", "Terreno", "identificativoImmobile", name);
+        AdminImportExport.Part fabbricati = run.export().relationships("POSSIEDE_FABBRICATO",
+                "Soggetto", "identificativoSoggetto", "Fabbricato", "identificativoImmobile", name);
+        return batch -> {
+            List<Map<String, Object>> terreniRows = new ArrayList<>();
+            List<Map<String, Object>> fabbricatiRows = new ArrayList<>();
+            for (TitolaritaRow row : batch) {
+                (row.fabbricato() ? fabbricatiRows : terreniRows).add(row.row());
+            }
+            return terreni.write(terreniRows) + fabbricati.write(fabbricatiRows);
+        };
+    }
 
-        sogRepository.save(sogWithRel);
+    /**
+     * Maps plain files; compressed inputs are decompressed as a stream by the pipeline's reader.
+     */
+    private ChunkSource chunkSource(CatastoSource source) {
+        return source.isCompressed()
+                ? StreamChunkSource.of(source, chunkBytes())
+                : FileChunkSource.of(source.file(), chunkBytes());
     }
 
-    private void importFabbricati(String dataDirectory) throws IOException {
-        Path fabFile = findFileWithExtension(dataDirectory, ".fab");
-        if (fabFile == null) {
-            log.warn("No .fab file found in directory: {}", dataDirectory);
-            return;
-        }
+    private int chunkBytes() {
+        return chunkSizeKb * 1024;
+    }
 
-        log.info("Importing fabbricati from: {}", fabFile);
+    /**
+     * Each batch commits on its own, so a stage never accumulates a whole file in one transaction.
+     */
+    private TransactionTemplate newBatchTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
 
-        // Group records by composite key (first 5 fields)
-        Map<String, List<String>> recordGroups = new HashMap<>();
+    /**
+     * Streams an id-only projection into an {@link IdIndex}, without hydrating any entity.
+     * {@code comuni} is bound to {@code $comuni}.
+     */
+    private IdIndex loadIdIndex(String label, String cypher, Set<String> comuni) {
+        IdIndex index = neo4jClient.delegateTo(runner -> {
+            IdIndex.Builder builder = IdIndex.builder();
+            Result result = runner.run(cypher, Map.of("comuni", List.copyOf(comuni)));
+            while (result.hasNext()) {
+                Record record = result.next();
+                if (!record.get(0).isNull()) {
+                    builder.add(record.get(0).asString());
+                }
+            }
+            return Optional.of(builder.build());
+        }).run().orElseThrow();
+
+        log.info("Indexed {} {} ids (~{} KB)", index.size(), label, index.estimatedBytes() / 1024);
+        return index;
+    }
 
-        try (Stream<String> lines = Files.lines(fabFile)) {
-            lines.forEach(line -> {
-                String[] fields = line.split("\\|");
-                if (fields.length >= 6) {
-                    String compositeKey = String.join("|",
-                            fields[0], fields[1], fields[2], fields[3], fields[4]);
-                    recordGroups.computeIfAbsent(compositeKey, k -> new ArrayList<>()).add(line);
+    /**
+     * Streams id and content hash of the records of the delivered comuni into a {@link ContentIndex}.
+     */
+    private ContentIndex loadContentIndex(String label, String cypher, Set<String> comuni) {
+        ContentIndex index = neo4jClient.delegateTo(runner -> {
+            ContentIndex.Builder builder = ContentIndex.builder();
+            Result result = runner.run(cypher, Map.of("comuni", List.copyOf(comuni)));
+            while (result.hasNext()) {
+                Record record = result.next();
+                if (!record.get(0).isNull()) {
+                    builder.add(record.get(0).asString(), record.get(1).isNull() ? null : record.get(1).asLong());
                 }
-            });
+            }
+            return Optional.of(builder.build());
+        }).run().orElseThrow();
+
+        log.info("Indexed content hashes of {} existing {} in comuni {}", index.size(), label, comuni);
+        return index;
+    }
+
+    private Map<String, Object> resolveTitolaritaTer(PipeRecord record, IdIndex terreniIds, IdIndex soggettiIds,
+                                                     Quarantine quarantine) {
+        TitTer tit = TitTer.parse(record);
+        String identificativoSoggetto = TitTer.extractIdentificativoSoggetto(record);
+        String identificativoImmobile = TitTer.extractIdentificativoImmobile(record);
+
+        if (missingIdentificativoTitolarita(tit.getIdentificativoTitolarita(), record, quarantine)) {
+            return null;
+        }
+
+        if (!soggettiIds.contains(identificativoSoggetto)) {
+            quarantine.reject("titolarita", RejectReason.SOGGETTO_NOT_FOUND, record.line(), identificativoSoggetto, null);
+            return null;
         }
 
-        log.info("Found {} unique fabbricati composite keys", recordGroups.size());
+        if (!terreniIds.contains(identificativoImmobile)) {
+            quarantine.reject("titolarita", RejectReason.TERRENO_NOT_FOUND, record.line(), identificativoImmobile, null);
+            return null;
+        }
 
-        List<Fab> fabbricati = new ArrayList<>();
-        int processedGroups = 0;
+        return CatastoRows.titolaritaTerreno(tit, identificativoSoggetto, identificativoImmobile);
+    }
 
-        for (Map.Entry<String, List<String>> entry : recordGroups.entrySet()) {
-            Fab fab = processFabbricatoGroup(entry.getValue());
-            if (fab != null) {
-                fabbricati.add(fab);
-                processedGroups++;
+    private Map<String, Object> resolveTitolaritaFab(PipeRecord record, IdIndex fabbricatiIds, IdIndex soggettiIds,
+                                                     Quarantine quarantine) {
+        TitFab tit = TitFab.parse(record);
+        String identificativoSoggetto = TitFab.extractIdentificativoSoggetto(record);
+        String identificativoImmobile = TitFab.extractIdentificativoImmobile(record);
 
-                // Batch save every 1000 records to avoid memory issues
-                if (fabbricati.size() >= 1000) {
-                    fabRepository.saveAll(fabbricati);
-                    log.info("Saved batch of {} fabbricati. Total processed groups: {}",
-                            fabbricati.size(), processedGroups);
-                    fabbricati.clear();
-                }
-            }
+        if (missingIdentificativoTitolarita(tit.getIdentificativoTitolarita(), record, quarantine)) {
+            return null;
         }
 
-        // Save remaining records
-        if (!fabbricati.isEmpty()) {
-            fabRepository.saveAll(fabbricati);
+        if (!soggettiIds.contains(identificativoSoggetto)) {
+            quarantine.reject("titolarita", RejectReason.SOGGETTO_NOT_FOUND, record.line(), identificativoSoggetto, null);
+            return null;
         }
 
-        log.info("Imported {} fabbricati from {} record groups", processedGroups, recordGroups.size());
+        if (!fabbricatiIds.contains(identificativoImmobile)) {
+            quarantine.reject("titolarita", RejectReason.FABBRICATO_NOT_FOUND, record.line(), identificativoImmobile, null);
+            return null;
+        }
+
+        return CatastoRows.titolaritaFabbricato(tit, identificativoSoggetto, identificativoImmobile);
     }
 
     /**
-     * Process a group of records that belong to the same fabbricato
+     * Rejects a titolarità without identificativoTitolarita: relationships are merged on it, so all
+     * the blank ones between the same soggetto and immobile would collapse into one.
      */
-    private Fab processFabbricatoGroup(List<String> records) {
-        Fab fab = null;
+    private static boolean missingIdentificativoTitolarita(String identificativoTitolarita, PipeRecord record,
+                                                           Quarantine quarantine) {
+        if (identificativoTitolarita != null && !identificativoTitolarita.isBlank()) {
+            return false;
+        }
+        quarantine.reject("titolarita", RejectReason.MALFORMED_RECORD, record.line(), "identificativo titolarità mancante", null);
+        return true;
+    }
 
-        for (String record : records) {
-            String[] fields = record.split("\\|");
-            if (fields.length < 6) continue;
+    private void importFabbricati(ImportRun run) throws IOException {
+        CatastoSource fabFile = run.fileset().fab();
+        if (fabFile == null) {
+            log.warn("No .fab file found for: {}", run.fileset().name());
+            run.report().add(skipped("fabbricati", "No .fab file"));
+            return;
+        }
 
-            String tipoRecord = fields[5]; // Position 5 is TIPO RECORD
+        log.info("Importing fabbricati from: {}", fabFile);
+        TransactionTemplate batchTransaction = newBatchTransaction();
 
-            try {
-                switch (tipoRecord) {
-                    case "1" -> {
-                        // Main characteristics - this creates the base object
-                        fab = Fab.parseType1(record);
-                    }
-                    case "2" -> {
-                        // Identificativi
-                        if (fab != null) {
-                            fab.addIdentificativi(record);
-                        }
-                    }
-                    case "3" -> {
-                        // Indirizzi
-                        if (fab != null) {
-                            fab.addIndirizzi(record);
-                        }
-                    }
-                    case "4" -> {
-                        // Utilità comuni
-                        if (fab != null) {
-                            fab.addUtilitaComuni(record);
-                        }
-                    }
-                    case "5" -> {
-                        // Riserve
-                        if (fab != null) {
-                            fab.addRiserve(record);
+        // Records of one fabbricato share the composite key (first 5 fields); the chunk source keeps
+        // each group within one chunk, so every parser worker assembles whole fabbricati
+        GroupedRecordReader reader = new GroupedRecordReader(FabAssembler.KEY_FIELDS,
+                Paths.get(sortDirectory), sortBufferMb * 1024L * 1024L);
+
+        ContentIndex existing = run.delta() ? loadContentIndex("Fabbricato",
+                "MATCH (n:Fabbricato) WHERE n.codiceAmministrativo IN $comuni RETURN n.identificativoImmobile, n.contentHash",
+                run.comuni()) : null;
+
+        this.<Fab>runPipeline(run, "fabbricati", fabFile, fabbricatiBatchSize,
+                fabFile.isCompressed()
+                        ? StreamChunkSource.grouped(fabFile, chunkBytes(), reader, FabAssembler.KEY_FIELDS)
+                        : FileChunkSource.grouped(fabFile.file(), chunkBytes(), reader, FabAssembler.KEY_FIELDS),
+                (chunk, sink) -> {
+                    FabAssembler assembler = new FabAssembler(fab -> {
+                        if (!unchanged(existing, fab.getIdentificativoImmobile(), () -> CatastoRows.fabbricato(fab))) {
+                            sink.accept(fab);
                         }
-                    }
-                    default -> log.debug("Unknown record type: {} for record: {}", tipoRecord, record);
-                }
-            } catch (Exception e) {
-                log.warn("Error processing record type {} for record: {}. Error: {}",
-                        tipoRecord, record, e.getMessage());
-            }
-        }
+                    }, run.quarantine());
+                    chunk.forEach(assembler::accept);
+                    assembler.finish();
+                },
+                writer(run, run.offline() ? run.offlineIds().fabbricati() : null, Fab::getIdentificativoImmobile,
+                        exportImmobili(run, "Fabbricato", CatastoRows::fabbricato, CatastoRows::particelle),
+                        batch -> batchTransaction.execute(status -> {
+                            if (run.mode() == ImportMode.BULK) {
+                                return bulkWriter.writeFabbricati(batch);
+                            }
+                            int saved = fabRepository.saveAll(batch).size();
+                            bulkWriter.linkParticelleFabbricati(batch);
+                            return saved;
+                        })),
+                deltaCleanup(existing, ids -> bulkWriter.deleteFabbricati(ids, run.comuni())));
+    }
 
-        if (fab != null) {
-            fab.updateDisplayName();
-        }
+    private void logThroughput(String stage, long rows, long startNanos) {
+        double seconds = Math.max((System.nanoTime() - startNanos) / 1_000_000_000.0, 0.001);
+        log.info("Imported {} {} in {} s ({} rows/s)",
+                rows, stage, String.format("%.1f", seconds), Math.round(rows / seconds));
+    }
+
+    @FunctionalInterface
+    private interface ImportStage {
+        void run() throws IOException;
+    }
+
+    /**
+     * State shared by the stages of one import. {@code comuni} are the comuni of the delivery, which
+     * scope the immobili titolarità are resolved against and what a delta import compares against
+     * and removes; offline runs never read them. Offline runs (dry runs and exports)
+     * have {@code offlineIds}; exports also have {@code export}. {@code unseenSoggetti} is filled by
+     * the soggetti stage of a delta import and read once the node stages have joined.
+     */
+    private record ImportRun(CatastoFileset fileset, ImportMode mode, ImportReport report, ImportCheckpoint checkpoint,
+                             boolean delta, Set<String> comuni, ImportPipelineRegistry pipelines,
+                             String pipelinePrefix, Quarantine quarantine, OfflineIds offlineIds,
+                             AdminImportExport export, List<String> unseenSoggetti) {
 
-        return fab;
+        boolean offline() {
+            return offlineIds != null;
+        }
     }
 
-    private Path findFileWithExtension(String directory, String extension) throws IOException {
-        Path dirPath = Paths.get(directory);
+    /**
+     * Ids of the entities an offline run parsed, filled by its writers.
+     */
+    private record OfflineIds(IdIndex.Builder terreni, IdIndex.Builder fabbricati, IdIndex.Builder soggetti) {
 
-        try (Stream<Path> files = Files.list(dirPath)) {
-            return files
-                    .filter(Files::isRegularFile)
-                    .filter(path -> path.toString().toLowerCase().endsWith(extension.toLowerCase()))
-                    .findFirst()
-                    .orElse(null);
+        OfflineIds() {
+            this(IdIndex.builder(), IdIndex.builder(), IdIndex.builder());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The records a stage found in the graph before a delta import, and how to remove the ones the
+     * delivery no longer contains.
+     */
+    private record DeltaCleanup(ContentIndex existing, Function<List<String>, Long> delete) {
+    }
+
+    /**
+     * A resolved titolarità line, headed for POSSIEDE_FABBRICATO or POSSIEDE_TERRENO.
+     */
+    private record TitolaritaRow(boolean fabbricato, Map<String, Object> row) {
+    }
+}
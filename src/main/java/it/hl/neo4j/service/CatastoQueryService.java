@@ -1,7 +1,12 @@
 package it.hl.neo4j.service;
 
+import it.hl.neo4j.dto.CursorPage;
+import it.hl.neo4j.model.Fab;
+import it.hl.neo4j.model.Particella;
 import it.hl.neo4j.model.Sog;
 import it.hl.neo4j.model.Ter;
+import it.hl.neo4j.repository.FabRepository;
+import it.hl.neo4j.repository.ParticellaRepository;
 import it.hl.neo4j.repository.SogRepository;
 import it.hl.neo4j.repository.TerRepository;
 import lombok.RequiredArgsConstructor;
@@ -9,8 +14,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.text.Normalizer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -20,20 +30,133 @@ public class CatastoQueryService {
 
     private final TerRepository terRepository;
     private final SogRepository sogRepository;
+    private final FabRepository fabRepository;
+    private final ParticellaRepository particellaRepository;
+
+    private static final int MAX_PAGE_SIZE = 500;
 
     public Optional<Sog> findSoggettoByCodiceFiscale(String codiceFiscale) {
         return sogRepository.findByCodiceFiscale(codiceFiscale);
     }
 
-    public List<Sog> findSoggettiByNome(String nome) {
-        return sogRepository.findByNomeContaining(nome);
+    public CursorPage<Sog> findSoggettiByNome(String nome, String cursor, int size) {
+        String query = fulltextQuery(nome);
+        return searchPage(query, cursor, size, sogRepository::searchByNome);
+    }
+
+    public CursorPage<Sog> findSoggettiByTipo(String tipoSoggetto, String cursor, int size) {
+        return keysetPage(cursor, size, (after, limit) -> sogRepository.findByTipoSoggetto(tipoSoggetto, after, limit),
+                Sog::getIdentificativoSoggetto);
+    }
+
+    public CursorPage<Fab> findFabbricatiByIndirizzo(String indirizzo, String cursor, int size) {
+        String query = fulltextQuery(indirizzo);
+        return searchPage(query, cursor, size, fabRepository::searchByIndirizzo);
+    }
+
+    public CursorPage<Fab> findFabbricatiByCategoria(String categoria, String cursor, int size) {
+        return keysetPage(cursor, size, (after, limit) -> fabRepository.findByCategoria(categoria, after, limit),
+                Fab::getIdentificativoImmobile);
+    }
+
+    public CursorPage<Fab> findFabbricatiByRendita(double min, double max, String cursor, int size) {
+        return keysetPage(cursor, size, (after, limit) -> fabRepository.findByRenditaEuroRange(min, max, after, limit),
+                Fab::getIdentificativoImmobile);
+    }
+
+    public CursorPage<Ter> findTerreniByFoglio(String foglio, String cursor, int size) {
+        return keysetPage(cursor, size, (after, limit) -> terRepository.findByFoglio(foglio, after, limit),
+                Ter::getIdentificativoImmobile);
+    }
+
+    public CursorPage<Ter> findTerreniByQualita(String qualita, String cursor, int size) {
+        return keysetPage(cursor, size, (after, limit) -> terRepository.findByQualita(qualita, after, limit),
+                Ter::getIdentificativoImmobile);
+    }
+
+    /**
+     * Terreni and fabbricati on a particella of a comune, every subalterno.
+     */
+    public List<Particella> findParticelle(String codiceAmministrativo, String foglio, String numero) {
+        return particellaRepository.findByFoglioAndNumero(codiceAmministrativo.trim(), foglio.trim(), numero.trim());
+    }
+
+    /**
+     * Lucene query for the full-text indexes: every word of {@code text} must match, exactly (best),
+     * as a prefix or, for longer words, with a typo or two. Words are lowercased and stripped of
+     * accents here because prefix and fuzzy terms bypass the index analyzer.
+     */
+    static String fulltextQuery(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        StringBuilder query = new StringBuilder();
+        for (String word : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (!query.isEmpty()) {
+                query.append(' ');
+            }
+            query.append("+(").append(word).append("^3 ").append(word).append('*');
+            if (word.length() >= 4) {
+                query.append(' ').append(word).append(word.length() >= 8 ? "~2" : "~1");
+            }
+            query.append(')');
+        }
+        return query.toString();
+    }
+
+    /**
+     * A page of {@code find(after, limit)}, which returns items ordered by {@code key} after the
+     * cursor's one. One extra item is fetched to tell whether there is a next page.
+     */
+    private static <T> CursorPage<T> keysetPage(String cursor, int size, BiFunction<String, Integer, List<T>> find,
+                                                Function<T, String> key) {
+        int pageSize = pageSize(size);
+        return keysetPage(find.apply(PageCursor.key(cursor), pageSize + 1), pageSize, key);
+    }
+
+    /**
+     * The page of {@code pageSize} in {@code items}, fetched with a limit of {@code pageSize + 1}.
+     */
+    static <T> CursorPage<T> keysetPage(List<T> items, int pageSize, Function<T, String> key) {
+        if (items.size() <= pageSize) {
+            return CursorPage.of(items, null);
+        }
+        List<T> page = new ArrayList<>(items.subList(0, pageSize));
+        return CursorPage.of(page, PageCursor.afterKey(key.apply(page.get(pageSize - 1))));
+    }
+
+    private static <T> CursorPage<T> searchPage(String query, String cursor, int size, SearchQuery<T> search) {
+        if (query.isEmpty()) {
+            return CursorPage.of(List.of(), null);
+        }
+        int pageSize = pageSize(size);
+        int offset = PageCursor.offset(cursor);
+        return searchPage(search.find(query, offset, pageSize + 1), offset, pageSize);
+    }
+
+    /**
+     * The page of {@code pageSize} in {@code items}, skipped to {@code offset} with a limit of
+     * {@code pageSize + 1}.
+     */
+    static <T> CursorPage<T> searchPage(List<T> items, int offset, int pageSize) {
+        if (items.size() <= pageSize) {
+            return CursorPage.of(items, null);
+        }
+        return CursorPage.of(new ArrayList<>(items.subList(0, pageSize)), PageCursor.atOffset(offset + pageSize));
     }
 
-    public List<Ter> findTerreniByFoglio(String foglio) {
-        return terRepository.findByFoglio(foglio);
+    static int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
     }
 
-    public List<Ter> findTerreniByQualita(String qualita) {
-        return terRepository.findByQualita(qualita);
+    @FunctionalInterface
+    private interface SearchQuery<T> {
+        List<T> find(String query, int skip, int limit);
     }
 }
\ No newline at end of file
@@ -7,12 +7,30 @@ import it.hl.neo4j.model.Ter;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.types.MapAccessor;
+import org.neo4j.driver.types.Node;
+import org.neo4j.driver.types.Path;
+import org.neo4j.driver.types.Relationship;
+import org.neo4j.driver.types.TypeSystem;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.neo4j.core.DatabaseSelectionProvider;
 import org.springframework.data.neo4j.core.Neo4jClient;
 import org.springframework.data.neo4j.core.Neo4jTemplate;
+import org.springframework.data.neo4j.core.ReactiveNeo4jClient;
+import org.springframework.data.neo4j.core.mapping.Neo4jMappingContext;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -24,14 +42,26 @@ public class GraphQueryService {
     private final Neo4jTemplate neo4jTemplate;
     private final LLMService llmService;
     private final Driver driver;
+    private final Neo4jMappingContext mappingContext;
+    private final ReactiveNeo4jClient reactiveNeo4jClient;
+    private final DatabaseSelectionProvider databaseSelectionProvider;
 
     @Autowired
     Neo4jClient neo4jClient;
 
-    public GraphQueryService(Driver driver, Neo4jTemplate neo4jTemplate, LLMService llmService) {
+    /** Records the driver pulls from the server at a time while streaming. */
+    @Value("${graph.query.stream-fetch-size:500}")
+    private int streamFetchSize;
+
+    public GraphQueryService(Driver driver, Neo4jTemplate neo4jTemplate, LLMService llmService,
+                             Neo4jMappingContext mappingContext, ReactiveNeo4jClient reactiveNeo4jClient,
+                             DatabaseSelectionProvider databaseSelectionProvider) {
         this.driver = driver;
         this.neo4jTemplate = neo4jTemplate;
         this.llmService = llmService;
+        this.mappingContext = mappingContext;
+        this.reactiveNeo4jClient = reactiveNeo4jClient;
+        this.databaseSelectionProvider = databaseSelectionProvider;
     }
 
     @PostConstruct
@@ -81,6 +111,125 @@ public class GraphQueryService {
         }
     }
 
+    /**
+     * Streaming variant of {@link #processNaturalLanguageQuery}: hands {@code sink} a header
+     * ({@code success}, {@code cypherQuery}, {@code domainClass}), then each result as it is read
+     * from the server, then a trailer ({@code resultCount}, {@code message}). A failure ends the
+     * stream with {@code success: false} and the {@code error}.
+     */
+    public void streamNaturalLanguageQuery(String userQuery, Consumer<Map<String, Object>> sink) {
+        long count = 0;
+        try {
+            String cypherQuery = llmService.translateToCypher(userQuery);
+            log.info("Generated Cypher: {}", cypherQuery);
+            validateCypher(cypherQuery);
+            Class<?> domainClass = determineDomainClass(userQuery, cypherQuery);
+            sink.accept(streamHeader(cypherQuery, domainClass));
+
+            BiFunction<TypeSystem, MapAccessor, ?> mapping = mappingContext.getRequiredMappingFunctionFor(domainClass);
+            try (Session session = streamingSession()) {
+                Result result = session.run(cypherQuery);
+                while (result.hasNext()) {
+                    sink.accept(convertToMap(mapping.apply(TypeSystem.getDefault(), result.next())));
+                    count++;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Error streaming query: {}", e.getMessage());
+            sink.accept(streamError(e));
+            return;
+        }
+        sink.accept(streamTrailer(count));
+    }
+
+    /**
+     * Non-blocking {@link #processNaturalLanguageQuery}: no thread waits for the LLM or the database.
+     */
+    public Mono<GraphQueryResponse> processNaturalLanguageQueryReactive(String userQuery) {
+        return llmService.translateToCypherReactive(userQuery)
+                .flatMap(cypherQuery -> {
+                    log.info("Generated Cypher: {}", cypherQuery);
+                    validateCypher(cypherQuery);
+                    Class<?> domainClass = determineDomainClass(userQuery, cypherQuery);
+                    return findReactive(cypherQuery, domainClass)
+                            .map(this::convertToMap)
+                            .collectList()
+                            .map(results -> GraphQueryResponse.builder()
+                                    .results(results)
+                                    .cypherQuery(cypherQuery)
+                                    .success(true)
+                                    .resultCount(results.size())
+                                    .domainClass(domainClass.getSimpleName())
+                                    .build());
+                })
+                .onErrorResume(e -> {
+                    log.error("Error processing query: {}", e.getMessage());
+                    return Mono.just(GraphQueryResponse.builder()
+                            .success(false)
+                            .error(e.getMessage())
+                            .build());
+                });
+    }
+
+    /**
+     * Non-blocking {@link #streamNaturalLanguageQuery}, same lines. Results are pulled from the
+     * server only as fast as the subscriber requests them.
+     */
+    public Flux<Map<String, Object>> streamNaturalLanguageQueryReactive(String userQuery) {
+        return Flux.defer(() -> {
+            AtomicLong count = new AtomicLong();
+            return llmService.translateToCypherReactive(userQuery)
+                    .flatMapMany(cypherQuery -> {
+                        log.info("Generated Cypher: {}", cypherQuery);
+                        validateCypher(cypherQuery);
+                        Class<?> domainClass = determineDomainClass(userQuery, cypherQuery);
+                        return Flux.concat(
+                                Mono.just(streamHeader(cypherQuery, domainClass)),
+                                findReactive(cypherQuery, domainClass)
+                                        .map(this::convertToMap)
+                                        .doOnNext(row -> count.incrementAndGet()),
+                                Mono.fromSupplier(() -> streamTrailer(count.get())));
+                    })
+                    .onErrorResume(e -> {
+                        log.error("Error streaming query: {}", e.getMessage());
+                        return Mono.just(streamError(e));
+                    });
+        });
+    }
+
+    /**
+     * Results of {@code cypherQuery} mapped to {@code domainClass} like the repositories do.
+     */
+    private <T> Flux<T> findReactive(String cypherQuery, Class<T> domainClass) {
+        BiFunction<TypeSystem, MapAccessor, T> mapping = mappingContext.getRequiredMappingFunctionFor(domainClass);
+        return reactiveNeo4jClient.query(cypherQuery)
+                .fetchAs(domainClass)
+                .mappedBy(mapping::apply)
+                .all();
+    }
+
+    private static Map<String, Object> streamHeader(String cypherQuery, Class<?> domainClass) {
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("success", true);
+        header.put("cypherQuery", cypherQuery);
+        header.put("domainClass", domainClass.getSimpleName());
+        return header;
+    }
+
+    private static Map<String, Object> streamTrailer(long count) {
+        Map<String, Object> trailer = new LinkedHashMap<>();
+        trailer.put("resultCount", count);
+        trailer.put("message", count > 0 ? String.format("Trovati %d risultati", count) : "Nessun risultato trovato");
+        return trailer;
+    }
+
+    private static Map<String, Object> streamError(Throwable e) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("success", false);
+        error.put("error", e.getMessage());
+        return error;
+    }
+
     private Class<?> determineDomainClass(String userQuery, String cypherQuery) {
         String lowerQuery = userQuery.toLowerCase();
         String lowerCypher = cypherQuery.toLowerCase();
@@ -297,6 +446,116 @@ public class GraphQueryService {
 //        }
 //    }
 
+    /**
+     * Runs {@code rawQueryRequest} and hands {@code sink} each record as it is read from the
+     * server, nodes and relationships as maps (see {@link #toJson}). A failure, even after some
+     * records, ends the stream with an error line, since the response status is already sent.
+     *
+     * @return the number of records
+     */
+    public long streamRawQuery(RawQueryRequest rawQueryRequest, Consumer<Map<String, Object>> sink) {
+        Map<String, Object> parameters = rawQueryRequest.getParameters() != null
+                ? rawQueryRequest.getParameters() : Map.of();
+        long count = 0;
+        try (Session session = streamingSession()) {
+            Result result = session.run(rawQueryRequest.getCypherQuery(), parameters);
+            while (result.hasNext()) {
+                Record record = result.next();
+                sink.accept(record.asMap(GraphQueryService::toJson));
+                count++;
+            }
+        } catch (RuntimeException e) {
+            log.error("Error streaming raw query: {}", e.getMessage());
+            sink.accept(streamError(e));
+        }
+        return count;
+    }
+
+    /**
+     * Non-blocking {@link #streamRawQuery}: records are pulled from the server only as fast as the
+     * subscriber requests them.
+     */
+    @SuppressWarnings("unchecked")
+    public Flux<Map<String, Object>> rawQueryReactive(RawQueryRequest rawQueryRequest) {
+        Map<String, Object> parameters = rawQueryRequest.getParameters() != null
+                ? rawQueryRequest.getParameters() : Map.of();
+        return reactiveNeo4jClient.query(rawQueryRequest.getCypherQuery())
+                .bindAll(parameters)
+                .fetchAs((Class<Map<String, Object>>) (Class<?>) Map.class)
+                .mappedBy((types, record) -> record.asMap(GraphQueryService::toJson))
+                .all();
+    }
+
+    /**
+     * Auto-commit session pulling {@link #streamFetchSize} records at a time, so only a batch of
+     * a result is ever held in memory. It opens on the database the repositories use.
+     */
+    private Session streamingSession() {
+        SessionConfig.Builder config = SessionConfig.builder().withFetchSize(streamFetchSize);
+        String database = databaseSelectionProvider.getDatabaseSelection().getValue();
+        if (database != null) {
+            config.withDatabase(database);
+        }
+        return driver.session(config.build());
+    }
+
+    /**
+     * A driver value as plain Java values that serialize to JSON: nodes as {@code elementId},
+     * {@code labels} and {@code properties}; relationships as {@code elementId}, {@code type},
+     * {@code startElementId}, {@code endElementId} and {@code properties}; paths as their
+     * {@code nodes} and {@code relationships}.
+     */
+    static Object toJson(org.neo4j.driver.Value value) {
+        TypeSystem types = TypeSystem.getDefault();
+        if (value.isNull()) {
+            return null;
+        }
+        if (value.hasType(types.NODE())) {
+            return node(value.asNode());
+        }
+        if (value.hasType(types.RELATIONSHIP())) {
+            return relationship(value.asRelationship());
+        }
+        if (value.hasType(types.PATH())) {
+            Path path = value.asPath();
+            List<Object> nodes = new ArrayList<>();
+            path.nodes().forEach(node -> nodes.add(node(node)));
+            List<Object> relationships = new ArrayList<>();
+            path.relationships().forEach(relationship -> relationships.add(relationship(relationship)));
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("nodes", nodes);
+            map.put("relationships", relationships);
+            return map;
+        }
+        if (value.hasType(types.LIST())) {
+            return value.asList(GraphQueryService::toJson);
+        }
+        if (value.hasType(types.MAP())) {
+            return value.asMap(GraphQueryService::toJson);
+        }
+        return value.asObject();
+    }
+
+    private static Map<String, Object> node(Node node) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("elementId", node.elementId());
+        List<String> labels = new ArrayList<>();
+        node.labels().forEach(labels::add);
+        map.put("labels", labels);
+        map.put("properties", node.asMap(GraphQueryService::toJson));
+        return map;
+    }
+
+    private static Map<String, Object> relationship(Relationship relationship) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("elementId", relationship.elementId());
+        map.put("type", relationship.type());
+        map.put("startElementId", relationship.startNodeElementId());
+        map.put("endElementId", relationship.endNodeElementId());
+        map.put("properties", relationship.asMap(GraphQueryService::toJson));
+        return map;
+    }
+
     public List<Map<String, Object>> rawQuery(RawQueryRequest rawQueryRequest) {
         Neo4jClient.UnboundRunnableSpec query = neo4jClient.query(rawQueryRequest.getCypherQuery());
 
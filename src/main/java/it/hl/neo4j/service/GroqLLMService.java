@@ -10,6 +10,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.util.List;
@@ -24,11 +25,13 @@ public class GroqLLMService implements LLMService {
     private final String model;
 
     public GroqLLMService(@Value("${groq.api.key}") String apiKey,
-                          @Value("${groq.model:llama3-8b-8192}") String model) {
+                          @Value("${groq.model:llama3-8b-8192}") String model,
+                          @Value("${llm.max-connections:500}") int maxConnections) {
         this.apiKey = apiKey;
         this.model = model;
         this.webClient = WebClient.builder()
                 .baseUrl("https://api.groq.com/openai/v1")
+                .clientConnector(LLMHttpClients.connector("groq", maxConnections))
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .build();
     }
@@ -39,13 +42,18 @@ public class GroqLLMService implements LLMService {
         Schema:
         - Nodi Soggetto: proprietà (identificativoSoggetto, nome, displayName, tipoSoggetto, cognome, nomePersonaFisica, codiceFiscale, denominazione, sede, partitaIva, identificativoFiscale)
         - Nodi Terreno: proprietà (identificativoImmobile, displayName, foglio, numero, qualita, classe, ettari, are, centiare, redditoDominicaleEuro, redditoAgrarioEuro)
-        - Nodi Fabbricato: proprietà (identificativoImmobile, displayName, codiceAmministrativo, sezione, tipoImmobile, progressivo, zona, categoria, classe, consistenza, superficie, renditaLire, renditaEuro, lotto, edificio, scala, interno1, interno2, piano1, piano2, piano3, piano4, dataEfficaciaGenerante, dataRegistrazioneGenerante, tipoNotaGenerante, numeroNotaGenerante, progressivoNotaGenerante, annoNotaGenerante, dataEfficaciaConclusiva, dataRegistrazioneConclusiva, tipoNotaConclusiva, numeroNotaConclusiva, progressivoNotaConclusiva, annoNotaConclusiva, partita, annotazione, identificativoMutazioneIniziale, identificativoMutazioneFinale, protocolloNotifica, dataNotifica, codiceCausaleAttoGenerante, descrizioneAttoGenerante, codiceCausaleAttoConclusivo, descrizioneAttoConclusivo, flagClassamento, sezioniUrbane, fogli, numeri, denominatori, subalerni, edificialita, toponimi, indirizzi, civici1, civici2, civici3, codiciStrada, utilitaSezioniUrbane, utilitaFogli, utilitaNumeri, utilitaDenominatori, utilitaSubalerni, codiciRiserva, partiteIscrizioneRiserva)
+        - Nodi Fabbricato: proprietà (identificativoImmobile, displayName, codiceAmministrativo, sezione, tipoImmobile, progressivo, zona, categoria, classe, consistenza, superficie, renditaLire, renditaEuro, lotto, edificio, scala, interno1, interno2, piano1, piano2, piano3, piano4, dataEfficaciaGenerante, dataRegistrazioneGenerante, tipoNotaGenerante, numeroNotaGenerante, progressivoNotaGenerante, annoNotaGenerante, dataEfficaciaConclusiva, dataRegistrazioneConclusiva, tipoNotaConclusiva, numeroNotaConclusiva, progressivoNotaConclusiva, annoNotaConclusiva, partita, annotazione, identificativoMutazioneIniziale, identificativoMutazioneFinale, protocolloNotifica, dataNotifica, codiceCausaleAttoGenerante, descrizioneAttoGenerante, codiceCausaleAttoConclusivo, descrizioneAttoConclusivo, flagClassamento, sezioniUrbane, fogli, numeri, denominatori, subalerni, edificialita, toponimi, indirizzi, civici1, civici2, civici3, codiciStrada, indirizziTesto, utilitaSezioniUrbane, utilitaFogli, utilitaNumeri, utilitaDenominatori, utilitaSubalerni, codiciRiserva, partiteIscrizioneRiserva)
+        - Nodi Particella: proprietà (identificativoParticella, codiceAmministrativo, sezione, foglio, numero, subalterno)
         - Relazione POSSIEDE_TERRENO: (Soggetto)-[POSSIEDE_TERRENO]->(Terreno)
         - Relazione POSSIEDE_FABBRICATO: (Soggetto)-[POSSIEDE_FABBRICATO]->(Fabbricato)
+        - Relazione IDENTIFICATO_DA: (Terreno)-[IDENTIFICATO_DA]->(Particella), (Fabbricato)-[IDENTIFICATO_DA]->(Particella)
+        - Relazione UTILITA_COMUNE: (Fabbricato)-[UTILITA_COMUNE]->(Particella)
         
         Importante:
-        - Usa sempre le etichette esatte: "Soggetto", "Terreno", "Fabbricato"
+        - Usa sempre le etichette esatte: "Soggetto", "Terreno", "Fabbricato", "Particella"
+        - Per foglio e numero di un fabbricato passa dalla Particella (es. MATCH (p:Particella {foglio: '12', numero: '345'})<-[:IDENTIFICATO_DA]-(f:Fabbricato)), non dalle liste fogli e numeri
         - Quando possibile, restituisci entità correlate: RETURN s, t, f
+        - renditaLire, renditaEuro, redditoDominicaleEuro, redditoAgrarioEuro e le quote sono numeri, dataNascita, dataValidita e le altre proprietà data* sono date: confrontale direttamente, senza toFloat (es. f.renditaEuro >= 500, r.dataValidita >= date('2020-01-01'))
         - Restituisci solo la query Cypher, nessuna spiegazione
         
         Esempi:
@@ -55,6 +63,11 @@ public class GroqLLMService implements LLMService {
 
     @Override
     public String translateToCypher(String naturalQuery) {
+        return translateToCypherReactive(naturalQuery).block();
+    }
+
+    @Override
+    public Mono<String> translateToCypherReactive(String naturalQuery) {
         GroqRequest request = GroqRequest.builder()
                 .model(model)
                 .messages(List.of(
@@ -65,44 +78,40 @@ public class GroqLLMService implements LLMService {
                 .maxTokens(1000)
                 .build();
 
-        try {
-            GroqResponse response = webClient.post()
-                    .uri("/chat/completions")
-                    .header("Authorization", "Bearer " + apiKey)
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(GroqResponse.class)
-                    .timeout(Duration.ofSeconds(30))
-                    .block();
-
-            if (response != null && !response.getChoices().isEmpty()) {
-                String cypherQuery = response.getChoices().get(0).getMessage().getContent();
-                return cleanCypherQuery(cypherQuery);
-            }
-
-            throw new RuntimeException("Risposta vuota da Groq");
-
-        } catch (Exception e) {
-            log.error("Errore nella chiamata a Groq: {}", e.getMessage());
-            throw new RuntimeException("Impossibile generare la query Cypher", e);
-        }
+        return webClient.post()
+                .uri("/chat/completions")
+                .header("Authorization", "Bearer " + apiKey)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(GroqResponse.class)
+                .timeout(Duration.ofSeconds(30))
+                .filter(response -> !response.getChoices().isEmpty())
+                .map(response -> cleanCypherQuery(response.getChoices().get(0).getMessage().getContent()))
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Risposta vuota da Groq")))
+                .onErrorMap(e -> {
+                    log.error("Errore nella chiamata a Groq: {}", e.getMessage());
+                    return new RuntimeException("Impossibile generare la query Cypher", e);
+                });
     }
 
     @Override
     public boolean isAvailable() {
-        try {
-            webClient.get()
-                    .uri("/models")
-                    .header("Authorization", "Bearer " + apiKey)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(5))
-                    .block();
-            return true;
-        } catch (Exception e) {
-            log.warn("Groq non disponibile: {}", e.getMessage());
-            return false;
-        }
+        return Boolean.TRUE.equals(isAvailableReactive().block());
+    }
+
+    @Override
+    public Mono<Boolean> isAvailableReactive() {
+        return webClient.get()
+                .uri("/models")
+                .header("Authorization", "Bearer " + apiKey)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(Duration.ofSeconds(5))
+                .thenReturn(true)
+                .onErrorResume(e -> {
+                    log.warn("Groq non disponibile: {}", e.getMessage());
+                    return Mono.just(false);
+                });
     }
 
     private String cleanCypherQuery(String rawQuery) {
@@ -0,0 +1,12 @@
+package it.hl.neo4j.service;
+
+/**
+ * Thrown when an import job cannot be submitted because of the jobs already running: one of them
+ * covers the same directory, or there are as many as allowed.
+ */
+public class ImportJobConflictException extends RuntimeException {
+
+    public ImportJobConflictException(String message) {
+        super(message);
+    }
+}
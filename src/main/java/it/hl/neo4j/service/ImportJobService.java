@@ -0,0 +1,286 @@
+package it.hl.neo4j.service;
+
+import it.hl.neo4j.dto.ImportJobStatus;
+import it.hl.neo4j.dto.ImportJobStatus.State;
+import it.hl.neo4j.importer.CatastoFileset;
+import it.hl.neo4j.importer.DeliveryReport;
+import it.hl.neo4j.importer.ImportFailedException;
+import it.hl.neo4j.importer.ImportOptions;
+import it.hl.neo4j.importer.ImportPipelineRegistry;
+import it.hl.neo4j.importer.ImportReport;
+import it.hl.neo4j.importer.PipelineSnapshot;
+import it.hl.neo4j.importer.StageReport;
+import it.hl.neo4j.importer.StageSnapshot;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs imports as background jobs, one virtual thread each, so a request only has to submit them.
+ * <p>
+ * A job's thread mostly waits on its pipelines, which keep their own worker pools; every job gets
+ * its own {@link ImportPipelineRegistry}, which is what progress is read from and what cancelling
+ * a job goes through.
+ * <p>
+ * Two jobs never import the same directory at once, and at most {@code maxRunningJobs} run
+ * together, since each one brings its own pipelines.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImportJobService {
+
+    private final CatastoImportService importService;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    @Value("${catasto.import.jobs.retained:50}")
+    private int retainedJobs;
+
+    @Value("${catasto.import.jobs.max-running:2}")
+    private int maxRunningJobs;
+
+    /**
+     * Queues an import of {@code dataDirectory} and returns straight away. With {@code tree} every
+     * comune under it is imported, see {@link CatastoImportService#importDeliveryTree}.
+     *
+     * @throws IOException if the data directory cannot be listed
+     * @throws ImportJobConflictException if a running job imports the same directory, one inside it
+     *                                     or one containing it, or {@code maxRunningJobs} are running
+     */
+    public ImportJobStatus submit(String dataDirectory, boolean tree, ImportOptions options) throws IOException {
+        List<CatastoFileset> filesets = tree
+                ? CatastoFileset.discover(dataDirectory)
+                : List.of(CatastoFileset.inDirectory(dataDirectory));
+        long totalBytes = filesets.stream().mapToLong(CatastoFileset::totalBytes).sum();
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), dataDirectory, tree, totalBytes);
+        ImportOptions jobOptions = options.toBuilder().pipelines(job.pipelines).build();
+        synchronized (jobs) {
+            checkNoConflict(job);
+            evictFinishedJobs();
+            jobs.put(job.id, job);
+        }
+        executor.execute(() -> run(job, jobOptions));
+        log.info("Import job {} submitted for {}", job.id, dataDirectory);
+        return job.status();
+    }
+
+    public Optional<ImportJobStatus> status(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(ImportJob::status);
+    }
+
+    public List<ImportJobStatus> list() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing((ImportJob job) -> job.submittedAt).reversed())
+                .map(ImportJob::status)
+                .toList();
+    }
+
+    /**
+     * Stops a job at its next batch. Whatever it committed stays in the graph and in its checkpoint,
+     * so it can be resumed later.
+     */
+    public Optional<ImportJobStatus> cancel(String id) {
+        ImportJob job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+        if (!job.state.isFinished()) {
+            log.info("Cancelling import job {}", id);
+            job.pipelines.cancel();
+        }
+        return Optional.of(job.status());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> job.pipelines.cancel());
+        executor.shutdownNow();
+    }
+
+    private void run(ImportJob job, ImportOptions options) {
+        if (job.pipelines.isCancelled()) {
+            job.finish(State.CANCELLED, null, "Cancelled before starting");
+            return;
+        }
+        job.startedAt = Instant.now();
+        job.state = State.RUNNING;
+        try {
+            if (job.tree) {
+                DeliveryReport delivery = importService.importDeliveryTree(job.dataDirectory, options);
+                job.delivery = delivery;
+                job.finish(job.pipelines.isCancelled() ? State.CANCELLED
+                        : delivery.isSuccessful() ? State.COMPLETED : State.FAILED, null, null);
+            } else {
+                job.finish(State.COMPLETED, importService.importCatastoData(job.dataDirectory, options), null);
+            }
+        } catch (ImportFailedException e) {
+            job.finish(job.pipelines.isCancelled() ? State.CANCELLED : State.FAILED, e.getReport(), message(e.getCause()));
+        } catch (IOException | RuntimeException e) {
+            log.error("Import job {} failed", job.id, e);
+            job.finish(State.FAILED, null, message(e));
+        }
+    }
+
+    private void checkNoConflict(ImportJob submitted) {
+        List<ImportJob> running = jobs.values().stream()
+                .filter(job -> !job.state.isFinished())
+                .toList();
+        for (ImportJob job : running) {
+            if (job.path.startsWith(submitted.path) || submitted.path.startsWith(job.path)) {
+                throw new ImportJobConflictException("Import job " + job.id + " is already importing "
+                        + job.dataDirectory);
+            }
+        }
+        if (running.size() >= maxRunningJobs) {
+            throw new ImportJobConflictException(running.size() + " import jobs are already running");
+        }
+    }
+
+    private static String message(Throwable e) {
+        return e == null ? null : e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    /**
+     * Forgets the oldest finished jobs beyond {@code retainedJobs}; running jobs are always kept.
+     */
+    private void evictFinishedJobs() {
+        List<ImportJob> finished = jobs.values().stream()
+                .filter(job -> job.state.isFinished())
+                .sorted(Comparator.comparing((ImportJob job) -> job.submittedAt))
+                .toList();
+        for (int i = 0; i < finished.size() - retainedJobs + 1; i++) {
+            jobs.remove(finished.get(i).id);
+        }
+    }
+
+    private static final class ImportJob {
+
+        final String id;
+        final String dataDirectory;
+        final Path path;
+        final boolean tree;
+        final long totalBytes;
+        final ImportPipelineRegistry pipelines = new ImportPipelineRegistry();
+        final Instant submittedAt = Instant.now();
+        volatile State state = State.QUEUED;
+        volatile Instant startedAt;
+        volatile Instant finishedAt;
+        volatile ImportReport report;
+        volatile DeliveryReport delivery;
+        volatile String error;
+
+        ImportJob(String id, String dataDirectory, boolean tree, long totalBytes) {
+            this.id = id;
+            this.dataDirectory = dataDirectory;
+            this.path = Path.of(dataDirectory).toAbsolutePath().normalize();
+            this.tree = tree;
+            this.totalBytes = totalBytes;
+        }
+
+        void finish(State state, ImportReport report, String error) {
+            this.report = report;
+            this.error = error;
+            this.finishedAt = Instant.now();
+            this.state = state;
+            log.info("Import job {} {}", id, state);
+        }
+
+        ImportJobStatus status() {
+            List<PipelineSnapshot> snapshots = pipelines.snapshots();
+            List<String> running = new ArrayList<>();
+            long rows = 0;
+            long bytesRead = 0;
+            double rowsPerSecond = 0;
+            for (PipelineSnapshot pipeline : snapshots) {
+                for (StageSnapshot stage : pipeline.getStages()) {
+                    if (stage.getStage().equals("reader")) {
+                        bytesRead += stage.getItemsOut();
+                    } else if (stage.getStage().equals("writer")) {
+                        rows += stage.getItemsOut();
+                        if (!pipeline.isFinished()) {
+                            rowsPerSecond += stage.getItemsPerSecond();
+                        }
+                    }
+                }
+                if (!pipeline.isFinished()) {
+                    running.add(pipeline.getName());
+                }
+            }
+
+            List<String> errors = new ArrayList<>();
+            ImportReport finalReport = report;
+            DeliveryReport finalDelivery = delivery;
+            if (finalReport != null) {
+                rows = finalReport.getCommittedRows();
+                addErrors(errors, "", finalReport);
+            }
+            if (finalDelivery != null) {
+                rows = finalDelivery.getCommittedRows();
+                synchronized (finalDelivery.getComuni()) {
+                    finalDelivery.getComuni().forEach(comune -> addErrors(errors, comune.getDataDirectory() + " ", comune));
+                }
+            }
+            if (error != null && errors.isEmpty()) {
+                errors.add(error);
+            }
+
+            return ImportJobStatus.builder()
+                    .id(id)
+                    .dataDirectory(dataDirectory)
+                    .state(state)
+                    .runningStages(running)
+                    .rowsProcessed(rows)
+                    .rowsPerSecond(rowsPerSecond)
+                    .etaSeconds(state == State.RUNNING ? eta(bytesRead) : null)
+                    .submittedAt(submittedAt)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .errors(errors)
+                    .report(finalReport)
+                    .delivery(finalDelivery)
+                    .build();
+        }
+
+        private static void addErrors(List<String> errors, String prefix, ImportReport report) {
+            synchronized (report.getStages()) {
+                for (StageReport stage : report.getStages()) {
+                    if (stage.getStatus() == StageReport.Status.FAILED && stage.getError() != null) {
+                        errors.add(prefix + stage.getStage() + ": " + stage.getError());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Remaining time at the pace the input has been read so far. Titolarità only starts once the
+         * other stages are done, so early estimates run a little short.
+         */
+        private Long eta(long bytesRead) {
+            Instant started = startedAt;
+            if (started == null || bytesRead <= 0 || totalBytes <= 0) {
+                return null;
+            }
+            double done = Math.min(1.0, (double) bytesRead / totalBytes);
+            long elapsed = Duration.between(started, Instant.now()).toSeconds();
+            return Math.round(elapsed * (1 - done) / done);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package it.hl.neo4j.service;
+
+/**
+ * Thrown for a page cursor that was not returned by a previous page of the same endpoint; the
+ * controllers answer it with a 400.
+ */
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException() {
+        super("Cursore non valido");
+    }
+}
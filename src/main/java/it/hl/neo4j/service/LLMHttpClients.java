@@ -0,0 +1,26 @@
+package it.hl.neo4j.service;
+
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * HTTP connector of the LLM clients.
+ */
+final class LLMHttpClients {
+
+    private LLMHttpClients() {
+    }
+
+    /**
+     * Connector pooling up to {@code maxConnections} connections; further calls wait for a free
+     * one instead of failing, so a burst of chat requests queues on the pool, not on threads.
+     */
+    static ReactorClientHttpConnector connector(String name, int maxConnections) {
+        ConnectionProvider provider = ConnectionProvider.builder(name)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        return new ReactorClientHttpConnector(HttpClient.create(provider));
+    }
+}
@@ -1,6 +1,16 @@
 package it.hl.neo4j.service;
 
+import reactor.core.publisher.Mono;
+
 public interface LLMService {
     String translateToCypher(String naturalQuery);
     boolean isAvailable();
+
+    /**
+     * Non-blocking {@link #translateToCypher}: the HTTP call runs on the client's event loop and
+     * no thread waits for the model.
+     */
+    Mono<String> translateToCypherReactive(String naturalQuery);
+
+    Mono<Boolean> isAvailableReactive();
 }
@@ -9,6 +9,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 
@@ -21,10 +22,12 @@ public class OllamaLLMService implements LLMService {
     private final String model;
 
     public OllamaLLMService(@Value("${ollama.base-url:http://localhost:11434}") String baseUrl,
-                            @Value("${ollama.model:llama3.1:8b}") String model) {
+                            @Value("${ollama.model:llama3.1:8b}") String model,
+                            @Value("${llm.max-connections:500}") int maxConnections) {
         this.model = model;
         this.webClient = WebClient.builder()
                 .baseUrl(baseUrl)
+                .clientConnector(LLMHttpClients.connector("ollama", maxConnections))
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .build();
     }
@@ -52,45 +55,47 @@ public class OllamaLLMService implements LLMService {
 
     @Override
     public String translateToCypher(String naturalQuery) {
+        return translateToCypherReactive(naturalQuery).block();
+    }
+
+    @Override
+    public Mono<String> translateToCypherReactive(String naturalQuery) {
         String fullPrompt = CYPHER_SYSTEM_PROMPT + naturalQuery;
 
         OllamaRequest request = new OllamaRequest(model, fullPrompt);
 
-        try {
-            OllamaResponse response = webClient.post()
-                    .uri("/api/generate")
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(OllamaResponse.class)
-                    .timeout(Duration.ofSeconds(30))
-                    .block();
-
-            if (response != null && response.getResponse() != null) {
-                return cleanCypherQuery(response.getResponse());
-            }
-
-            throw new RuntimeException("Risposta vuota da Ollama");
-
-        } catch (Exception e) {
-            log.error("Errore nella chiamata a Ollama: {}", e.getMessage());
-            throw new RuntimeException("Impossibile generare la query Cypher", e);
-        }
+        return webClient.post()
+                .uri("/api/generate")
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(OllamaResponse.class)
+                .timeout(Duration.ofSeconds(30))
+                .filter(response -> response.getResponse() != null)
+                .map(response -> cleanCypherQuery(response.getResponse()))
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Risposta vuota da Ollama")))
+                .onErrorMap(e -> {
+                    log.error("Errore nella chiamata a Ollama: {}", e.getMessage());
+                    return new RuntimeException("Impossibile generare la query Cypher", e);
+                });
     }
 
     @Override
     public boolean isAvailable() {
-        try {
-            webClient.get()
-                    .uri("/api/tags")
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(5))
-                    .block();
-            return true;
-        } catch (Exception e) {
-            log.warn("Ollama non disponibile: {}", e.getMessage());
-            return false;
-        }
+        return Boolean.TRUE.equals(isAvailableReactive().block());
+    }
+
+    @Override
+    public Mono<Boolean> isAvailableReactive() {
+        return webClient.get()
+                .uri("/api/tags")
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(Duration.ofSeconds(5))
+                .thenReturn(true)
+                .onErrorResume(e -> {
+                    log.warn("Ollama non disponibile: {}", e.getMessage());
+                    return Mono.just(false);
+                });
     }
 
     private String cleanCypherQuery(String rawQuery) {
@@ -0,0 +1,68 @@
+package it.hl.neo4j.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation tokens: the id of the last item of a page (keyset pagination), or the number
+ * of results already returned for full-text searches, which are ordered by relevance.
+ */
+final class PageCursor {
+
+    private static final String KEY = "k:";
+    private static final String OFFSET = "o:";
+
+    private PageCursor() {
+    }
+
+    static String afterKey(String key) {
+        return encode(KEY + key);
+    }
+
+    static String atOffset(int offset) {
+        return encode(OFFSET + offset);
+    }
+
+    /**
+     * The id to continue after, "" (before every id) without a cursor.
+     */
+    static String key(String cursor) {
+        return cursor == null || cursor.isEmpty() ? "" : decode(cursor, KEY);
+    }
+
+    static int offset(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(decode(cursor, OFFSET));
+            if (offset >= 0) {
+                return offset;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw invalid();
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor, String prefix) {
+        String value;
+        try {
+            value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw invalid();
+        }
+        if (!value.startsWith(prefix)) {
+            throw invalid();
+        }
+        return value.substring(prefix.length());
+    }
+
+    private static InvalidCursorException invalid() {
+        return new InvalidCursorException();
+    }
+}
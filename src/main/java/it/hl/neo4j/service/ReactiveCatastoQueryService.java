@@ -0,0 +1,103 @@
+package it.hl.neo4j.service;
+
+import it.hl.neo4j.dto.CursorPage;
+import it.hl.neo4j.model.Fab;
+import it.hl.neo4j.model.Particella;
+import it.hl.neo4j.model.Sog;
+import it.hl.neo4j.model.Ter;
+import it.hl.neo4j.repository.ReactiveFabRepository;
+import it.hl.neo4j.repository.ReactiveParticellaRepository;
+import it.hl.neo4j.repository.ReactiveSogRepository;
+import it.hl.neo4j.repository.ReactiveTerRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Non-blocking {@link CatastoQueryService}: same queries and cursors, on the reactive repositories.
+ * Auto-commit reads, without {@code @Transactional}: the transaction manager is the blocking one.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReactiveCatastoQueryService {
+
+    private final ReactiveTerRepository terRepository;
+    private final ReactiveSogRepository sogRepository;
+    private final ReactiveFabRepository fabRepository;
+    private final ReactiveParticellaRepository particellaRepository;
+
+    public Mono<Sog> findSoggettoByCodiceFiscale(String codiceFiscale) {
+        return sogRepository.findByCodiceFiscale(codiceFiscale);
+    }
+
+    public Mono<CursorPage<Sog>> findSoggettiByNome(String nome, String cursor, int size) {
+        String query = CatastoQueryService.fulltextQuery(nome);
+        return searchPage(query, cursor, size, sogRepository::searchByNome);
+    }
+
+    public Mono<CursorPage<Sog>> findSoggettiByTipo(String tipoSoggetto, String cursor, int size) {
+        return keysetPage(cursor, size, (after, limit) -> sogRepository.findByTipoSoggetto(tipoSoggetto, after, limit),
+                Sog::getIdentificativoSoggetto);
+    }
+
+    public Mono<CursorPage<Fab>> findFabbricatiByIndirizzo(String indirizzo, String cursor, int size) {
+        String query = CatastoQueryService.fulltextQuery(indirizzo);
+        return searchPage(query, cursor, size, fabRepository::searchByIndirizzo);
+    }
+
+    public Mono<CursorPage<Fab>> findFabbricatiByCategoria(String categoria, String cursor, int size) {
+        return keysetPage(cursor, size, (after, limit) -> fabRepository.findByCategoria(categoria, after, limit),
+                Fab::getIdentificativoImmobile);
+    }
+
+    public Mono<CursorPage<Fab>> findFabbricatiByRendita(double min, double max, String cursor, int size) {
+        return keysetPage(cursor, size, (after, limit) -> fabRepository.findByRenditaEuroRange(min, max, after, limit),
+                Fab::getIdentificativoImmobile);
+    }
+
+    public Mono<CursorPage<Ter>> findTerreniByFoglio(String foglio, String cursor, int size) {
+        return keysetPage(cursor, size, (after, limit) -> terRepository.findByFoglio(foglio, after, limit),
+                Ter::getIdentificativoImmobile);
+    }
+
+    public Mono<CursorPage<Ter>> findTerreniByQualita(String qualita, String cursor, int size) {
+        return keysetPage(cursor, size, (after, limit) -> terRepository.findByQualita(qualita, after, limit),
+                Ter::getIdentificativoImmobile);
+    }
+
+    public Flux<Particella> findParticelle(String codiceAmministrativo, String foglio, String numero) {
+        return particellaRepository.findByFoglioAndNumero(codiceAmministrativo.trim(), foglio.trim(), numero.trim());
+    }
+
+    /**
+     * The cursor is decoded on subscription, so an invalid one is an error signal, not a throw.
+     */
+    private static <T> Mono<CursorPage<T>> keysetPage(String cursor, int size,
+                                                      BiFunction<String, Integer, Flux<T>> find,
+                                                      Function<T, String> key) {
+        int pageSize = CatastoQueryService.pageSize(size);
+        return Mono.fromCallable(() -> PageCursor.key(cursor))
+                .flatMap(after -> find.apply(after, pageSize + 1).collectList())
+                .map(items -> CatastoQueryService.keysetPage(items, pageSize, key));
+    }
+
+    private static <T> Mono<CursorPage<T>> searchPage(String query, String cursor, int size, SearchQuery<T> search) {
+        if (query.isEmpty()) {
+            return Mono.just(CursorPage.of(List.of(), null));
+        }
+        int pageSize = CatastoQueryService.pageSize(size);
+        return Mono.fromCallable(() -> PageCursor.offset(cursor))
+                .flatMap(offset -> search.find(query, offset, pageSize + 1).collectList()
+                        .map(items -> CatastoQueryService.searchPage(items, offset, pageSize)));
+    }
+
+    @FunctionalInterface
+    private interface SearchQuery<T> {
+        Flux<T> find(String query, int skip, int limit);
+    }
+}
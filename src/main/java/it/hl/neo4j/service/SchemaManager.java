@@ -0,0 +1,253 @@
+package it.hl.neo4j.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned schema of the catasto graph: the constraints and indexes behind the import MERGEs and
+ * the lookups of the repositories.
+ * <p>
+ * Migrations are applied in version order, each statement idempotent ({@code IF NOT EXISTS}), and
+ * every applied one is recorded as a {@code (:SchemaMigration {version})} node. They run at startup
+ * and, if Neo4j was not reachable then, before the next import that writes to the graph. Add a
+ * migration at the end of {@link #MIGRATIONS}; never change one that was released.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SchemaManager {
+
+    static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Unique ids of the catasto nodes", List.of(
+                    "CREATE CONSTRAINT schema_migration_version IF NOT EXISTS FOR (m:SchemaMigration) REQUIRE m.version IS UNIQUE",
+                    "CREATE CONSTRAINT terreno_id IF NOT EXISTS FOR (t:Terreno) REQUIRE t.identificativoImmobile IS UNIQUE",
+                    "CREATE CONSTRAINT fabbricato_id IF NOT EXISTS FOR (f:Fabbricato) REQUIRE f.identificativoImmobile IS UNIQUE",
+                    "CREATE CONSTRAINT soggetto_id IF NOT EXISTS FOR (s:Soggetto) REQUIRE s.identificativoSoggetto IS UNIQUE")),
+            new Migration(2, "Range indexes on the lookup and delta import properties", List.of(
+                    "CREATE INDEX soggetto_codice_fiscale IF NOT EXISTS FOR (s:Soggetto) ON (s.codiceFiscale)",
+                    "CREATE INDEX soggetto_partita_iva IF NOT EXISTS FOR (s:Soggetto) ON (s.partitaIva)",
+                    "CREATE INDEX soggetto_identificativo_fiscale IF NOT EXISTS FOR (s:Soggetto) ON (s.identificativoFiscale)",
+                    "CREATE INDEX soggetto_tipo IF NOT EXISTS FOR (s:Soggetto) ON (s.tipoSoggetto)",
+                    "CREATE INDEX soggetto_comune IF NOT EXISTS FOR (s:Soggetto) ON (s.codiceAmministrativo)",
+                    "CREATE INDEX terreno_foglio IF NOT EXISTS FOR (t:Terreno) ON (t.foglio)",
+                    "CREATE INDEX terreno_qualita IF NOT EXISTS FOR (t:Terreno) ON (t.qualita)",
+                    "CREATE INDEX terreno_comune IF NOT EXISTS FOR (t:Terreno) ON (t.codiceAmministrativo)",
+                    "CREATE INDEX fabbricato_categoria IF NOT EXISTS FOR (f:Fabbricato) ON (f.categoria)",
+                    "CREATE INDEX fabbricato_zona IF NOT EXISTS FOR (f:Fabbricato) ON (f.zona)",
+                    "CREATE INDEX fabbricato_comune IF NOT EXISTS FOR (f:Fabbricato) ON (f.codiceAmministrativo)",
+                    "CREATE INDEX possiede_terreno_titolarita IF NOT EXISTS FOR ()-[r:POSSIEDE_TERRENO]-() ON (r.identificativoTitolarita)",
+                    "CREATE INDEX possiede_terreno_comune IF NOT EXISTS FOR ()-[r:POSSIEDE_TERRENO]-() ON (r.codiceAmministrativo)",
+                    "CREATE INDEX possiede_fabbricato_titolarita IF NOT EXISTS FOR ()-[r:POSSIEDE_FABBRICATO]-() ON (r.identificativoTitolarita)",
+                    "CREATE INDEX possiede_fabbricato_comune IF NOT EXISTS FOR ()-[r:POSSIEDE_FABBRICATO]-() ON (r.codiceAmministrativo)")),
+            new Migration(3, "Full-text indexes for soggetto name and fabbricato address search", List.of(
+                    // standard-folding lowercases and strips accents, at index and at query time
+                    "CREATE FULLTEXT INDEX soggetto_nome_fulltext IF NOT EXISTS FOR (s:Soggetto) "
+                            + "ON EACH [s.nome, s.cognome, s.nomePersonaFisica, s.denominazione] "
+                            + "OPTIONS {indexConfig: {`fulltext.analyzer`: 'standard-folding'}}",
+                    "CREATE FULLTEXT INDEX fabbricato_indirizzi_fulltext IF NOT EXISTS FOR (f:Fabbricato) "
+                            + "ON EACH [f.indirizziTesto] "
+                            + "OPTIONS {indexConfig: {`fulltext.analyzer`: 'standard-folding'}}",
+                    // Full-text indexes skip lists: fabbricati imported before indirizziTesto get it
+                    // built from their indirizzi like Fab does
+                    """
+                    MATCH (f:Fabbricato) WHERE f.indirizziTesto IS NULL AND size(coalesce(f.indirizzi, [])) > 0
+                    CALL {
+                        WITH f
+                        SET f.indirizziTesto = reduce(text = '', i IN range(0, size(f.indirizzi) - 1) | text
+                            + CASE WHEN i = 0 THEN '' ELSE '; ' END
+                            + CASE WHEN coalesce(f.toponimi[i], '') <> '' THEN f.toponimi[i] + ' ' ELSE '' END
+                            + f.indirizzi[i]
+                            + CASE WHEN coalesce(f.civici1[i], '') <> '' THEN ' ' + f.civici1[i] ELSE '' END)
+                    } IN TRANSACTIONS OF 10000 ROWS
+                    """)),
+            new Migration(4, "Typed money, quota and date properties with range indexes", List.of(
+                    // Graphs imported before the parsers produced typed values hold them as Strings
+                    retype("(t:Terreno)", "t", List.of(
+                            decimal("t.redditoDominicaleLire"), decimal("t.redditoAgrarioLire"),
+                            decimal("t.redditoDominicaleEuro"), decimal("t.redditoAgrarioEuro"))),
+                    retype("(f:Fabbricato)", "f", List.of(
+                            decimal("f.renditaLire"), decimal("f.renditaEuro"),
+                            date("f.dataEfficaciaGenerante"), date("f.dataRegistrazioneGenerante"),
+                            date("f.dataEfficaciaConclusiva"), date("f.dataRegistrazioneConclusiva"),
+                            date("f.dataNotifica"))),
+                    retype("(s:Soggetto)", "s", List.of(date("s.dataNascita"))),
+                    retype("()-[r:POSSIEDE_TERRENO]->()", "r", titolaritaProperties()),
+                    retype("()-[r:POSSIEDE_FABBRICATO]->()", "r", titolaritaProperties()),
+                    "CREATE INDEX terreno_reddito_dominicale IF NOT EXISTS FOR (t:Terreno) ON (t.redditoDominicaleEuro)",
+                    "CREATE INDEX terreno_reddito_agrario IF NOT EXISTS FOR (t:Terreno) ON (t.redditoAgrarioEuro)",
+                    "CREATE INDEX fabbricato_rendita IF NOT EXISTS FOR (f:Fabbricato) ON (f.renditaEuro)",
+                    "CREATE INDEX soggetto_data_nascita IF NOT EXISTS FOR (s:Soggetto) ON (s.dataNascita)",
+                    "CREATE INDEX possiede_terreno_data_validita IF NOT EXISTS FOR ()-[r:POSSIEDE_TERRENO]-() ON (r.dataValidita)",
+                    "CREATE INDEX possiede_fabbricato_data_validita IF NOT EXISTS FOR ()-[r:POSSIEDE_FABBRICATO]-() ON (r.dataValidita)")),
+            new Migration(5, "Particella nodes shared by terreni and fabbricati", List.of(
+                    "CREATE CONSTRAINT particella_id IF NOT EXISTS FOR (p:Particella) REQUIRE p.identificativoParticella IS UNIQUE",
+                    "CREATE INDEX particella_foglio_numero IF NOT EXISTS FOR (p:Particella) "
+                            + "ON (p.codiceAmministrativo, p.foglio, p.numero)",
+                    // Immobili imported before the particelle get linked from their properties like
+                    // CatastoRows.particelle does
+                    linkParticelle("Terreno", "IDENTIFICATO_DA",
+                            "WITH n, [[n.codiceAmministrativo, n.sezione, n.foglio, n.numero, n.subalterno]] AS rows"),
+                    linkParticelle("Fabbricato", "IDENTIFICATO_DA",
+                            "WITH n, [i IN range(0, size(coalesce(n.fogli, [])) - 1) | [n.codiceAmministrativo, "
+                                    + "n.sezioniUrbane[i], n.fogli[i], n.numeri[i], n.subalerni[i]]] AS rows"),
+                    linkParticelle("Fabbricato", "UTILITA_COMUNE",
+                            "WITH n, [i IN range(0, size(coalesce(n.utilitaFogli, [])) - 1) | [n.codiceAmministrativo, "
+                                    + "n.utilitaSezioniUrbane[i], n.utilitaFogli[i], n.utilitaNumeri[i], "
+                                    + "n.utilitaSubalerni[i]]] AS rows"))),
+            new Migration(6, "Composite range indexes for the keyset pages", List.of(
+                    // Equality on the first property, then the ids after the cursor in order: a page
+                    // is read straight off the index and stops at LIMIT, however deep it is
+                    "CREATE INDEX terreno_foglio_id IF NOT EXISTS FOR (t:Terreno) ON (t.foglio, t.identificativoImmobile)",
+                    "CREATE INDEX terreno_qualita_id IF NOT EXISTS FOR (t:Terreno) ON (t.qualita, t.identificativoImmobile)",
+                    "CREATE INDEX terreno_comune_id IF NOT EXISTS FOR (t:Terreno) "
+                            + "ON (t.codiceAmministrativo, t.identificativoImmobile)",
+                    "CREATE INDEX fabbricato_categoria_id IF NOT EXISTS FOR (f:Fabbricato) "
+                            + "ON (f.categoria, f.identificativoImmobile)",
+                    "CREATE INDEX fabbricato_zona_id IF NOT EXISTS FOR (f:Fabbricato) ON (f.zona, f.identificativoImmobile)",
+                    "CREATE INDEX fabbricato_comune_id IF NOT EXISTS FOR (f:Fabbricato) "
+                            + "ON (f.codiceAmministrativo, f.identificativoImmobile)",
+                    "CREATE INDEX soggetto_tipo_id IF NOT EXISTS FOR (s:Soggetto) "
+                            + "ON (s.tipoSoggetto, s.identificativoSoggetto)"))
+    );
+
+    private final Neo4jClient neo4jClient;
+
+    @Value("${catasto.schema.migrate-on-startup:true}")
+    private boolean migrateOnStartup;
+
+    /** Latest version known to be applied, -1 until the graph was asked. */
+    private volatile int appliedVersion = -1;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void migrateOnStartup() {
+        if (!migrateOnStartup) {
+            return;
+        }
+        try {
+            migrate();
+        } catch (RuntimeException e) {
+            // Dry runs and CSV exports work without Neo4j
+            log.warn("Schema not migrated at startup, will retry before the next import: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the migrations the graph does not have yet; a no-op once it is up to date.
+     *
+     * @return the schema version of the graph
+     */
+    public synchronized int migrate() {
+        int latest = latestVersion();
+        if (appliedVersion == latest) {
+            return appliedVersion;
+        }
+        int version = currentVersion();
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() <= version) {
+                continue;
+            }
+            log.info("Applying schema migration {}: {}", migration.version(), migration.description());
+            for (String statement : migration.statements()) {
+                // Schema changes cannot share a transaction with writes, so each runs on its own
+                neo4jClient.query(statement).run();
+            }
+            neo4jClient.query("MERGE (m:SchemaMigration {version: $version}) "
+                            + "SET m.description = $description, m.appliedAt = datetime()")
+                    .bindAll(Map.of("version", migration.version(), "description", migration.description()))
+                    .run();
+            version = migration.version();
+        }
+        appliedVersion = version;
+        log.info("Graph schema at version {}", version);
+        return version;
+    }
+
+    /**
+     * The highest migration version recorded in the graph, 0 for a graph never migrated.
+     */
+    public int currentVersion() {
+        return neo4jClient.query("MATCH (m:SchemaMigration) RETURN coalesce(max(m.version), 0) AS version")
+                .fetchAs(Long.class)
+                .one()
+                .map(Long::intValue)
+                .orElse(0);
+    }
+
+    public int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    /**
+     * Sets the listed properties of every {@code pattern} match, in batches.
+     */
+    private static String retype(String pattern, String variable, List<String> assignments) {
+        return "MATCH " + pattern + "\nCALL {\n    WITH " + variable + "\n    SET "
+                + String.join(",\n        ", assignments) + "\n} IN TRANSACTIONS OF 10000 ROWS";
+    }
+
+    /**
+     * Links the {@code label} nodes without {@code relationship}s to the particelle of the
+     * {@code [codiceAmministrativo, sezione, foglio, numero, subalterno]} lists bound to {@code rows}.
+     */
+    private static String linkParticelle(String label, String relationship, String rows) {
+        return """
+                MATCH (n:%1$s) WHERE NOT (n)-[:%2$s]->(:Particella)
+                CALL {
+                    WITH n
+                    %3$s
+                    UNWIND rows AS values
+                    WITH n, [v IN values | trim(coalesce(v, ''))] AS key
+                    WHERE key[2] <> '' AND key[3] <> ''
+                    MERGE (p:Particella {identificativoParticella: reduce(id = key[0], k IN key[1..] | id + '|' + k)})
+                    ON CREATE SET p.codiceAmministrativo = key[0], p.sezione = key[1], p.foglio = key[2],
+                        p.numero = key[3], p.subalterno = key[4]
+                    MERGE (n)-[:%2$s]->(p)
+                } IN TRANSACTIONS OF 1000 ROWS
+                """.formatted(label, relationship, rows);
+    }
+
+    private static List<String> titolaritaProperties() {
+        return List.of(integer("r.quotaNumeratore"), integer("r.quotaDenominatore"),
+                date("r.dataValidita"), date("r.dataRegistrazioneAtti"),
+                date("r.dataValidita2"), date("r.dataRegistrazioneAtti2"));
+    }
+
+    // Like PipeRecord.decimalField, longField and dateField: what does not parse becomes null.
+    // Values that are no longer Strings are kept, so the migration can run again.
+
+    static String decimal(String property) {
+        return String.format("%1$s = CASE WHEN %1$s IS :: STRING THEN toFloat(replace(trim(%1$s), ',', '.')) "
+                + "ELSE %1$s END", property);
+    }
+
+    static String integer(String property) {
+        return String.format("%1$s = CASE WHEN %1$s IS :: STRING THEN toInteger(trim(%1$s)) ELSE %1$s END", property);
+    }
+
+    /**
+     * {@code ddMMyyyy} to a date, with the day checked against the length of the month.
+     */
+    static String date(String property) {
+        String value = "trim(" + property + ")";
+        String year = "toInteger(substring(" + value + ", 4, 4))";
+        String month = "toInteger(substring(" + value + ", 2, 2))";
+        String day = "toInteger(substring(" + value + ", 0, 2))";
+        return property + " = CASE"
+                + " WHEN " + property + " IS NULL OR NOT " + property + " IS :: STRING THEN " + property
+                + " WHEN NOT " + value + " =~ '[0-9]{8}' OR NOT " + month + " IN range(1, 12) THEN null"
+                + " WHEN NOT " + day + " IN range(1, (date({year: " + year + ", month: " + month + "})"
+                + " + duration({months: 1}) - duration({days: 1})).day) THEN null"
+                + " ELSE date({year: " + year + ", month: " + month + ", day: " + day + "}) END";
+    }
+
+    record Migration(int version, String description, List<String> statements) {
+    }
+}
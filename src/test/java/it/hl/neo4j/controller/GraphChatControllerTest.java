@@ -0,0 +1,77 @@
+package it.hl.neo4j.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.hl.neo4j.dto.RawQueryRequest;
+import it.hl.neo4j.service.GraphQueryService;
+import it.hl.neo4j.service.LLMService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GraphChatControllerTest {
+
+    private final GraphQueryService queryService = mock(GraphQueryService.class);
+    private final GraphChatController controller =
+            new GraphChatController(queryService, mock(LLMService.class), new ObjectMapper());
+
+    @Test
+    void writesOneJsonObjectPerLine() throws IOException {
+        when(queryService.streamRawQuery(any(), any())).thenAnswer(call -> {
+            Consumer<Map<String, Object>> sink = call.getArgument(1);
+            sink.accept(Map.of("n", 1));
+            sink.accept(Map.of("text", "riga\nnuova"));
+            sink.accept(Map.of("success", false));
+            return 2L;
+        });
+
+        ResponseEntity<StreamingResponseBody> response = controller.queryStream(new RawQueryRequest());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        assertThat(response.getHeaders().getContentType()).hasToString("application/x-ndjson");
+        assertThat(out.toString(StandardCharsets.UTF_8))
+                .isEqualTo("{\"n\":1}\n{\"text\":\"riga\\nnuova\"}\n{\"success\":false}\n");
+    }
+
+    @Test
+    void flushesTheFirstLineRightAway() throws IOException {
+        AtomicInteger flushedBytes = new AtomicInteger();
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                written.write(b);
+            }
+
+            @Override
+            public void flush() {
+                flushedBytes.set(written.size());
+            }
+        };
+        when(queryService.streamRawQuery(any(), any())).thenAnswer(call -> {
+            Consumer<Map<String, Object>> sink = call.getArgument(1);
+            sink.accept(Map.of("n", 1));
+            // The client has the first line before the second is produced
+            assertThat(flushedBytes.get()).isEqualTo("{\"n\":1}\n".length());
+            sink.accept(Map.of("n", 2));
+            return 2L;
+        });
+
+        controller.queryStream(new RawQueryRequest()).getBody().writeTo(out);
+
+        assertThat(written.toString(StandardCharsets.UTF_8)).isEqualTo("{\"n\":1}\n{\"n\":2}\n");
+    }
+}
@@ -0,0 +1,107 @@
+package it.hl.neo4j.importer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdminImportExportTest {
+
+    @TempDir
+    Path work;
+
+    @Test
+    void typesTheHeaderFromTheValuesSeen() throws IOException {
+        try (AdminImportExport export = new AdminImportExport(work)) {
+            AdminImportExport.Part part = export.nodes("Fabbricato", "identificativoImmobile", "A001");
+            part.write(List.of(
+                    row("identificativoImmobile", "1", "categoria", "A02", "renditaEuro", null,
+                            "fogli", List.of(), "dataNotifica", null, "piani", 2),
+                    row("identificativoImmobile", "2", "categoria", "C06", "renditaEuro", new BigDecimal("512.30"),
+                            "fogli", List.of("12", "13"), "dataNotifica", LocalDate.of(2001, 3, 4), "piani", 1)));
+        }
+
+        assertThat(Files.readString(work.resolve("Fabbricato-header.csv"))).isEqualTo(
+                "identificativoImmobile:ID(Fabbricato),categoria,renditaEuro:double,fogli:string[],dataNotifica:date,piani:int\n");
+        assertThat(Files.readAllLines(work.resolve("Fabbricato-A001.csv"))).containsExactly(
+                "\"1\",\"A02\",,,,2",
+                "\"2\",\"C06\",512.30,\"12|13\",\"2001-03-04\",1");
+    }
+
+    @Test
+    void quotesAndEscapesText() throws IOException {
+        try (AdminImportExport export = new AdminImportExport(work)) {
+            export.nodes("Soggetto", "identificativoSoggetto", "A001").write(List.of(
+                    row("identificativoSoggetto", "500000", "denominazione", "SOCIETA' \"LA ROSA\", S.R.L."),
+                    row("identificativoSoggetto", "500001", "denominazione", "")));
+        }
+
+        assertThat(Files.readAllLines(work.resolve("Soggetto-A001.csv"))).containsExactly(
+                "\"500000\",\"SOCIETA' \"\"LA ROSA\"\", S.R.L.\"",
+                "\"500001\",\"\"");
+    }
+
+    @Test
+    void writesRelationshipsBetweenTheirEndpointIds() throws IOException {
+        try (AdminImportExport export = new AdminImportExport(work)) {
+            export.relationships("POSSIEDE_TERRENO", "Soggetto", "soggetto", "Terreno", "terreno", "A001")
+                    .write(List.of(Map.of("soggetto", "500000", "terreno", "1",
+                            "properties", row("identificativoTitolarita", "T1", "quotaNumeratore", 1L))));
+        }
+
+        assertThat(Files.readString(work.resolve("Soggetto-POSSIEDE_TERRENO-header.csv"))).isEqualTo(
+                ":START_ID(Soggetto),:END_ID(Terreno),identificativoTitolarita,quotaNumeratore:long\n");
+        assertThat(Files.readAllLines(work.resolve("Soggetto-POSSIEDE_TERRENO-A001.csv")))
+                .containsExactly("\"500000\",\"1\",\"T1\",1");
+    }
+
+    @Test
+    void listsOnlyTheFilesWithRowsInTheArgumentFile() throws IOException {
+        try (AdminImportExport export = new AdminImportExport(work)) {
+            export.nodes("Terreno", "identificativoImmobile", "A001").write(List.of(row("identificativoImmobile", "1")));
+            export.nodes("Terreno", "identificativoImmobile", "A002").write(List.of(row("identificativoImmobile", "2")));
+            export.nodes("Fabbricato", "identificativoImmobile", "A001").write(List.of());
+        }
+
+        assertThat(Files.readAllLines(work.resolve(AdminImportExport.ARGUMENTS_FILE))).containsExactly(
+                "--array-delimiter=|",
+                "--skip-duplicate-nodes=true",
+                "--nodes=Terreno=" + work.resolve("Terreno-header.csv") + "," + work.resolve("Terreno-A001.csv")
+                        + "," + work.resolve("Terreno-A002.csv"));
+        assertThat(work.resolve("Fabbricato-header.csv")).doesNotExist();
+    }
+
+    @Test
+    void refusesRowsForAClosedPart() throws IOException {
+        try (AdminImportExport export = new AdminImportExport(work)) {
+            AdminImportExport.Part part = export.nodes("Terreno", "identificativoImmobile", "A001");
+            part.write(List.of(row("identificativoImmobile", "1")));
+            export.closePart("A001");
+
+            assertThatThrownBy(() -> part.write(List.of(row("identificativoImmobile", "2"))))
+                    .isInstanceOf(UncheckedIOException.class);
+        }
+    }
+
+    /**
+     * A row keeping its columns in the order given, as the {@link CatastoRows} rows do.
+     */
+    private static Map<String, Object> row(Object... keysAndValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            row.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return row;
+    }
+}
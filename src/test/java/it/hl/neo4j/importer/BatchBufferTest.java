@@ -0,0 +1,50 @@
+package it.hl.neo4j.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchBufferTest {
+
+    @Test
+    void handsOverFullBatchesAndTheRestOnFlush() {
+        List<List<Integer>> batches = new ArrayList<>();
+        BatchBuffer<Integer> buffer = new BatchBuffer<>(3, batch -> batches.add(List.copyOf(batch)));
+
+        for (int i = 1; i <= 7; i++) {
+            buffer.add(i);
+        }
+        assertThat(batches).containsExactly(List.of(1, 2, 3), List.of(4, 5, 6));
+
+        buffer.flush();
+        buffer.flush();
+
+        assertThat(batches).containsExactly(List.of(1, 2, 3), List.of(4, 5, 6), List.of(7));
+        assertThat(buffer.getFlushed()).isEqualTo(7);
+        assertThat(buffer.getBatches()).isEqualTo(3);
+    }
+
+    @Test
+    void neverHoldsMoreThanOneBatch() {
+        int[] largest = {0};
+        BatchBuffer<Integer> buffer = new BatchBuffer<>(100, batch -> largest[0] = Math.max(largest[0], batch.size()));
+
+        for (int i = 0; i < 100_000; i++) {
+            buffer.add(i);
+        }
+        buffer.flush();
+
+        assertThat(largest[0]).isEqualTo(100);
+        assertThat(buffer.getBatches()).isEqualTo(1000);
+    }
+
+    @Test
+    void rejectsANonPositiveBatchSize() {
+        assertThatThrownBy(() -> new BatchBuffer<>(0, batch -> {
+        })).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,138 @@
+package it.hl.neo4j.importer;
+
+import it.hl.neo4j.model.Sog;
+import it.hl.neo4j.model.Ter;
+import it.hl.neo4j.model.TitTer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.neo4j.core.Neo4jClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CatastoBulkWriterTest {
+
+    private Neo4jClient neo4jClient;
+    private final List<String> statements = new ArrayList<>();
+    private final Map<String, List<Object>> parameters = new LinkedHashMap<>();
+    private CatastoBulkWriter writer;
+
+    @BeforeEach
+    void recordStatements() {
+        neo4jClient = mock(Neo4jClient.class);
+        when(neo4jClient.query(anyString())).thenAnswer(query -> {
+            statements.add(query.getArgument(0));
+            Neo4jClient.UnboundRunnableSpec spec = mock(Neo4jClient.UnboundRunnableSpec.class);
+            when(spec.bind(any())).thenAnswer(bind -> recordBinding(bind.getArgument(0)));
+            return spec;
+        });
+        writer = new CatastoBulkWriter(neo4jClient);
+    }
+
+    /**
+     * Records {@code value} under the parameter name it is bound to; the statement then returns 42.
+     */
+    @SuppressWarnings("unchecked")
+    private Neo4jClient.OngoingBindSpec<Object, Neo4jClient.RunnableSpec> recordBinding(Object value) {
+        Neo4jClient.OngoingBindSpec<Object, Neo4jClient.RunnableSpec> ongoing = mock(Neo4jClient.OngoingBindSpec.class);
+        when(ongoing.to(anyString())).thenAnswer(to -> {
+            parameters.computeIfAbsent(to.getArgument(0), name -> new ArrayList<>()).add(value);
+            Neo4jClient.RunnableSpec runnable = mock(Neo4jClient.RunnableSpec.class, RETURNS_DEEP_STUBS);
+            when(runnable.bind(any())).thenAnswer(bind -> recordBinding(bind.getArgument(0)));
+            when(runnable.fetchAs(Long.class).one()).thenReturn(Optional.of(42L));
+            return runnable;
+        });
+        return ongoing;
+    }
+
+    @Test
+    void writesAWholeBatchWithOneStatement() {
+        List<Sog> soggetti = new ArrayList<>();
+        for (int i = 0; i < 12_000; i++) {
+            soggetti.add(Sog.parse("A001||" + (500000 + i) + "|P|ROSSI|MARIO|M|01011980|H501|RSSMRA80A01H501Z||"));
+        }
+
+        assertThat(writer.writeSoggetti(soggetti)).isEqualTo(12_000);
+
+        assertThat(statements).hasSize(1);
+        assertThat(statements.get(0)).contains("UNWIND $rows AS row", "MERGE (s:Soggetto");
+        assertThat((List<?>) parameters.get("rows").get(0)).hasSize(12_000);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writesTheMappedRows() {
+        Ter ter = Ter.parse("A001||123|T|1|1|10|45||||SEMIN|1|0|10|5||||1|2|3|4|");
+
+        writer.writeTerreni(List.of(ter));
+
+        // The terreno, then its particella
+        assertThat(statements).hasSize(2);
+        List<Map<String, Object>> rows = (List<Map<String, Object>>) parameters.get("rows").get(0);
+        assertThat(rows).containsExactly(CatastoRows.terreno(ter));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void linksTitolaritaByIdentificativo() {
+        TitTer tit = TitTer.parse(titolarita("T1"));
+        List<Map<String, Object>> rows = List.of(
+                CatastoRows.titolaritaTerreno(tit, "500000", "1"),
+                CatastoRows.titolaritaTerreno(tit, "500000", "2"));
+
+        assertThat(writer.linkTerreni(rows)).isEqualTo(42);
+
+        assertThat(statements).hasSize(1);
+        assertThat(statements.get(0)).contains(
+                "MERGE (s)-[r:POSSIEDE_TERRENO {identificativoTitolarita: row.properties.identificativoTitolarita}]->(t)");
+        assertThat((List<Map<String, Object>>) parameters.get("rows").get(0)).isEqualTo(rows);
+    }
+
+    @Test
+    void scopesDeltaRemovalsToTheDeliveredComuni() {
+        assertThat(writer.unlinkTerreni(List.of("T2"), Set.of("A001"))).isEqualTo(42);
+        writer.deleteSoggetti(List.of("500001"), Set.of("A001"));
+
+        assertThat(statements.get(0)).contains("WHERE r.codiceAmministrativo IN $comuni");
+        // Soggetti repeat across comuni: never detach one from the immobili it owns elsewhere
+        assertThat(statements.get(1))
+                .contains("s.codiceAmministrativo IN $comuni", "NOT (s)-[:POSSIEDE_TERRENO|POSSIEDE_FABBRICATO]->()")
+                .doesNotContain("DETACH");
+        assertThat(parameters.get("ids")).containsExactly(List.of("T2"), List.of("500001"));
+        assertThat(parameters.get("comuni")).containsExactly(List.of("A001"), List.of("A001"));
+    }
+
+    @Test
+    void writesNothingForAnEmptyBatch() {
+        assertThat(writer.writeSoggetti(List.of())).isZero();
+        assertThat(writer.writeTerreni(List.of())).isZero();
+        assertThat(writer.linkTerreni(List.of())).isZero();
+        assertThat(writer.unlinkTerreni(List.of(), Set.of("A001"))).isZero();
+
+        verify(neo4jClient, never()).query(anyString());
+    }
+
+    static String titolarita(String identificativoTitolarita) {
+        String[] fields = new String[32];
+        Arrays.fill(fields, "");
+        fields[0] = "A001";
+        fields[5] = "T";
+        fields[6] = "10";
+        fields[27] = identificativoTitolarita;
+        return String.join("|", fields);
+    }
+}
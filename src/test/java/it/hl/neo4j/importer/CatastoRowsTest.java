@@ -0,0 +1,53 @@
+package it.hl.neo4j.importer;
+
+import it.hl.neo4j.model.Fab;
+import it.hl.neo4j.model.Ter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatastoRowsTest {
+
+    @Test
+    void linksATerrenoToItsParticella() {
+        Ter ter = Ter.parse("A001||123|T|1|1|10|45||||SEMIN|1|0|10|5||||1|2|3|4|");
+
+        Map<String, Object> row = CatastoRows.particelle(ter);
+
+        assertThat(row.get("identificativoImmobile")).isEqualTo("123");
+        assertThat(particelleIds(row, "identificativi")).containsExactly("A001||10|45|");
+        assertThat(particelleIds(row, "utilitaComuni")).isEmpty();
+    }
+
+    @Test
+    void linksAFabbricatoToEachParticellaOnce() {
+        Fab fab = new Fab();
+        fab.setCodiceAmministrativo("A001");
+        fab.setIdentificativoImmobile("9");
+        // The same particella twice, as two lines of the same type 2 record would list it
+        fab.addIdentificativi("A001||9|F|1|2||12|345||1|||12|345||1|||12|346||1|E");
+        fab.addUtilitaComuni("A001||9|F|1|4||12|345||1");
+
+        Map<String, Object> row = CatastoRows.particelle(fab);
+
+        assertThat(particelleIds(row, "identificativi")).containsExactly("A001||12|345|1", "A001||12|346|1");
+        assertThat(particelleIds(row, "utilitaComuni")).containsExactly("A001||12|345|1");
+    }
+
+    @Test
+    void linksATerrenoWithoutNumeroToNothing() {
+        Ter ter = Ter.parse("A001||123|T|1|1|10|||||SEMIN|1|0|10|5||||1|2|3|4|");
+
+        assertThat(particelleIds(CatastoRows.particelle(ter), "identificativi")).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> particelleIds(Map<String, Object> row, String key) {
+        return ((List<Map<String, Object>>) row.get(key)).stream()
+                .map(particella -> particella.get("identificativoParticella"))
+                .toList();
+    }
+}
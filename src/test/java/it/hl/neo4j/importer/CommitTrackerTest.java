@@ -0,0 +1,60 @@
+package it.hl.neo4j.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommitTrackerTest {
+
+    private final List<Long> reported = new ArrayList<>();
+    private final CommitTracker tracker = new CommitTracker(reported::add);
+
+    @Test
+    void advancesOnlyOverContiguousCommittedChunks() {
+        tracker.parsed(chunk(0, 0, 100), 2);
+        tracker.parsed(chunk(1, 100, 50), 1);
+        tracker.parsed(chunk(2, 150, 70), 3);
+
+        // Chunk 2 commits first: nothing before it is committed yet
+        tracker.committed(List.of(span(2, 3)));
+        assertThat(tracker.getCommittedOffset()).isZero();
+
+        // Half of chunk 0 is not enough
+        tracker.committed(List.of(span(0, 1), span(1, 1)));
+        assertThat(tracker.getCommittedOffset()).isZero();
+        assertThat(reported).isEmpty();
+
+        // The rest of chunk 0 releases chunks 1 and 2 as well
+        tracker.committed(List.of(span(0, 1)));
+        assertThat(tracker.getCommittedOffset()).isEqualTo(220);
+        assertThat(reported).containsExactly(220L);
+    }
+
+    @Test
+    void advancesOverChunksWithoutItems() {
+        tracker.parsed(chunk(0, 0, 10), 0);
+        assertThat(tracker.getCommittedOffset()).isEqualTo(10);
+
+        tracker.parsed(chunk(2, 30, 10), 0);
+        assertThat(tracker.getCommittedOffset()).isEqualTo(10);
+
+        tracker.parsed(chunk(1, 10, 20), 1);
+        tracker.committed(List.of(span(1, 1)));
+        assertThat(tracker.getCommittedOffset()).isEqualTo(40);
+        assertThat(reported).containsExactly(10L, 40L);
+    }
+
+    private static RawChunk chunk(long sequence, long offset, int length) {
+        return new RawChunk(sequence, offset, ByteBuffer.allocate(0), length);
+    }
+
+    private static CommitTracker.ChunkSpan span(long sequence, int items) {
+        CommitTracker.ChunkSpan span = new CommitTracker.ChunkSpan(sequence);
+        span.items = items;
+        return span;
+    }
+}
@@ -0,0 +1,87 @@
+package it.hl.neo4j.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentIndexTest {
+
+    @Test
+    void tellsUnchangedFromChangedAndNewRecords() {
+        ContentIndex index = ContentIndex.builder()
+                .add("100", 1L)
+                .add("200", 2L)
+                .add("X-1", 3L)
+                .build();
+
+        assertThat(index.visit("100", 1L)).isTrue();
+        assertThat(index.visit("200", 99L)).isFalse();
+        assertThat(index.visit("X-1", 3L)).isTrue();
+        assertThat(index.visit("300", 1L)).isFalse();
+        assertThat(index.visit(null, 1L)).isFalse();
+        assertThat(index.getUnchanged()).isEqualTo(2);
+    }
+
+    @Test
+    void neverMatchesRecordsWithoutAHash() {
+        ContentIndex index = ContentIndex.builder().add("100", null).build();
+
+        assertThat(index.visit("100", 42L)).isFalse();
+    }
+
+    @Test
+    void mergesRecordsAddedTwice() {
+        ContentIndex index = ContentIndex.builder()
+                .add("100", 1L)
+                .add("200", 2L)
+                .add("100", 1L)
+                .add("300", 3L)
+                .add("300", 4L)
+                .add("X-1", 5L)
+                .add("X-1", 6L)
+                .build();
+
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(index.visit("100", 1L)).isTrue();
+        // Two records with different content under one id: rewrite it
+        assertThat(index.visit("300", 3L)).isFalse();
+        assertThat(index.visit("X-1", 5L)).isFalse();
+
+        List<String> unseen = new ArrayList<>();
+        index.forEachUnseen(unseen::add);
+        assertThat(unseen).containsExactly("200");
+    }
+
+    @Test
+    void listsTheRecordsNeverVisited() {
+        ContentIndex.Builder builder = ContentIndex.builder();
+        // More than one bitset word and past the initial capacity, added out of order
+        for (int i = 1500; i > 0; i--) {
+            builder.add(String.format("%04d", i), (long) i);
+        }
+        builder.add("X-1", 1L).add("X-2", 2L);
+        ContentIndex index = builder.build();
+
+        for (int i = 1; i <= 1500; i++) {
+            if (i % 100 != 0) {
+                // Changed or not, a visited record is still in the delivery
+                index.visit(String.format("%04d", i), i % 2 == 0 ? i : -i);
+            }
+        }
+        index.visit("X-2", 0L);
+
+        List<String> unseen = new ArrayList<>();
+        index.forEachUnseen(unseen::add);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 100; i <= 1500; i += 100) {
+            expected.add(String.format("%04d", i));
+        }
+        expected.add("X-1");
+        assertThat(index.size()).isEqualTo(1502);
+        assertThat(unseen).containsExactlyElementsOf(expected);
+    }
+}
@@ -0,0 +1,69 @@
+package it.hl.neo4j.importer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdIndexTest {
+
+    @Test
+    void packsAndUnpacksNumericIds() {
+        for (String id : new String[]{"0", "7", "007", "12345", "00000000000000001", "99999999999999999"}) {
+            long key = IdIndex.pack(id);
+            assertThat(key).as(id).isNotEqualTo(IdIndex.NOT_PACKABLE);
+            assertThat(IdIndex.unpack(key)).isEqualTo(id);
+        }
+    }
+
+    @Test
+    void keepsLeadingZerosSignificant() {
+        assertThat(IdIndex.pack("7")).isNotEqualTo(IdIndex.pack("07"));
+
+        IdIndex index = IdIndex.builder().add("07").build();
+
+        assertThat(index.contains("07")).isTrue();
+        assertThat(index.contains("7")).isFalse();
+        assertThat(index.contains("007")).isFalse();
+    }
+
+    @Test
+    void doesNotPackNonDigitsOrLongIds() {
+        assertThat(IdIndex.pack("")).isEqualTo(IdIndex.NOT_PACKABLE);
+        assertThat(IdIndex.pack("12A")).isEqualTo(IdIndex.NOT_PACKABLE);
+        assertThat(IdIndex.pack("-1")).isEqualTo(IdIndex.NOT_PACKABLE);
+        assertThat(IdIndex.pack("123456789012345678")).isEqualTo(IdIndex.NOT_PACKABLE);
+    }
+
+    @Test
+    void findsPackedAndOverflowIds() {
+        IdIndex index = IdIndex.builder()
+                .add("300").add("100").add("200").add("100")
+                .add("X-1").add("123456789012345678").add("X-1")
+                .add(null)
+                .build();
+
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(index.contains("100")).isTrue();
+        assertThat(index.contains("200")).isTrue();
+        assertThat(index.contains("300")).isTrue();
+        assertThat(index.contains("X-1")).isTrue();
+        assertThat(index.contains("123456789012345678")).isTrue();
+        assertThat(index.contains("400")).isFalse();
+        assertThat(index.contains("X-2")).isFalse();
+        assertThat(index.contains(null)).isFalse();
+    }
+
+    @Test
+    void growsPastTheInitialCapacity() {
+        IdIndex.Builder builder = IdIndex.builder();
+        for (int i = 5000; i > 0; i--) {
+            builder.add(Integer.toString(i * 2));
+        }
+        IdIndex index = builder.build();
+
+        assertThat(index.size()).isEqualTo(5000);
+        assertThat(index.contains("2")).isTrue();
+        assertThat(index.contains("10000")).isTrue();
+        assertThat(index.contains("3")).isFalse();
+    }
+}
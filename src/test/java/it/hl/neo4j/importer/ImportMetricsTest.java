@@ -0,0 +1,65 @@
+package it.hl.neo4j.importer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImportMetricsTest {
+
+    @TempDir
+    Path work;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ImportMetrics metrics = new ImportMetrics(registry);
+
+    @Test
+    void countsWhatABoundPipelineReadsParsesAndWrites() throws IOException {
+        // Every other line is left out by the parser
+        Path file = Files.write(work.resolve("A001.ter"), IntStream.range(0, 1000)
+                .mapToObj(i -> "A001||" + i + "|T|")
+                .toList());
+        ImportPipeline<String> pipeline = new ImportPipeline<>("terreni", FileChunkSource.of(file, 1024),
+                (chunk, sink) -> chunk.forEach(record -> {
+                    if (Integer.parseInt(record.field(2)) % 2 == 0) {
+                        sink.accept(record.field(2));
+                    }
+                }),
+                List::size,
+                PipelineSettings.builder().batchSize(100).parserThreads(2).writerThreads(2).build());
+
+        metrics.bind("terreni", pipeline).run();
+        metrics.unbind("terreni", pipeline);
+
+        assertThat(counter("catasto.import.read.bytes")).isEqualTo(Files.size(file));
+        assertThat(counter("catasto.import.lines.read")).isEqualTo(1000);
+        assertThat(counter("catasto.import.records.parsed")).isEqualTo(500);
+        assertThat(counter("catasto.import.records.written")).isEqualTo(500);
+        assertThat(registry.get("catasto.import.batch.commit").tag("stage", "terreni").timer().count()).isEqualTo(5);
+        assertThat(registry.get("catasto.import.queue.depth").tag("stage", "terreni").tag("queue", "writer")
+                .gauge().value()).isZero();
+    }
+
+    @Test
+    void countsRejectionsByStageAndReason() {
+        metrics.rejected("titolarita", RejectReason.TERRENO_NOT_FOUND);
+        metrics.rejected("titolarita", RejectReason.TERRENO_NOT_FOUND);
+        metrics.rejected("titolarita", RejectReason.SOGGETTO_NOT_FOUND);
+
+        assertThat(registry.get("catasto.import.records.rejected")
+                .tag("stage", "titolarita").tag("reason", "TERRENO_NOT_FOUND").counter().count()).isEqualTo(2);
+        assertThat(registry.get("catasto.import.records.rejected")
+                .tag("stage", "titolarita").tag("reason", "SOGGETTO_NOT_FOUND").counter().count()).isEqualTo(1);
+    }
+
+    private double counter(String name) {
+        return registry.get(name).tag("stage", "terreni").counter().count();
+    }
+}
@@ -0,0 +1,151 @@
+package it.hl.neo4j.importer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImportPipelineTest {
+
+    private static final int LINES = 10_000;
+
+    @TempDir
+    Path work;
+
+    private Path file;
+
+    @BeforeEach
+    void writeInput() throws IOException {
+        List<String> lines = new ArrayList<>(LINES);
+        for (int i = 0; i < LINES; i++) {
+            lines.add("A001||" + i + "|T|");
+        }
+        file = Files.write(work.resolve("input.ter"), lines);
+    }
+
+    @Test
+    void writesEveryRecordOnceInBatches() throws IOException {
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        ConcurrentLinkedQueue<Integer> batchSizes = new ConcurrentLinkedQueue<>();
+        AtomicLong committedOffset = new AtomicLong();
+
+        ImportPipeline<String> pipeline = pipeline(batch -> {
+            batchSizes.add(batch.size());
+            written.addAll(batch);
+            return batch.size();
+        }).onCommitted(committedOffset::set);
+        pipeline.run();
+
+        assertThat(written).hasSize(LINES).doesNotHaveDuplicates();
+        assertThat(batchSizes).allMatch(size -> size <= 300);
+        assertThat(pipeline.getWritten()).isEqualTo(LINES);
+        assertThat(pipeline.getCommittedBatches()).isEqualTo(batchSizes.size());
+        assertThat(committedOffset.get()).isEqualTo(Files.size(file));
+    }
+
+    @Test
+    void retriesTransientWriteErrors() {
+        AtomicInteger calls = new AtomicInteger();
+        ImportPipeline<String> pipeline = pipeline(batch -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new TransientDataAccessResourceException("deadlock");
+            }
+            return batch.size();
+        });
+
+        pipeline.run();
+
+        assertThat(pipeline.getWritten()).isEqualTo(LINES);
+    }
+
+    @Test
+    void stopsAtTheFirstFailure() {
+        AtomicInteger calls = new AtomicInteger();
+        ImportPipeline<String> pipeline = pipeline(batch -> {
+            if (calls.incrementAndGet() == 3) {
+                throw new IllegalStateException("constraint violated");
+            }
+            return batch.size();
+        });
+
+        assertThatThrownBy(pipeline::run)
+                .isInstanceOf(ImportPipelineException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(pipeline.getWritten()).isLessThan(LINES);
+    }
+
+    @Test
+    void stopsWhenCancelled() {
+        AtomicReference<ImportPipeline<String>> pipeline = new AtomicReference<>();
+        pipeline.set(pipeline(batch -> {
+            pipeline.get().cancel();
+            return batch.size();
+        }));
+
+        assertThatThrownBy(pipeline.get()::run)
+                .isInstanceOf(ImportPipelineException.class)
+                .hasCauseInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    void pipelinesSharingWritePermitsStayWithinThem() {
+        Semaphore permits = new Semaphore(2);
+        AtomicInteger writing = new AtomicInteger();
+        AtomicInteger mostWriting = new AtomicInteger();
+        BatchWriter<String> writer = batch -> {
+            mostWriting.accumulateAndGet(writing.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writing.decrementAndGet();
+            return batch.size();
+        };
+        List<ImportPipeline<String>> pipelines = List.of(
+                pipeline(writer, permits), pipeline(writer, permits), pipeline(writer, permits));
+
+        CompletableFuture.allOf(pipelines.stream()
+                .map(pipeline -> CompletableFuture.runAsync(pipeline::run))
+                .toArray(CompletableFuture[]::new)).join();
+
+        // Three pipelines of two writers each, but never more than two batches at once
+        assertThat(mostWriting.get()).isBetween(1, 2);
+        assertThat(pipelines).allMatch(pipeline -> pipeline.getWritten() == LINES);
+        assertThat(permits.availablePermits()).isEqualTo(2);
+    }
+
+    private ImportPipeline<String> pipeline(BatchWriter<String> writer) {
+        return pipeline(writer, null);
+    }
+
+    private ImportPipeline<String> pipeline(BatchWriter<String> writer, Semaphore writePermits) {
+        return new ImportPipeline<>("test", FileChunkSource.of(file, 4096),
+                (chunk, sink) -> chunk.forEach(record -> sink.accept(record.field(2))),
+                writer,
+                PipelineSettings.builder()
+                        .batchSize(300)
+                        .parserThreads(3)
+                        .writerThreads(2)
+                        .queueCapacity(2)
+                        .writePermits(writePermits)
+                        .build());
+    }
+}
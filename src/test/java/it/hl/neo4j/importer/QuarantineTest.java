@@ -0,0 +1,86 @@
+package it.hl.neo4j.importer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuarantineTest {
+
+    @TempDir
+    Path work;
+
+    @Test
+    void createsNoFileWithoutRejections() throws IOException {
+        Path file = work.resolve("quarantine/A001.tsv");
+        Quarantine quarantine = new Quarantine(file, 10);
+
+        quarantine.close();
+
+        assertThat(quarantine.getFile()).isNull();
+        assertThat(file).doesNotExist();
+        assertThat(quarantine.counts("terreni")).isEmpty();
+    }
+
+    @Test
+    void writesOneTabSeparatedLinePerRejection() throws IOException {
+        Path file = work.resolve("quarantine/A001.tsv");
+        List<String> notified = new ArrayList<>();
+        try (Quarantine quarantine = new Quarantine(file, 10)
+                .onReject((stage, reason) -> notified.add(stage + " " + reason))) {
+            quarantine.reject("titolarita", RejectReason.TERRENO_NOT_FOUND, "A001|T1", "terreno 9", null);
+            quarantine.reject("terreni", RejectReason.PARSE_ERROR, "A001|x", null, new NumberFormatException("x"));
+            quarantine.reject("terreni", RejectReason.MALFORMED_RECORD, "A001", "a\tmulti\nline detail", null);
+
+            assertThat(quarantine.getFile()).isEqualTo(file);
+        }
+
+        assertThat(Files.readAllLines(file)).containsExactly(
+                "titolarita\tTERRENO_NOT_FOUND\tterreno 9\tA001|T1",
+                "terreni\tPARSE_ERROR\tNumberFormatException: x\tA001|x",
+                "terreni\tMALFORMED_RECORD\ta multi line detail\tA001");
+        assertThat(notified).containsExactly(
+                "titolarita TERRENO_NOT_FOUND", "terreni PARSE_ERROR", "terreni MALFORMED_RECORD");
+    }
+
+    @Test
+    void countsRejectionsOfEveryParserWorker() throws IOException {
+        Path file = work.resolve("A001.tsv");
+        try (Quarantine quarantine = new Quarantine(file, 100)) {
+            CompletableFuture.allOf(IntStream.range(0, 4)
+                    .mapToObj(worker -> CompletableFuture.runAsync(() -> {
+                        for (int i = 0; i < 250; i++) {
+                            RejectReason reason = i % 5 == 0 ? RejectReason.SOGGETTO_NOT_FOUND : RejectReason.TERRENO_NOT_FOUND;
+                            quarantine.reject("titolarita", reason, worker + "|" + i, null, null);
+                        }
+                    }))
+                    .toArray(CompletableFuture[]::new)).join();
+
+            assertThat(quarantine.counts("titolarita"))
+                    .isEqualTo(Map.of("SOGGETTO_NOT_FOUND", 200L, "TERRENO_NOT_FOUND", 800L));
+        }
+        assertThat(Files.readAllLines(file)).hasSize(1000).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void ignoresRejectionsAfterClosing() throws IOException {
+        Path file = work.resolve("A001.tsv");
+        Quarantine quarantine = new Quarantine(file, 10);
+        quarantine.reject("soggetti", RejectReason.MALFORMED_RECORD, "A001", null, null);
+        quarantine.close();
+
+        quarantine.reject("soggetti", RejectReason.MALFORMED_RECORD, "A002", null, null);
+
+        assertThat(Files.readAllLines(file)).containsExactly("soggetti\tMALFORMED_RECORD\t\tA001");
+        assertThat(quarantine.counts("soggetti")).isEqualTo(Map.of("MALFORMED_RECORD", 2L));
+    }
+}
@@ -0,0 +1,62 @@
+package it.hl.neo4j.importer;
+
+import it.hl.neo4j.parser.PipeRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordChunkBuilderTest {
+
+    private static final List<String> LINES = List.of(
+            "A|1|a", "A|1|b", "A|2|a", "A|3|a", "A|3|b", "A|3|c", "A|4|a");
+
+    @Test
+    void cutsChunksBetweenGroupsWithStreamOffsets() {
+        List<RawChunk> chunks = build(8, 2, 0);
+
+        assertThat(chunks).extracting(RecordChunkBuilderTest::lines).containsExactly(
+                List.of("A|1|a", "A|1|b"),
+                List.of("A|2|a", "A|3|a", "A|3|b", "A|3|c"),
+                List.of("A|4|a"));
+        assertThat(chunks).extracting(RawChunk::getSequence).containsExactly(0L, 1L, 2L);
+        // Every record counts 5 bytes plus its terminator
+        assertThat(chunks).extracting(RawChunk::getOffset).containsExactly(0L, 12L, 36L);
+        assertThat(chunks).extracting(RawChunk::getEndOffset).containsExactly(12L, 36L, 42L);
+    }
+
+    @Test
+    void cutsAfterEveryRecordWithoutKeyFields() {
+        List<RawChunk> chunks = build(1, 0, 0);
+
+        assertThat(chunks).hasSize(LINES.size());
+        assertThat(chunks.get(3).getOffset()).isEqualTo(18L);
+    }
+
+    @Test
+    void skipsRecordsBeforeTheStartOffset() {
+        List<RawChunk> chunks = build(1000, 2, 18);
+
+        assertThat(chunks).hasSize(1);
+        assertThat(chunks.get(0).getOffset()).isEqualTo(18L);
+        assertThat(lines(chunks.get(0))).containsExactly("A|3|a", "A|3|b", "A|3|c", "A|4|a");
+    }
+
+    private static List<RawChunk> build(int chunkBytes, int keyFields, long startOffset) {
+        List<RawChunk> chunks = new ArrayList<>();
+        RecordChunkBuilder builder = new RecordChunkBuilder(chunks::add, chunkBytes, keyFields, startOffset);
+        for (String line : LINES) {
+            builder.add(PipeRecord.of(line));
+        }
+        builder.emit();
+        return chunks;
+    }
+
+    private static List<String> lines(RawChunk chunk) {
+        List<String> lines = new ArrayList<>();
+        chunk.forEach(record -> lines.add(record.line()));
+        return lines;
+    }
+}
@@ -0,0 +1,46 @@
+package it.hl.neo4j.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParticellaTest {
+
+    @Test
+    void isIdentifiedByItsTrimmedKey() {
+        Particella particella = Particella.of("A001", null, " 12 ", "345", " 1");
+
+        assertThat(particella.getIdentificativoParticella()).isEqualTo("A001||12|345|1");
+        assertThat(particella.getSezione()).isEmpty();
+        assertThat(particella.getFoglio()).isEqualTo("12");
+        assertThat(particella.getSubalterno()).isEqualTo("1");
+    }
+
+    @Test
+    void needsFoglioAndNumero() {
+        assertThat(Particella.of("A001", "", "12", " ", "")).isNull();
+        assertThat(Particella.of("A001", "", null, "345", "")).isNull();
+    }
+
+    @Test
+    void identifiesATerreno() {
+        Ter ter = Ter.parse("A001||123|T|1|1|10|45||||SEMIN|1|0|10|5||||1|2|3|4|");
+
+        assertThat(ter.particella().getIdentificativoParticella()).isEqualTo("A001||10|45|");
+    }
+
+    @Test
+    void identifiesAFabbricatoByEachIdentificativoAndUtilitaComune() {
+        Fab fab = new Fab();
+        fab.setCodiceAmministrativo("A001");
+        fab.setIdentificativoImmobile("9");
+        // Two subalterni of particella 12/345, then a foglio without numero
+        fab.addIdentificativi("A001||9|F|1|2||12|345||1|||12|345||2|||13||||E");
+        fab.addUtilitaComuni("A001||9|F|1|4|B|12|346||3");
+
+        assertThat(fab.particelle()).extracting(Particella::getIdentificativoParticella)
+                .containsExactly("A001||12|345|1", "A001||12|345|2");
+        assertThat(fab.particelleUtilitaComuni()).extracting(Particella::getIdentificativoParticella)
+                .containsExactly("A001|B|12|346|3");
+    }
+}
@@ -0,0 +1,69 @@
+package it.hl.neo4j.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Money, quota and date fields are parsed to numbers and dates, so range queries and sorting
+ * compare values rather than text.
+ */
+class TypedValuesTest {
+
+    @Test
+    void parsesRedditiOfATerreno() {
+        Ter ter = Ter.parse("A001||123|T|1|1|10|45||||SEMIN|1|0|10|5||||1500|2000,50|0.77| |");
+
+        assertThat(ter.getRedditoDominicaleLire()).isEqualTo(1500.0);
+        assertThat(ter.getRedditoAgrarioLire()).isEqualTo(2000.5);
+        assertThat(ter.getRedditoDominicaleEuro()).isEqualTo(0.77);
+        assertThat(ter.getRedditoAgrarioEuro()).isNull();
+    }
+
+    @Test
+    void parsesQuotaAndDatesOfATitolarita() {
+        TitTer tit = TitTer.parse(titolarita("1", "2", "01022003", "31022003"));
+
+        assertThat(tit.getQuotaNumeratore()).isEqualTo(1L);
+        assertThat(tit.getQuotaDenominatore()).isEqualTo(2L);
+        assertThat(tit.getDataValidita()).isEqualTo(LocalDate.of(2003, 2, 1));
+        // Not a day of that month
+        assertThat(tit.getDataRegistrazioneAtti()).isNull();
+        assertThat(tit.getDisplayName()).isEqualTo("Proprietà (1/2)");
+    }
+
+    @Test
+    void leavesTheQuotaOutOfTheNameWhenThereIsNone() {
+        TitTer tit = TitTer.parse(titolarita("", "0", "", ""));
+
+        assertThat(tit.getQuotaNumeratore()).isNull();
+        assertThat(tit.getQuotaDenominatore()).isZero();
+        assertThat(tit.getDataValidita()).isNull();
+        assertThat(tit.getDisplayName()).isEqualTo("Proprietà");
+    }
+
+    @Test
+    void parsesTheDataNascitaOfASoggetto() {
+        Sog sog = Sog.parse("A001||500000|P|ROSSI|MARIO|M|29021980|H501|RSSMRA80B29H501Z||");
+
+        assertThat(sog.getDataNascita()).isEqualTo(LocalDate.of(1980, 2, 29));
+    }
+
+    private static String titolarita(String numeratore, String denominatore, String dataValidita,
+                                     String dataRegistrazione) {
+        String[] fields = new String[32];
+        Arrays.fill(fields, "");
+        fields[0] = "A001";
+        fields[5] = "T";
+        fields[6] = "10";
+        fields[8] = numeratore;
+        fields[9] = denominatore;
+        fields[12] = dataValidita;
+        fields[17] = dataRegistrazione;
+        fields[27] = "T1";
+        return String.join("|", fields);
+    }
+}
@@ -0,0 +1,78 @@
+package it.hl.neo4j.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GroupedRecordReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void streamsGroupedFilesAsTheyAre() throws IOException {
+        Path file = write("A|1|x", "A|1|y", "A|2|x", "A|0|z");
+        GroupedRecordReader reader = new GroupedRecordReader(2, directory, 1 << 20);
+
+        assertThat(reader.isGrouped(file)).isTrue();
+        assertThat(read(reader, file)).containsExactly("A|1|x", "A|1|y", "A|2|x", "A|0|z");
+    }
+
+    @Test
+    void sortsUngroupedFilesInMemory() throws IOException {
+        Path file = write("A|2|first", "A|1|first", "A|2|second", "A|1|second", "A|3|only");
+        GroupedRecordReader reader = new GroupedRecordReader(2, directory, 1 << 20);
+
+        assertThat(reader.isGrouped(file)).isFalse();
+        assertThat(read(reader, file)).containsExactly(
+                "A|1|first", "A|1|second", "A|2|first", "A|2|second", "A|3|only");
+        assertThat(runFiles()).isEmpty();
+    }
+
+    @Test
+    void mergesSpilledRunsKeepingFileOrderWithinAKey() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            lines.add("A|" + (i % 7) + "|" + String.format("%03d", i));
+        }
+        Path file = write(lines.toArray(String[]::new));
+        // A buffer of a few hundred bytes spills a run every handful of records
+        GroupedRecordReader reader = new GroupedRecordReader(2, directory, 300);
+
+        List<String> records = read(reader, file);
+
+        List<String> expected = lines.stream()
+                .sorted((a, b) -> a.substring(0, a.lastIndexOf('|')).compareTo(b.substring(0, b.lastIndexOf('|'))))
+                .toList();
+        assertThat(records).containsExactlyElementsOf(expected);
+        assertThat(runFiles()).isEmpty();
+    }
+
+    private List<String> read(GroupedRecordReader reader, Path file) throws IOException {
+        List<String> records = new ArrayList<>();
+        long count = reader.forEach(file, record -> records.add(record.line()));
+        assertThat(count).isEqualTo(records.size());
+        return records;
+    }
+
+    private Path write(String... lines) throws IOException {
+        Path file = directory.resolve("input.fab");
+        Files.writeString(file, String.join("\n", lines) + "\n", StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private List<Path> runFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".run")).toList();
+        }
+    }
+}
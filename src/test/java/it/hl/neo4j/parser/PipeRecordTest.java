@@ -0,0 +1,110 @@
+package it.hl.neo4j.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PipeRecordTest {
+
+    @Test
+    void countsTrailingEmptyFieldsLikeSplit() {
+        String line = "A001||12|T||";
+        PipeRecord record = PipeRecord.of(line);
+
+        assertThat(record.fieldCount()).isEqualTo(line.split("\\|", -1).length);
+        assertThat(record.field(1)).isEmpty();
+        assertThat(record.field(2)).isEqualTo("12");
+        assertThat(record.field(5)).isEmpty();
+        assertThat(record.field(6)).isEmpty();
+        assertThat(record.isBlank(4)).isTrue();
+        assertThat(record.isBlank(9)).isTrue();
+    }
+
+    @Test
+    void trimsWhitespaceAroundFields() {
+        PipeRecord record = PipeRecord.of("  A001 |\t| x y ");
+
+        assertThat(record.trimmedField(0)).isEqualTo("A001");
+        assertThat(record.trimmedField(1)).isEmpty();
+        assertThat(record.trimmedField(2)).isEqualTo("x y");
+        assertThat(record.field(2)).isEqualTo(" x y ");
+        assertThat(record.trimmedField(3)).isEmpty();
+    }
+
+    @Test
+    void parsesIntegerFields() {
+        PipeRecord record = PipeRecord.of(" 42 ||7|1/2");
+
+        assertThat(record.intField(0)).isEqualTo(42);
+        assertThat(record.intField(1)).isZero();
+        assertThat(record.intField(8)).isZero();
+        assertThat(record.longField(2)).isEqualTo(7L);
+        assertThat(record.longField(1)).isNull();
+        assertThat(record.longField(3)).isNull();
+    }
+
+    @Test
+    void parsesDecimalsWithCommaOrDot() {
+        PipeRecord record = PipeRecord.of("1234,56|78.9| |abc");
+
+        assertThat(record.decimalField(0)).isEqualTo(1234.56);
+        assertThat(record.decimalField(1)).isEqualTo(78.9);
+        assertThat(record.decimalField(2)).isNull();
+        assertThat(record.decimalField(3)).isNull();
+        assertThat(record.decimalField(4)).isNull();
+    }
+
+    @Test
+    void parsesCatastoDates() {
+        PipeRecord record = PipeRecord.of("01022003| 29021999 |29022000|0102200|0a022003||31042020");
+
+        assertThat(record.dateField(0)).isEqualTo(LocalDate.of(2003, 2, 1));
+        assertThat(record.dateField(1)).isNull();
+        assertThat(record.dateField(2)).isEqualTo(LocalDate.of(2000, 2, 29));
+        assertThat(record.dateField(3)).isNull();
+        assertThat(record.dateField(4)).isNull();
+        assertThat(record.dateField(5)).isNull();
+        assertThat(record.dateField(6)).isNull();
+        assertThat(record.dateField(7)).isNull();
+    }
+
+    @Test
+    void decodesMultiByteUtf8() {
+        PipeRecord record = PipeRecord.of("A001| Città |perché");
+
+        assertThat(record.trimmedField(1)).isEqualTo("Città");
+        assertThat(record.field(2)).isEqualTo("perché");
+        assertThat(record.length()).isEqualTo("A001| Città |perché".getBytes(StandardCharsets.UTF_8).length);
+        assertThat(record.line()).isEqualTo("A001| Città |perché");
+    }
+
+    @Test
+    void comparesKeysWithoutCopying() {
+        PipeRecord record = PipeRecord.of("A001||12|T|1");
+        byte[] key = record.keyBytes(3);
+
+        assertThat(new String(key, StandardCharsets.UTF_8)).isEqualTo("A001||12");
+        assertThat(record.keyLength(3)).isEqualTo(key.length);
+        assertThat(record.keyEquals(3, key)).isTrue();
+        assertThat(PipeRecord.of("A001||12|F|9").keyEquals(3, key)).isTrue();
+        assertThat(PipeRecord.of("A001||123|T|1").keyEquals(3, key)).isFalse();
+        assertThat(PipeRecord.of("A001||13|T|1").keyEquals(3, key)).isFalse();
+        assertThat(record.keyEquals(3, null)).isFalse();
+        assertThat(record.fields(1, 4)).isEqualTo("|12|T");
+    }
+
+    @Test
+    void comparesFieldsWithAsciiValues() {
+        PipeRecord record = PipeRecord.of("A001|1|");
+
+        assertThat(record.fieldEquals(1, "1")).isTrue();
+        assertThat(record.fieldEquals(1, "2")).isFalse();
+        assertThat(record.fieldEquals(1, "11")).isFalse();
+        assertThat(record.fieldEquals(2, "")).isTrue();
+        assertThat(record.fieldEquals(5, "")).isTrue();
+        assertThat(record.fieldEquals(5, "1")).isFalse();
+    }
+}
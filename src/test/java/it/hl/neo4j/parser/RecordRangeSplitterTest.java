@@ -0,0 +1,102 @@
+package it.hl.neo4j.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordRangeSplitterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void cutsOnLineBoundaries() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("A001||").append(i).append("|T|").append("x".repeat(i % 37)).append('\n');
+        }
+        Path file = write(content.toString());
+
+        for (long target : new long[]{1, 100, 4096, 100_000}) {
+            List<Long> cuts = split(file, 0, target);
+            assertThat(cuts.get(cuts.size() - 1)).isEqualTo(content.length());
+            for (long cut : cuts) {
+                assertThat(content.charAt((int) cut - 1)).as("cut at %d", cut).isEqualTo('\n');
+            }
+        }
+    }
+
+    @Test
+    void neverCutsAGroup() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int group = 0; group < 300; group++) {
+            // Groups of 1 to 9 lines sharing the first three fields
+            for (int line = 0; line <= group % 9; line++) {
+                content.append("A001||").append(group).append('|').append(line).append("|abcdef\n");
+            }
+        }
+        Path file = write(content.toString());
+        String[] lines = content.toString().split("\n");
+
+        for (long target : new long[]{1, 64, 500, 5000}) {
+            List<Long> cuts = split(file, 3, target);
+            assertThat(cuts.get(cuts.size() - 1)).isEqualTo(content.length());
+            for (long cut : cuts.subList(0, cuts.size() - 1)) {
+                int next = lineIndexAt(content, cut);
+                assertThat(key(lines[next - 1])).as("cut at %d", cut).isNotEqualTo(key(lines[next]));
+            }
+        }
+    }
+
+    @Test
+    void handlesAFinalLineWithoutTerminator() throws IOException {
+        Path file = write("A|1|x\nA|1|y\nA|2|z");
+
+        assertThat(split(file, 2, 1)).containsExactly(12L, 17L);
+    }
+
+    private List<Long> split(Path file, int keyFields, long target) throws IOException {
+        List<Long> cuts = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file)) {
+            RecordRangeSplitter splitter = new RecordRangeSplitter(channel, keyFields);
+            long start = 0;
+            while (start < splitter.size()) {
+                long end = splitter.next(start, target);
+                assertThat(end).isGreaterThan(start);
+                cuts.add(end);
+                start = end;
+            }
+        }
+        return cuts;
+    }
+
+    private static int lineIndexAt(CharSequence content, long offset) {
+        int lines = 0;
+        for (int i = 0; i < offset; i++) {
+            if (content.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static String key(String line) {
+        String[] fields = line.split("\\|", -1);
+        return fields[0] + "|" + fields[1] + "|" + fields[2];
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = directory.resolve("input.fab");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
@@ -0,0 +1,53 @@
+package it.hl.neo4j.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lines of a small catasto delivery, for the import tests.
+ */
+final class CatastoFixtures {
+
+    private CatastoFixtures() {
+    }
+
+    /**
+     * Writes the .ter, .sog and .tit files of {@code comune} to {@code directory}, replacing any previous ones.
+     */
+    static void writeDelivery(Path directory, String comune, List<String> terreni, List<String> soggetti,
+                              List<String> titolarita) throws IOException {
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(comune + ".ter"), terreni.stream().map(id -> terreno(comune, id)).toList());
+        Files.write(directory.resolve(comune + ".sog"), soggetti.stream().map(id -> soggetto(comune, id)).toList());
+        Files.write(directory.resolve(comune + ".tit"), titolarita);
+    }
+
+    static String terreno(String comune, String identificativoImmobile) {
+        return comune + "||" + identificativoImmobile + "|T|1|1|10|" + identificativoImmobile + "||||SEMIN|1|0|10|5||||1|2|3|4|";
+    }
+
+    static String soggetto(String comune, String identificativoSoggetto) {
+        return comune + "||" + identificativoSoggetto + "|P|ROSSI|MARIO|M|01011980|H501|RSSMRA80A01H501Z||";
+    }
+
+    /**
+     * A .tit line for a terreno, full property of the soggetto.
+     */
+    static String titolarita(String comune, String identificativoTitolarita, String soggetto, String terreno) {
+        String[] fields = new String[32];
+        Arrays.fill(fields, "");
+        fields[0] = comune;
+        fields[2] = soggetto;
+        fields[3] = "P";
+        fields[4] = terreno;
+        fields[5] = "T";
+        fields[6] = "10";
+        fields[8] = "1";
+        fields[9] = "1";
+        fields[27] = identificativoTitolarita;
+        return String.join("|", fields);
+    }
+}
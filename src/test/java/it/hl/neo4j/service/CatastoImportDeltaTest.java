@@ -0,0 +1,160 @@
+package it.hl.neo4j.service;
+
+import it.hl.neo4j.importer.ImportOptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.Neo4jContainer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static it.hl.neo4j.service.CatastoFixtures.titolarita;
+import static it.hl.neo4j.service.CatastoFixtures.writeDelivery;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Imports a small delivery into a Neo4j container, then again in delta mode. Skipped without Docker.
+ */
+@SpringBootTest(properties = {
+        "llm.provider=ollama",
+        "ollama.base-url=http://localhost:1",
+        "spring.main.web-application-type=none"
+})
+class CatastoImportDeltaTest {
+
+    private static Neo4jContainer<?> neo4j;
+    private static Path work;
+
+    @Autowired
+    CatastoImportService importService;
+
+    @Autowired
+    Neo4jClient neo4jClient;
+
+    @TempDir
+    Path delivery;
+
+    @BeforeAll
+    static void startNeo4j() throws IOException {
+        assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker is not available");
+        neo4j = new Neo4jContainer<>("neo4j:5.15").withAdminPassword("password");
+        neo4j.start();
+        work = Files.createTempDirectory("catasto-import-test");
+    }
+
+    @DynamicPropertySource
+    static void neo4jProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.neo4j.uri", () -> neo4j.getBoltUrl());
+        registry.add("spring.neo4j.authentication.username", () -> "neo4j");
+        registry.add("spring.neo4j.authentication.password", neo4j::getAdminPassword);
+        registry.add("catasto.import.checkpoint-directory", () -> work.resolve("checkpoints").toString());
+        registry.add("catasto.import.quarantine-directory", () -> work.resolve("quarantine").toString());
+    }
+
+    @BeforeEach
+    void emptyGraph() {
+        neo4jClient.query("MATCH (n) DETACH DELETE n").run();
+    }
+
+    @Test
+    void deltaImportOfTheSameDeliveryChangesNothing() throws IOException {
+        writeDelivery(delivery, "A001", List.of("1", "2", "3"), List.of("500000", "500001"),
+                List.of(titolarita("A001", "T1", "500000", "1"), titolarita("A001", "T2", "500001", "2")));
+        importService.importCatastoData(delivery.toString());
+        assertCounts(3, 2, 2);
+
+        importService.importCatastoData(delivery.toString(), ImportOptions.builder().delta(true).build());
+        assertCounts(3, 2, 2);
+    }
+
+    @Test
+    void deltaImportRemovesWhatTheDeliveryNoLongerHas() throws IOException {
+        writeDelivery(delivery, "A001", List.of("1", "2", "3"), List.of("500000", "500001"),
+                List.of(titolarita("A001", "T1", "500000", "1"), titolarita("A001", "T2", "500001", "2")));
+        importService.importCatastoData(delivery.toString());
+
+        writeDelivery(delivery, "A001", List.of("1", "3"), List.of("500000"), List.of(titolarita("A001", "T1", "500000", "1")));
+        importService.importCatastoData(delivery.toString(), ImportOptions.builder().delta(true).build());
+
+        assertCounts(2, 1, 1);
+    }
+
+    @Test
+    void movedTitolaritaKeepsASingleRelationship() throws IOException {
+        writeDelivery(delivery, "A001", List.of("1", "2"), List.of("500000", "500001"),
+                List.of(titolarita("A001", "T1", "500000", "1")));
+        importService.importCatastoData(delivery.toString());
+
+        // Same titolarità, now owned by another soggetto on another terreno
+        writeDelivery(delivery, "A001", List.of("1", "2"), List.of("500000", "500001"),
+                List.of(titolarita("A001", "T1", "500001", "2")));
+        importService.importCatastoData(delivery.toString(), ImportOptions.builder().delta(true).build());
+
+        assertThat(owners("T1")).containsExactly(Map.of("soggetto", "500001", "terreno", "2"));
+    }
+
+    @Test
+    void deltaOfOneComuneKeepsSoggettiOwningImmobiliInAnother() throws IOException {
+        Path b002 = delivery.resolve("B002");
+        Path a001 = delivery.resolve("A001");
+        writeDelivery(b002, "B002", List.of("2"), List.of("500000"), List.of(titolarita("B002", "T1", "500000", "2")));
+        importService.importCatastoData(b002.toString());
+        // A001 writes soggetto 500000 last, so it is A001's in the graph
+        writeDelivery(a001, "A001", List.of("1"), List.of("500000", "500001"),
+                List.of(titolarita("A001", "T1", "500000", "1"), titolarita("A001", "T2", "500001", "1")));
+        importService.importCatastoData(a001.toString());
+        assertCounts(2, 2, 3);
+
+        // 500000 leaves A001, with its titolarità there; the same identificativoTitolarita lives on in B002
+        writeDelivery(a001, "A001", List.of("1"), List.of("500001"), List.of(titolarita("A001", "T2", "500001", "1")));
+        importService.importCatastoData(a001.toString(), ImportOptions.builder().delta(true).build());
+
+        assertCounts(2, 2, 2);
+        assertThat(owners("T1")).containsExactly(Map.of("soggetto", "500000", "terreno", "2"));
+        assertThat(owners("T2")).containsExactly(Map.of("soggetto", "500001", "terreno", "1"));
+    }
+
+    @Test
+    void deltaRemovesSoggettiLeftWithoutImmobili() throws IOException {
+        writeDelivery(delivery, "A001", List.of("1"), List.of("500000", "500001"),
+                List.of(titolarita("A001", "T1", "500000", "1"), titolarita("A001", "T2", "500001", "1")));
+        importService.importCatastoData(delivery.toString());
+
+        writeDelivery(delivery, "A001", List.of("1"), List.of("500001"), List.of(titolarita("A001", "T2", "500001", "1")));
+        importService.importCatastoData(delivery.toString(), ImportOptions.builder().delta(true).build());
+
+        assertCounts(1, 1, 1);
+        assertThat(count("MATCH (s:Soggetto {identificativoSoggetto: '500000'}) RETURN count(s)")).isZero();
+    }
+
+    private List<Map<String, Object>> owners(String identificativoTitolarita) {
+        return new ArrayList<>(neo4jClient.query(
+                        "MATCH (s:Soggetto)-[r:POSSIEDE_TERRENO {identificativoTitolarita: $id}]->(t:Terreno) "
+                                + "RETURN s.identificativoSoggetto AS soggetto, t.identificativoImmobile AS terreno")
+                .bind(identificativoTitolarita).to("id")
+                .fetch().all());
+    }
+
+    private void assertCounts(long terreni, long soggetti, long titolarita) {
+        assertThat(count("MATCH (n:Terreno) RETURN count(n)")).isEqualTo(terreni);
+        assertThat(count("MATCH (n:Soggetto) RETURN count(n)")).isEqualTo(soggetti);
+        assertThat(count("MATCH ()-[r:POSSIEDE_TERRENO]->() RETURN count(r)")).isEqualTo(titolarita);
+    }
+
+    private long count(String cypher) {
+        return neo4jClient.query(cypher).fetchAs(Long.class).one().orElseThrow();
+    }
+}
@@ -0,0 +1,326 @@
+package it.hl.neo4j.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.hl.neo4j.importer.CatastoBulkWriter;
+import it.hl.neo4j.importer.ImportCheckpointStore;
+import it.hl.neo4j.importer.ImportFailedException;
+import it.hl.neo4j.importer.ImportMetrics;
+import it.hl.neo4j.importer.ImportMode;
+import it.hl.neo4j.importer.ImportOptions;
+import it.hl.neo4j.importer.ImportPipelineRegistry;
+import it.hl.neo4j.importer.ImportReport;
+import it.hl.neo4j.importer.StageReport;
+import it.hl.neo4j.model.Ter;
+import it.hl.neo4j.repository.FabRepository;
+import it.hl.neo4j.repository.SogRepository;
+import it.hl.neo4j.repository.TerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.stubbing.Answer;
+import org.neo4j.driver.QueryRunner;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalRecord;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static it.hl.neo4j.service.CatastoFixtures.soggetto;
+import static it.hl.neo4j.service.CatastoFixtures.terreno;
+import static it.hl.neo4j.service.CatastoFixtures.titolarita;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs imports against mocked repositories, writer and transactions: the offline ones (dry runs and
+ * CSV exports), and node stages, which write to the graph without reading it.
+ */
+class CatastoImportServiceTest {
+
+    @TempDir
+    Path work;
+
+    private Path delivery;
+    private CatastoBulkWriter bulkWriter;
+    private Neo4jClient neo4jClient;
+    private CatastoImportService importService;
+    /** Queries answered by {@link #graphReturns}, as {@code "cypher parameters"}. */
+    private final List<String> graphQueries = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void offlineService() throws IOException {
+        delivery = Files.createDirectories(work.resolve("A001"));
+        bulkWriter = mock(CatastoBulkWriter.class);
+        neo4jClient = mock(Neo4jClient.class);
+        importService = new CatastoImportService(mock(TerRepository.class), mock(SogRepository.class),
+                mock(FabRepository.class), bulkWriter, neo4jClient, mock(PlatformTransactionManager.class),
+                new ImportPipelineRegistry(), mock(ImportCheckpointStore.class),
+                new ImportMetrics(new SimpleMeterRegistry()), mock(SchemaManager.class));
+        ReflectionTestUtils.setField(importService, "defaultMode", ImportMode.BULK);
+        for (String batchSize : List.of("terreniBatchSize", "fabbricatiBatchSize", "soggettiBatchSize", "titolaritaBatchSize")) {
+            ReflectionTestUtils.setField(importService, batchSize, 2);
+        }
+        ReflectionTestUtils.setField(importService, "sortDirectory", work.toString());
+        ReflectionTestUtils.setField(importService, "sortBufferMb", 1);
+        ReflectionTestUtils.setField(importService, "parserThreads", 2);
+        ReflectionTestUtils.setField(importService, "writerThreads", 2);
+        ReflectionTestUtils.setField(importService, "queueCapacity", 4);
+        ReflectionTestUtils.setField(importService, "chunkSizeKb", 1);
+        ReflectionTestUtils.setField(importService, "comuneWorkers", 2);
+        ReflectionTestUtils.setField(importService, "quarantineDirectory", work.resolve("quarantine").toString());
+        ReflectionTestUtils.setField(importService, "quarantineLogEvery", 1000);
+        importService.createWritePermits();
+    }
+
+    @Test
+    void streamsTerreniAndSoggettiInBatches() throws IOException {
+        write("A001.ter", terreno("A001", "1"), terreno("A001", "2"), terreno("A001", "3"), terreno("A001", "4"), terreno("A001", "5"));
+        write("A001.sog", soggetto("A001", "500000"), soggetto("A001", "500001"), soggetto("A001", "500002"));
+
+        ImportReport report = importService.importCatastoData(delivery.toString(), ImportOptions.builder().dryRun(true).build());
+
+        assertThat(stage(report, "terreni").getCommittedRows()).isEqualTo(5);
+        assertThat(stage(report, "terreni").getCommittedBatches()).isEqualTo(3);
+        assertThat(stage(report, "soggetti").getCommittedRows()).isEqualTo(3);
+        assertThat(stage(report, "soggetti").getCommittedBatches()).isEqualTo(2);
+    }
+
+    @Test
+    void reportsWhatEachStageCommittedBeforeAFailure() throws IOException {
+        write("A001.ter", terreno("A001", "1"), terreno("A001", "2"), terreno("A001", "3"), terreno("A001", "4"), terreno("A001", "5"));
+        write("A001.sog", soggetto("A001", "500000"));
+        AtomicLong committed = new AtomicLong();
+        when(bulkWriter.writeTerreni(anyList())).thenAnswer(invocation -> {
+            List<Ter> batch = invocation.getArgument(0);
+            if (batch.stream().anyMatch(ter -> ter.getIdentificativoImmobile().equals("3"))) {
+                throw new IllegalStateException("Neo4j unavailable");
+            }
+            committed.addAndGet(batch.size());
+            return batch.size();
+        });
+        when(bulkWriter.writeSoggetti(anyList())).thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+
+        assertThatThrownBy(() -> importService.importCatastoData(delivery.toString()))
+                .isInstanceOfSatisfying(ImportFailedException.class, e -> {
+                    ImportReport report = e.getReport();
+                    assertThat(report.isSuccessful()).isFalse();
+                    assertThat(stage(report, "terreni").getStatus()).isEqualTo(StageReport.Status.FAILED);
+                    assertThat(stage(report, "terreni").getCommittedRows()).isEqualTo(committed.get());
+                    assertThat(stage(report, "terreni").getError()).isEqualTo("Neo4j unavailable");
+                    assertThat(stage(report, "soggetti").getStatus()).isEqualTo(StageReport.Status.COMPLETED);
+                    assertThat(stage(report, "soggetti").getCommittedRows()).isEqualTo(1);
+                    assertThat(stage(report, "titolarita").getStatus()).isEqualTo(StageReport.Status.SKIPPED);
+                    assertThat(report.getCommittedRows()).isEqualTo(committed.get() + 1);
+                });
+    }
+
+    @Test
+    void rejectsTitolaritaWithoutIdentificativo() throws IOException {
+        write("A001.ter", terreno("A001", "1"), terreno("A001", "2"));
+        write("A001.sog", soggetto("A001", "500000"));
+        write("A001.tit",
+                titolarita("A001", "T1", "500000", "1"),
+                titolarita("A001", "", "500000", "1"),
+                titolarita("A001", "   ", "500000", "2"));
+
+        ImportReport report = importService.importCatastoData(delivery.toString(), ImportOptions.builder().dryRun(true).build());
+
+        StageReport titolarita = stage(report, "titolarita");
+        assertThat(titolarita.getCommittedRows()).isEqualTo(1);
+        assertThat(titolarita.getRejected()).isEqualTo(Map.of("MALFORMED_RECORD", 2L));
+        assertThat(Files.readAllLines(Path.of(report.getQuarantineFile())))
+                .hasSize(2)
+                .allMatch(line -> line.startsWith("titolarita\tMALFORMED_RECORD\tidentificativo titolarità mancante\t"));
+        verifyNoInteractions(bulkWriter);
+    }
+
+    @Test
+    void dryRunResolvesTitolaritaAgainstTheDeliveryOnly() throws IOException {
+        write("A001.ter", terreno("A001", "1"));
+        write("A001.sog", soggetto("A001", "500000"));
+        write("A001.tit",
+                titolarita("A001", "T1", "500000", "1"),
+                titolarita("A001", "T2", "500009", "1"),
+                titolarita("A001", "T3", "500000", "9"));
+
+        ImportReport report = importService.importCatastoData(delivery.toString(), ImportOptions.builder().dryRun(true).build());
+
+        assertThat(report.isDryRun()).isTrue();
+        assertThat(report.isSuccessful()).isTrue();
+        StageReport titolarita = stage(report, "titolarita");
+        assertThat(titolarita.getCommittedRows()).isEqualTo(1);
+        assertThat(titolarita.getRejected()).isEqualTo(Map.of("SOGGETTO_NOT_FOUND", 1L, "TERRENO_NOT_FOUND", 1L));
+        assertThat(titolarita.getReadBytes()).isEqualTo(Files.size(delivery.resolve("A001.tit")));
+        verifyNoInteractions(bulkWriter, neo4jClient);
+    }
+
+    @Test
+    void dryRunRefusesDeltaAndResume() {
+        assertThatThrownBy(() -> importService.importCatastoData(delivery.toString(),
+                ImportOptions.builder().dryRun(true).delta(true).build()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> importService.importCatastoData(delivery.toString(),
+                ImportOptions.builder().dryRun(true).resume(true).build()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void deltaRemovesSoggettiOnlyAfterUnlinkingTheirTitolarita() throws IOException {
+        write("A001.ter", terreno("A001", "1"), terreno("A001", "2"));
+        write("A001.sog", soggetto("A001", "500000"));
+        write("A001.tit", titolarita("A001", "T1", "500000", "1"));
+        // The graph before the delta: terreno 3, soggetto 500001 and its titolarità T2 are gone from the delivery
+        graphReturns(Map.of(
+                "MATCH (n:Terreno)", List.of(List.of("1"), List.of("2"), List.of("3")),
+                "MATCH (t:Terreno)", List.of(List.of("1"), List.of("2"), List.of("3")),
+                "MATCH (n:Soggetto)", List.of(List.of("500000"), List.of("500001")),
+                "MATCH (s:Soggetto)", List.of(List.of("500000"), List.of("500001")),
+                "POSSIEDE_TERRENO", List.of(List.of("T1"), List.of("T2"))));
+        writerReturnsBatchSizes();
+        List<String> cleanups = recordCleanups(1);
+
+        ImportReport report = importService.importCatastoData(delivery.toString(), ImportOptions.builder().delta(true).build());
+
+        assertThat(cleanups).contains("deleteTerreni [3] [A001]");
+        assertThat(cleanups).containsSubsequence("unlinkTerreni [T2] [A001]", "deleteSoggetti [500001] [A001]");
+        assertThat(stage(report, "terreni").getDeletedRows()).isEqualTo(1);
+        assertThat(stage(report, "titolarita").getDeletedRows()).isEqualTo(1);
+        assertThat(stage(report, "soggetti").getDeletedRows()).isEqualTo(1);
+    }
+
+    @Test
+    void deltaKeepsSoggettiThatStillOwnImmobili() throws IOException {
+        write("A001.ter", terreno("A001", "1"));
+        write("A001.sog", soggetto("A001", "500000"));
+        write("A001.tit", titolarita("A001", "T1", "500000", "1"));
+        graphReturns(Map.of(
+                "MATCH (n:Terreno)", List.of(List.of("1")),
+                "MATCH (t:Terreno)", List.of(List.of("1")),
+                "MATCH (n:Soggetto)", List.of(List.of("500000"), List.of("500001")),
+                "MATCH (s:Soggetto)", List.of(List.of("500000"), List.of("500001"))));
+        writerReturnsBatchSizes();
+        // 500001 owns a terreno of another comune, so the delete leaves it alone
+        List<String> cleanups = recordCleanups(0);
+
+        ImportReport report = importService.importCatastoData(delivery.toString(), ImportOptions.builder().delta(true).build());
+
+        assertThat(cleanups).contains("deleteSoggetti [500001] [A001]");
+        assertThat(stage(report, "soggetti").getDeletedRows()).isZero();
+        assertThat(report.isSuccessful()).isTrue();
+    }
+
+    @Test
+    void resolvesTitolaritaAgainstTheImmobiliOfTheDeliveredComuni() throws IOException {
+        write("A001.ter", terreno("A001", "1"));
+        write("A001.sog", soggetto("A001", "500000"));
+        write("A001.tit", titolarita("A001", "T1", "500000", "1"));
+        graphReturns(Map.of(
+                "MATCH (t:Terreno)", List.of(List.of("1")),
+                "MATCH (s:Soggetto)", List.of(List.of("500000"))));
+        writerReturnsBatchSizes();
+
+        ImportReport report = importService.importCatastoData(delivery.toString());
+
+        assertThat(stage(report, "titolarita").getCommittedRows()).isEqualTo(1);
+        assertThat(graphQueries).anyMatch(query -> query.contains("MATCH (t:Terreno) WHERE t.codiceAmministrativo IN $comuni")
+                && query.endsWith("{comuni=[A001]}"));
+        // Soggetti are shared by every comune
+        assertThat(graphQueries).anyMatch(query -> query.startsWith("MATCH (s:Soggetto) RETURN"));
+    }
+
+    private void writerReturnsBatchSizes() {
+        when(bulkWriter.writeTerreni(anyList())).thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+        when(bulkWriter.writeSoggetti(anyList())).thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+        when(bulkWriter.linkTerreni(anyList())).thenAnswer(invocation -> (long) invocation.<List<?>>getArgument(0).size());
+    }
+
+    /**
+     * Records the delta cleanups that remove something, as {@code "method [ids] [comuni]"} in call
+     * order; each removes {@code removed} records per call.
+     */
+    private List<String> recordCleanups(long removed) {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        Answer<Long> record = invocation -> {
+            List<String> ids = invocation.getArgument(0);
+            if (!ids.isEmpty()) {
+                calls.add(invocation.getMethod().getName() + " " + ids + " " + List.copyOf(invocation.<Collection<String>>getArgument(1)));
+            }
+            return removed;
+        };
+        when(bulkWriter.deleteTerreni(anyList(), anyCollection())).thenAnswer(record);
+        when(bulkWriter.deleteFabbricati(anyList(), anyCollection())).thenAnswer(record);
+        when(bulkWriter.deleteSoggetti(anyList(), anyCollection())).thenAnswer(record);
+        when(bulkWriter.unlinkTerreni(anyList(), anyCollection())).thenAnswer(record);
+        when(bulkWriter.unlinkFabbricati(anyList(), anyCollection())).thenAnswer(record);
+        return calls;
+    }
+
+    /**
+     * Answers the id and content hash queries of an online import: each query gets the rows of the
+     * first key it contains, none if no key matches. Content hashes are null, so nothing is unchanged.
+     */
+    @SuppressWarnings("unchecked")
+    private void graphReturns(Map<String, List<List<String>>> rows) {
+        QueryRunner runner = mock(QueryRunner.class);
+        Answer<Result> result = invocation -> {
+            String cypher = invocation.getArgument(0);
+            graphQueries.add(cypher + " " + (invocation.getArguments().length > 1 ? invocation.getArgument(1) : Map.of()));
+            List<Record> records = rows.entrySet().stream()
+                    .filter(entry -> cypher.contains(entry.getKey()))
+                    .findFirst()
+                    .map(entry -> entry.getValue().stream()
+                            .map(row -> (Record) new InternalRecord(List.of("id", "hash"),
+                                    new Value[]{Values.value(row.get(0)), Values.NULL}))
+                            .toList())
+                    .orElse(List.of());
+            Iterator<Record> iterator = records.iterator();
+            Result stream = mock(Result.class);
+            when(stream.hasNext()).thenAnswer(call -> iterator.hasNext());
+            when(stream.next()).thenAnswer(call -> iterator.next());
+            return stream;
+        };
+        when(runner.run(anyString())).thenAnswer(result);
+        when(runner.run(anyString(), anyMap())).thenAnswer(result);
+        when(neo4jClient.delegateTo(any())).thenAnswer(invocation -> {
+            Function<QueryRunner, Optional<Object>> callback = invocation.getArgument(0);
+            Neo4jClient.OngoingDelegation<Object> delegation = mock(Neo4jClient.OngoingDelegation.class);
+            when(delegation.run()).thenAnswer(call -> callback.apply(runner));
+            return delegation;
+        });
+    }
+
+    private static StageReport stage(ImportReport report, String stage) {
+        return report.getStages().stream()
+                .filter(stageReport -> stageReport.getStage().equals(stage))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private void write(String file, String... lines) throws IOException {
+        Files.write(delivery.resolve(file), List.of(lines));
+    }
+}
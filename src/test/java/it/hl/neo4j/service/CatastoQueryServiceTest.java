@@ -0,0 +1,71 @@
+package it.hl.neo4j.service;
+
+import it.hl.neo4j.dto.CursorPage;
+import it.hl.neo4j.model.Sog;
+import it.hl.neo4j.repository.FabRepository;
+import it.hl.neo4j.repository.ParticellaRepository;
+import it.hl.neo4j.repository.SogRepository;
+import it.hl.neo4j.repository.TerRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class CatastoQueryServiceTest {
+
+    private final SogRepository sogRepository = mock(SogRepository.class);
+    private final CatastoQueryService queryService = new CatastoQueryService(mock(TerRepository.class),
+            sogRepository, mock(FabRepository.class), mock(ParticellaRepository.class));
+
+    @Test
+    void requiresEveryWordExactlyOrAsPrefixOrWithTypos() {
+        assertThat(CatastoQueryService.fulltextQuery("Via Roma 12"))
+                .isEqualTo("+(via^3 via*) +(roma^3 roma* roma~1) +(12^3 12*)");
+        assertThat(CatastoQueryService.fulltextQuery("Costantini"))
+                .isEqualTo("+(costantini^3 costantini* costantini~2)");
+    }
+
+    @Test
+    void foldsCaseAndAccents() {
+        assertThat(CatastoQueryService.fulltextQuery("NICOLÒ Città"))
+                .isEqualTo("+(nicolo^3 nicolo* nicolo~1) +(citta^3 citta* citta~1)");
+    }
+
+    @Test
+    void dropsLuceneSyntaxFromTheInput() {
+        assertThat(CatastoQueryService.fulltextQuery("rossi* AND (mario)~ \"d'amico\" -x:y"))
+                .isEqualTo("+(rossi^3 rossi* rossi~1) +(and^3 and*) +(mario^3 mario* mario~1) "
+                        + "+(d^3 d*) +(amico^3 amico* amico~1) +(x^3 x*) +(y^3 y*)");
+        assertThat(CatastoQueryService.fulltextQuery(" ?*~ ")).isEmpty();
+        assertThat(CatastoQueryService.fulltextQuery(null)).isEmpty();
+    }
+
+    @Test
+    void searchesNothingForAQueryWithoutWords() {
+        CursorPage<Sog> page = queryService.findSoggettiByNome("  -- ", null, 10);
+
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.getNextCursor()).isNull();
+        verifyNoInteractions(sogRepository);
+    }
+
+    @Test
+    void pagesSearchResultsByOffset() {
+        List<Sog> found = IntStream.range(0, 3).mapToObj(i -> new Sog()).toList();
+        when(sogRepository.searchByNome(anyString(), anyInt(), anyInt())).thenReturn(found);
+
+        CursorPage<Sog> page = queryService.findSoggettiByNome("rossi", null, 2);
+
+        verify(sogRepository).searchByNome("+(rossi^3 rossi* rossi~1)", 0, 3);
+        assertThat(page.getItems()).hasSize(2);
+        assertThat(PageCursor.offset(page.getNextCursor())).isEqualTo(2);
+    }
+}
@@ -0,0 +1,136 @@
+package it.hl.neo4j.service;
+
+import it.hl.neo4j.dto.GraphQueryResponse;
+import it.hl.neo4j.dto.RawQueryRequest;
+import it.hl.neo4j.model.Sog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.exceptions.ServiceUnavailableException;
+import org.neo4j.driver.internal.InternalRecord;
+import org.springframework.data.neo4j.core.DatabaseSelectionProvider;
+import org.springframework.data.neo4j.core.Neo4jTemplate;
+import org.springframework.data.neo4j.core.ReactiveNeo4jClient;
+import org.springframework.data.neo4j.core.mapping.Neo4jMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GraphQueryServiceTest {
+
+    private final Driver driver = mock(Driver.class);
+    private final Session session = mock(Session.class);
+    private final Result result = mock(Result.class);
+    private final LLMService llmService = mock(LLMService.class);
+    private final ReactiveNeo4jClient reactiveClient = mock(ReactiveNeo4jClient.class, RETURNS_DEEP_STUBS);
+    private final Neo4jMappingContext mappingContext = mock(Neo4jMappingContext.class);
+    private final List<Map<String, Object>> lines = new ArrayList<>();
+    private GraphQueryService queryService;
+
+    @BeforeEach
+    void streamFromAMockDriver() {
+        when(driver.session(any(SessionConfig.class))).thenReturn(session);
+        when(session.run(anyString(), anyMap())).thenReturn(result);
+        queryService = new GraphQueryService(driver, mock(Neo4jTemplate.class), llmService,
+                mappingContext, reactiveClient,
+                DatabaseSelectionProvider.createStaticDatabaseSelectionProvider("catasto"));
+        ReflectionTestUtils.setField(queryService, "streamFetchSize", 500);
+    }
+
+    @Test
+    void streamsEveryRecordFromTheConfiguredDatabase() {
+        when(result.hasNext()).thenReturn(true, true, false);
+        when(result.next()).thenReturn(record(1), record(2));
+
+        assertThat(queryService.streamRawQuery(request(), lines::add)).isEqualTo(2);
+
+        assertThat(lines).containsExactly(Map.of("n", 1L), Map.of("n", 2L));
+        ArgumentCaptor<SessionConfig> config = ArgumentCaptor.forClass(SessionConfig.class);
+        verify(driver).session(config.capture());
+        assertThat(config.getValue().database()).hasValue("catasto");
+        assertThat(config.getValue().fetchSize()).hasValue(500L);
+        verify(session).close();
+    }
+
+    @Test
+    void endsTheStreamWithAnErrorLineWhenTheQueryFails() {
+        when(result.hasNext()).thenReturn(true)
+                .thenThrow(new ServiceUnavailableException("Connessione persa"));
+        when(result.next()).thenReturn(record(1));
+
+        assertThat(queryService.streamRawQuery(request(), lines::add)).isEqualTo(1);
+
+        assertThat(lines).containsExactly(Map.of("n", 1L), Map.of("success", false, "error", "Connessione persa"));
+        verify(session).close();
+    }
+
+    @Test
+    void streamsAHeaderTheResultsAndATrailerWithoutBlocking() {
+        Sog sog = new Sog();
+        sog.setIdentificativoSoggetto("500000");
+        when(llmService.translateToCypherReactive("soggetti"))
+                .thenReturn(Mono.just("MATCH (s:Soggetto) RETURN s LIMIT 2"));
+        when(mappingContext.getRequiredMappingFunctionFor(Sog.class)).thenReturn((types, record) -> sog);
+        when(reactiveClient.query(anyString()).fetchAs(Sog.class).mappedBy(any()).all())
+                .thenReturn(Flux.just(sog, sog));
+
+        List<Map<String, Object>> streamed = queryService.streamNaturalLanguageQueryReactive("soggetti")
+                .collectList().block();
+
+        assertThat(streamed).hasSize(4);
+        assertThat(streamed.get(0)).containsEntry("success", true).containsEntry("domainClass", "Sog");
+        assertThat(streamed.get(1)).containsEntry("type", "Soggetto").containsEntry("identificativoSoggetto", "500000");
+        assertThat(streamed.get(3)).containsEntry("resultCount", 2L);
+    }
+
+    @Test
+    void answersAnErrorLineWhenTheGeneratedQueryIsRefused() {
+        when(llmService.translateToCypherReactive(anyString()))
+                .thenReturn(Mono.just("MATCH (s:Soggetto) DETACH DELETE s"));
+
+        assertThat(queryService.streamNaturalLanguageQueryReactive("cancella tutto").collectList().block())
+                .containsExactly(Map.of("success", false, "error", "DELETE operations not allowed"));
+        GraphQueryResponse response = queryService.processNaturalLanguageQueryReactive("cancella tutto").block();
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getError()).isEqualTo("DELETE operations not allowed");
+    }
+
+    @Test
+    void answersAnErrorLineWhenTheLlmIsUnavailable() {
+        when(llmService.translateToCypherReactive(anyString()))
+                .thenReturn(Mono.error(new IllegalStateException("LLM non disponibile")));
+
+        assertThat(queryService.streamNaturalLanguageQueryReactive("soggetti").collectList().block())
+                .containsExactly(Map.of("success", false, "error", "LLM non disponibile"));
+    }
+
+    private static RawQueryRequest request() {
+        RawQueryRequest request = new RawQueryRequest();
+        request.setCypherQuery("MATCH (t:Terreno) RETURN count(t) AS n");
+        return request;
+    }
+
+    private static Record record(long n) {
+        return new InternalRecord(List.of("n"), new Value[]{Values.value(n)});
+    }
+}
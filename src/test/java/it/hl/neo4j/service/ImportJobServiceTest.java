@@ -0,0 +1,103 @@
+package it.hl.neo4j.service;
+
+import it.hl.neo4j.dto.ImportJobStatus;
+import it.hl.neo4j.importer.ImportMode;
+import it.hl.neo4j.importer.ImportOptions;
+import it.hl.neo4j.importer.ImportReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ImportJobServiceTest {
+
+    @TempDir
+    Path work;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ImportJobService jobs;
+
+    @BeforeEach
+    void blockImports() {
+        CatastoImportService importService = mock(CatastoImportService.class);
+        when(importService.importCatastoData(anyString(), any())).thenAnswer(call -> {
+            release.await(10, TimeUnit.SECONDS);
+            return new ImportReport(call.getArgument(0), ImportMode.BULK);
+        });
+        jobs = new ImportJobService(importService);
+        ReflectionTestUtils.setField(jobs, "retainedJobs", 50);
+        ReflectionTestUtils.setField(jobs, "maxRunningJobs", 2);
+    }
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        jobs.shutdown();
+    }
+
+    @Test
+    void refusesAJobOverlappingARunningOne() throws IOException {
+        Path province = Files.createDirectories(work.resolve("MI"));
+        Path comune = Files.createDirectories(province.resolve("A001"));
+        jobs.submit(comune.toString(), false, options());
+
+        assertThatThrownBy(() -> jobs.submit(comune.toString(), false, options()))
+                .isInstanceOf(ImportJobConflictException.class);
+        assertThatThrownBy(() -> jobs.submit(work.resolve("MI/./A001").toString(), false, options()))
+                .isInstanceOf(ImportJobConflictException.class);
+        // A tree import of the province would import the comune again
+        assertThatThrownBy(() -> jobs.submit(province.toString(), true, options()))
+                .isInstanceOf(ImportJobConflictException.class);
+        assertThat(jobs.list()).hasSize(1);
+    }
+
+    @Test
+    void capsTheRunningJobs() throws IOException {
+        jobs.submit(Files.createDirectories(work.resolve("A001")).toString(), false, options());
+        jobs.submit(Files.createDirectories(work.resolve("A002")).toString(), false, options());
+
+        String third = Files.createDirectories(work.resolve("A003")).toString();
+        assertThatThrownBy(() -> jobs.submit(third, false, options()))
+                .isInstanceOf(ImportJobConflictException.class)
+                .hasMessageContaining("2 import jobs");
+    }
+
+    @Test
+    void acceptsTheDirectoryAgainOnceTheJobIsOver() throws Exception {
+        String comune = Files.createDirectories(work.resolve("A001")).toString();
+        ImportJobStatus first = jobs.submit(comune, false, options());
+        release.countDown();
+        awaitFinished(first.getId());
+
+        ImportJobStatus second = jobs.submit(comune, false, options());
+
+        assertThat(second.getId()).isNotEqualTo(first.getId());
+        assertThat(jobs.status(first.getId())).hasValueSatisfying(
+                status -> assertThat(status.getState()).isEqualTo(ImportJobStatus.State.COMPLETED));
+    }
+
+    private void awaitFinished(String id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!jobs.status(id).orElseThrow().getState().isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static ImportOptions options() {
+        return ImportOptions.builder().build();
+    }
+}
@@ -0,0 +1,48 @@
+package it.hl.neo4j.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class PageCursorTest {
+
+    @Test
+    void roundTripsKeysAndOffsets() {
+        assertThat(PageCursor.key(PageCursor.afterKey("A001|12/3"))).isEqualTo("A001|12/3");
+        assertThat(PageCursor.key(PageCursor.afterKey("Città"))).isEqualTo("Città");
+        assertThat(PageCursor.offset(PageCursor.atOffset(150))).isEqualTo(150);
+    }
+
+    @Test
+    void startsFromTheBeginningWithoutACursor() {
+        assertThat(PageCursor.key(null)).isEmpty();
+        assertThat(PageCursor.key("")).isEmpty();
+        assertThat(PageCursor.offset(null)).isZero();
+        assertThat(PageCursor.offset("")).isZero();
+    }
+
+    @Test
+    void isUrlSafe() {
+        assertThat(PageCursor.afterKey("??>>~~")).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void rejectsTamperedCursors() {
+        assertThatExceptionOfType(InvalidCursorException.class).isThrownBy(() -> PageCursor.key("not base64!"))
+                .withMessage("Cursore non valido");
+        // A search cursor on a keyset endpoint and vice versa
+        assertThatExceptionOfType(InvalidCursorException.class).isThrownBy(() -> PageCursor.key(PageCursor.atOffset(10)));
+        assertThatExceptionOfType(InvalidCursorException.class).isThrownBy(() -> PageCursor.offset(PageCursor.afterKey("10")));
+        assertThatExceptionOfType(InvalidCursorException.class).isThrownBy(() -> PageCursor.offset(encode("o:-5")));
+        assertThatExceptionOfType(InvalidCursorException.class).isThrownBy(() -> PageCursor.offset(encode("o:abc")));
+        assertThatExceptionOfType(InvalidCursorException.class).isThrownBy(() -> PageCursor.key(encode("x:123")));
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,92 @@
+package it.hl.neo4j.service;
+
+import it.hl.neo4j.dto.CursorPage;
+import it.hl.neo4j.model.Fab;
+import it.hl.neo4j.model.Sog;
+import it.hl.neo4j.repository.ReactiveFabRepository;
+import it.hl.neo4j.repository.ReactiveParticellaRepository;
+import it.hl.neo4j.repository.ReactiveSogRepository;
+import it.hl.neo4j.repository.ReactiveTerRepository;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ReactiveCatastoQueryServiceTest {
+
+    private final ReactiveSogRepository sogRepository = mock(ReactiveSogRepository.class);
+    private final ReactiveFabRepository fabRepository = mock(ReactiveFabRepository.class);
+    private final ReactiveCatastoQueryService queryService = new ReactiveCatastoQueryService(
+            mock(ReactiveTerRepository.class), sogRepository, fabRepository, mock(ReactiveParticellaRepository.class));
+
+    @Test
+    void pagesKeysetResultsAfterTheLastId() {
+        when(fabRepository.findByCategoria(anyString(), anyString(), anyInt()))
+                .thenReturn(Flux.fromStream(IntStream.range(0, 3).mapToObj(i -> fabbricato("A001-" + i))));
+
+        CursorPage<Fab> page = queryService.findFabbricatiByCategoria("A02", null, 2).block();
+
+        verify(fabRepository).findByCategoria("A02", "", 3);
+        assertThat(page.getItems()).extracting(Fab::getIdentificativoImmobile).containsExactly("A001-0", "A001-1");
+        assertThat(PageCursor.key(page.getNextCursor())).isEqualTo("A001-1");
+    }
+
+    @Test
+    void endsOnAShortPage() {
+        when(fabRepository.findByCategoria(anyString(), anyString(), anyInt()))
+                .thenReturn(Flux.just(fabbricato("A001-9")));
+
+        CursorPage<Fab> page = queryService.findFabbricatiByCategoria("A02", PageCursor.afterKey("A001-8"), 2).block();
+
+        verify(fabRepository).findByCategoria("A02", "A001-8", 3);
+        assertThat(page.getItems()).hasSize(1);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void pagesSearchResultsByOffset() {
+        when(sogRepository.searchByNome(anyString(), anyInt(), anyInt()))
+                .thenReturn(Flux.just(new Sog(), new Sog(), new Sog()));
+
+        CursorPage<Sog> page = queryService.findSoggettiByNome("rossi", PageCursor.atOffset(4), 2).block();
+
+        verify(sogRepository).searchByNome("+(rossi^3 rossi* rossi~1)", 4, 3);
+        assertThat(page.getItems()).hasSize(2);
+        assertThat(PageCursor.offset(page.getNextCursor())).isEqualTo(6);
+    }
+
+    @Test
+    void signalsAnInvalidCursorOnSubscription() {
+        Mono<CursorPage<Sog>> page = queryService.findSoggettiByTipo("P", "non-un-cursore", 10);
+
+        verifyNoInteractions(sogRepository);
+        assertThatExceptionOfType(InvalidCursorException.class).isThrownBy(page::block);
+        assertThatExceptionOfType(InvalidCursorException.class)
+                .isThrownBy(() -> queryService.findSoggettiByNome("rossi", PageCursor.afterKey("1"), 10).block());
+    }
+
+    @Test
+    void searchesNothingForAQueryWithoutWords() {
+        CursorPage<Sog> page = queryService.findSoggettiByNome(" ~~ ", null, 10).block();
+
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.getNextCursor()).isNull();
+        verifyNoInteractions(sogRepository);
+    }
+
+    private static Fab fabbricato(String id) {
+        Fab fab = new Fab();
+        fab.setIdentificativoImmobile(id);
+        return fab;
+    }
+}
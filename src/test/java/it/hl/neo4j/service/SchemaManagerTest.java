@@ -0,0 +1,129 @@
+package it.hl.neo4j.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.neo4j.core.Neo4jClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SchemaManagerTest {
+
+    private final List<String> statements = new ArrayList<>();
+    private final List<Object> recordedVersions = new ArrayList<>();
+    private long graphVersion;
+    private SchemaManager schemaManager;
+
+    @BeforeEach
+    void recordStatements() {
+        Neo4jClient neo4jClient = mock(Neo4jClient.class);
+        when(neo4jClient.query(anyString())).thenAnswer(query -> {
+            String statement = query.getArgument(0);
+            Neo4jClient.UnboundRunnableSpec spec = mock(Neo4jClient.UnboundRunnableSpec.class, RETURNS_DEEP_STUBS);
+            when(spec.fetchAs(Long.class).one()).thenAnswer(call -> Optional.of(graphVersion));
+            when(spec.bindAll(anyMap())).thenAnswer(bind -> {
+                Map<String, Object> parameters = bind.getArgument(0);
+                recordedVersions.add(parameters.get("version"));
+                return mock(Neo4jClient.RunnableSpec.class);
+            });
+            if (!statement.startsWith("MATCH (m:SchemaMigration)")) {
+                statements.add(statement);
+            }
+            return spec;
+        });
+        schemaManager = new SchemaManager(neo4jClient);
+    }
+
+    @Test
+    void appliesEveryMigrationToANewGraph() {
+        assertThat(schemaManager.migrate()).isEqualTo(schemaManager.latestVersion());
+
+        assertThat(recordedVersions).containsExactlyElementsOf(
+                SchemaManager.MIGRATIONS.stream().map(SchemaManager.Migration::version).toList());
+        assertThat(statements.get(0)).startsWith("CREATE CONSTRAINT schema_migration_version");
+    }
+
+    @Test
+    void appliesOnlyTheMigrationsTheGraphLacks() {
+        graphVersion = 2;
+
+        schemaManager.migrate();
+
+        assertThat(recordedVersions).first().isEqualTo(3);
+        assertThat(statements).noneMatch(statement -> statement.contains("CONSTRAINT terreno_id"));
+    }
+
+    @Test
+    void runsNothingOnceUpToDate() {
+        schemaManager.migrate();
+        statements.clear();
+
+        assertThat(schemaManager.migrate()).isEqualTo(schemaManager.latestVersion());
+        assertThat(statements).isEmpty();
+    }
+
+    @Test
+    void convertsCatastoDatesCheckingTheLengthOfTheMonth() {
+        String date = SchemaManager.date("f.dataNotifica");
+
+        assertThat(date).isEqualTo("f.dataNotifica = CASE"
+                + " WHEN f.dataNotifica IS NULL OR NOT f.dataNotifica IS :: STRING THEN f.dataNotifica"
+                + " WHEN NOT trim(f.dataNotifica) =~ '[0-9]{8}'"
+                + " OR NOT toInteger(substring(trim(f.dataNotifica), 2, 2)) IN range(1, 12) THEN null"
+                + " WHEN NOT toInteger(substring(trim(f.dataNotifica), 0, 2)) IN range(1,"
+                + " (date({year: toInteger(substring(trim(f.dataNotifica), 4, 4)),"
+                + " month: toInteger(substring(trim(f.dataNotifica), 2, 2))})"
+                + " + duration({months: 1}) - duration({days: 1})).day) THEN null"
+                + " ELSE date({year: toInteger(substring(trim(f.dataNotifica), 4, 4)),"
+                + " month: toInteger(substring(trim(f.dataNotifica), 2, 2)),"
+                + " day: toInteger(substring(trim(f.dataNotifica), 0, 2))}) END");
+    }
+
+    @Test
+    void convertsOnlyValuesThatAreStillStrings() {
+        assertThat(SchemaManager.decimal("t.redditoAgrarioEuro")).isEqualTo("t.redditoAgrarioEuro = CASE"
+                + " WHEN t.redditoAgrarioEuro IS :: STRING THEN toFloat(replace(trim(t.redditoAgrarioEuro), ',', '.'))"
+                + " ELSE t.redditoAgrarioEuro END");
+        assertThat(SchemaManager.integer("r.quotaNumeratore")).isEqualTo("r.quotaNumeratore = CASE"
+                + " WHEN r.quotaNumeratore IS :: STRING THEN toInteger(trim(r.quotaNumeratore))"
+                + " ELSE r.quotaNumeratore END");
+        // Migration 4 retypes the dates of every titolarità relationship
+        assertThat(SchemaManager.MIGRATIONS.get(3).statements())
+                .anyMatch(statement -> statement.startsWith("MATCH ()-[r:POSSIEDE_TERRENO]->()")
+                        && statement.contains(SchemaManager.date("r.dataValidita"))
+                        && statement.endsWith("IN TRANSACTIONS OF 10000 ROWS"));
+    }
+
+    @Test
+    void indexesEveryKeysetFinderByItsFilterThenItsId() {
+        List<String> statements = SchemaManager.MIGRATIONS.stream()
+                .flatMap(migration -> migration.statements().stream())
+                .toList();
+
+        assertThat(statements).anyMatch(statement -> statement.endsWith("ON (t.foglio, t.identificativoImmobile)"));
+        assertThat(statements).anyMatch(statement -> statement.endsWith("ON (t.qualita, t.identificativoImmobile)"));
+        assertThat(statements).anyMatch(statement -> statement.endsWith("ON (f.categoria, f.identificativoImmobile)"));
+        assertThat(statements).anyMatch(statement -> statement.endsWith("ON (f.zona, f.identificativoImmobile)"));
+        assertThat(statements).anyMatch(statement -> statement.endsWith("ON (s.tipoSoggetto, s.identificativoSoggetto)"));
+    }
+
+    @Test
+    void numbersMigrationsInOrder() {
+        List<Integer> versions = SchemaManager.MIGRATIONS.stream().map(SchemaManager.Migration::version).toList();
+
+        for (int i = 0; i < versions.size(); i++) {
+            assertThat(versions.get(i)).isEqualTo(i + 1);
+        }
+        assertThat(SchemaManager.MIGRATIONS).allSatisfy(migration -> assertThat(migration.statements())
+                .allMatch(statement -> !statement.startsWith("CREATE") || statement.contains("IF NOT EXISTS")));
+    }
+}